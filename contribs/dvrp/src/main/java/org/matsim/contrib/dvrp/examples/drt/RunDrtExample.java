@@ -0,0 +1,102 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.examples.drt;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.data.file.VehicleReader;
+import org.matsim.contrib.dvrp.extensions.drt.*;
+import org.matsim.contrib.dvrp.router.DynRoutingModule;
+import org.matsim.contrib.dvrp.run.VrpQSimConfigConsistencyChecker;
+import org.matsim.contrib.dvrp.trafficmonitoring.VrpTravelTimeModules;
+import org.matsim.contrib.dynagent.run.DynQSimModule;
+import org.matsim.contrib.otfvis.OTFVisLiveModule;
+import org.matsim.core.config.*;
+import org.matsim.core.controler.*;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vis.otfvis.OTFVisConfigGroup;
+
+
+/**
+ * Shared rides served by a few vehicles with {@link DrtOptimizer}.
+ */
+public class RunDrtExample
+{
+    private static final String DRT_GROUP_NAME = "drt";
+    private static final String VEHICLES_FILE = "vehiclesFile";
+    private static final String STOP_DURATION = "stopDuration";
+    private static final String MAX_WAIT_TIME = "maxWaitTime";
+    private static final String MAX_TRAVEL_TIME_ALPHA = "maxTravelTimeAlpha";
+    private static final String MAX_TRAVEL_TIME_BETA = "maxTravelTimeBeta";
+    private static final String THREADS = "threads";
+
+
+    public static void run(boolean otfvis)
+    {
+        String configFile = "./src/main/resources/drt/drt_config.xml";
+        run(configFile, otfvis);
+    }
+
+
+    public static void run(String configFile, boolean otfvis)
+    {
+        ConfigGroup drtCfg = new ConfigGroup(DRT_GROUP_NAME) {};
+        Config config = ConfigUtils.loadConfig(configFile, new OTFVisConfigGroup(), drtCfg);
+        config.addConfigConsistencyChecker(new VrpQSimConfigConsistencyChecker());
+        config.checkConsistency();
+
+        Scenario scenario = ScenarioUtils.loadScenario(config);
+
+        final VrpData vrpData = new VrpDataImpl();
+        new VehicleReader(scenario.getNetwork(), vrpData).parse(drtCfg.getValue(VEHICLES_FILE));
+
+        final DrtOptimizerParams params = new DrtOptimizerParams(
+                Double.parseDouble(drtCfg.getValue(STOP_DURATION)),
+                Double.parseDouble(drtCfg.getValue(MAX_WAIT_TIME)),
+                Double.parseDouble(drtCfg.getValue(MAX_TRAVEL_TIME_ALPHA)),
+                Double.parseDouble(drtCfg.getValue(MAX_TRAVEL_TIME_BETA)),
+                Integer.parseInt(drtCfg.getValue(THREADS)));
+
+        Controler controler = new Controler(scenario);
+        controler.addOverridingModule(new AbstractModule() {
+            public void install()
+            {
+                addRoutingModuleBinding(DrtQSimProvider.DRT_MODE)
+                        .toInstance(new DynRoutingModule(DrtQSimProvider.DRT_MODE));
+                bind(VrpData.class).toInstance(vrpData);
+                bind(DrtOptimizerParams.class).toInstance(params);
+            }
+        });
+        controler.addOverridingModule(VrpTravelTimeModules.createTravelTimeEstimatorModule());
+        controler.addOverridingModule(new DynQSimModule<>(DrtQSimProvider.class));
+
+        if (otfvis) {
+            controler.addOverridingModule(new OTFVisLiveModule());
+        }
+
+        controler.run();
+    }
+
+
+    public static void main(String... args)
+    {
+        run(true);
+    }
+}
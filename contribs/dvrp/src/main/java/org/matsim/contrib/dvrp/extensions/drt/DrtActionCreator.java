@@ -0,0 +1,80 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.extensions.drt;
+
+import java.util.*;
+
+import org.matsim.contrib.dvrp.extensions.vrppd.*;
+import org.matsim.contrib.dvrp.passenger.*;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.contrib.dvrp.vrpagent.*;
+import org.matsim.contrib.dynagent.DynAction;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+
+
+public class DrtActionCreator
+    implements VrpAgentLogic.DynActionCreator
+{
+    private final PassengerEngine passengerEngine;
+    private final MobsimTimer timer;
+    private final double stopDuration;
+
+
+    public DrtActionCreator(PassengerEngine passengerEngine, MobsimTimer timer,
+            double stopDuration)
+    {
+        this.passengerEngine = passengerEngine;
+        this.timer = timer;
+        this.stopDuration = stopDuration;
+    }
+
+
+    @Override
+    public DynAction createAction(final Task task, double now)
+    {
+        switch (task.getType()) {
+            case DRIVE:
+                return VrpLegs.createLegWithOfflineTracker((DriveTask)task, timer);
+
+            case STAY:
+                if (task instanceof PickupDeliveryTask) { //PICKUP or DROPOFF
+                    PickupDeliveryTask stopTask = (PickupDeliveryTask)task;
+                    List<DrtRequest> requests = new ArrayList<>(stopTask.getRequests().size());
+                    for (PickupDeliveryRequest r : stopTask.getRequests()) {
+                        requests.add((DrtRequest)r);
+                    }
+
+                    if (stopTask.isPickup()) {
+                        return new MultiPassengerPickupActivity(passengerEngine, stopTask,
+                                requests, stopDuration);
+                    }
+                    else {
+                        return new MultiPassengerDropoffActivity(passengerEngine, stopTask,
+                                requests);
+                    }
+                }
+                else { //WAIT
+                    return new VrpActivity("DrtStay", (StayTask)task);
+                }
+        }
+
+        throw new RuntimeException();
+    }
+}
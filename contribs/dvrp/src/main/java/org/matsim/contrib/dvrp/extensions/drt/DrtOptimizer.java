@@ -0,0 +1,372 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.extensions.drt;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.extensions.drt.InsertionFinder.Insertion;
+import org.matsim.contrib.dvrp.extensions.drt.OneToManyPathSearch.NetworkIndex;
+import org.matsim.contrib.dvrp.extensions.vrppd.*;
+import org.matsim.contrib.dvrp.optimizer.VrpOptimizer;
+import org.matsim.contrib.dvrp.path.*;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
+import org.matsim.contrib.dvrp.schedule.Task.TaskType;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelTime;
+
+
+/**
+ * Shared-ride optimizer. Each submitted request is inserted into the schedule of the vehicle, for
+ * which the pickup and dropoff can be added at least cost, while keeping the time windows of all
+ * requests and the vehicle capacity (see {@link InsertionFinder}). If there is no such vehicle,
+ * the request is rejected.
+ * <p>
+ * Vehicles are not diverted: a vehicle driving to its next stop gets new stops only after that
+ * one. If <code>threads > 1</code>, the travel time searches and the evaluation of vehicles run
+ * in parallel; the threads are stopped when the mobsim is cleaned up.
+ */
+public class DrtOptimizer
+    implements VrpOptimizer, MobsimBeforeCleanupListener
+{
+    private final VrpData vrpData;
+    private final MobsimTimer timer;
+    private final TravelTime travelTime;
+    private final DrtOptimizerParams params;
+
+    private final InsertionFinder insertionFinder;
+    private final ExecutorService executor;//null if run sequentially
+
+    private int rejectedRequestCount = 0;
+
+
+    @SuppressWarnings("unchecked")
+    public DrtOptimizer(Network network, VrpData vrpData, MobsimTimer timer,
+            TravelTime travelTime, DrtOptimizerParams params)
+    {
+        this.vrpData = vrpData;
+        this.timer = timer;
+        this.travelTime = travelTime;
+        this.params = params;
+
+        insertionFinder = new InsertionFinder(new NetworkIndex(network), travelTime, params);
+        executor = params.threads > 1 ? Executors.newFixedThreadPool(params.threads,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread thread = new Thread(r, "DrtInsertion");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }) : null;
+
+        for (Vehicle veh : vrpData.getVehicles().values()) {
+            veh.resetSchedule();//necessary if we run more than 1 iteration
+            ((Schedule<AbstractTask>)veh.getSchedule()).addTask(
+                    new StayTaskImpl(veh.getT0(), veh.getT1(), veh.getStartLink(), "wait"));
+        }
+    }
+
+
+    @Override
+    public void requestSubmitted(Request request)
+    {
+        DrtRequest drtRequest = (DrtRequest)request;
+        double now = timer.getTimeOfDay();
+
+        List<VehicleData> vehicles = new ArrayList<>();
+        for (Vehicle veh : vrpData.getVehicles().values()) {
+            VehicleData vData = VehicleData.create(veh, now);
+            if (vData != null) {
+                vehicles.add(vData);
+            }
+        }
+
+        insertionFinder.calcTravelTimes(drtRequest, vehicles, now, executor);
+        Insertion best = findBestInsertion(vehicles);
+
+        if (best == null) {
+            drtRequest.setRejected(true);
+            rejectedRequestCount++;
+            return;
+        }
+
+        insertRequest(drtRequest, best);
+    }
+
+
+    private Insertion findBestInsertion(final List<VehicleData> vehicles)
+    {
+        if (executor == null || vehicles.size() < 2 * params.threads) {
+            return findBestInsertion(vehicles, 0, vehicles.size());
+        }
+
+        //more chunks than threads, so that the threads finish at about the same time
+        int chunks = 4 * params.threads;
+        List<Callable<Insertion>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int from = (int)((long)c * vehicles.size() / chunks);
+            final int to = (int)((long) (c + 1) * vehicles.size() / chunks);
+            tasks.add(new Callable<Insertion>() {
+                @Override
+                public Insertion call()
+                {
+                    return findBestInsertion(vehicles, from, to);
+                }
+            });
+        }
+
+        //the chunks are compared in order, so the result does not depend on the number of threads
+        Insertion best = null;
+        for (Insertion insertion : invokeAll(executor, tasks)) {
+            if (insertion != null && (best == null || insertion.cost < best.cost)) {
+                best = insertion;
+            }
+        }
+        return best;
+    }
+
+
+    private Insertion findBestInsertion(List<VehicleData> vehicles, int from, int to)
+    {
+        Insertion best = null;
+        for (int v = from; v < to; v++) {
+            Insertion insertion = insertionFinder.findBestInsertion(vehicles.get(v));
+            if (insertion != null && (best == null || insertion.cost < best.cost)) {
+                best = insertion;
+            }
+        }
+        return best;
+    }
+
+
+    @Override
+    public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e)
+    {
+        //a new optimizer is created for every QSim
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+
+    static <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks)
+    {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+
+    /**
+     * Replaces all tasks after the start task with the new sequence of stops (plus drives between
+     * them) and a final stay task. Drive tasks between stops that remain consecutive are reused.
+     */
+    @SuppressWarnings("unchecked")
+    private void insertRequest(DrtRequest request, Insertion insertion)
+    {
+        VehicleData vData = insertion.vData;
+        Schedule<AbstractTask> schedule = (Schedule<AbstractTask>)vData.vehicle.getSchedule();
+        StayTask startTask = vData.startTask;
+
+        Map<Task, DriveTask> drivesToStops = new HashMap<>();
+        List<AbstractTask> tasks = schedule.getTasks();
+        for (int i = startTask.getTaskIdx() + 1; i < tasks.size() - 1; i++) {
+            if (tasks.get(i).getType() == TaskType.DRIVE) {
+                drivesToStops.put(tasks.get(i + 1), (DriveTask)tasks.get(i));
+            }
+        }
+
+        while (Schedules.getLastTask(schedule) != startTask) {
+            schedule.removeLastTask();
+        }
+        if (startTask.getEndTime() != vData.startTime) {
+            startTask.setEndTime(vData.startTime);//an idle vehicle departs now
+        }
+
+        PickupDeliveryTask pickupTask = new PickupDeliveryTaskImpl(0, 0, request.getFromLink(),
+                true);
+        PickupDeliveryTask dropoffTask = new PickupDeliveryTaskImpl(0, 0, request.getToLink(),
+                false);
+        pickupTask.addRequest(request);
+        dropoffTask.addRequest(request);
+
+        StopAppender appender = new StopAppender(schedule, startTask, vData.startTime,
+                drivesToStops, pickupTask, dropoffTask);
+        int n = vData.getStopCount();
+        for (int k = 0; k <= n; k++) {
+            if (k == insertion.pickupIdx) {
+                appender.appendStop(pickupTask, null);
+            }
+            if (k == insertion.dropoffIdx) {
+                appender.appendStop(dropoffTask, null);
+            }
+            if (k < n) {
+                appender.appendStop(vData.stops[k], k == 0 ? startTask : vData.stops[k - 1]);
+            }
+        }
+
+        double time = appender.time;
+        schedule.addTask(new StayTaskImpl(time, Math.max(time, vData.vehicle.getT1()),
+                appender.lastStop.getLink(), "wait"));
+    }
+
+
+    private class StopAppender
+    {
+        private final Schedule<AbstractTask> schedule;
+        private final Map<Task, DriveTask> drivesToStops;
+        private final PickupDeliveryTask pickupTask;
+        private final PickupDeliveryTask dropoffTask;
+
+        private StayTask lastStop;
+        private double time;
+
+
+        private StopAppender(Schedule<AbstractTask> schedule, StayTask startTask, double startTime,
+                Map<Task, DriveTask> drivesToStops, PickupDeliveryTask pickupTask,
+                PickupDeliveryTask dropoffTask)
+        {
+            this.schedule = schedule;
+            this.drivesToStops = drivesToStops;
+            this.pickupTask = pickupTask;
+            this.dropoffTask = dropoffTask;
+            lastStop = startTask;
+            time = startTime;
+        }
+
+
+        /**
+         * @param oldPreviousStop the stop before this one in the old schedule; {@code null} for
+         *            the new stops
+         */
+        private void appendStop(PickupDeliveryTask stop, StayTask oldPreviousStop)
+        {
+            Link fromLink = lastStop.getLink();
+            Link toLink = stop.getLink();
+            if (fromLink != toLink) {
+                DriveTask oldDrive = oldPreviousStop == lastStop ? drivesToStops.get(stop) : null;
+                AbstractTask driveTask;
+                if (oldDrive != null) {
+                    driveTask = (AbstractTask)oldDrive;
+                    double driveTime = driveTask.getEndTime() - driveTask.getBeginTime();
+                    driveTask.setBeginTime(time);
+                    driveTask.setEndTime(time + driveTime);
+                }
+                else {
+                    VrpPathWithTravelData path = VrpPaths.createPath(fromLink, toLink, time,
+                            getPath(stop), travelTime);
+                    driveTask = new DriveTaskImpl(path);
+                }
+
+                schedule.addTask(driveTask);
+                time = driveTask.getEndTime();
+            }
+
+            double duration = oldPreviousStop == null ? params.stopDuration
+                    : stop.getEndTime() - stop.getBeginTime();
+            ((AbstractTask)stop).setBeginTime(time);
+            ((AbstractTask)stop).setEndTime(time + duration);
+            schedule.addTask((AbstractTask)stop);
+
+            lastStop = stop;
+            time = stop.getEndTime();
+        }
+
+
+        private Path getPath(PickupDeliveryTask stop)
+        {
+            Link fromLink = lastStop.getLink();
+            Link toLink = stop.getLink();
+            if (stop == pickupTask) {
+                return insertionFinder.getPathToPickup(fromLink);
+            }
+            else if (lastStop == pickupTask) {
+                return insertionFinder.getPathFromPickup(toLink);
+            }
+            else if (stop == dropoffTask) {
+                return insertionFinder.getPathToDropoff(fromLink);
+            }
+            else if (lastStop == dropoffTask) {
+                return insertionFinder.getPathFromDropoff(toLink);
+            }
+
+            throw new IllegalStateException("The stops have been consecutive before");
+        }
+    }
+
+
+    @Override
+    public void nextTask(Schedule<? extends Task> schedule)
+    {
+        updateTimings(schedule);
+        schedule.nextTask();
+    }
+
+
+    /**
+     * Shifts the planned tasks according to the actual end time of the current task.
+     */
+    private void updateTimings(Schedule<? extends Task> schedule)
+    {
+        if (schedule.getStatus() != ScheduleStatus.STARTED) {
+            return;
+        }
+
+        double now = timer.getTimeOfDay();
+        Task currentTask = schedule.getCurrentTask();
+        currentTask.setEndTime(now);
+
+        List<? extends Task> tasks = schedule.getTasks();
+        double time = now;
+        for (int i = currentTask.getTaskIdx() + 1; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            double endTime = Schedules.isLastTask(task) && ! (task instanceof PickupDeliveryTask) ? //
+                    Math.max(time, schedule.getVehicle().getT1()) : // final stay
+                    time + task.getEndTime() - task.getBeginTime();
+            task.setBeginTime(time);
+            task.setEndTime(endTime);
+            time = endTime;
+        }
+    }
+
+
+    public int getRejectedRequestCount()
+    {
+        return rejectedRequestCount;
+    }
+}
@@ -0,0 +1,42 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.extensions.drt;
+
+public class DrtOptimizerParams
+{
+    public final double stopDuration;//duration of each pickup/dropoff stop [s]
+
+    public final double maxWaitTime;//max time between submission and pickup [s]
+    public final double maxTravelTimeAlpha;//max travel time (wait + ride) relative to the direct ride time
+    public final double maxTravelTimeBeta;//additional max travel time [s]
+
+    public final int threads;//vehicles are evaluated in parallel if > 1
+
+
+    public DrtOptimizerParams(double stopDuration, double maxWaitTime, double maxTravelTimeAlpha,
+            double maxTravelTimeBeta, int threads)
+    {
+        this.stopDuration = stopDuration;
+        this.maxWaitTime = maxWaitTime;
+        this.maxTravelTimeAlpha = maxTravelTimeAlpha;
+        this.maxTravelTimeBeta = maxTravelTimeBeta;
+        this.threads = threads;
+    }
+}
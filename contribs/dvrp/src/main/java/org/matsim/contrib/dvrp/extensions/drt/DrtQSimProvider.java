@@ -0,0 +1,90 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.extensions.drt;
+
+import java.util.Collection;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.contrib.dvrp.data.VrpData;
+import org.matsim.contrib.dvrp.passenger.PassengerEngine;
+import org.matsim.contrib.dvrp.router.*;
+import org.matsim.contrib.dvrp.trafficmonitoring.VrpTravelTimeModules;
+import org.matsim.contrib.dvrp.vrpagent.VrpAgentSource;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.mobsim.framework.Mobsim;
+import org.matsim.core.mobsim.qsim.*;
+import org.matsim.core.router.util.TravelTime;
+
+import com.google.inject.*;
+import com.google.inject.name.Named;
+
+
+public class DrtQSimProvider
+    implements Provider<Mobsim>
+{
+    public static final String DRT_MODE = "drt";
+
+    private final Scenario scenario;
+    private final EventsManager events;
+    private final Collection<AbstractQSimPlugin> plugins;
+
+    private final VrpData vrpData;
+    private final TravelTime travelTime;
+    private final DrtOptimizerParams params;
+
+
+    @Inject
+    public DrtQSimProvider(Scenario scenario, EventsManager events,
+            Collection<AbstractQSimPlugin> plugins, VrpData vrpData,
+            @Named(VrpTravelTimeModules.DVRP) TravelTime travelTime, DrtOptimizerParams params)
+    {
+        this.scenario = scenario;
+        this.events = events;
+        this.plugins = plugins;
+        this.vrpData = vrpData;
+        this.travelTime = travelTime;
+        this.params = params;
+    }
+
+
+    @Override
+    public Mobsim get()
+    {
+        QSim qSim = QSimUtils.createQSim(scenario, events, plugins);
+
+        DrtOptimizer optimizer = new DrtOptimizer(scenario.getNetwork(), vrpData,
+                qSim.getSimTimer(), travelTime, params);
+        qSim.addQueueSimulationListeners(optimizer);
+
+        DijkstraWithThinPath router = new DijkstraWithThinPath(scenario.getNetwork(),
+                new TimeAsTravelDisutility(travelTime), travelTime);
+        PassengerEngine passengerEngine = new PassengerEngine(DRT_MODE, events,
+                new DrtRequestCreator(params, router, travelTime), optimizer, vrpData,
+                scenario.getNetwork());
+        qSim.addMobsimEngine(passengerEngine);
+        qSim.addDepartureHandler(passengerEngine);
+
+        DrtActionCreator actionCreator = new DrtActionCreator(passengerEngine,
+                qSim.getSimTimer(), params.stopDuration);
+        qSim.addAgentSource(new VrpAgentSource(actionCreator, vrpData, optimizer, qSim));
+
+        return qSim;
+    }
+}
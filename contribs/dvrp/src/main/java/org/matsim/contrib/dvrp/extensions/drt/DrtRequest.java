@@ -0,0 +1,62 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.extensions.drt;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.dvrp.data.Request;
+import org.matsim.contrib.dvrp.extensions.vrppd.PickupDeliveryRequestImpl;
+import org.matsim.contrib.dvrp.passenger.PassengerRequest;
+import org.matsim.core.mobsim.framework.MobsimPassengerAgent;
+
+
+/**
+ * A shared-ride request. The passenger is to be picked up within [T0, T1] and dropped off not
+ * later than the latest arrival time.
+ */
+public class DrtRequest
+    extends PickupDeliveryRequestImpl
+    implements PassengerRequest
+{
+    private final MobsimPassengerAgent passenger;
+    private final double latestArrivalTime;
+
+
+    public DrtRequest(Id<Request> id, MobsimPassengerAgent passenger, Link fromLink, Link toLink,
+            double t0, double t1, double latestArrivalTime, double submissionTime)
+    {
+        super(id, 1, t0, t1, submissionTime, fromLink, toLink);
+        this.passenger = passenger;
+        this.latestArrivalTime = latestArrivalTime;
+    }
+
+
+    @Override
+    public MobsimPassengerAgent getPassenger()
+    {
+        return passenger;
+    }
+
+
+    public double getLatestArrivalTime()
+    {
+        return latestArrivalTime;
+    }
+}
@@ -0,0 +1,64 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.extensions.drt;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.dvrp.data.Request;
+import org.matsim.contrib.dvrp.passenger.*;
+import org.matsim.contrib.dvrp.path.VrpPaths;
+import org.matsim.core.mobsim.framework.MobsimPassengerAgent;
+import org.matsim.core.router.util.*;
+
+
+/**
+ * Creates immediate requests with T1 = T0 + maxWaitTime and the latest arrival time
+ * T0 + maxTravelTimeAlpha * directRideTime + maxTravelTimeBeta.
+ */
+public class DrtRequestCreator
+    implements PassengerRequestCreator
+{
+    private final DrtOptimizerParams params;
+    private final LeastCostPathCalculator router;
+    private final TravelTime travelTime;
+
+
+    public DrtRequestCreator(DrtOptimizerParams params, LeastCostPathCalculator router,
+            TravelTime travelTime)
+    {
+        this.params = params;
+        this.router = router;
+        this.travelTime = travelTime;
+    }
+
+
+    @Override
+    public PassengerRequest createRequest(Id<Request> id, MobsimPassengerAgent passenger,
+            Link fromLink, Link toLink, double t0, double t1, double now)
+    {
+        double directRideTime = VrpPaths
+                .calcAndCreatePath(fromLink, toLink, t0, router, travelTime).getTravelTime();
+        double latestStartTime = t0 + params.maxWaitTime;
+        double latestArrivalTime = t0 + params.maxTravelTimeAlpha * directRideTime
+                + params.maxTravelTimeBeta;
+        return new DrtRequest(id, passenger, fromLink, toLink, t0, latestStartTime,
+                latestArrivalTime, now);
+    }
+}
@@ -0,0 +1,299 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.extensions.drt;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.extensions.drt.OneToManyPathSearch.NetworkIndex;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelTime;
+
+
+/**
+ * Finds the cheapest insertion of a request into a vehicle schedule. All travel times needed are
+ * computed once per request by four bounded one-to-many searches: from all stops to the pickup,
+ * from the pickup to all stops, and the same for the dropoff. Afterwards, the vehicles can be
+ * evaluated concurrently, and the paths of the chosen insertion are taken from the same searches.
+ * <p>
+ * The cost of an insertion is the delay of the end of the vehicle's schedule, i.e. the additional
+ * time the vehicle is busy.
+ */
+class InsertionFinder
+{
+    static class Insertion
+    {
+        final VehicleData vData;
+        final int pickupIdx;//the pickup is inserted before stop pickupIdx
+        final int dropoffIdx;//the dropoff is inserted before stop dropoffIdx (after the pickup)
+        final double cost;
+
+
+        Insertion(VehicleData vData, int pickupIdx, int dropoffIdx, double cost)
+        {
+            this.vData = vData;
+            this.pickupIdx = pickupIdx;
+            this.dropoffIdx = dropoffIdx;
+            this.cost = cost;
+        }
+    }
+
+
+    private final DrtOptimizerParams params;
+
+    private final OneToManyPathSearch toPickup;
+    private final OneToManyPathSearch fromPickup;
+    private final OneToManyPathSearch toDropoff;
+    private final OneToManyPathSearch fromDropoff;
+
+    private DrtRequest request;
+    private double now;
+
+
+    InsertionFinder(NetworkIndex index, TravelTime travelTime, DrtOptimizerParams params)
+    {
+        this.params = params;
+        toPickup = new OneToManyPathSearch(index, travelTime, false);
+        fromPickup = new OneToManyPathSearch(index, travelTime, true);
+        toDropoff = new OneToManyPathSearch(index, travelTime, false);
+        fromDropoff = new OneToManyPathSearch(index, travelTime, true);
+    }
+
+
+    /**
+     * Runs the searches for the request. They are limited by the request's time windows, so stops
+     * that are too far away remain unsettled (infinite travel time).
+     */
+    void calcTravelTimes(DrtRequest request, Collection<VehicleData> vehicles, double now,
+            ExecutorService executor)
+    {
+        this.request = request;
+        this.now = now;
+
+        final Set<Node> departureNodes = new HashSet<>();
+        final Set<Node> arrivalNodes = new HashSet<>();
+        double latestStopTime = Double.NEGATIVE_INFINITY;
+        for (VehicleData vData : vehicles) {
+            departureNodes.add(vData.startLink.getToNode());
+            for (Link link : vData.stopLinks) {
+                departureNodes.add(link.getToNode());
+                arrivalNodes.add(link.getFromNode());
+            }
+            latestStopTime = Math.max(latestStopTime, vData.getLatestArrivalTime());
+        }
+
+        final Link pickupLink = request.getFromLink();
+        final Link dropoffLink = request.getToLink();
+        final Set<Node> arrivalNodesAndDropoff = new HashSet<>(arrivalNodes);
+        arrivalNodesAndDropoff.add(dropoffLink.getFromNode());
+
+        final double maxWaitTime = request.getT1() - now;
+        final double maxTravelTime = request.getLatestArrivalTime() - now;
+        final double maxTravelTimeFromDropoff = latestStopTime - now;
+
+        List<Callable<Void>> searches = new ArrayList<>(4);
+        searches.add(new Callable<Void>() {
+            public Void call()
+            {
+                toPickup.search(pickupLink.getFromNode(), departureNodes, maxWaitTime,
+                        InsertionFinder.this.now);
+                return null;
+            }
+        });
+        searches.add(new Callable<Void>() {
+            public Void call()
+            {
+                fromPickup.search(pickupLink.getToNode(), arrivalNodesAndDropoff, maxTravelTime,
+                        InsertionFinder.this.now);
+                return null;
+            }
+        });
+        searches.add(new Callable<Void>() {
+            public Void call()
+            {
+                toDropoff.search(dropoffLink.getFromNode(), departureNodes, maxTravelTime,
+                        InsertionFinder.this.now);
+                return null;
+            }
+        });
+        searches.add(new Callable<Void>() {
+            public Void call()
+            {
+                fromDropoff.search(dropoffLink.getToNode(), arrivalNodes,
+                        maxTravelTimeFromDropoff, InsertionFinder.this.now);
+                return null;
+            }
+        });
+
+        if (executor == null) {
+            for (Callable<Void> s : searches) {
+                try {
+                    s.call();
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        else {
+            DrtOptimizer.invokeAll(executor, searches);
+        }
+    }
+
+
+    /**
+     * @return {@code null} if no insertion satisfies all time window and capacity constraints
+     */
+    Insertion findBestInsertion(VehicleData vData)
+    {
+        double quantity = request.getQuantity();
+        double capacity = vData.vehicle.getCapacity();
+        double duration = params.stopDuration;
+        int n = vData.getStopCount();
+
+        double ttPickupDropoff = calcTravelTimeFromPickup(request.getToLink());
+
+        Insertion best = null;
+        for (int i = 0; i <= n; i++) {
+            if (vData.occupancies[i] + quantity > capacity) {
+                continue;
+            }
+
+            double ttToPickup = calcTravelTimeToPickup(vData.getLinkBefore(i));
+            double pickupTime = vData.getDepartureTimeBefore(i) + ttToPickup;
+            if (pickupTime > request.getT1()) {
+                continue;//also if not reachable (infinite travel time)
+            }
+
+            //dropoff directly after pickup
+            double dropoffTime = pickupTime + duration + ttPickupDropoff;
+            if (dropoffTime <= request.getLatestArrivalTime()) {
+                double delay = ttToPickup + duration + ttPickupDropoff + duration;
+                if (i < n) {
+                    delay += calcTravelTimeFromDropoff(vData.stopLinks[i]) - vData.legTimes[i];
+                }
+
+                if (delay <= vData.maxDelays[i] && (best == null || delay < best.cost)) {
+                    best = new Insertion(vData, i, i, delay);
+                }
+            }
+
+            if (i == n) {
+                break;
+            }
+
+            //dropoff after one or more of the existing stops
+            double pickupDelay = ttToPickup + duration + calcTravelTimeFromPickup(vData.stopLinks[i])
+                    - vData.legTimes[i];
+            double minSlack = Double.POSITIVE_INFINITY;
+            for (int j = i + 1; j <= n; j++) {
+                minSlack = Math.min(minSlack, vData.maxDelays[j - 1]);
+                if (pickupDelay > minSlack || vData.occupancies[j] + quantity > capacity) {
+                    break;
+                }
+
+                double ttToDropoff = calcTravelTimeToDropoff(vData.stopLinks[j - 1]);
+                dropoffTime = vData.departureTimes[j - 1] + pickupDelay + ttToDropoff;
+                if (dropoffTime > request.getLatestArrivalTime()) {
+                    continue;
+                }
+
+                double delay = pickupDelay + ttToDropoff + duration;
+                if (j < n) {
+                    delay += calcTravelTimeFromDropoff(vData.stopLinks[j]) - vData.legTimes[j];
+                }
+
+                if (delay <= vData.maxDelays[j] && (best == null || delay < best.cost)) {
+                    best = new Insertion(vData, i, j, delay);
+                }
+            }
+        }
+
+        return best;
+    }
+
+
+    //link-to-link travel times as in VrpPaths: 1 second to move over the first node,
+    //then the path between the links and the last link at free speed
+
+    double calcTravelTimeToPickup(Link fromLink)
+    {
+        return calcTravelTime(fromLink, request.getFromLink(),
+                toPickup.getTravelTime(fromLink.getToNode()));
+    }
+
+
+    double calcTravelTimeFromPickup(Link toLink)
+    {
+        return calcTravelTime(request.getFromLink(), toLink,
+                fromPickup.getTravelTime(toLink.getFromNode()));
+    }
+
+
+    double calcTravelTimeToDropoff(Link fromLink)
+    {
+        return calcTravelTime(fromLink, request.getToLink(),
+                toDropoff.getTravelTime(fromLink.getToNode()));
+    }
+
+
+    double calcTravelTimeFromDropoff(Link toLink)
+    {
+        return calcTravelTime(request.getToLink(), toLink,
+                fromDropoff.getTravelTime(toLink.getFromNode()));
+    }
+
+
+    private double calcTravelTime(Link fromLink, Link toLink, double nodeTravelTime)
+    {
+        if (fromLink == toLink) {
+            return 0;
+        }
+
+        return 1 + nodeTravelTime + toLink.getLength() / toLink.getFreespeed(now);
+    }
+
+
+    //paths of the new legs (between different links), as long as the searches are not rerun
+
+    Path getPathToPickup(Link fromLink)
+    {
+        return toPickup.getPath(fromLink.getToNode());
+    }
+
+
+    Path getPathFromPickup(Link toLink)
+    {
+        return fromPickup.getPath(toLink.getFromNode());
+    }
+
+
+    Path getPathToDropoff(Link fromLink)
+    {
+        return toDropoff.getPath(fromLink.getToNode());
+    }
+
+
+    Path getPathFromDropoff(Link toLink)
+    {
+        return fromDropoff.getPath(toLink.getFromNode());
+    }
+}
@@ -0,0 +1,296 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.extensions.drt;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.path.VrpPaths;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelTime;
+
+
+/**
+ * Dijkstra search from one node to many nodes (forward) or from many nodes to one node
+ * (backward). The search stops as soon as all target nodes are settled or the travel time exceeds
+ * the given limit, so only the neighbourhood of the source is visited. Link travel times are
+ * taken at one point in time, which is accurate enough for the short trips considered when
+ * inserting requests.
+ * <p>
+ * After a search, the travel times and paths to all settled nodes can be read until the next
+ * search starts. Instances are not thread-safe, but several instances can share one
+ * {@link NetworkIndex}.
+ */
+class OneToManyPathSearch
+{
+    /**
+     * Immutable array representation of the network.
+     */
+    static class NetworkIndex
+    {
+        private final Link[] links;
+        private final Map<Id<Node>, Integer> nodeIdxs;
+        private final int[] linkFromNodes;
+        private final int[] linkToNodes;
+        private final int[] outLinksStart;//CSR: out-links of node n are outLinks[outLinksStart[n], outLinksStart[n+1])
+        private final int[] outLinks;
+        private final int[] inLinksStart;
+        private final int[] inLinks;
+
+
+        NetworkIndex(Network network)
+        {
+            int nodeCount = network.getNodes().size();
+            nodeIdxs = new HashMap<>(2 * nodeCount);
+            for (Node n : network.getNodes().values()) {
+                nodeIdxs.put(n.getId(), nodeIdxs.size());
+            }
+
+            links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+            linkFromNodes = new int[links.length];
+            linkToNodes = new int[links.length];
+            outLinksStart = new int[nodeCount + 1];
+            inLinksStart = new int[nodeCount + 1];
+            for (int l = 0; l < links.length; l++) {
+                linkFromNodes[l] = nodeIdxs.get(links[l].getFromNode().getId());
+                linkToNodes[l] = nodeIdxs.get(links[l].getToNode().getId());
+                outLinksStart[linkFromNodes[l] + 1]++;
+                inLinksStart[linkToNodes[l] + 1]++;
+            }
+            for (int n = 0; n < nodeCount; n++) {
+                outLinksStart[n + 1] += outLinksStart[n];
+                inLinksStart[n + 1] += inLinksStart[n];
+            }
+
+            outLinks = new int[links.length];
+            inLinks = new int[links.length];
+            int[] outPos = Arrays.copyOf(outLinksStart, nodeCount);
+            int[] inPos = Arrays.copyOf(inLinksStart, nodeCount);
+            for (int l = 0; l < links.length; l++) {
+                outLinks[outPos[linkFromNodes[l]]++] = l;
+                inLinks[inPos[linkToNodes[l]]++] = l;
+            }
+        }
+
+
+        int getNodeCount()
+        {
+            return outLinksStart.length - 1;
+        }
+
+
+        int getNodeIdx(Node node)
+        {
+            return nodeIdxs.get(node.getId());
+        }
+    }
+
+
+    private final NetworkIndex index;
+    private final TravelTime travelTime;
+    private final boolean forward;
+
+    //per-node data, valid only if stamps[n] == currentStamp
+    private final double[] times;
+    private final int[] predLinks;//forward: link entering the node; backward: link leaving the node
+    private final boolean[] settled;
+    private final int[] stamps;
+    private int currentStamp = 0;
+
+    //binary heap with lazy deletion (a node may be in the heap several times)
+    private double[] heapTimes = new double[64];
+    private int[] heapNodes = new int[64];
+    private int heapSize;
+
+    private final BitSet targetFlags = new BitSet();
+    private int sourceNode = -1;
+
+
+    OneToManyPathSearch(NetworkIndex index, TravelTime travelTime, boolean forward)
+    {
+        this.index = index;
+        this.travelTime = travelTime;
+        this.forward = forward;
+
+        int nodeCount = index.getNodeCount();
+        times = new double[nodeCount];
+        predLinks = new int[nodeCount];
+        settled = new boolean[nodeCount];
+        stamps = new int[nodeCount];
+    }
+
+
+    /**
+     * @param source the start node (forward) or the end node (backward) of all paths
+     * @param targets nodes which must be settled before the search may stop
+     * @param maxTravelTime nodes further away than that are not settled
+     * @param time time of day used for the link travel times
+     */
+    void search(Node source, Collection<Node> targets, double maxTravelTime, double time)
+    {
+        if (++currentStamp == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            currentStamp = 1;
+        }
+        heapSize = 0;
+        sourceNode = index.getNodeIdx(source);
+
+        targetFlags.clear();
+        for (Node t : targets) {
+            targetFlags.set(index.getNodeIdx(t));
+        }
+        int remainingTargets = targetFlags.cardinality();
+
+        visit(sourceNode, 0, -1);
+        push(0, sourceNode);
+
+        int[] linkEnds = forward ? index.linkToNodes : index.linkFromNodes;
+        int[] adjStart = forward ? index.outLinksStart : index.inLinksStart;
+        int[] adjLinks = forward ? index.outLinks : index.inLinks;
+        while (heapSize > 0 && remainingTargets > 0) {
+            double t = heapTimes[0];
+            int n = pop();
+            if (settled[n]) {
+                continue;//outdated heap entry
+            }
+            if (t > maxTravelTime) {
+                break;
+            }
+
+            settled[n] = true;
+            if (targetFlags.get(n)) {
+                remainingTargets--;
+            }
+
+            for (int i = adjStart[n]; i < adjStart[n + 1]; i++) {
+                int l = adjLinks[i];
+                int m = linkEnds[l];
+                double mTime = t + travelTime.getLinkTravelTime(index.links[l], time, null, null);
+                if (stamps[m] != currentStamp) {
+                    visit(m, mTime, l);
+                    push(mTime, m);
+                }
+                else if (!settled[m] && mTime < times[m]) {
+                    times[m] = mTime;
+                    predLinks[m] = l;
+                    push(mTime, m);
+                }
+            }
+        }
+    }
+
+
+    private void visit(int n, double time, int predLink)
+    {
+        stamps[n] = currentStamp;
+        times[n] = time;
+        predLinks[n] = predLink;
+        settled[n] = false;
+    }
+
+
+    /**
+     * @return travel time between the source and the node, or +infinity if the node has not been
+     *         settled
+     */
+    double getTravelTime(Node node)
+    {
+        int n = index.getNodeIdx(node);
+        return stamps[n] == currentStamp && settled[n] ? times[n] : Double.POSITIVE_INFINITY;
+    }
+
+
+    /**
+     * @return path from the source to the node (forward) or from the node to the source
+     *         (backward); the node must have been settled. The path is thin, i.e. without nodes,
+     *         which is enough for {@link VrpPaths#createPath}.
+     */
+    Path getPath(Node node)
+    {
+        int n = index.getNodeIdx(node);
+        if (stamps[n] != currentStamp || !settled[n]) {
+            throw new IllegalArgumentException("Node not settled: " + node.getId());
+        }
+
+        List<Link> links = new ArrayList<>();
+        int current = n;
+        while (current != sourceNode) {
+            int l = predLinks[current];
+            links.add(index.links[l]);
+            current = forward ? index.linkFromNodes[l] : index.linkToNodes[l];
+        }
+
+        if (forward) {
+            Collections.reverse(links);
+        }
+        return new Path(null, links, times[n], times[n]);
+    }
+
+
+    private void push(double time, int node)
+    {
+        if (heapSize == heapTimes.length) {
+            heapTimes = Arrays.copyOf(heapTimes, 2 * heapSize);
+            heapNodes = Arrays.copyOf(heapNodes, 2 * heapSize);
+        }
+
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heapTimes[parent] <= time) {
+                break;
+            }
+            heapTimes[i] = heapTimes[parent];
+            heapNodes[i] = heapNodes[parent];
+            i = parent;
+        }
+        heapTimes[i] = time;
+        heapNodes[i] = node;
+    }
+
+
+    private int pop()
+    {
+        int result = heapNodes[0];
+        double time = heapTimes[--heapSize];
+        int node = heapNodes[heapSize];
+
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapTimes[child + 1] < heapTimes[child]) {
+                child++;
+            }
+            if (time <= heapTimes[child]) {
+                break;
+            }
+            heapTimes[i] = heapTimes[child];
+            heapNodes[i] = heapNodes[child];
+            i = child;
+        }
+        heapTimes[i] = time;
+        heapNodes[i] = node;
+        return result;
+    }
+}
@@ -0,0 +1,172 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.extensions.drt;
+
+import java.util.List;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.extensions.vrppd.*;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.contrib.dvrp.schedule.Task.TaskType;
+
+
+/**
+ * Snapshot of a vehicle's schedule as seen by the insertion heuristic. The schedule can be
+ * changed only after the start task, i.e. the current task, or the stop the vehicle is currently
+ * driving to (diversion is not supported). The following stops can be delayed as long as the time
+ * windows of their requests are kept.
+ */
+class VehicleData
+{
+    final Vehicle vehicle;
+    final StayTask startTask;
+    final Link startLink;
+    final double startTime;
+
+    final PickupDeliveryTask[] stops;
+    final Link[] stopLinks;
+    final double[] arrivalTimes;//planned begin times of the stops
+    final double[] departureTimes;//planned end times of the stops
+    final double[] legTimes;//travel times from the previous stop (or start) to the stops
+    final double[] occupancies;//occupancies[k]: load when arriving at stop k; [n]: after the last stop
+    final double[] maxDelays;//maxDelays[k]: max delay of stops k..n-1 and the schedule end; [n]: end only
+
+
+    /**
+     * @return {@code null} if the vehicle cannot serve any more requests
+     */
+    static VehicleData create(Vehicle vehicle, double now)
+    {
+        Schedule<? extends Task> schedule = vehicle.getSchedule();
+        if (schedule.getStatus() != Schedule.ScheduleStatus.STARTED || now >= vehicle.getT1()) {
+            return null;
+        }
+
+        List<? extends Task> tasks = schedule.getTasks();
+        Task currentTask = schedule.getCurrentTask();
+        int startIdx = currentTask.getTaskIdx();
+        if (currentTask.getType() == TaskType.DRIVE) {
+            startIdx++;//the stop the vehicle is driving to
+        }
+
+        return new VehicleData(vehicle, tasks, startIdx, now);
+    }
+
+
+    private VehicleData(Vehicle vehicle, List<? extends Task> tasks, int startIdx, double now)
+    {
+        this.vehicle = vehicle;
+        startTask = (StayTask)tasks.get(startIdx);
+        startLink = startTask.getLink();
+        startTime = startTask instanceof PickupDeliveryTask ? //
+                Math.max(startTask.getEndTime(), now) : now;//an idle vehicle can depart now
+
+        int n = 0;
+        for (int i = startIdx + 1; i < tasks.size(); i++) {
+            if (tasks.get(i) instanceof PickupDeliveryTask) {
+                n++;
+            }
+        }
+
+        stops = new PickupDeliveryTask[n];
+        stopLinks = new Link[n];
+        arrivalTimes = new double[n];
+        departureTimes = new double[n];
+        legTimes = new double[n];
+        occupancies = new double[n + 1];
+        maxDelays = new double[n + 1];
+        double[] latestArrivalTimes = new double[n];
+
+        double load = 0;//change of the load over the remaining stops
+        double previousDeparture = startTime;
+        int k = 0;
+        for (int i = startIdx + 1; i < tasks.size(); i++) {
+            if (! (tasks.get(i) instanceof PickupDeliveryTask)) {
+                continue;
+            }
+
+            PickupDeliveryTask stop = (PickupDeliveryTask)tasks.get(i);
+            stops[k] = stop;
+            stopLinks[k] = stop.getLink();
+            arrivalTimes[k] = stop.getBeginTime();
+            departureTimes[k] = stop.getEndTime();
+            legTimes[k] = stop.getBeginTime() - previousDeparture;
+            previousDeparture = stop.getEndTime();
+
+            double latest = Double.POSITIVE_INFINITY;
+            for (PickupDeliveryRequest r : stop.getRequests()) {
+                if (stop.isPickup()) {
+                    latest = Math.min(latest, r.getT1());
+                    load += r.getQuantity();
+                }
+                else {
+                    latest = Math.min(latest, ((DrtRequest)r).getLatestArrivalTime());
+                    load -= r.getQuantity();
+                }
+            }
+            latestArrivalTimes[k] = latest;
+            occupancies[k + 1] = load;
+            k++;
+        }
+
+        //passengers on board at the start are those who will get off without being picked up
+        for (k = 0; k <= n; k++) {
+            occupancies[k] -= load;
+        }
+
+        double endTime = n == 0 ? startTime : departureTimes[n - 1];
+        maxDelays[n] = vehicle.getT1() - endTime;
+        for (k = n - 1; k >= 0; k--) {
+            maxDelays[k] = Math.min(maxDelays[k + 1], latestArrivalTimes[k] - arrivalTimes[k]);
+        }
+    }
+
+
+    int getStopCount()
+    {
+        return stops.length;
+    }
+
+
+    Link getLinkBefore(int k)
+    {
+        return k == 0 ? startLink : stopLinks[k - 1];
+    }
+
+
+    double getDepartureTimeBefore(int k)
+    {
+        return k == 0 ? startTime : departureTimes[k - 1];
+    }
+
+
+    /**
+     * @return the latest time any of the stops may be reached (-infinity if there are no stops)
+     */
+    double getLatestArrivalTime()
+    {
+        double latest = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < stops.length; k++) {
+            latest = Math.max(latest, arrivalTimes[k] + maxDelays[k]);
+        }
+        return latest;
+    }
+}
@@ -0,0 +1,145 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.passenger;
+
+import java.util.*;
+
+import org.matsim.contrib.dvrp.schedule.StayTask;
+import org.matsim.contrib.dynagent.DynAgent;
+import org.matsim.core.mobsim.framework.MobsimPassengerAgent;
+
+
+/**
+ * Picks up several passengers at one stop (e.g. in shared-ride services). The activity ends
+ * <code>pickupDuration</code> after the last passenger has entered the vehicle.
+ */
+public class MultiPassengerPickupActivity
+    implements PassengerPickupActivity
+{
+    private final PassengerEngine passengerEngine;
+    private final StayTask pickupTask;
+    private final List<? extends PassengerRequest> requests;
+    private final double pickupDuration;
+
+    private final Set<PassengerRequest> passengersAboard = new HashSet<>();
+    private double endTime;
+
+
+    public MultiPassengerPickupActivity(PassengerEngine passengerEngine, StayTask pickupTask,
+            List<? extends PassengerRequest> requests, double pickupDuration)
+    {
+        this.passengerEngine = passengerEngine;
+        this.pickupTask = pickupTask;
+        this.requests = requests;
+        this.pickupDuration = pickupDuration;
+
+        double now = pickupTask.getBeginTime();
+        DynAgent driver = pickupTask.getSchedule().getVehicle().getAgentLogic().getDynAgent();
+        for (PassengerRequest request : requests) {
+            if (passengerEngine.pickUpPassenger(this, driver, request, now)) {
+                passengersAboard.add(request);
+            }
+        }
+
+        if (passengersAboard.size() == requests.size()) {
+            endTime = now + pickupDuration;
+        }
+        else {
+            setEndTimeIfWaitingForPassengers(now);
+        }
+    }
+
+
+    @Override
+    public void finalizeAction(double now)
+    {}
+
+
+    @Override
+    public double getEndTime()
+    {
+        return endTime;
+    }
+
+
+    @Override
+    public String getActivityType()
+    {
+        return "PassengerPickup";
+    }
+
+
+    @Override
+    public void doSimStep(double now)
+    {
+        if (passengersAboard.size() < requests.size()) {
+            setEndTimeIfWaitingForPassengers(now);
+        }
+    }
+
+
+    private void setEndTimeIfWaitingForPassengers(double now)
+    {
+        //try to predict the arrival time of the last passenger
+        double maxT0 = now;
+        for (PassengerRequest request : requests) {
+            if (!passengersAboard.contains(request)) {
+                maxT0 = Math.max(maxT0, request.getT0());
+            }
+        }
+        endTime = maxT0 + pickupDuration;
+
+        if (endTime == now) {//happens only if pickupDuration == 0
+            endTime += 1; //to prevent the driver departing now (before picking up the passengers)
+        }
+    }
+
+
+    @Override
+    public void notifyPassengerIsReadyForDeparture(MobsimPassengerAgent passenger, double now)
+    {
+        PassengerRequest request = getRequest(passenger);
+        if (request == null) {
+            throw new IllegalArgumentException("I am waiting for different passengers!");
+        }
+
+        DynAgent driver = pickupTask.getSchedule().getVehicle().getAgentLogic().getDynAgent();
+        if (!passengerEngine.pickUpPassenger(this, driver, request, now)) {
+            throw new IllegalStateException(
+                    "The passenger is not on the link or not available for departure!");
+        }
+        passengersAboard.add(request);
+
+        if (passengersAboard.size() == requests.size()) {
+            endTime = now + pickupDuration;
+        }
+    }
+
+
+    private PassengerRequest getRequest(MobsimPassengerAgent passenger)
+    {
+        for (PassengerRequest request : requests) {
+            if (request.getPassenger() == passenger) {
+                return request;
+            }
+        }
+        return null;
+    }
+}
@@ -19,19 +19,29 @@
 
 package org.matsim.contrib.dvrp.path;
 
-import java.util.Iterator;
+import java.util.*;
 
 import org.matsim.api.core.v01.network.Link;
 
-import com.google.common.collect.Iterators;
-
 
+/**
+ * Path made of immutable segments of other paths: the links of the path being diverted up to
+ * (and including) the diversion link, followed by the new sub-path. Diverting a diverted path
+ * again reuses the segments of the prefix, so no links are copied, the paths (or their parts)
+ * that are not driven any more become garbage, and the segments are not nested.
+ */
 public class DivertedVrpPath
     implements VrpPath
 {
-    private final VrpPath originalPath;
+    //segment s covers the links [segmentStarts[s], segmentStarts[s + 1]) of this path,
+    //taken from segmentPaths[s] at (idx - segmentShifts[s]); segmentPaths are never diverted
+    private final VrpPath[] segmentPaths;
+    private final int[] segmentStarts;
+    private final int[] segmentShifts;
+
     private final VrpPath newSubPath;
     private final int diversionLinkIdx;// originalPath.getLink(diversionLinkIdx) == newSubPath.getLink(0)
+    private final int linkCount;
 
 
     public DivertedVrpPath(VrpPath originalPath, VrpPath newSubPath, int diversionLinkIdx)
@@ -40,50 +50,76 @@ public class DivertedVrpPath
             throw new IllegalArgumentException();
         }
 
-        this.originalPath = originalPath;
         this.newSubPath = newSubPath;
         this.diversionLinkIdx = diversionLinkIdx;
+        linkCount = diversionLinkIdx + newSubPath.getLinkCount();
+
+        //prefix: the segments of originalPath that contain links 0..diversionLinkIdx
+        //TT for diversionLinkIdx must be taken from originalPath since TT for the first link
+        //in newSubPath is 1 second (a vehicle enters the link at its end)
+        int prefixSegments;
+        if (originalPath instanceof DivertedVrpPath) {
+            DivertedVrpPath diverted = (DivertedVrpPath)originalPath;
+            prefixSegments = diverted.getSegmentIdx(diversionLinkIdx) + 1;
+            segmentPaths = Arrays.copyOf(diverted.segmentPaths, prefixSegments + 1);
+            segmentStarts = Arrays.copyOf(diverted.segmentStarts, prefixSegments + 1);
+            segmentShifts = Arrays.copyOf(diverted.segmentShifts, prefixSegments + 1);
+        }
+        else {
+            prefixSegments = 1;
+            segmentPaths = new VrpPath[] { originalPath, null };
+            segmentStarts = new int[2];
+            segmentShifts = new int[2];
+        }
+
+        segmentPaths[prefixSegments] = newSubPath;
+        segmentStarts[prefixSegments] = diversionLinkIdx + 1;
+        segmentShifts[prefixSegments] = diversionLinkIdx;
+    }
+
+
+    private int getSegmentIdx(int idx)
+    {
+        int s = Arrays.binarySearch(segmentStarts, idx);
+        return s >= 0 ? s : -s - 2;//the last segment starting before idx
     }
 
 
     @Override
     public int getLinkCount()
     {
-        return diversionLinkIdx + newSubPath.getLinkCount();
+        return linkCount;
     }
 
 
     @Override
     public Link getLink(int idx)
     {
-        if (idx <= diversionLinkIdx) {//equivalent to: idx < diversionLinkIdx
-            return originalPath.getLink(idx);
-        }
-        else {
-            return newSubPath.getLink(idx - diversionLinkIdx);
+        if (idx < 0 || idx >= linkCount) {
+            throw new IndexOutOfBoundsException("idx=" + idx + ", linkCount=" + linkCount);
         }
+
+        int s = getSegmentIdx(idx);
+        return segmentPaths[s].getLink(idx - segmentShifts[s]);
     }
 
 
     @Override
     public double getLinkTravelTime(int idx)
     {
-        //TT for diversionLinkIdx must be taken from originalPath since TT for the first link
-        //in newSubPath is 1 second (a vehicle enters the link at its end)  
-
-        if (idx <= diversionLinkIdx) {//incorrect: idx < diversionLinkIdx
-            return originalPath.getLinkTravelTime(idx);
-        }
-        else {
-            return newSubPath.getLinkTravelTime(idx - diversionLinkIdx);
+        if (idx < 0 || idx >= linkCount) {
+            throw new IndexOutOfBoundsException("idx=" + idx + ", linkCount=" + linkCount);
         }
+
+        int s = getSegmentIdx(idx);
+        return segmentPaths[s].getLinkTravelTime(idx - segmentShifts[s]);
     }
 
 
     @Override
     public Link getFromLink()
     {
-        return originalPath.getFromLink();
+        return segmentPaths[0].getFromLink();
     }
 
 
@@ -97,14 +133,64 @@ public class DivertedVrpPath
     @Override
     public Iterator<Link> iterator()
     {
-        return Iterators.concat(Iterators.limit(originalPath.iterator(), diversionLinkIdx),
-                newSubPath.iterator());
+        return new Iterator<Link>() {
+            private int idx = 0;
+
+
+            @Override
+            public boolean hasNext()
+            {
+                return idx < linkCount;
+            }
+
+
+            @Override
+            public Link next()
+            {
+                if (idx >= linkCount) {
+                    throw new NoSuchElementException();
+                }
+                return getLink(idx++);
+            }
+
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
 
-    public VrpPath getOriginalPath()
+    /**
+     * The original path is not referenced (so that it can be garbage collected), hence the check
+     * compares the prefix segments.
+     * 
+     * @return true if this path has been created by diverting the given path
+     */
+    public boolean isDivertedFrom(VrpPath path)
     {
-        return originalPath;
+        int prefixSegments = segmentPaths.length - 1;
+        if (!(path instanceof DivertedVrpPath)) {
+            return prefixSegments == 1 && segmentPaths[0] == path
+                    && diversionLinkIdx < path.getLinkCount();
+        }
+
+        DivertedVrpPath diverted = (DivertedVrpPath)path;
+        if (diversionLinkIdx >= diverted.linkCount
+                || diverted.getSegmentIdx(diversionLinkIdx) + 1 != prefixSegments) {
+            return false;
+        }
+
+        for (int s = 0; s < prefixSegments; s++) {
+            if (segmentPaths[s] != diverted.segmentPaths[s]
+                    || segmentStarts[s] != diverted.segmentStarts[s]
+                    || segmentShifts[s] != diverted.segmentShifts[s]) {
+                return false;
+            }
+        }
+        return true;
     }
 
 
@@ -43,6 +43,10 @@ public class VrpPaths
     }
 
 
+    /**
+     * Only the links and the travel time of the path are used, so a thin path (without nodes, e.g.
+     * from {@link org.matsim.contrib.dvrp.router.DijkstraWithThinPath}) is enough.
+     */
     public static VrpPathWithTravelData createPath(Link fromLink, Link toLink, double departureTime,
             Path path, TravelTime travelTime)
     {
@@ -0,0 +1,326 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.router;
+
+import java.util.*;
+
+import javax.inject.Provider;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.trafficmonitoring.OnlineTravelTimeEstimator;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.core.router.util.*;
+import org.matsim.vehicles.Vehicle;
+
+
+/**
+ * Path cache with a limited memory size, which may be shared by several threads.
+ * <p>
+ * Paths are stored as arrays of link indices and evicted in the LRU order. The cache is split
+ * into segments with their own locks and memory budgets, so the threads rarely block each
+ * other. The memory usage is estimated from the number of cached paths and links.
+ * <p>
+ * Misses are computed outside of the locks, either by a calculator per thread (created by the
+ * given provider) or by a single calculator, which is then used by one thread at a time.
+ * <p>
+ * If the travel times are estimated by {@link OnlineTravelTimeEstimator}, the cache is cleared
+ * whenever the version of the estimates changes. Since the version is also part of the key, paths
+ * computed concurrently for the previous travel times are never returned.
+ */
+public class BoundedLeastCostPathCalculatorWithCache
+    implements LeastCostPathCalculatorWithCache
+{
+    private static final int SEGMENT_COUNT = 16;
+
+    // object headers, the key, the entry of the LinkedHashMap and the path array (without links)
+    private static final int ENTRY_OVERHEAD_BYTES = 144;
+    private static final int BYTES_PER_LINK = 4;
+
+    private final TimeDiscretizer timeDiscretizer;
+    private final Link[] links;
+    private final Map<Id<Link>, Integer> linkIndices;
+    private final TravelTimeVersionCheck travelTimeVersionCheck;
+
+    private final LeastCostPathCalculator sharedCalculator;
+    private final ThreadLocal<LeastCostPathCalculator> threadCalculators;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final long maxSegmentBytes;
+
+    private final CacheStats cacheStats = new CacheStats();
+
+
+    /**
+     * @param maxBytes upper bound of the estimated memory usage of the cached paths
+     */
+    public BoundedLeastCostPathCalculatorWithCache(Network network,
+            LeastCostPathCalculator calculator, TimeDiscretizer timeDiscretizer, long maxBytes)
+    {
+        this(network, calculator, timeDiscretizer, null, maxBytes);
+    }
+
+
+    /**
+     * @param travelTime used by the calculator; if it is an {@link OnlineTravelTimeEstimator}, the
+     *            cache is cleared whenever the version of the estimates changes
+     * @param maxBytes upper bound of the estimated memory usage of the cached paths
+     */
+    public BoundedLeastCostPathCalculatorWithCache(Network network,
+            LeastCostPathCalculator calculator, TimeDiscretizer timeDiscretizer,
+            TravelTime travelTime, long maxBytes)
+    {
+        this(network, calculator, null, timeDiscretizer, travelTime, maxBytes);
+    }
+
+
+    /**
+     * @param calculatorProvider creates one calculator per thread calling this cache
+     * @param maxBytes upper bound of the estimated memory usage of the cached paths
+     */
+    public BoundedLeastCostPathCalculatorWithCache(Network network,
+            Provider<? extends LeastCostPathCalculator> calculatorProvider,
+            TimeDiscretizer timeDiscretizer, long maxBytes)
+    {
+        this(network, calculatorProvider, timeDiscretizer, null, maxBytes);
+    }
+
+
+    /**
+     * @param calculatorProvider creates one calculator per thread calling this cache
+     * @param travelTime used by the calculators; if it is an {@link OnlineTravelTimeEstimator},
+     *            the cache is cleared whenever the version of the estimates changes
+     * @param maxBytes upper bound of the estimated memory usage of the cached paths
+     */
+    public BoundedLeastCostPathCalculatorWithCache(Network network,
+            Provider<? extends LeastCostPathCalculator> calculatorProvider,
+            TimeDiscretizer timeDiscretizer, TravelTime travelTime, long maxBytes)
+    {
+        this(network, null, calculatorProvider, timeDiscretizer, travelTime, maxBytes);
+    }
+
+
+    private BoundedLeastCostPathCalculatorWithCache(Network network,
+            LeastCostPathCalculator calculator,
+            final Provider<? extends LeastCostPathCalculator> calculatorProvider,
+            TimeDiscretizer timeDiscretizer, TravelTime travelTime, long maxBytes)
+    {
+        this.timeDiscretizer = timeDiscretizer;
+        this.travelTimeVersionCheck = new TravelTimeVersionCheck(travelTime);
+        this.sharedCalculator = calculator;
+        this.threadCalculators = calculatorProvider == null ? null
+                : new ThreadLocal<LeastCostPathCalculator>() {
+                    @Override
+                    protected LeastCostPathCalculator initialValue()
+                    {
+                        return calculatorProvider.get();
+                    }
+                };
+
+        links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+        linkIndices = new HashMap<>(2 * links.length);
+        for (int i = 0; i < links.length; i++) {
+            linkIndices.put(links[i].getId(), i);
+        }
+
+        maxSegmentBytes = maxBytes / SEGMENT_COUNT;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+
+    @Override
+    public Path calcLeastCostPath(Node fromNode, Node toNode, double startTime, Person person,
+            Vehicle vehicle)
+    {
+        if (travelTimeVersionCheck.hasNewVersion()) {
+            clear();//the cached paths have been computed for the previous travel times
+        }
+
+        PathKey key = new PathKey(travelTimeVersionCheck.getVersion(),
+                timeDiscretizer.getIdx(startTime), fromNode.getId(), toNode.getId());
+        Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENT_COUNT];
+
+        CompactPath compactPath;
+        synchronized (segment) {
+            compactPath = segment.paths.get(key);
+        }
+
+        if (compactPath != null) {
+            cacheStats.incHits();
+            return compactPath.toPath(fromNode);
+        }
+
+        cacheStats.incMisses();
+        Path path = computePath(fromNode, toNode, timeDiscretizer.discretize(startTime), person,
+                vehicle);
+        compactPath = new CompactPath(path);
+
+        synchronized (segment) {
+            // another thread may have computed the same path in the meantime
+            CompactPath previous = segment.paths.put(key, compactPath);
+            long addedBytes = compactPath.getBytes() - (previous == null ? 0 : previous.getBytes());
+            segment.bytes += addedBytes;
+            cacheStats.addMemoryUsage(addedBytes);
+            segment.evict();
+        }
+
+        return path;
+    }
+
+
+    private Path computePath(Node fromNode, Node toNode, double startTime, Person person,
+            Vehicle vehicle)
+    {
+        if (threadCalculators != null) {
+            return threadCalculators.get().calcLeastCostPath(fromNode, toNode, startTime, person,
+                    vehicle);
+        }
+
+        synchronized (sharedCalculator) {
+            return sharedCalculator.calcLeastCostPath(fromNode, toNode, startTime, person,
+                    vehicle);
+        }
+    }
+
+
+    @Override
+    public CacheStats getCacheStats()
+    {
+        return cacheStats;
+    }
+
+
+    @Override
+    public void clear()
+    {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.paths.clear();
+                cacheStats.addMemoryUsage(-segment.bytes);
+                segment.bytes = 0;
+            }
+        }
+    }
+
+
+    private class Segment
+    {
+        private final LinkedHashMap<PathKey, CompactPath> paths = new LinkedHashMap<>(16, 0.75f,
+                true);
+        private long bytes = 0;
+
+
+        // call only when holding the lock of this segment
+        private void evict()
+        {
+            Iterator<CompactPath> iter = paths.values().iterator();
+            while (bytes > maxSegmentBytes && iter.hasNext()) {
+                CompactPath eldest = iter.next();
+                iter.remove();
+                bytes -= eldest.getBytes();
+                cacheStats.addMemoryUsage(-eldest.getBytes());
+                cacheStats.incEvictions();
+            }
+        }
+    }
+
+
+    private class CompactPath
+    {
+        private final int[] linkIdx;
+        private final double travelTime;
+        private final double travelCost;
+
+
+        private CompactPath(Path path)
+        {
+            linkIdx = new int[path.links.size()];
+            for (int i = 0; i < linkIdx.length; i++) {
+                linkIdx[i] = linkIndices.get(path.links.get(i).getId());
+            }
+            travelTime = path.travelTime;
+            travelCost = path.travelCost;
+        }
+
+
+        private long getBytes()
+        {
+            return ENTRY_OVERHEAD_BYTES + BYTES_PER_LINK * linkIdx.length;
+        }
+
+
+        private Path toPath(Node fromNode)
+        {
+            List<Node> pathNodes = new ArrayList<>(linkIdx.length + 1);
+            List<Link> pathLinks = new ArrayList<>(linkIdx.length);
+            pathNodes.add(fromNode);
+            for (int idx : linkIdx) {
+                Link link = links[idx];
+                pathLinks.add(link);
+                pathNodes.add(link.getToNode());
+            }
+            return new Path(pathNodes, pathLinks, travelTime, travelCost);
+        }
+    }
+
+
+    private static class PathKey
+    {
+        private final int travelTimeVersion;
+        private final int timeIdx;
+        private final Id<Node> fromNodeId;
+        private final Id<Node> toNodeId;
+        private final int hash;
+
+
+        private PathKey(int travelTimeVersion, int timeIdx, Id<Node> fromNodeId, Id<Node> toNodeId)
+        {
+            this.travelTimeVersion = travelTimeVersion;
+            this.timeIdx = timeIdx;
+            this.fromNodeId = fromNodeId;
+            this.toNodeId = toNodeId;
+            this.hash = ((31 * travelTimeVersion + timeIdx) * 31 + fromNodeId.hashCode()) * 31
+                    + toNodeId.hashCode();
+        }
+
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (! (obj instanceof PathKey)) {
+                return false;
+            }
+            PathKey other = (PathKey)obj;
+            return travelTimeVersion == other.travelTimeVersion && timeIdx == other.timeIdx
+                    && fromNodeId.equals(other.fromNodeId)
+                    && toNodeId.equals(other.toNodeId);
+        }
+    }
+}
@@ -22,8 +22,9 @@ package org.matsim.contrib.dvrp.router;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.trafficmonitoring.OnlineTravelTimeEstimator;
 import org.matsim.contrib.dvrp.util.TimeDiscretizer;
-import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.*;
 import org.matsim.vehicles.Vehicle;
 
 import com.google.common.collect.*;
@@ -36,16 +37,31 @@ public class DefaultLeastCostPathCalculatorWithCache
     private final TimeDiscretizer timeDiscretizer;
     private final Table<Id<Node>, Id<Node>, Path>[] pathCache;
 
+    private final TravelTimeVersionCheck travelTimeVersionCheck;
+
     private CacheStats cacheStats = new CacheStats();
 
 
-    @SuppressWarnings("unchecked")
     public DefaultLeastCostPathCalculatorWithCache(LeastCostPathCalculator calculator,
             TimeDiscretizer timeDiscretizer)
+    {
+        this(calculator, timeDiscretizer, null);
+    }
+
+
+    /**
+     * @param travelTime used by the calculator; if it is an {@link OnlineTravelTimeEstimator}, the
+     *            cache is cleared whenever the version of the estimates changes
+     */
+    @SuppressWarnings("unchecked")
+    public DefaultLeastCostPathCalculatorWithCache(LeastCostPathCalculator calculator,
+            TimeDiscretizer timeDiscretizer, TravelTime travelTime)
     {
         this.calculator = calculator;
         this.timeDiscretizer = timeDiscretizer;
 
+        travelTimeVersionCheck = new TravelTimeVersionCheck(travelTime);
+
         pathCache = new Table[timeDiscretizer.getIntervalCount()];
         for (int i = 0; i < pathCache.length; i++) {
             pathCache[i] = HashBasedTable.create();
@@ -57,6 +73,10 @@ public class DefaultLeastCostPathCalculatorWithCache
     public Path calcLeastCostPath(Node fromNode, Node toNode, double startTime, Person person,
             Vehicle vehicle)
     {
+        if (travelTimeVersionCheck.hasNewVersion()) {
+            clear();//the cached paths have been computed for the previous travel times
+        }
+
         Table<Id<Node>, Id<Node>, Path> spCacheSlice = pathCache[timeDiscretizer.getIdx(startTime)];
         Path path = spCacheSlice.get(fromNode.getId(), toNode.getId());
 
@@ -79,4 +99,13 @@ public class DefaultLeastCostPathCalculatorWithCache
     {
         return cacheStats;
     }
+
+
+    @Override
+    public void clear()
+    {
+        for (Table<Id<Node>, Id<Node>, Path> spCacheSlice : pathCache) {
+            spCacheSlice.clear();
+        }
+    }
 }
@@ -24,6 +24,7 @@ import java.util.Map;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.*;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.trafficmonitoring.OnlineTravelTimeEstimator;
 import org.matsim.contrib.dvrp.util.TimeDiscretizer;
 import org.matsim.core.router.util.*;
 import org.matsim.vehicles.Vehicle;
@@ -31,6 +32,10 @@ import org.matsim.vehicles.Vehicle;
 import com.google.common.collect.Maps;
 
 
+/**
+ * If the travel times are estimated by {@link OnlineTravelTimeEstimator}, the cached trees are
+ * removed whenever the version of the estimates changes.
+ */
 public class DijkstraWithDijkstraTreeCache
     implements LeastCostPathCalculatorWithCache
 {
@@ -40,6 +45,8 @@ public class DijkstraWithDijkstraTreeCache
     private final TimeDiscretizer timeDiscretizer;
     private final Map<Id<Node>, DijkstraTree>[] treeCache;
 
+    private final TravelTimeVersionCheck travelTimeVersionCheck;
+
     private CacheStats cacheStats = new CacheStats();
 
 
@@ -56,6 +63,8 @@ public class DijkstraWithDijkstraTreeCache
         for (int i = 0; i < treeCache.length; i++) {
             treeCache[i] = Maps.newHashMap();
         }
+
+        travelTimeVersionCheck = new TravelTimeVersionCheck(timeFunction);
     }
 
 
@@ -70,6 +79,10 @@ public class DijkstraWithDijkstraTreeCache
 
     public DijkstraTree getTree(Node fromNode, double startTime)
     {
+        if (travelTimeVersionCheck.hasNewVersion()) {
+            clear();//the cached trees have been computed for the previous travel times
+        }
+
         Map<Id<Node>, DijkstraTree> treeCacheSlice = treeCache[timeDiscretizer.getIdx(startTime)];
         DijkstraTree tree = treeCacheSlice.get(fromNode.getId());
 
@@ -92,4 +105,13 @@ public class DijkstraWithDijkstraTreeCache
     {
         return cacheStats;
     }
+
+
+    @Override
+    public void clear()
+    {
+        for (Map<Id<Node>, DijkstraTree> treeCacheSlice : treeCache) {
+            treeCacheSlice.clear();
+        }
+    }
 }
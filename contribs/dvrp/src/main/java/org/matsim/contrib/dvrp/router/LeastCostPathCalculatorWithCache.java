@@ -19,42 +19,85 @@
 
 package org.matsim.contrib.dvrp.router;
 
+import java.util.concurrent.atomic.*;
+
 import org.matsim.core.router.util.LeastCostPathCalculator;
 
 
 public interface LeastCostPathCalculatorWithCache
     extends LeastCostPathCalculator
 {
+    /**
+     * Thread-safe, so one cache may be shared by several optimizer threads.
+     */
     class CacheStats
     {
-        private int hits = 0;
-        private int misses = 0;
+        private final AtomicInteger hits = new AtomicInteger();
+        private final AtomicInteger misses = new AtomicInteger();
+        private final AtomicInteger evictions = new AtomicInteger();
+        private final AtomicLong memoryUsage = new AtomicLong();
 
 
         public void incHits()
         {
-            hits++;
+            hits.incrementAndGet();
         }
 
 
         public void incMisses()
         {
-            misses++;
+            misses.incrementAndGet();
+        }
+
+
+        public void incEvictions()
+        {
+            evictions.incrementAndGet();
+        }
+
+
+        /**
+         * @param bytes estimated size of the added (positive) or removed (negative) cache entries
+         */
+        public void addMemoryUsage(long bytes)
+        {
+            memoryUsage.addAndGet(bytes);
         }
 
 
         public int getHits()
         {
-            return hits;
+            return hits.get();
         }
 
 
         public int getMisses()
         {
-            return misses;
+            return misses.get();
+        }
+
+
+        public int getEvictions()
+        {
+            return evictions.get();
+        }
+
+
+        /**
+         * @return estimated size of the cached entries in bytes; 0 if the cache does not track it
+         */
+        public long getMemoryUsage()
+        {
+            return memoryUsage.get();
         }
     }
 
 
     CacheStats getCacheStats();
+
+
+    /**
+     * Removes all cached paths, e.g. after the travel times have changed.
+     */
+    void clear();
 }
\ No newline at end of file
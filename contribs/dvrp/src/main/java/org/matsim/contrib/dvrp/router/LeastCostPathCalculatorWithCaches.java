@@ -0,0 +1,62 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.router;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.dvrp.trafficmonitoring.OnlineTravelTimeEstimator;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.core.router.util.*;
+
+
+public class LeastCostPathCalculatorWithCaches
+{
+    /**
+     * @param maxBytes if positive, the estimated memory usage of the cache is limited to maxBytes
+     *            (see {@link BoundedLeastCostPathCalculatorWithCache}); otherwise, the cache is
+     *            unbounded (see {@link DefaultLeastCostPathCalculatorWithCache})
+     */
+    public static LeastCostPathCalculatorWithCache create(Network network,
+            LeastCostPathCalculator calculator, TimeDiscretizer timeDiscretizer, long maxBytes)
+    {
+        return create(network, calculator, timeDiscretizer, null, maxBytes);
+    }
+
+
+    /**
+     * @param travelTime used by the calculator; if it is an {@link OnlineTravelTimeEstimator}, the
+     *            cache is cleared whenever the version of the estimates changes
+     * @param maxBytes if positive, the estimated memory usage of the cache is limited to maxBytes
+     *            (see {@link BoundedLeastCostPathCalculatorWithCache}); otherwise, the cache is
+     *            unbounded (see {@link DefaultLeastCostPathCalculatorWithCache})
+     */
+    public static LeastCostPathCalculatorWithCache create(Network network,
+            LeastCostPathCalculator calculator, TimeDiscretizer timeDiscretizer,
+            TravelTime travelTime, long maxBytes)
+    {
+        if (maxBytes > 0) {
+            return new BoundedLeastCostPathCalculatorWithCache(network, calculator,
+                    timeDiscretizer, travelTime, maxBytes);
+        }
+        else {
+            return new DefaultLeastCostPathCalculatorWithCache(calculator, timeDiscretizer,
+                    travelTime);
+        }
+    }
+}
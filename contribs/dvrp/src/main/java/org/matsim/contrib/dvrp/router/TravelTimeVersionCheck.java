@@ -0,0 +1,69 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2014 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.router;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.matsim.contrib.dvrp.trafficmonitoring.OnlineTravelTimeEstimator;
+import org.matsim.core.router.util.TravelTime;
+
+
+/**
+ * Tells path and tree caches when their entries have been computed for previous travel times.
+ * This happens only if the travel times are estimated by {@link OnlineTravelTimeEstimator}, and
+ * its version has changed since the last check. Thread-safe.
+ */
+class TravelTimeVersionCheck
+{
+    private final OnlineTravelTimeEstimator onlineTravelTime;//null if the travel times are fixed
+    private final AtomicInteger checkedVersion;
+
+
+    TravelTimeVersionCheck(TravelTime travelTime)
+    {
+        onlineTravelTime = travelTime instanceof OnlineTravelTimeEstimator
+                ? (OnlineTravelTimeEstimator)travelTime : null;
+        checkedVersion = new AtomicInteger(getVersion());
+    }
+
+
+    /**
+     * @return the current version of the travel times, always 0 if they are fixed
+     */
+    int getVersion()
+    {
+        return onlineTravelTime == null ? 0 : onlineTravelTime.getVersion();
+    }
+
+
+    /**
+     * @return true if the version has changed since the last call; of several concurrent callers,
+     *         only one gets true for each change
+     */
+    boolean hasNewVersion()
+    {
+        if (onlineTravelTime == null) {
+            return false;
+        }
+
+        int version = onlineTravelTime.getVersion();
+        return checkedVersion.getAndSet(version) != version;
+    }
+}
@@ -0,0 +1,222 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.trafficmonitoring;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.events.handler.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator;
+import org.matsim.vehicles.Vehicle;
+
+
+/**
+ * Link travel times updated during the mobsim. Each link traversal (LinkEnter to LinkLeave)
+ * updates the exponential moving average of its link and time bin (the bin of the entry time);
+ * bins without observations keep the initial travel times. At the beginning of each iteration
+ * ({@link #reset(int)}, called on the events thread), all values are reset to the initial travel
+ * times, i.e. to those of the previous iteration when a {@link VrpTravelTimeEstimator} is used.
+ * The {@link TravelTimeCalculator} itself cannot be used for that, since it may be reset before
+ * this estimator.
+ * <p>
+ * The estimates are kept in a primitive array and updated without locks, so any number of
+ * threads may query them while events are being processed. The event handler methods must be
+ * called by one thread at a time (as by the events managers).
+ * <p>
+ * Every <code>updateInterval</code> seconds, the current estimates are compared to those at the
+ * last version change, and if any of them has changed by more than
+ * <code>minRelativeChange</code>, the version is incremented (as well as on each reset). Routers
+ * that cache paths should compare {@link #getVersion()} before using their caches, and clear them
+ * only if the version has changed (as done by {@code DefaultLeastCostPathCalculatorWithCache} and
+ * {@code DijkstraWithDijkstraTreeCache}).
+ * <p>
+ * Within the controler, the estimator is created and configured by
+ * {@link VrpTravelTimeModules#createOnlineTravelTimeEstimatorModule(double, int, double)}.
+ */
+public class OnlineTravelTimeEstimator
+    implements TravelTime, LinkEnterEventHandler, LinkLeaveEventHandler,
+    VehicleLeavesTrafficEventHandler
+{
+    public static final double DEFAULT_ALPHA = 0.2;
+    public static final int DEFAULT_UPDATE_INTERVAL = 300;
+    public static final double DEFAULT_MIN_RELATIVE_CHANGE = 0.1;
+
+    private final TravelTime initialTravelTime;
+    private final TimeDiscretizer timeDiscretizer;
+    private final double alpha;
+    private final int updateInterval;
+    private final double minRelativeChange;
+
+    private final Link[] links;
+    private final Map<Id<Link>, Integer> linkIdxs;
+    private final int binCount;
+
+    //entry [linkIdx * binCount + bin]; doubles stored as long bits
+    private final AtomicLongArray travelTimes;
+    private final AtomicInteger version = new AtomicInteger();
+
+    //accessed only by the event handling thread
+    private final float[] versionTravelTimes;//travel times at the last version change
+    private final BitSet updatedEntries = new BitSet();
+    private final Map<Id<Vehicle>, Double> linkEnterTimes = new HashMap<>();
+    private double nextUpdateTime;
+
+
+    /**
+     * @param initialTravelTime used at the beginning of each iteration
+     * @param alpha weight of a new observation in the moving average (0, 1]
+     * @param updateInterval how often (in seconds of the simulation) the version may change
+     * @param minRelativeChange change of a travel time that causes a new version
+     */
+    public OnlineTravelTimeEstimator(Network network, TravelTime initialTravelTime,
+            TimeDiscretizer timeDiscretizer, double alpha, int updateInterval,
+            double minRelativeChange)
+    {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha must be in (0, 1]");
+        }
+
+        this.initialTravelTime = initialTravelTime;
+        this.timeDiscretizer = timeDiscretizer;
+        this.alpha = alpha;
+        this.updateInterval = updateInterval;
+        this.minRelativeChange = minRelativeChange;
+
+        links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+        linkIdxs = new HashMap<>(2 * links.length);
+        for (int i = 0; i < links.length; i++) {
+            linkIdxs.put(links[i].getId(), i);
+        }
+
+        binCount = timeDiscretizer.getIntervalCount();
+        travelTimes = new AtomicLongArray(links.length * binCount);
+        versionTravelTimes = new float[links.length * binCount];
+        reset(0);
+    }
+
+
+    private void initTravelTimes()
+    {
+        int interval = timeDiscretizer.getTimeInterval();
+        for (int l = 0; l < links.length; l++) {
+            for (int b = 0; b < binCount; b++) {
+                double tt = initialTravelTime.getLinkTravelTime(links[l], b * interval, null, null);
+                travelTimes.set(l * binCount + b, Double.doubleToRawLongBits(tt));
+            }
+        }
+        version.incrementAndGet();
+    }
+
+
+    @Override
+    public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle)
+    {
+        int idx = linkIdxs.get(link.getId()) * binCount + timeDiscretizer.getIdx(time);
+        return Double.longBitsToDouble(travelTimes.get(idx));
+    }
+
+
+    /**
+     * @return incremented whenever the travel times have changed significantly
+     */
+    public int getVersion()
+    {
+        return version.get();
+    }
+
+
+    @Override
+    public void handleEvent(LinkEnterEvent event)
+    {
+        linkEnterTimes.put(event.getVehicleId(), event.getTime());
+        checkUpdate(event.getTime());
+    }
+
+
+    @Override
+    public void handleEvent(LinkLeaveEvent event)
+    {
+        Double enterTime = linkEnterTimes.remove(event.getVehicleId());
+        if (enterTime != null) {//not the departure link
+            int idx = linkIdxs.get(event.getLinkId()) * binCount
+                    + timeDiscretizer.getIdx(enterTime);
+            double observedTT = event.getTime() - enterTime;
+
+            //the only writer, so no compare-and-set needed
+            double tt = Double.longBitsToDouble(travelTimes.get(idx));
+            travelTimes.set(idx, Double.doubleToRawLongBits(tt + alpha * (observedTT - tt)));
+            updatedEntries.set(idx);
+        }
+
+        checkUpdate(event.getTime());
+    }
+
+
+    @Override
+    public void handleEvent(VehicleLeavesTrafficEvent event)
+    {
+        linkEnterTimes.remove(event.getVehicleId());//arrival, the link is not traversed
+    }
+
+
+    private void checkUpdate(double time)
+    {
+        if (time < nextUpdateTime) {
+            return;
+        }
+
+        boolean changed = false;
+        for (int idx = updatedEntries.nextSetBit(0); idx >= 0; idx = updatedEntries
+                .nextSetBit(idx + 1)) {
+            double tt = Double.longBitsToDouble(travelTimes.get(idx));
+            if (Math.abs(tt - versionTravelTimes[idx]) > minRelativeChange
+                    * versionTravelTimes[idx]) {
+                versionTravelTimes[idx] = (float)tt;
+                changed = true;
+            }
+        }
+        updatedEntries.clear();
+
+        if (changed) {
+            version.incrementAndGet();
+        }
+
+        nextUpdateTime = (Math.floor(time / updateInterval) + 1) * updateInterval;
+    }
+
+
+    @Override
+    public void reset(int iteration)
+    {
+        initTravelTimes();
+        for (int idx = 0; idx < versionTravelTimes.length; idx++) {
+            versionTravelTimes[idx] = (float)Double.longBitsToDouble(travelTimes.get(idx));
+        }
+        updatedEntries.clear();
+        linkEnterTimes.clear();
+        nextUpdateTime = updateInterval;
+    }
+}
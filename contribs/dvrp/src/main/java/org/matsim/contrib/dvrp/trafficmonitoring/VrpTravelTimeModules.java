@@ -19,8 +19,10 @@
 
 package org.matsim.contrib.dvrp.trafficmonitoring;
 
-import javax.inject.Singleton;
+import javax.inject.*;
 
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.trafficmonitoring.*;
@@ -50,6 +52,62 @@ public class VrpTravelTimeModules
     }
 
 
+    /**
+     * Travel times of the previous iteration, updated during mobsim with the observed travel times
+     * (see {@link OnlineTravelTimeEstimator}), with the default parameters of the estimator.
+     */
+    public static AbstractModule createOnlineTravelTimeEstimatorModule()
+    {
+        return createOnlineTravelTimeEstimatorModule(OnlineTravelTimeEstimator.DEFAULT_ALPHA,
+                OnlineTravelTimeEstimator.DEFAULT_UPDATE_INTERVAL,
+                OnlineTravelTimeEstimator.DEFAULT_MIN_RELATIVE_CHANGE);
+    }
+
+
+    /**
+     * Travel times of the previous iteration, updated during mobsim with the observed travel times
+     * (see {@link OnlineTravelTimeEstimator}).
+     */
+    public static AbstractModule createOnlineTravelTimeEstimatorModule(final double alpha,
+            final int updateInterval, final double minRelativeChange)
+    {
+        return new AbstractModule() {
+            public void install()
+            {
+                //initial travel times, updated after mobsim ends
+                bind(VrpTravelTimeEstimator.class).in(Singleton.class);
+                addMobsimListenerBinding().to(VrpTravelTimeEstimator.class);
+
+                bind(OnlineTravelTimeEstimator.class)
+                        .toProvider(new Provider<OnlineTravelTimeEstimator>() {
+                            @Inject
+                            private TravelTimeCalculator calculator;
+                            @Inject
+                            private VrpTravelTimeEstimator previousIterationTravelTime;
+                            @Inject
+                            private Network network;
+
+
+                            @Override
+                            public OnlineTravelTimeEstimator get()
+                            {
+                                int timeSlice = calculator.getTimeSlice();
+                                TimeDiscretizer timeDiscretizer = new TimeDiscretizer(
+                                        (calculator.getNumSlots() - 1) * timeSlice, timeSlice,
+                                        TimeDiscretizer.Type.OPEN_ENDED);
+                                return new OnlineTravelTimeEstimator(network,
+                                        previousIterationTravelTime, timeDiscretizer, alpha,
+                                        updateInterval, minRelativeChange);
+                            }
+                        }).in(Singleton.class);
+                bind(TravelTime.class).annotatedWith(Names.named(DVRP))
+                        .to(OnlineTravelTimeEstimator.class);
+                addEventHandlerBinding().to(OnlineTravelTimeEstimator.class);
+            }
+        };
+    }
+
+
     /**
      * Travel times are fixed (useful for TimeVariantNetworks with variable free-flow speeds and no
      * other traffic)
@@ -92,7 +92,7 @@ public class VrpLeg
         }
 
         //divertedPath must be derived from the original one 
-        if (divertedPath.getOriginalPath() != path) {
+        if (!divertedPath.isDivertedFrom(path)) {
             throw new IllegalArgumentException();
         }
 
@@ -0,0 +1,174 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.extensions.drt;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.extensions.vrppd.*;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+
+/**
+ * The schedules must not depend on the number of threads computing the travel times and
+ * evaluating the vehicles.
+ */
+public class DrtOptimizerTest
+{
+    private static final int GRID_SIZE = 10;
+    private static final int VEHICLE_COUNT = 30;
+    private static final int REQUEST_COUNT = 150;
+
+
+    @Test
+    public void testSameSchedules()
+    {
+        List<String> expected = calcSchedules(1);
+        Assert.assertEquals(expected, calcSchedules(2));
+        Assert.assertEquals(expected, calcSchedules(4));
+    }
+
+
+    @Test
+    public void testThreadsStoppedAtCleanup()
+        throws InterruptedException
+    {
+        calcSchedules(4);
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("DrtInsertion")) {
+                thread.join(10000);
+                Assert.assertFalse(thread.isAlive());
+            }
+        }
+    }
+
+
+    private List<String> calcSchedules(int threads)
+    {
+        Network network = NetworkUtils.createNetwork();
+        Random random = new Random(4711);
+        List<Link> links = createNetwork(network, random);
+
+        VrpData vrpData = new VrpDataImpl();
+        for (int i = 0; i < VEHICLE_COUNT; i++) {
+            vrpData.addVehicle(new VehicleImpl(Id.create(i, Vehicle.class),
+                    links.get(random.nextInt(links.size())), 4, 0, 36000));
+        }
+
+        MobsimTimer timer = new MobsimTimer();
+        timer.setTime(0);
+        DrtOptimizer optimizer = new DrtOptimizer(network, vrpData, timer,
+                new FreeSpeedTravelTime(), new DrtOptimizerParams(60, 600, 1.5, 600, threads));
+        for (Vehicle veh : vrpData.getVehicles().values()) {
+            veh.getSchedule().nextTask();
+        }
+
+        //immediate requests with different time windows; more requests than the vehicles can serve
+        int rejected = 0;
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            double t1 = 300 + random.nextInt(900);
+            double latestArrivalTime = t1 + 600 + random.nextInt(1200);
+            DrtRequest request = new DrtRequest(Id.create(i, Request.class), null,
+                    links.get(random.nextInt(links.size())),
+                    links.get(random.nextInt(links.size())), 0, t1, latestArrivalTime, 0);
+            optimizer.requestSubmitted(request);
+            rejected += request.isRejected() ? 1 : 0;
+        }
+        Assert.assertEquals(rejected, optimizer.getRejectedRequestCount());
+        Assert.assertTrue(rejected > 0 && rejected < REQUEST_COUNT);
+        optimizer.notifyMobsimBeforeCleanup(new MobsimBeforeCleanupEvent<>(null));
+
+        List<String> schedules = new ArrayList<>();
+        schedules.add("rejected=" + rejected);
+        for (Vehicle veh : vrpData.getVehicles().values()) {
+            StringBuilder sb = new StringBuilder(veh.getId().toString());
+            for (Task task : veh.getSchedule().getTasks()) {
+                sb.append(' ').append(task.getType()).append('[').append(task.getBeginTime())
+                        .append(',').append(task.getEndTime()).append(']');
+                if (task instanceof StayTask) {
+                    sb.append(" at=").append(((StayTask)task).getLink().getId());
+                }
+                if (task instanceof PickupDeliveryTask) {
+                    for (PickupDeliveryRequest r : ((PickupDeliveryTask)task).getRequests()) {
+                        sb.append(" req=").append(r.getId());
+                    }
+                }
+                if (task instanceof DriveTask) {
+                    sb.append(" links=").append(((DriveTask)task).getPath().getLinkCount());
+                }
+            }
+            schedules.add(sb.toString());
+        }
+        return schedules;
+    }
+
+
+    //grid with slightly shifted nodes
+    private List<Link> createNetwork(Network network, Random random)
+    {
+        NetworkFactory factory = network.getFactory();
+        Node[][] nodes = new Node[GRID_SIZE][GRID_SIZE];
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                Coord coord = new Coord(500 * i + 200 * random.nextDouble(),
+                        500 * j + 200 * random.nextDouble());
+                nodes[i][j] = factory.createNode(Id.createNodeId(i + "_" + j), coord);
+                network.addNode(nodes[i][j]);
+            }
+        }
+
+        List<Link> links = new ArrayList<>();
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                if (i + 1 < GRID_SIZE) {
+                    links.add(createLink(network, nodes[i][j], nodes[i + 1][j], random));
+                    links.add(createLink(network, nodes[i + 1][j], nodes[i][j], random));
+                }
+                if (j + 1 < GRID_SIZE) {
+                    links.add(createLink(network, nodes[i][j], nodes[i][j + 1], random));
+                    links.add(createLink(network, nodes[i][j + 1], nodes[i][j], random));
+                }
+            }
+        }
+        return links;
+    }
+
+
+    private Link createLink(Network network, Node fromNode, Node toNode, Random random)
+    {
+        Link link = network.getFactory().createLink(
+                Id.createLinkId(fromNode.getId() + "-" + toNode.getId()), fromNode, toNode);
+        Coord from = fromNode.getCoord();
+        Coord to = toNode.getCoord();
+        link.setLength(Math.hypot(from.getX() - to.getX(), from.getY() - to.getY()));
+        link.setFreespeed(8 + 8 * random.nextDouble());
+        link.setCapacity(1000);
+        link.setNumberOfLanes(1);
+        network.addLink(link);
+        return link;
+    }
+}
@@ -0,0 +1,260 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.extensions.drt;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.extensions.drt.InsertionFinder.Insertion;
+import org.matsim.contrib.dvrp.extensions.drt.OneToManyPathSearch.NetworkIndex;
+import org.matsim.contrib.dvrp.extensions.vrppd.PickupDeliveryTask;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+
+/**
+ * Line network with links of 10 seconds in both directions. Link i leads from node i-1 to node
+ * i, so the travel time from link i to link j (i < j) is 1 + 10 * (j - i), and to link j (j < i)
+ * is 1 + 10 * (i - j + 2), e.g. 71 from link 8 to link 3.
+ */
+public class InsertionFinderTest
+{
+    private static final int NODE_COUNT = 13;
+    private static final double STOP_DURATION = 60;
+
+    private final Network network = NetworkUtils.createNetwork();
+    private final TravelTime travelTime = new FreeSpeedTravelTime();
+    private final DrtOptimizerParams params = new DrtOptimizerParams(STOP_DURATION, 1000, 2, 1000,
+            1);
+    private final MobsimTimer timer = new MobsimTimer();
+    private final VrpData vrpData = new VrpDataImpl();
+
+    private Vehicle vehicle;
+    private DrtOptimizer optimizer;
+
+
+    @Before
+    public void setUp()
+    {
+        NetworkFactory factory = network.getFactory();
+        for (int i = 0; i < NODE_COUNT; i++) {
+            network.addNode(factory.createNode(Id.createNodeId(i), new Coord(100 * i, 0)));
+        }
+        for (int i = 1; i < NODE_COUNT; i++) {
+            Node node = network.getNodes().get(Id.createNodeId(i));
+            Node previousNode = network.getNodes().get(Id.createNodeId(i - 1));
+            addLink(Id.createLinkId(i), previousNode, node);
+            addLink(Id.createLinkId("r" + i), node, previousNode);
+        }
+        timer.setTime(0);
+    }
+
+
+    @Test
+    public void testEmptySchedule()
+    {
+        init(1);
+        //41 to the pickup, 51 from the pickup to the dropoff
+        assertInsertion(findBestInsertion(createRequest(1, 5, 10, 1000, 5000)), 0, 0, 212);
+    }
+
+
+    @Test
+    public void testInsertionAtEnd()
+    {
+        init(2);
+        submit(createRequest(1, 3, 5, 1000, 5000));
+
+        //after the dropoff of request 1: 31 to the pickup, 21 from the pickup to the dropoff
+        assertInsertion(findBestInsertion(createRequest(2, 8, 10, 1000, 5000)), 2, 2, 172);
+    }
+
+
+    @Test
+    public void testInsertionAtStart()
+    {
+        init(2);
+        submit(createRequest(1, 3, 5, 1000, 5000));
+
+        //pickup before the pickup of request 1 (delay: 11 + 60 + 11 - 21), dropoff before the
+        //dropoff of request 1 (delay: 11 + 60 + 11 - 21)
+        assertInsertion(findBestInsertion(createRequest(2, 2, 4, 1000, 5000)), 0, 1, 122);
+    }
+
+
+    @Test
+    public void testCapacity()
+    {
+        init(1);
+        submit(createRequest(1, 3, 5, 1000, 5000));
+
+        //the vehicle cannot carry both passengers, so request 2 is dropped off before the pickup
+        //of request 1 (11 + 60 + 21 + 60 + 31 - 21)
+        assertInsertion(findBestInsertion(createRequest(2, 2, 4, 1000, 5000)), 0, 0, 162);
+    }
+
+
+    @Test
+    public void testCapacity_noSeats()
+    {
+        init(0);
+        Assert.assertNull(findBestInsertion(createRequest(1, 5, 10, 1000, 5000)));
+    }
+
+
+    @Test
+    public void testPickupTimeWindow()
+    {
+        init(1);
+        //71 to the pickup
+        Assert.assertNull(findBestInsertion(createRequest(1, 8, 10, 70, 5000)));
+        assertInsertion(findBestInsertion(createRequest(1, 8, 10, 71, 5000)), 0, 0, 212);
+    }
+
+
+    @Test
+    public void testLatestArrivalTime()
+    {
+        init(1);
+        //dropoff at 71 + 60 + 21
+        Assert.assertNull(findBestInsertion(createRequest(1, 8, 10, 1000, 151)));
+        assertInsertion(findBestInsertion(createRequest(1, 8, 10, 1000, 152)), 0, 0, 212);
+    }
+
+
+    @Test
+    public void testTimeWindowsOfScheduledRequests()
+    {
+        init(2);
+        //dropoff planned at 102, so it can be delayed by 50 seconds
+        submit(createRequest(1, 3, 5, 1000, 152));
+
+        //all other insertions delay the dropoff of request 1 by more than 50 seconds
+        assertInsertion(findBestInsertion(createRequest(2, 2, 4, 1000, 5000)), 2, 2, 192);
+    }
+
+
+    @Test
+    public void testVehicleDrivingToNextStop()
+    {
+        init(2);
+        submit(createRequest(1, 3, 5, 1000, 5000));
+        Schedule<? extends Task> schedule = vehicle.getSchedule();
+        optimizer.nextTask(schedule);
+        timer.setTime(10);
+
+        DriveTask currentDrive = (DriveTask)schedule.getCurrentTask();
+        PickupDeliveryTask pickup1 = (PickupDeliveryTask)Schedules.getNextTask(schedule);
+        Assert.assertEquals(81, pickup1.getEndTime(), 0);
+
+        //the pickup of request 1 is not skipped: 31 from link 3 back to link 2
+        DrtRequest request2 = createRequest(2, 2, 4, 1000, 5000);
+        Insertion insertion = findBestInsertion(request2);
+        Assert.assertSame(pickup1, insertion.vData.startTask);
+        Assert.assertEquals(81, insertion.vData.startTime, 0);
+        assertInsertion(insertion, 0, 0, 162);
+
+        submit(request2);
+        Assert.assertSame(currentDrive, schedule.getCurrentTask());
+        Assert.assertEquals(21, currentDrive.getEndTime(), 0);
+
+        List<? extends Task> tasks = schedule.getTasks();
+        int idx = pickup1.getTaskIdx();
+        Assert.assertEquals(81, tasks.get(idx + 1).getBeginTime(), 0);
+        assertStop(tasks.get(idx + 2), 2, true, 112);
+        assertStop(tasks.get(idx + 4), 4, false, 193);
+        assertStop(tasks.get(idx + 6), 5, false, 264);
+    }
+
+
+    private void init(double capacity)
+    {
+        vehicle = new VehicleImpl(Id.create("veh", Vehicle.class), getLink(1), capacity, 0, 10000);
+        vrpData.addVehicle(vehicle);
+        optimizer = new DrtOptimizer(network, vrpData, timer, travelTime, params);
+        vehicle.getSchedule().nextTask();
+    }
+
+
+    private DrtRequest createRequest(int id, int fromLinkIdx, int toLinkIdx, double t1,
+            double latestArrivalTime)
+    {
+        return new DrtRequest(Id.create(id, Request.class), null, getLink(fromLinkIdx),
+                getLink(toLinkIdx), 0, t1, latestArrivalTime, timer.getTimeOfDay());
+    }
+
+
+    private void submit(DrtRequest request)
+    {
+        optimizer.requestSubmitted(request);
+        Assert.assertFalse(request.isRejected());
+    }
+
+
+    private Insertion findBestInsertion(DrtRequest request)
+    {
+        double now = timer.getTimeOfDay();
+        VehicleData vData = VehicleData.create(vehicle, now);
+        InsertionFinder finder = new InsertionFinder(new NetworkIndex(network), travelTime, params);
+        finder.calcTravelTimes(request, Collections.singletonList(vData), now, null);
+        return finder.findBestInsertion(vData);
+    }
+
+
+    private void assertInsertion(Insertion insertion, int pickupIdx, int dropoffIdx, double cost)
+    {
+        Assert.assertNotNull(insertion);
+        Assert.assertEquals(pickupIdx, insertion.pickupIdx);
+        Assert.assertEquals(dropoffIdx, insertion.dropoffIdx);
+        Assert.assertEquals(cost, insertion.cost, 1e-9);
+    }
+
+
+    private void assertStop(Task task, int linkIdx, boolean pickup, double beginTime)
+    {
+        PickupDeliveryTask stop = (PickupDeliveryTask)task;
+        Assert.assertSame(getLink(linkIdx), stop.getLink());
+        Assert.assertEquals(pickup, stop.isPickup());
+        Assert.assertEquals(beginTime, stop.getBeginTime(), 1e-9);
+    }
+
+
+    private Link getLink(int idx)
+    {
+        return network.getLinks().get(Id.createLinkId(idx));
+    }
+
+
+    private void addLink(Id<Link> id, Node fromNode, Node toNode)
+    {
+        Link link = network.getFactory().createLink(id, fromNode, toNode);
+        link.setLength(100);
+        link.setFreespeed(10);
+        link.setCapacity(1000);
+        link.setNumberOfLanes(1);
+        network.addLink(link);
+    }
+}
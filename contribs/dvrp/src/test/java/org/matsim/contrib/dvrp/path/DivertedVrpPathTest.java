@@ -0,0 +1,242 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.path;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.core.network.NetworkUtils;
+
+
+public class DivertedVrpPathTest
+{
+    private final Link[] links = new Link[20];
+
+
+    @Before
+    public void setUp()
+    {
+        Network network = NetworkUtils.createNetwork();
+        Node node = network.getFactory().createNode(Id.createNodeId(0), new Coord(0, 0));
+        network.addNode(node);
+        for (int i = 0; i < links.length; i++) {
+            links[i] = network.getFactory().createLink(Id.createLinkId(i), node, node);
+        }
+    }
+
+
+    @Test
+    public void testDiversion()
+    {
+        VrpPath originalPath = createPath(new int[] { 0, 1, 2, 3, 4 }, 10);
+        VrpPath newSubPath = createPath(new int[] { 2, 5, 6 }, 100);
+        DivertedVrpPath path = new DivertedVrpPath(originalPath, newSubPath, 2);
+
+        assertPath(new int[] { 0, 1, 2, 5, 6 }, new double[] { 10, 11, 12, 101, 102 }, path);
+        Assert.assertSame(newSubPath, path.getNewSubPath());
+        Assert.assertEquals(2, path.getDiversionLinkIdx());
+    }
+
+
+    @Test
+    public void testDiversion_atFirstAndLastLink()
+    {
+        VrpPath originalPath = createPath(new int[] { 0, 1, 2 }, 10);
+
+        DivertedVrpPath atFirst = new DivertedVrpPath(originalPath, createPath(new int[] { 0, 7 }, 100),
+                0);
+        assertPath(new int[] { 0, 7 }, new double[] { 10, 101 }, atFirst);
+
+        DivertedVrpPath atLast = new DivertedVrpPath(originalPath, createPath(new int[] { 2, 7, 8 }, 100),
+                2);
+        assertPath(new int[] { 0, 1, 2, 7, 8 }, new double[] { 10, 11, 12, 101, 102 }, atLast);
+    }
+
+
+    @Test
+    public void testChainedDiversions()
+    {
+        VrpPath path0 = createPath(new int[] { 0, 1, 2, 3, 4 }, 10);
+
+        //within the new sub-path of path1
+        DivertedVrpPath path1 = new DivertedVrpPath(path0, createPath(new int[] { 1, 5, 6, 7 }, 100),
+                1);
+        DivertedVrpPath path2 = new DivertedVrpPath(path1, createPath(new int[] { 6, 8, 9 }, 200),
+                3);
+        assertPath(new int[] { 0, 1, 5, 6, 8, 9 }, new double[] { 10, 11, 101, 102, 201, 202 },
+                path2);
+
+        //at the diversion link of path1
+        DivertedVrpPath path3 = new DivertedVrpPath(path2, createPath(new int[] { 1, 10 }, 300), 1);
+        assertPath(new int[] { 0, 1, 10 }, new double[] { 10, 11, 301 }, path3);
+
+        //within the first segment, i.e. before all previous diversions
+        DivertedVrpPath path4 = new DivertedVrpPath(path2, createPath(new int[] { 0, 11, 12 }, 400),
+                0);
+        assertPath(new int[] { 0, 11, 12 }, new double[] { 10, 401, 402 }, path4);
+
+        //at the last link of path2
+        DivertedVrpPath path5 = new DivertedVrpPath(path2, createPath(new int[] { 9, 13 }, 500), 5);
+        assertPath(new int[] { 0, 1, 5, 6, 8, 9, 13 },
+                new double[] { 10, 11, 101, 102, 201, 202, 501 }, path5);
+    }
+
+
+    @Test
+    public void testChainedDiversions_random()
+    {
+        //compares with the links and travel times copied into lists
+        Random random = new Random(3);
+        for (int trial = 0; trial < 100; trial++) {
+            List<Link> expectedLinks = new ArrayList<>();
+            List<Double> expectedTTs = new ArrayList<>();
+            VrpPath path = createRandomPath(random, null, expectedLinks, expectedTTs);
+
+            for (int diversion = 0; diversion < 20; diversion++) {
+                int idx = random.nextInt(path.getLinkCount());
+                List<Link> subPathLinks = new ArrayList<>();
+                List<Double> subPathTTs = new ArrayList<>();
+                VrpPath newSubPath = createRandomPath(random, path.getLink(idx), subPathLinks,
+                        subPathTTs);
+
+                DivertedVrpPath divertedPath = new DivertedVrpPath(path, newSubPath, idx);
+                expectedLinks = new ArrayList<>(expectedLinks.subList(0, idx + 1));
+                expectedLinks.addAll(subPathLinks.subList(1, subPathLinks.size()));
+                expectedTTs = new ArrayList<>(expectedTTs.subList(0, idx + 1));
+                expectedTTs.addAll(subPathTTs.subList(1, subPathTTs.size()));
+
+                assertPath(expectedLinks, expectedTTs, divertedPath);
+                Assert.assertTrue(divertedPath.isDivertedFrom(path));
+                path = divertedPath;
+            }
+        }
+    }
+
+
+    @Test
+    public void testIsDivertedFrom()
+    {
+        VrpPath path0 = createPath(new int[] { 0, 1, 2, 3, 4 }, 10);
+        VrpPath otherPath = createPath(new int[] { 0, 1, 2, 3, 4 }, 10);
+        VrpPath subPath1 = createPath(new int[] { 1, 5, 6, 7 }, 100);
+        DivertedVrpPath path1 = new DivertedVrpPath(path0, subPath1, 1);
+        DivertedVrpPath path2 = new DivertedVrpPath(path1, createPath(new int[] { 6, 8, 9 }, 200),
+                3);
+
+        Assert.assertTrue(path1.isDivertedFrom(path0));
+        Assert.assertTrue(path2.isDivertedFrom(path1));
+
+        //same links, but another path
+        Assert.assertFalse(path1.isDivertedFrom(otherPath));
+        Assert.assertFalse(path1.isDivertedFrom(subPath1));
+        Assert.assertFalse(path2.isDivertedFrom(path0));
+        Assert.assertFalse(path2.isDivertedFrom(subPath1));
+        Assert.assertFalse(path2.isDivertedFrom(new DivertedVrpPath(path0,
+                createPath(new int[] { 1, 5, 6, 7 }, 100), 1)));
+
+        //path1 after its diversion link is not used, so path3 is also a diversion of path0
+        DivertedVrpPath path3 = new DivertedVrpPath(path1, createPath(new int[] { 0, 10 }, 300), 0);
+        Assert.assertTrue(path3.isDivertedFrom(path1));
+        Assert.assertTrue(path3.isDivertedFrom(path0));
+
+        //the diversion link is beyond the end of a shorter path
+        DivertedVrpPath path4 = new DivertedVrpPath(path1, createPath(new int[] { 7, 11 }, 400), 4);
+        Assert.assertTrue(path4.isDivertedFrom(path1));
+        Assert.assertFalse(path4.isDivertedFrom(new DivertedVrpPath(path1, createPath(
+                new int[] { 5, 12 }, 500), 2)));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDiversion_wrongLink()
+    {
+        new DivertedVrpPath(createPath(new int[] { 0, 1, 2 }, 10), createPath(new int[] { 3, 4 }, 100),
+                1);
+    }
+
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetLinkTravelTime_outOfBounds()
+    {
+        DivertedVrpPath path = new DivertedVrpPath(createPath(new int[] { 0, 1, 2 }, 10),
+                createPath(new int[] { 1, 3 }, 100), 1);
+        path.getLinkTravelTime(3);
+    }
+
+
+    //travel times: firstTT, firstTT + 1, ...
+    private VrpPath createPath(int[] linkIdxs, double firstTT)
+    {
+        Link[] pathLinks = new Link[linkIdxs.length];
+        double[] linkTTs = new double[linkIdxs.length];
+        for (int i = 0; i < linkIdxs.length; i++) {
+            pathLinks[i] = links[linkIdxs[i]];
+            linkTTs[i] = firstTT + i;
+        }
+        return new VrpPathWithTravelDataImpl(0, 1, pathLinks, linkTTs);
+    }
+
+
+    private VrpPath createRandomPath(Random random, Link firstLink, List<Link> pathLinks,
+            List<Double> linkTTs)
+    {
+        int linkCount = 1 + random.nextInt(10);
+        Link[] linkArray = new Link[linkCount];
+        double[] ttArray = new double[linkCount];
+        for (int i = 0; i < linkCount; i++) {
+            linkArray[i] = i == 0 && firstLink != null ? firstLink
+                    : links[random.nextInt(links.length)];
+            ttArray[i] = random.nextInt(1000);
+            pathLinks.add(linkArray[i]);
+            linkTTs.add(ttArray[i]);
+        }
+        return new VrpPathWithTravelDataImpl(0, 1, linkArray, ttArray);
+    }
+
+
+    private void assertPath(int[] expectedLinkIdxs, double[] expectedTTs, VrpPath path)
+    {
+        List<Link> expectedLinks = new ArrayList<>();
+        List<Double> expectedTTList = new ArrayList<>();
+        for (int i = 0; i < expectedLinkIdxs.length; i++) {
+            expectedLinks.add(links[expectedLinkIdxs[i]]);
+            expectedTTList.add(expectedTTs[i]);
+        }
+        assertPath(expectedLinks, expectedTTList, path);
+    }
+
+
+    private void assertPath(List<Link> expectedLinks, List<Double> expectedTTs, VrpPath path)
+    {
+        Assert.assertEquals(expectedLinks.size(), path.getLinkCount());
+        Assert.assertSame(expectedLinks.get(0), path.getFromLink());
+        Assert.assertSame(expectedLinks.get(expectedLinks.size() - 1), path.getToLink());
+
+        Iterator<Link> iterator = path.iterator();
+        for (int i = 0; i < expectedLinks.size(); i++) {
+            Assert.assertSame(expectedLinks.get(i), path.getLink(i));
+            Assert.assertEquals(expectedTTs.get(i), path.getLinkTravelTime(i), 0);
+            Assert.assertSame(expectedLinks.get(i), iterator.next());
+        }
+        Assert.assertFalse(iterator.hasNext());
+    }
+}
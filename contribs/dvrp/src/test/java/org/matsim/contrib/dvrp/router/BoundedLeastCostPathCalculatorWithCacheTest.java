@@ -0,0 +1,402 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.router;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Provider;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.router.LeastCostPathCalculatorWithCache.CacheStats;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.Dijkstra;
+import org.matsim.core.router.util.*;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.matsim.vehicles.Vehicle;
+
+
+public class BoundedLeastCostPathCalculatorWithCacheTest
+{
+    private static final int GRID_SIZE = 6;
+
+    //see BoundedLeastCostPathCalculatorWithCache
+    private static final int SEGMENT_COUNT = 16;
+    private static final int ENTRY_OVERHEAD_BYTES = 144;
+    private static final int BYTES_PER_LINK = 4;
+
+    private static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private final Network network = NetworkUtils.createNetwork();
+    private final List<Node> nodes = new ArrayList<>();
+    private final TravelTime travelTime = new FreeSpeedTravelTime();
+    private final TravelDisutility travelDisutility = new TimeAsTravelDisutility(travelTime);
+
+    private final AtomicInteger calculatorCalls = new AtomicInteger();
+
+
+    @Before
+    public void setUp()
+    {
+        NetworkFactory factory = network.getFactory();
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                Node node = factory.createNode(Id.createNodeId(i + "_" + j),
+                        new Coord(500 * i, 500 * j));
+                network.addNode(node);
+                nodes.add(node);
+            }
+        }
+
+        //different speeds, so that the least-cost paths are unique
+        Random random = new Random(13);
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                if (i + 1 < GRID_SIZE) {
+                    createLinks(getNode(i, j), getNode(i + 1, j), random);
+                }
+                if (j + 1 < GRID_SIZE) {
+                    createLinks(getNode(i, j), getNode(i, j + 1), random);
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testHitsAndMisses()
+    {
+        BoundedLeastCostPathCalculatorWithCache cache = new BoundedLeastCostPathCalculatorWithCache(
+                network, createCountingCalculator(), TimeDiscretizer.OPEN_ENDED_15_MIN, UNBOUNDED);
+        Node from = getNode(0, 0);
+        Node to = getNode(4, 3);
+
+        Path path = calcPath(cache, from, to, 0);
+        assertStats(cache, 0, 1, 0, getBytes(path));
+        Assert.assertEquals(1, calculatorCalls.get());
+
+        //the same time bin
+        assertSamePath(path, calcPath(cache, from, to, 899));
+        assertStats(cache, 1, 1, 0, getBytes(path));
+        Assert.assertEquals(1, calculatorCalls.get());
+
+        //the next time bin
+        Path laterPath = calcPath(cache, from, to, 900);
+        Assert.assertEquals(path.links, laterPath.links);
+        assertStats(cache, 1, 2, 0, getBytes(path) + getBytes(laterPath));
+
+        //the opposite direction
+        Path backPath = calcPath(cache, to, from, 0);
+        Assert.assertNotEquals(path.links, backPath.links);
+        assertSamePath(backPath, calcPath(cache, to, from, 0));
+        assertStats(cache, 2, 3, 0, getBytes(path) + getBytes(laterPath) + getBytes(backPath));
+        Assert.assertEquals(3, calculatorCalls.get());
+    }
+
+
+    @Test
+    public void testEviction_zeroBudget()
+    {
+        BoundedLeastCostPathCalculatorWithCache cache = new BoundedLeastCostPathCalculatorWithCache(
+                network, createCountingCalculator(), TimeDiscretizer.OPEN_ENDED_15_MIN, 0);
+
+        //each path is evicted right after being computed
+        for (int i = 1; i <= 3; i++) {
+            calcPath(cache, getNode(0, 0), getNode(5, 5), 0);
+            assertStats(cache, 0, i, i, 0);
+        }
+        Assert.assertEquals(3, calculatorCalls.get());
+    }
+
+
+    @Test
+    public void testEviction_budgetExceeded()
+    {
+        //enough for a few paths per segment
+        long maxBytes = SEGMENT_COUNT * 3 * (ENTRY_OVERHEAD_BYTES + BYTES_PER_LINK * 10);
+        BoundedLeastCostPathCalculatorWithCache cache = new BoundedLeastCostPathCalculatorWithCache(
+                network, createCountingCalculator(), TimeDiscretizer.OPEN_ENDED_15_MIN, maxBytes);
+        Node from = getNode(0, 0);
+        Node to = getNode(5, 5);
+        Path path = calcPath(cache, from, to, 0);
+
+        int pathCount = 1;
+        for (Node fromNode : nodes) {
+            for (Node toNode : nodes) {
+                if (fromNode != toNode && (fromNode != from || toNode != to)) {
+                    calcPath(cache, fromNode, toNode, 0);
+                    pathCount++;
+
+                    //the most recently used path is never evicted
+                    assertSamePath(path, calcPath(cache, from, to, 0));
+                    Assert.assertTrue(cache.getCacheStats().getMemoryUsage() <= maxBytes);
+                }
+            }
+        }
+
+        CacheStats stats = cache.getCacheStats();
+        Assert.assertEquals(pathCount, stats.getMisses());
+        Assert.assertEquals(pathCount - 1, stats.getHits());
+        Assert.assertTrue(stats.getEvictions() > pathCount - SEGMENT_COUNT * 3 - 1);
+        Assert.assertTrue(stats.getMemoryUsage() > 0);
+
+        //evicted long ago (least recently used)
+        int misses = stats.getMisses();
+        calcPath(cache, getNode(0, 1), getNode(0, 0), 0);
+        Assert.assertEquals(misses + 1, stats.getMisses());
+        Assert.assertEquals(pathCount + 1, calculatorCalls.get());
+    }
+
+
+    @Test
+    public void testClear()
+    {
+        //about one path per segment
+        BoundedLeastCostPathCalculatorWithCache cache = new BoundedLeastCostPathCalculatorWithCache(
+                network, createCountingCalculator(), TimeDiscretizer.OPEN_ENDED_15_MIN,
+                SEGMENT_COUNT * 200);
+        for (Node toNode : nodes.subList(1, nodes.size())) {
+            calcPath(cache, nodes.get(0), toNode, 0);
+        }
+        calcPath(cache, nodes.get(0), nodes.get(1), 0);
+
+        CacheStats stats = cache.getCacheStats();
+        int hits = stats.getHits();
+        int misses = stats.getMisses();
+        int evictions = stats.getEvictions();
+        Assert.assertTrue(evictions > 0);
+        Assert.assertTrue(stats.getMemoryUsage() > 0);
+
+        //clearing is not an eviction
+        cache.clear();
+        assertStats(cache, hits, misses, evictions, 0);
+
+        Path path = calcPath(cache, nodes.get(0), nodes.get(1), 0);
+        assertStats(cache, hits, misses + 1, evictions, getBytes(path));
+        calcPath(cache, nodes.get(0), nodes.get(1), 0);
+        assertStats(cache, hits + 1, misses + 1, evictions, getBytes(path));
+
+        cache.clear();
+        cache.clear();
+        assertStats(cache, hits + 1, misses + 1, evictions, 0);
+    }
+
+
+    @Test
+    public void testConcurrentCalls_calculatorPerThread() throws InterruptedException
+    {
+        Provider<LeastCostPathCalculator> provider = new Provider<LeastCostPathCalculator>() {
+            @Override
+            public LeastCostPathCalculator get()
+            {
+                return createCountingCalculator();
+            }
+        };
+
+        assertConcurrentCalls(new BoundedLeastCostPathCalculatorWithCache(network, provider,
+                TimeDiscretizer.OPEN_ENDED_15_MIN, UNBOUNDED), true);
+        assertConcurrentCalls(new BoundedLeastCostPathCalculatorWithCache(network, provider,
+                TimeDiscretizer.OPEN_ENDED_15_MIN, SEGMENT_COUNT * 1000), false);
+    }
+
+
+    @Test
+    public void testConcurrentCalls_sharedCalculator() throws InterruptedException
+    {
+        assertConcurrentCalls(new BoundedLeastCostPathCalculatorWithCache(network,
+                createCountingCalculator(), TimeDiscretizer.OPEN_ENDED_15_MIN, UNBOUNDED), true);
+        assertConcurrentCalls(new BoundedLeastCostPathCalculatorWithCache(network,
+                createCountingCalculator(), TimeDiscretizer.OPEN_ENDED_15_MIN,
+                SEGMENT_COUNT * 1000), false);
+    }
+
+
+    private void assertConcurrentCalls(final BoundedLeastCostPathCalculatorWithCache cache,
+            boolean unbounded)
+        throws InterruptedException
+    {
+        final int threadCount = 8;
+        final int rounds = 3;
+        final double[] startTimes = { 0, 1000 };
+
+        //reference paths
+        Dijkstra dijkstra = new Dijkstra(network, travelDisutility, travelTime);
+        final Map<String, Path> expectedPaths = new HashMap<>();
+        long expectedBytes = 0;
+        for (double startTime : startTimes) {
+            for (Node fromNode : nodes) {
+                for (Node toNode : nodes) {
+                    if (fromNode != toNode) {
+                        Path path = dijkstra.calcLeastCostPath(fromNode, toNode,
+                                TimeDiscretizer.OPEN_ENDED_15_MIN.discretize(startTime), null, null);
+                        expectedPaths.put(getKey(fromNode, toNode, startTime), path);
+                        expectedBytes += getBytes(path);
+                    }
+                }
+            }
+        }
+
+        final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final Random random = new Random(t);
+            threads[t] = new Thread() {
+                @Override
+                public void run()
+                {
+                    for (int round = 0; round < rounds; round++) {
+                        List<Node> shuffledNodes = new ArrayList<>(nodes);
+                        Collections.shuffle(shuffledNodes, random);
+                        for (double startTime : startTimes) {
+                            for (Node fromNode : shuffledNodes) {
+                                for (Node toNode : nodes) {
+                                    if (fromNode == toNode) {
+                                        continue;
+                                    }
+                                    Path path = cache.calcLeastCostPath(fromNode, toNode,
+                                            startTime, null, null);
+                                    String key = getKey(fromNode, toNode, startTime);
+                                    Path expected = expectedPaths.get(key);
+                                    if (!expected.links.equals(path.links)
+                                            || !expected.nodes.equals(path.nodes)
+                                            || expected.travelTime != path.travelTime
+                                            || expected.travelCost != path.travelCost) {
+                                        errors.add(key);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            };
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(Collections.emptyList(), errors);
+
+        CacheStats stats = cache.getCacheStats();
+        int calls = threadCount * rounds * expectedPaths.size();
+        Assert.assertEquals(calls, stats.getHits() + stats.getMisses());
+        Assert.assertTrue(stats.getMisses() >= expectedPaths.size());
+
+        if (unbounded) {
+            Assert.assertEquals(0, stats.getEvictions());
+            Assert.assertEquals(expectedBytes, stats.getMemoryUsage());
+        }
+        else {
+            Assert.assertTrue(stats.getEvictions() > 0);
+            Assert.assertTrue(stats.getMemoryUsage() <= SEGMENT_COUNT * 1000);
+        }
+
+        cache.clear();
+        Assert.assertEquals(0, stats.getMemoryUsage());
+    }
+
+
+    private LeastCostPathCalculator createCountingCalculator()
+    {
+        final Dijkstra dijkstra = new Dijkstra(network, travelDisutility, travelTime);
+        return new LeastCostPathCalculator() {
+            @Override
+            public Path calcLeastCostPath(Node fromNode, Node toNode, double starttime,
+                    Person person, Vehicle vehicle)
+            {
+                calculatorCalls.incrementAndGet();
+                return dijkstra.calcLeastCostPath(fromNode, toNode, starttime, person, vehicle);
+            }
+        };
+    }
+
+
+    private Path calcPath(LeastCostPathCalculator calculator, Node fromNode, Node toNode,
+            double startTime)
+    {
+        return calculator.calcLeastCostPath(fromNode, toNode, startTime, null, null);
+    }
+
+
+    private void assertSamePath(Path expected, Path actual)
+    {
+        Assert.assertEquals(expected.nodes, actual.nodes);
+        Assert.assertEquals(expected.links, actual.links);
+        Assert.assertEquals(expected.travelTime, actual.travelTime, 0);
+        Assert.assertEquals(expected.travelCost, actual.travelCost, 0);
+    }
+
+
+    private void assertStats(LeastCostPathCalculatorWithCache cache, int hits, int misses,
+            int evictions, long memoryUsage)
+    {
+        CacheStats stats = cache.getCacheStats();
+        Assert.assertEquals(hits, stats.getHits());
+        Assert.assertEquals(misses, stats.getMisses());
+        Assert.assertEquals(evictions, stats.getEvictions());
+        Assert.assertEquals(memoryUsage, stats.getMemoryUsage());
+    }
+
+
+    private long getBytes(Path path)
+    {
+        return ENTRY_OVERHEAD_BYTES + BYTES_PER_LINK * path.links.size();
+    }
+
+
+    private String getKey(Node fromNode, Node toNode, double startTime)
+    {
+        return fromNode.getId() + "->" + toNode.getId() + "@"
+                + TimeDiscretizer.OPEN_ENDED_15_MIN.getIdx(startTime);
+    }
+
+
+    private Node getNode(int i, int j)
+    {
+        return nodes.get(i * GRID_SIZE + j);
+    }
+
+
+    private void createLinks(Node node1, Node node2, Random random)
+    {
+        createLink(node1, node2, random);
+        createLink(node2, node1, random);
+    }
+
+
+    private void createLink(Node fromNode, Node toNode, Random random)
+    {
+        Link link = network.getFactory().createLink(
+                Id.createLinkId(fromNode.getId() + "-" + toNode.getId()), fromNode, toNode);
+        link.setLength(500);
+        link.setFreespeed(10 + 5 * random.nextDouble());
+        link.setCapacity(1000);
+        link.setNumberOfLanes(1);
+        network.addLink(link);
+    }
+}
@@ -0,0 +1,298 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.trafficmonitoring;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.router.*;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.Dijkstra;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+
+public class OnlineTravelTimeEstimatorTest
+{
+    private static final double ALPHA = 0.5;
+    private static final int UPDATE_INTERVAL = 300;
+    private static final double MIN_RELATIVE_CHANGE = 0.1;
+
+    private static final TimeDiscretizer TIME_DISCRETIZER = new TimeDiscretizer(4 * 3600,
+            3600, TimeDiscretizer.Type.OPEN_ENDED);
+
+    private final Id<Vehicle> vehicleId = Id.create("veh", Vehicle.class);
+    private final Id<Vehicle> otherVehicleId = Id.create("other_veh", Vehicle.class);
+
+    private final Network network = NetworkUtils.createNetwork();
+    private Link linkA;
+    private Link linkB;
+
+    //initial travel time of all links (e.g. from the previous iteration)
+    private double initialTT = 100;
+
+    private OnlineTravelTimeEstimator estimator;
+
+
+    @Before
+    public void setUp()
+    {
+        NetworkFactory factory = network.getFactory();
+        Node node0 = factory.createNode(Id.createNodeId(0), new Coord(0, 0));
+        Node node1 = factory.createNode(Id.createNodeId(1), new Coord(1000, 0));
+        Node node2 = factory.createNode(Id.createNodeId(2), new Coord(2000, 0));
+        network.addNode(node0);
+        network.addNode(node1);
+        network.addNode(node2);
+        linkA = factory.createLink(Id.createLinkId("A"), node0, node1);
+        linkB = factory.createLink(Id.createLinkId("B"), node1, node2);
+        network.addLink(linkA);
+        network.addLink(linkB);
+
+        TravelTime initialTravelTime = new TravelTime() {
+            @Override
+            public double getLinkTravelTime(Link link, double time, Person person,
+                    Vehicle vehicle)
+            {
+                return initialTT;
+            }
+        };
+        estimator = new OnlineTravelTimeEstimator(network, initialTravelTime, TIME_DISCRETIZER,
+                ALPHA, UPDATE_INTERVAL, MIN_RELATIVE_CHANGE);
+    }
+
+
+    @Test
+    public void testInitialTravelTimes()
+    {
+        for (int bin = 0; bin < TIME_DISCRETIZER.getIntervalCount(); bin++) {
+            assertTT(100, linkA, bin * 3600);
+            assertTT(100, linkB, bin * 3600);
+        }
+        assertTT(100, linkA, 100000);//open ended
+    }
+
+
+    @Test
+    public void testMovingAverage()
+    {
+        //observed 200 => 100 + 0.5 * (200 - 100)
+        traverse(vehicleId, linkA, 0, 200);
+        assertTT(150, linkA, 0);
+        assertTT(150, linkA, 3599);
+
+        //observed 50 => 150 + 0.5 * (50 - 150)
+        traverse(vehicleId, linkA, 500, 550);
+        assertTT(100, linkA, 0);
+
+        //the bin of the entry time is updated
+        traverse(vehicleId, linkA, 3500, 3800);
+        assertTT(200, linkA, 0);
+        assertTT(100, linkA, 3600);
+
+        //other links and bins keep the initial travel times
+        assertTT(100, linkB, 0);
+        for (int bin = 1; bin < TIME_DISCRETIZER.getIntervalCount(); bin++) {
+            assertTT(100, linkA, bin * 3600);
+        }
+    }
+
+
+    @Test
+    public void testMovingAverage_interleavedVehicles()
+    {
+        estimator.handleEvent(new LinkEnterEvent(0, vehicleId, linkA.getId()));
+        estimator.handleEvent(new LinkEnterEvent(100, otherVehicleId, linkA.getId()));
+        estimator.handleEvent(new LinkLeaveEvent(150, otherVehicleId, linkA.getId()));//observed 50
+        assertTT(75, linkA, 0);
+
+        estimator.handleEvent(new LinkLeaveEvent(200, vehicleId, linkA.getId()));//observed 200
+        assertTT(137.5, linkA, 0);
+    }
+
+
+    @Test
+    public void testDepartureLink()
+    {
+        //the vehicle enters traffic in the middle of the link, so the travel time is not observed
+        estimator.handleEvent(new LinkLeaveEvent(10, vehicleId, linkA.getId()));
+        assertTT(100, linkA, 0);
+
+        estimator.handleEvent(new LinkEnterEvent(10, vehicleId, linkB.getId()));
+        estimator.handleEvent(new LinkLeaveEvent(70, vehicleId, linkB.getId()));
+        assertTT(80, linkB, 0);
+        assertTT(100, linkA, 0);
+    }
+
+
+    @Test
+    public void testArrival()
+    {
+        //the vehicle leaves traffic in the middle of the link, so the travel time is not observed
+        estimator.handleEvent(new LinkEnterEvent(0, vehicleId, linkA.getId()));
+        estimator.handleEvent(new VehicleLeavesTrafficEvent(20, Id.create("p", Person.class),
+                linkA.getId(), vehicleId, TransportMode.car, 1.0));
+        assertTT(100, linkA, 0);
+
+        //the next departure from the arrival link (LinkLeave without LinkEnter)
+        estimator.handleEvent(new LinkLeaveEvent(600, vehicleId, linkA.getId()));
+        assertTT(100, linkA, 0);
+    }
+
+
+    @Test
+    public void testVersion_minRelativeChange()
+    {
+        int version = estimator.getVersion();
+
+        //below the threshold: 100 => 105
+        traverse(vehicleId, linkA, 0, 110);
+        traverse(vehicleId, linkB, 300, 400);
+        assertTT(105, linkA, 0);
+        Assert.assertEquals(version, estimator.getVersion());
+
+        //compared to the travel times of the last version (not of the last check): 107.5 (+7.5%)
+        traverse(vehicleId, linkA, 310, 420);
+        traverse(vehicleId, linkB, 600, 700);
+        assertTT(107.5, linkA, 0);
+        Assert.assertEquals(version, estimator.getVersion());
+
+        //above the threshold: 107.5 => 113.75 (+13.75%)
+        traverse(vehicleId, linkA, 610, 730);
+        traverse(vehicleId, linkB, 900, 1000);
+        Assert.assertEquals(version + 1, estimator.getVersion());
+
+        //back to 100 (-12.1%)
+        traverse(vehicleId, linkA, 910, 996.25);
+        assertTT(100, linkA, 0);
+        traverse(vehicleId, linkB, 1200, 1300);
+        Assert.assertEquals(version + 2, estimator.getVersion());
+    }
+
+
+    @Test
+    public void testVersion_updateInterval()
+    {
+        int version = estimator.getVersion();
+
+        //observed 300 => 200 (+100%), but checked only after the update interval
+        estimator.handleEvent(new LinkEnterEvent(0, vehicleId, linkA.getId()));
+        estimator.handleEvent(new LinkLeaveEvent(299, vehicleId, linkA.getId()));
+        assertTT(199.5, linkA, 0);
+        Assert.assertEquals(version, estimator.getVersion());
+
+        //any event may trigger the check
+        estimator.handleEvent(new LinkEnterEvent(300, otherVehicleId, linkB.getId()));
+        Assert.assertEquals(version + 1, estimator.getVersion());
+
+        //199.5 => 239.75 (+20%), not checked again until 600
+        traverse(vehicleId, linkA, 310, 590);
+        Assert.assertEquals(version + 1, estimator.getVersion());
+        estimator.handleEvent(new LinkLeaveEvent(600, otherVehicleId, linkB.getId()));
+        Assert.assertEquals(version + 2, estimator.getVersion());
+    }
+
+
+    @Test
+    public void testReset()
+    {
+        traverse(vehicleId, linkA, 0, 400);
+        estimator.handleEvent(new LinkEnterEvent(400, vehicleId, linkB.getId()));
+        int version = estimator.getVersion();
+
+        //e.g. the travel times of the next iteration
+        initialTT = 50;
+        estimator.reset(1);
+        assertTT(50, linkA, 0);
+        assertTT(50, linkB, 0);
+        Assert.assertEquals(version + 1, estimator.getVersion());
+
+        //the link entry before the reset is forgotten
+        estimator.handleEvent(new LinkLeaveEvent(10, vehicleId, linkB.getId()));
+        assertTT(50, linkB, 0);
+
+        //changes are compared to the new initial travel times: 50 => 51 (+2%)
+        traverse(vehicleId, linkA, 20, 72);
+        estimator.handleEvent(new LinkEnterEvent(300, otherVehicleId, linkB.getId()));
+        assertTT(51, linkA, 0);
+        Assert.assertEquals(version + 1, estimator.getVersion());
+    }
+
+
+    @Test
+    public void testCachesClearedOnNewVersion()
+    {
+        LeastCostPathCalculatorWithCache pathCache = new DefaultLeastCostPathCalculatorWithCache(
+                new Dijkstra(network, new TimeAsTravelDisutility(estimator), estimator),
+                TIME_DISCRETIZER, estimator);
+        DijkstraWithDijkstraTreeCache treeCache = new DijkstraWithDijkstraTreeCache(network,
+                new TimeAsTravelDisutility(estimator), estimator, TIME_DISCRETIZER);
+        LeastCostPathCalculatorWithCache boundedCache = new BoundedLeastCostPathCalculatorWithCache(
+                network, new Dijkstra(network, new TimeAsTravelDisutility(estimator), estimator),
+                TIME_DISCRETIZER, estimator, 1024 * 1024);
+        LeastCostPathCalculatorWithCache[] caches = { pathCache, treeCache, boundedCache };
+
+        for (LeastCostPathCalculatorWithCache cache : caches) {
+            Assert.assertEquals(200, calcPathTT(cache), 0);
+            Assert.assertEquals(200, calcPathTT(cache), 0);
+            Assert.assertEquals(1, cache.getCacheStats().getMisses());
+        }
+
+        //below the threshold: 100 => 102.5, the cached paths are still used
+        traverse(vehicleId, linkA, 0, 105);
+        traverse(vehicleId, linkB, 300, 400);
+        for (LeastCostPathCalculatorWithCache cache : caches) {
+            Assert.assertEquals(200, calcPathTT(cache), 0);
+            Assert.assertEquals(1, cache.getCacheStats().getMisses());
+        }
+
+        //above the threshold: 102.5 => 151.25, the paths are recomputed
+        traverse(vehicleId, linkA, 310, 510);
+        traverse(vehicleId, linkB, 600, 700);
+        for (LeastCostPathCalculatorWithCache cache : caches) {
+            Assert.assertEquals(251.25, calcPathTT(cache), 0);
+            Assert.assertEquals(251.25, calcPathTT(cache), 0);
+            Assert.assertEquals(2, cache.getCacheStats().getMisses());
+        }
+    }
+
+
+    private double calcPathTT(LeastCostPathCalculatorWithCache cache)
+    {
+        return cache.calcLeastCostPath(linkA.getFromNode(), linkB.getToNode(), 0, null,
+                null).travelTime;
+    }
+
+
+    private void traverse(Id<Vehicle> vehId, Link link, double enterTime, double leaveTime)
+    {
+        estimator.handleEvent(new LinkEnterEvent(enterTime, vehId, link.getId()));
+        estimator.handleEvent(new LinkLeaveEvent(leaveTime, vehId, link.getId()));
+    }
+
+
+    private void assertTT(double expectedTT, Link link, double time)
+    {
+        Assert.assertEquals(expectedTT, estimator.getLinkTravelTime(link, time, null, null), 1e-9);
+    }
+}
@@ -21,7 +21,6 @@ package org.matsim.contrib.emissions;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Scenario;
-import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.emissions.ColdEmissionAnalysisModule.ColdEmissionAnalysisModuleParameter;
 import org.matsim.contrib.emissions.WarmEmissionAnalysisModule.WarmEmissionAnalysisModuleParameter;
 import org.matsim.contrib.emissions.types.*;
@@ -73,6 +72,9 @@ public class EmissionModule {
 	private Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable;
 	private Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> detailedHbefaColdTable;
 
+	private WarmEmissionAnalysisModuleParameter warmParameterObject;
+	private ColdEmissionAnalysisModuleParameter coldParameterObject;
+
 
 	public EmissionModule(Scenario scenario) {
 		this.scenario = scenario;
@@ -124,16 +126,33 @@ public class EmissionModule {
 		logger.info("entering createEmissionHandler");
 		
 		emissionEventsManager = EventsUtils.createEventsManager();
-		Network network = scenario.getNetwork() ;
 
-		WarmEmissionAnalysisModuleParameter parameterObject = new WarmEmissionAnalysisModuleParameter(roadTypeMapping, avgHbefaWarmTable, detailedHbefaWarmTable);
-		ColdEmissionAnalysisModuleParameter parameterObject2 = new ColdEmissionAnalysisModuleParameter(avgHbefaColdTable, detailedHbefaColdTable);
-		
-		warmEmissionHandler = new WarmEmissionHandler(emissionVehicles,	network, parameterObject, emissionEventsManager, emissionEfficiencyFactor);
-		coldEmissionHandler = new ColdEmissionHandler(emissionVehicles, network, parameterObject2, emissionEventsManager, emissionEfficiencyFactor);
+		warmEmissionHandler = createWarmEmissionHandler(emissionEventsManager);
+		coldEmissionHandler = createColdEmissionHandler(emissionEventsManager);
 		logger.info("leaving createEmissionHandler");
 	}
 
+	/**
+	 * Creates a further warm emission handler that throws its emission events into the given events manager,
+	 * e.g. one handler per thread. All handlers share the lookup tables, so {@link #createLookupTables()} must have been called.
+	 */
+	public WarmEmissionHandler createWarmEmissionHandler(EventsManager emissionEventsManager) {
+		if(warmParameterObject == null){
+			warmParameterObject = new WarmEmissionAnalysisModuleParameter(roadTypeMapping, avgHbefaWarmTable, detailedHbefaWarmTable);
+		}
+		return new WarmEmissionHandler(emissionVehicles, scenario.getNetwork(), warmParameterObject, emissionEventsManager, emissionEfficiencyFactor);
+	}
+
+	/**
+	 * @see #createWarmEmissionHandler(EventsManager)
+	 */
+	public ColdEmissionHandler createColdEmissionHandler(EventsManager emissionEventsManager) {
+		if(coldParameterObject == null){
+			coldParameterObject = new ColdEmissionAnalysisModuleParameter(avgHbefaColdTable, detailedHbefaColdTable);
+		}
+		return new ColdEmissionHandler(emissionVehicles, scenario.getNetwork(), coldParameterObject, emissionEventsManager, emissionEfficiencyFactor);
+	}
+
 	private Map<Integer, String> createRoadTypeMapping(String filename){
 		logger.info("entering createRoadTypeMapping ...") ;
 		
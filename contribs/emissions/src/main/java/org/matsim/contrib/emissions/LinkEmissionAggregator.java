@@ -0,0 +1,197 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkEmissionAggregator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.emissions.events.ColdEmissionEvent;
+import org.matsim.contrib.emissions.events.ColdEmissionEventHandler;
+import org.matsim.contrib.emissions.events.WarmEmissionEvent;
+import org.matsim.contrib.emissions.events.WarmEmissionEventHandler;
+import org.matsim.contrib.emissions.types.ColdPollutant;
+import org.matsim.contrib.emissions.types.WarmPollutant;
+import org.matsim.contrib.emissions.utils.EmissionUtils;
+import org.matsim.core.utils.io.IOUtils;
+
+
+/**
+ * Sums up warm and cold emissions per link and time bin. As in {@link EmissionUtils#sumUpEmissions},
+ * warm and cold emissions of the same pollutant are added up.
+ * <p>
+ * For each link, the totals of all time bins up to the last one with emissions are kept in one array,
+ * which is only created once the link has emissions.
+ */
+class LinkEmissionAggregator implements WarmEmissionEventHandler, ColdEmissionEventHandler {
+	private static final Logger logger = Logger.getLogger(LinkEmissionAggregator.class);
+
+	private final double timeBinSize;
+
+	private final Map<Id<Link>, Integer> linkIdxs = new HashMap<>();
+	private final List<Id<Link>> linkIds = new ArrayList<>();
+
+	private final List<String> pollutants;
+	private final int[] warmColumns = new int[WarmPollutant.values().length];
+	private final int[] coldColumns = new int[ColdPollutant.values().length];
+
+	// by link index: [time bin * number of pollutants + column]; null if there are no emissions on the link
+	private final double[][] emissions;
+
+	LinkEmissionAggregator(Network network, double timeBinSize) {
+		if(timeBinSize <= 0.0){
+			throw new IllegalArgumentException("Time bin size must be positive: " + timeBinSize);
+		}
+		this.timeBinSize = timeBinSize;
+
+		for(Id<Link> linkId : network.getLinks().keySet()){
+			linkIdxs.put(linkId, linkIds.size());
+			linkIds.add(linkId);
+		}
+		emissions = new double[linkIds.size()][];
+
+		pollutants = new ArrayList<>(new EmissionUtils().getListOfPollutants());
+		for(WarmPollutant wp : WarmPollutant.values()){
+			warmColumns[wp.ordinal()] = pollutants.indexOf(wp.toString());
+		}
+		for(ColdPollutant cp : ColdPollutant.values()){
+			coldColumns[cp.ordinal()] = pollutants.indexOf(cp.toString());
+		}
+	}
+
+	@Override
+	public void reset(int iteration) {
+		Arrays.fill(emissions, null);
+	}
+
+	@Override
+	public void handleEvent(WarmEmissionEvent event) {
+		int linkIdx = getLinkIdx(event.getLinkId());
+		int offset = getOffset(linkIdx, event.getTime());
+		double[] linkEmissions = emissions[linkIdx];
+		for(Entry<WarmPollutant, Double> e : event.getWarmEmissions().entrySet()){
+			linkEmissions[offset + warmColumns[e.getKey().ordinal()]] += e.getValue();
+		}
+	}
+
+	@Override
+	public void handleEvent(ColdEmissionEvent event) {
+		int linkIdx = getLinkIdx(event.getLinkId());
+		int offset = getOffset(linkIdx, event.getTime());
+		double[] linkEmissions = emissions[linkIdx];
+		for(Entry<ColdPollutant, Double> e : event.getColdEmissions().entrySet()){
+			linkEmissions[offset + coldColumns[e.getKey().ordinal()]] += e.getValue();
+		}
+	}
+
+	private int getLinkIdx(Id<Link> linkId) {
+		Integer linkIdx = linkIdxs.get(linkId);
+		if(linkIdx == null){
+			throw new RuntimeException("Link " + linkId + " is not part of the network. Aborting...");
+		}
+		return linkIdx;
+	}
+
+	// makes sure that the array of the link covers the time bin
+	private int getOffset(int linkIdx, double time) {
+		int timeBin = getTimeBin(time);
+		double[] linkEmissions = emissions[linkIdx];
+		if(linkEmissions == null){
+			emissions[linkIdx] = new double[(timeBin + 1) * pollutants.size()];
+		} else if(linkEmissions.length <= timeBin * pollutants.size()){
+			// grow by at least half, so that links used all day are not copied for each time bin
+			int timeBinCount = Math.max(timeBin + 1, linkEmissions.length / pollutants.size() * 3 / 2);
+			emissions[linkIdx] = Arrays.copyOf(linkEmissions, timeBinCount * pollutants.size());
+		}
+		return timeBin * pollutants.size();
+	}
+
+	private int getTimeBin(double time) {
+		return Math.max(0, (int) (time / timeBinSize));
+	}
+
+	/**
+	 * @return emissions per pollutant (as in {@link EmissionUtils#getListOfPollutants()}), or null if there are none
+	 */
+	double[] getEmissions(Id<Link> linkId, double time) {
+		double[] linkEmissions = emissions[getLinkIdx(linkId)];
+		int offset = getTimeBin(time) * pollutants.size();
+		if(linkEmissions == null || linkEmissions.length <= offset){
+			return null;
+		}
+		return Arrays.copyOfRange(linkEmissions, offset, offset + pollutants.size());
+	}
+
+	/**
+	 * Writes one line per time bin and link with emissions (time bins in ascending order, links in network order).
+	 */
+	void writeFile(String outFile) {
+		int maxTimeBin = -1;
+		for(double[] linkEmissions : emissions){
+			if(linkEmissions != null){
+				maxTimeBin = Math.max(maxTimeBin, linkEmissions.length / pollutants.size() - 1);
+			}
+		}
+
+		try (BufferedWriter out = IOUtils.getBufferedWriter(outFile)) {
+			out.append("startTime\tendTime\tlinkId");
+			for(String pollutant : pollutants){
+				out.append("\t" + pollutant + "[g]");
+			}
+			out.newLine();
+
+			for(int timeBin = 0; timeBin <= maxTimeBin; timeBin++){
+				int offset = timeBin * pollutants.size();
+				for(int l = 0; l < emissions.length; l++){
+					double[] linkEmissions = emissions[l];
+					if(linkEmissions == null || linkEmissions.length <= offset || isZero(linkEmissions, offset)){
+						continue;
+					}
+					out.append(timeBin * timeBinSize + "\t" + (timeBin + 1) * timeBinSize + "\t" + linkIds.get(l));
+					for(int p = 0; p < pollutants.size(); p++){
+						out.append("\t" + linkEmissions[offset + p]);
+					}
+					out.newLine();
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		logger.info("Finished writing output to " + outFile);
+	}
+
+	private boolean isZero(double[] linkEmissions, int offset) {
+		for(int p = 0; p < pollutants.size(); p++){
+			if(linkEmissions[offset + p] != 0.0){
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,337 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * OfflineEmissionCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.emissions.events.ColdEmissionEvent;
+import org.matsim.contrib.emissions.events.WarmEmissionEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.vehicles.Vehicle;
+
+
+/**
+ * Calculates the emissions of an events file with several threads and writes the emissions per link and
+ * time bin (see {@link LinkEmissionAggregator}) and, optionally, the emission events.
+ * <p>
+ * Link and traffic events are read in batches. Each batch is split by vehicle, so that all events of a vehicle
+ * are handled by the same {@link WarmEmissionHandler} and {@link ColdEmissionHandler}; the workers process
+ * one batch while the next one is read. Afterwards, the emission events of the batch are put into the order
+ * of the events that triggered them. Thus, the results are the same as in a sequential run
+ * (see {@link org.matsim.contrib.emissions.example.RunEmissionToolOfflineExample RunEmissionToolOfflineExample}),
+ * regardless of the number of threads.
+ * <p>
+ * One calculator can be run on several events files, the lookup tables of the {@link EmissionModule} are
+ * created only once.
+ */
+public class OfflineEmissionCalculator {
+	private static final Logger logger = Logger.getLogger(OfflineEmissionCalculator.class);
+
+	private static final int BATCH_SIZE = 10000;
+	private static final int PROGRESS_INTERVAL = 1000000;
+
+	private final EmissionModule emissionModule;
+	private final Network network;
+	private final int numberOfThreads;
+	private final double timeBinSize;
+
+	/**
+	 * @param emissionModule with lookup tables already created
+	 */
+	public OfflineEmissionCalculator(EmissionModule emissionModule, Network network, int numberOfThreads, double timeBinSize) {
+		if(numberOfThreads < 1){
+			throw new IllegalArgumentException("Number of threads must be at least 1: " + numberOfThreads);
+		}
+		this.emissionModule = emissionModule;
+		this.network = network;
+		this.numberOfThreads = numberOfThreads;
+		this.timeBinSize = timeBinSize;
+	}
+
+	/**
+	 * @param emissionEventsFile may be null if no emission events are to be written
+	 */
+	public void run(String eventsFile, String emissionTotalsFile, String emissionEventsFile) {
+		logger.info("Calculating emissions for " + eventsFile + " with " + numberOfThreads + " thread(s)...");
+		long startTime = System.currentTimeMillis();
+
+		LinkEmissionAggregator aggregator = new LinkEmissionAggregator(network, timeBinSize);
+		EventsManager emissionEventsManager = EventsUtils.createEventsManager();
+		emissionEventsManager.addHandler(aggregator);
+		EventWriterXML emissionEventWriter = null;
+		if(emissionEventsFile != null){
+			emissionEventWriter = new EventWriterXML(emissionEventsFile);
+			emissionEventsManager.addHandler(emissionEventWriter);
+		}
+
+		Worker[] workers = new Worker[numberOfThreads];
+		for(int w = 0; w < numberOfThreads; w++){
+			workers[w] = new Worker(emissionModule);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		Dispatcher dispatcher = new Dispatcher(workers, executor, emissionEventsManager, startTime);
+		try {
+			EventsManager eventsManager = EventsUtils.createEventsManager();
+			eventsManager.addHandler(dispatcher);
+			new MatsimEventsReader(eventsManager).readFile(eventsFile);
+			dispatcher.finish();
+		} finally {
+			executor.shutdown();
+		}
+
+		if(emissionEventWriter != null){
+			emissionEventWriter.closeFile();
+		}
+		aggregator.writeFile(emissionTotalsFile);
+
+		int linkLeaveCnt = 0;
+		int linkLeaveWarnCnt = 0;
+		double km = 0.0;
+		for(Worker worker : workers){
+			linkLeaveCnt += worker.warmEmissionHandler.getLinkLeaveCnt();
+			linkLeaveWarnCnt += worker.warmEmissionHandler.getLinkLeaveWarnCnt();
+			km += worker.warmEmissionHandler.getWarmEmissionAnalysisModule().getKmCounter();
+		}
+		logger.info("Warm emissions were not calculated for " + linkLeaveWarnCnt + " of " + linkLeaveCnt
+				+ " link leave events (no corresponding link enter event).");
+		logger.info("Warm emissions were calculated for " + km + " km.");
+
+		double seconds = (System.currentTimeMillis() - startTime) / 1000.;
+		logger.info("Processed " + dispatcher.eventCnt + " events (" + dispatcher.trafficEventCnt + " link and traffic events) in "
+				+ seconds + " s, i.e. " + (long) (dispatcher.eventCnt / seconds) + " events per second; "
+				+ dispatcher.warmEmissionEventCnt + " warm and " + dispatcher.coldEmissionEventCnt + " cold emission events.");
+		logger.info("Emission totals per link and time bin can be found in " + emissionTotalsFile);
+	}
+
+
+	/**
+	 * Splits the link and traffic events by vehicle and passes the emission events, in order, to the emission
+	 * events manager. Runs in the thread reading the events.
+	 */
+	private static class Dispatcher implements BasicEventHandler {
+		private final Worker[] workers;
+		private final ExecutorService executor;
+		private final EventsManager emissionEventsManager;
+		private final long startTime;
+
+		private final List<Future<Void>> runningBatch = new ArrayList<>();
+		private int batchSize = 0;
+
+		private long eventCnt = 0;
+		private long trafficEventCnt = 0;
+		private long warmEmissionEventCnt = 0;
+		private long coldEmissionEventCnt = 0;
+
+		private Dispatcher(Worker[] workers, ExecutorService executor, EventsManager emissionEventsManager, long startTime) {
+			this.workers = workers;
+			this.executor = executor;
+			this.emissionEventsManager = emissionEventsManager;
+			this.startTime = startTime;
+		}
+
+		@Override
+		public void reset(int iteration) {
+		}
+
+		@Override
+		public void handleEvent(Event event) {
+			eventCnt++;
+			if(eventCnt % PROGRESS_INTERVAL == 0){
+				double seconds = (System.currentTimeMillis() - startTime) / 1000.;
+				logger.info(eventCnt + " events read, " + (long) (eventCnt / seconds) + " events per second");
+			}
+
+			Id<Vehicle> vehicleId;
+			if(event instanceof LinkLeaveEvent){
+				vehicleId = ((LinkLeaveEvent) event).getVehicleId();
+			} else if(event instanceof LinkEnterEvent){
+				vehicleId = ((LinkEnterEvent) event).getVehicleId();
+			} else if(event instanceof VehicleEntersTrafficEvent){
+				vehicleId = ((VehicleEntersTrafficEvent) event).getVehicleId();
+			} else if(event instanceof VehicleLeavesTrafficEvent){
+				vehicleId = ((VehicleLeavesTrafficEvent) event).getVehicleId();
+			} else {
+				return; // not needed for emission calculation
+			}
+			trafficEventCnt++;
+
+			// Id.hashCode() is the hash code of the id string, so the split does not change between runs
+			Worker worker = workers[(vehicleId.hashCode() & Integer.MAX_VALUE) % workers.length];
+			worker.addEvent(event, batchSize);
+			batchSize++;
+			if(batchSize == BATCH_SIZE){
+				startBatch();
+			}
+		}
+
+		private void startBatch() {
+			finishRunningBatch();
+			for(Worker worker : workers){
+				if(worker.startBatch()){
+					runningBatch.add(executor.submit(worker));
+				}
+			}
+			batchSize = 0;
+		}
+
+		private void finishRunningBatch() {
+			try {
+				for(Future<Void> future : runningBatch){
+					future.get();
+				}
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException(e);
+			}
+			runningBatch.clear();
+
+			// merge the emission events of all workers by the position of their trigger events in the batch
+			int[] positions = new int[workers.length];
+			while(true){
+				Worker next = null;
+				int nextIdx = -1;
+				for(int w = 0; w < workers.length; w++){
+					Worker worker = workers[w];
+					if(positions[w] < worker.emissionEvents.size()
+							&& (next == null || worker.emissionEventSeqs[positions[w]] < next.emissionEventSeqs[positions[nextIdx]])){
+						next = worker;
+						nextIdx = w;
+					}
+				}
+				if(next == null){
+					break;
+				}
+
+				Event emissionEvent = next.emissionEvents.get(positions[nextIdx]++);
+				if(emissionEvent instanceof WarmEmissionEvent){
+					warmEmissionEventCnt++;
+				} else if(emissionEvent instanceof ColdEmissionEvent){
+					coldEmissionEventCnt++;
+				}
+				emissionEventsManager.processEvent(emissionEvent);
+			}
+			for(Worker worker : workers){
+				worker.emissionEvents.clear();
+			}
+		}
+
+		private void finish() {
+			startBatch();
+			finishRunningBatch();
+		}
+	}
+
+
+	/**
+	 * Calculates the emissions of the vehicles assigned to it. While a batch is processed, the events of the next
+	 * batch are collected.
+	 */
+	private static class Worker implements Callable<Void>, BasicEventHandler {
+		private final EventsManager trafficEventsManager = EventsUtils.createEventsManager();
+		private final WarmEmissionHandler warmEmissionHandler;
+		private final ColdEmissionHandler coldEmissionHandler;
+
+		// events of the next batch, with their positions in the batch
+		private List<Event> nextEvents = new ArrayList<>();
+		private int[] nextEventSeqs = new int[64];
+
+		private List<Event> events = new ArrayList<>();
+		private int[] eventSeqs = new int[64];
+		private int currentSeq;
+
+		// emission events of the current batch, with the positions of the events that triggered them
+		private final List<Event> emissionEvents = new ArrayList<>();
+		private int[] emissionEventSeqs = new int[64];
+
+		private Worker(EmissionModule emissionModule) {
+			EventsManager emissionEventsManager = EventsUtils.createEventsManager();
+			emissionEventsManager.addHandler(this);
+			warmEmissionHandler = emissionModule.createWarmEmissionHandler(emissionEventsManager);
+			coldEmissionHandler = emissionModule.createColdEmissionHandler(emissionEventsManager);
+			trafficEventsManager.addHandler(warmEmissionHandler);
+			trafficEventsManager.addHandler(coldEmissionHandler);
+		}
+
+		private void addEvent(Event event, int seq) {
+			if(nextEvents.size() == nextEventSeqs.length){
+				nextEventSeqs = Arrays.copyOf(nextEventSeqs, 2 * nextEventSeqs.length);
+			}
+			nextEventSeqs[nextEvents.size()] = seq;
+			nextEvents.add(event);
+		}
+
+		/**
+		 * @return false if there are no events to process
+		 */
+		private boolean startBatch() {
+			List<Event> tmpEvents = events;
+			events = nextEvents;
+			nextEvents = tmpEvents;
+			nextEvents.clear();
+
+			int[] tmpSeqs = eventSeqs;
+			eventSeqs = nextEventSeqs;
+			nextEventSeqs = tmpSeqs;
+			return !events.isEmpty();
+		}
+
+		@Override
+		public Void call() {
+			for(int i = 0; i < events.size(); i++){
+				currentSeq = eventSeqs[i];
+				trafficEventsManager.processEvent(events.get(i));
+			}
+			return null;
+		}
+
+		// collects the emission events thrown by the handlers
+		@Override
+		public void handleEvent(Event event) {
+			if(emissionEvents.size() == emissionEventSeqs.length){
+				emissionEventSeqs = Arrays.copyOf(emissionEventSeqs, 2 * emissionEventSeqs.length);
+			}
+			emissionEventSeqs[emissionEvents.size()] = currentSeq;
+			emissionEvents.add(event);
+		}
+
+		@Override
+		public void reset(int iteration) {
+		}
+	}
+}
@@ -21,6 +21,7 @@
  * *********************************************************************** */
 package org.matsim.contrib.emissions;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -50,10 +51,14 @@ import org.matsim.vehicles.VehicleType;
 public class WarmEmissionAnalysisModule {
 	private static final Logger logger = Logger.getLogger(WarmEmissionAnalysisModule.class);
 
-	private final Map<Integer, String> roadTypeMapping;
+	private static final WarmPollutant[] WARM_POLLUTANTS = WarmPollutant.values();
 
-	private final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable;
-	private final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable;
+	private final WarmEmissionFactorTable warmEmissionFactorTable;
+	private final int averageVehicleAttributesCode;
+
+	// vehicle type ids are parsed only once
+	private final Map<Id<VehicleType>, VehicleInformation> vehicleInformationCache = new HashMap<>();
+	private final double[] warmEmissionsBuffer = new double[WARM_POLLUTANTS.length];
 
 	private final EventsManager eventsManager;
 	private final Double emissionEfficiencyFactor;
@@ -80,6 +85,8 @@ public class WarmEmissionAnalysisModule {
 		public final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable;
 		public final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable;
 
+		private WarmEmissionFactorTable warmEmissionFactorTable;
+
 		public WarmEmissionAnalysisModuleParameter(
 				Map<Integer, String> roadTypeMapping,
 				Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable,
@@ -97,6 +104,26 @@ public class WarmEmissionAnalysisModule {
 				 System.exit(0);
 			}
 		}
+
+		// compiled on first use, so that all modules created from this parameter object share one table
+		synchronized WarmEmissionFactorTable getWarmEmissionFactorTable() {
+			if(warmEmissionFactorTable == null){
+				warmEmissionFactorTable = new WarmEmissionFactorTable(roadTypeMapping, avgHbefaWarmTable, detailedHbefaWarmTable);
+			}
+			return warmEmissionFactorTable;
+		}
+	}
+
+	private static class VehicleInformation {
+		private final HbefaVehicleCategory hbefaVehicleCategory;
+		private final HbefaVehicleAttributes hbefaVehicleAttributes;
+		private final int vehicleAttributesCode;
+
+		private VehicleInformation(Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple, int vehicleAttributesCode) {
+			this.hbefaVehicleCategory = vehicleInformationTuple.getFirst();
+			this.hbefaVehicleAttributes = vehicleInformationTuple.getSecond();
+			this.vehicleAttributesCode = vehicleAttributesCode;
+		}
 	}
 
 	public WarmEmissionAnalysisModule(
@@ -111,14 +138,10 @@ public class WarmEmissionAnalysisModule {
 			logger.error("Event manager not set. Please check the configuration of your scenario. Aborting..." );
 			System.exit(0);
 		}
-		this.roadTypeMapping = parameterObject.roadTypeMapping;
-		this.avgHbefaWarmTable = parameterObject.avgHbefaWarmTable;
-		this.detailedHbefaWarmTable = parameterObject.detailedHbefaWarmTable;
+		this.warmEmissionFactorTable = parameterObject.getWarmEmissionFactorTable();
+		this.averageVehicleAttributesCode = warmEmissionFactorTable.getVehicleAttributesCode(new HbefaVehicleAttributes());
 		this.eventsManager = emissionEventsManager;
 		this.emissionEfficiencyFactor = emissionEfficiencyFactor;
-		
-
-		
 	}
 
 	public void reset() {
@@ -147,135 +170,155 @@ public class WarmEmissionAnalysisModule {
 			double linkLength,
 			double travelTime) {
 
-		Map<WarmPollutant, Double> warmEmissions;
+		checkVehicleInfoAndCalculateWarmEmissions(vehicle, roadType, freeVelocity, linkLength, travelTime, warmEmissionsBuffer);
+
+		Map<WarmPollutant, Double> warmEmissions = new EnumMap<>(WarmPollutant.class);
+		for(WarmPollutant warmPollutant : WARM_POLLUTANTS){
+			warmEmissions.put(warmPollutant, warmEmissionsBuffer[warmPollutant.ordinal()]);
+		}
+		return warmEmissions;
+	}
+
+	/**
+	 * Same as {@link #checkVehicleInfoAndCalculateWarmEmissions(Vehicle, int, double, double, double)},
+	 * but writes the emissions into <code>warmEmissions</code> (indexed by {@link WarmPollutant#ordinal()})
+	 * instead of creating a map.
+	 */
+	public void checkVehicleInfoAndCalculateWarmEmissions(
+			Vehicle vehicle,
+			int roadType,
+			double freeVelocity,
+			double linkLength,
+			double travelTime,
+			double[] warmEmissions) {
+
 		if(vehicle == null || vehicle.getType() == null || vehicle.getType().getId() == null){
 			throw new RuntimeException("Vehicle type description for vehicle " + vehicle + "is missing. " +
 					"Please make sure that requirements for emission vehicles in "
 					+ EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
 		}
 		
-		Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple = convertVehicleTypeId2VehicleInformationTuple(vehicle.getType().getId());
-		if (vehicleInformationTuple.getFirst() == null){
+		VehicleInformation vehicleInformation = getVehicleInformation(vehicle.getType().getId());
+		if (vehicleInformation.hbefaVehicleCategory == null){
 			throw new RuntimeException("Vehicle category for vehicle " + vehicle + " is not valid. " +
 					"Please make sure that requirements for emission vehicles in " + 
 					EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
 		}
-		warmEmissions = calculateWarmEmissions(vehicle.getId(), travelTime, roadType, freeVelocity, linkLength, vehicleInformationTuple);
+		calculateWarmEmissions(vehicle.getId(), travelTime, roadType, freeVelocity, linkLength, vehicleInformation, warmEmissions);
 		
 		// a basic apporach to introduce emission reduced cars:
 		if(emissionEfficiencyFactor != null){
-			warmEmissions = rescaleWarmEmissions(warmEmissions);
+			rescaleWarmEmissions(warmEmissions);
 		}
-		return warmEmissions;
+	}
+
+	private VehicleInformation getVehicleInformation(Id<VehicleType> vehicleTypeId) {
+		VehicleInformation vehicleInformation = vehicleInformationCache.get(vehicleTypeId);
+		if(vehicleInformation == null){
+			Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple = convertVehicleTypeId2VehicleInformationTuple(vehicleTypeId);
+			int vehicleAttributesCode = warmEmissionFactorTable.getVehicleAttributesCode(vehicleInformationTuple.getSecond());
+			vehicleInformation = new VehicleInformation(vehicleInformationTuple, vehicleAttributesCode);
+			vehicleInformationCache.put(vehicleTypeId, vehicleInformation);
+		}
+		return vehicleInformation;
 	}
 	
-	private Map<WarmPollutant, Double> rescaleWarmEmissions(Map<WarmPollutant, Double> warmEmissions) {
-		Map<WarmPollutant, Double> rescaledWarmEmissions = new HashMap<>();
-		
-		for(WarmPollutant wp : warmEmissions.keySet()){
-			Double orgValue = warmEmissions.get(wp);
-			Double rescaledValue = emissionEfficiencyFactor * orgValue;
-			rescaledWarmEmissions.put(wp, rescaledValue);
+	private void rescaleWarmEmissions(double[] warmEmissions) {
+		for(int i = 0; i < WARM_POLLUTANTS.length; i++){
+			warmEmissions[i] *= emissionEfficiencyFactor;
 		}
-		return rescaledWarmEmissions;
 	}
 
-	private Map<WarmPollutant, Double> calculateWarmEmissions(
+	private void calculateWarmEmissions(
 			Id<Vehicle> vehicleId,
 			double travelTime,
 			int roadType,
 			double freeVelocity,
 			double linkLength,
-			Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple) {
-
-		Map<WarmPollutant, Double> warmEmissionsOfEvent = new HashMap<>();
+			VehicleInformation vehicleInformation,
+			double[] warmEmissionsOfEvent) {
 
-		String hbefaRoadTypeName = this.roadTypeMapping.get(roadType);
-
-		HbefaWarmEmissionFactorKey keyFreeFlow = new HbefaWarmEmissionFactorKey();
-		HbefaWarmEmissionFactorKey keyStopAndGo = new HbefaWarmEmissionFactorKey();
+		int roadCategoryCode = warmEmissionFactorTable.getRoadCategoryCode(roadType);
+		if(roadCategoryCode < 0){
+			throw new RuntimeException("Road type " + roadType + " is not mapped to an HBEFA road category. Aborting...");
+		}
 
-		if(vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE)){
-			keyFreeFlow.setHbefaVehicleCategory(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE);
-			keyStopAndGo.setHbefaVehicleCategory(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE);
+		HbefaVehicleCategory hbefaVehicleCategory;
+		if(vehicleInformation.hbefaVehicleCategory.equals(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE)){
+			hbefaVehicleCategory = HbefaVehicleCategory.HEAVY_GOODS_VEHICLE;
 		} else{
-			keyFreeFlow.setHbefaVehicleCategory(HbefaVehicleCategory.PASSENGER_CAR);
-			keyStopAndGo.setHbefaVehicleCategory(HbefaVehicleCategory.PASSENGER_CAR);
+			hbefaVehicleCategory = HbefaVehicleCategory.PASSENGER_CAR;
 		}
-		keyFreeFlow.setHbefaRoadCategory(hbefaRoadTypeName);
-		keyStopAndGo.setHbefaRoadCategory(hbefaRoadTypeName);
-		keyFreeFlow.setHbefaTrafficSituation(HbefaTrafficSituation.FREEFLOW);
-		keyStopAndGo.setHbefaTrafficSituation(HbefaTrafficSituation.STOPANDGO);
-
-		if(this.detailedHbefaWarmTable != null){ // check if detailed emission factors file is set in config
-			HbefaVehicleAttributes hbefaVehicleAttributes = new HbefaVehicleAttributes();
-			hbefaVehicleAttributes.setHbefaTechnology(vehicleInformationTuple.getSecond().getHbefaTechnology());
-			hbefaVehicleAttributes.setHbefaSizeClass(vehicleInformationTuple.getSecond().getHbefaSizeClass());
-			hbefaVehicleAttributes.setHbefaEmConcept(vehicleInformationTuple.getSecond().getHbefaEmConcept());
-			keyFreeFlow.setHbefaVehicleAttributes(hbefaVehicleAttributes);
-			keyStopAndGo.setHbefaVehicleAttributes(hbefaVehicleAttributes);
+
+		// without the detailed table, the average table is looked up with average vehicle attributes
+		int vehicleAttributesCode;
+		double[] detailedSpeeds = null;
+		double[] detailedFactors = null;
+		if(this.warmEmissionFactorTable.isDetailed()){ // check if detailed emission factors file is set in config
+			vehicleAttributesCode = vehicleInformation.vehicleAttributesCode;
+			detailedSpeeds = this.warmEmissionFactorTable.getDetailedSpeeds(vehicleAttributesCode);
+			detailedFactors = this.warmEmissionFactorTable.getDetailedFactors(vehicleAttributesCode);
+		} else {
+			vehicleAttributesCode = this.averageVehicleAttributesCode;
 		}
+		double[] avgSpeeds = this.warmEmissionFactorTable.getAvgSpeeds(vehicleAttributesCode);
+		double[] avgFactors = this.warmEmissionFactorTable.getAvgFactors(vehicleAttributesCode);
 		
 		double linkLength_km = linkLength / 1000;
 		double travelTime_h = travelTime / 3600;
 		double freeFlowSpeed_kmh = freeVelocity * 3.6;
 		double averageSpeed_kmh = linkLength_km / travelTime_h;
+
+		if(averageSpeed_kmh <= 0.0){
+			throw new RuntimeException("Average speed has been calculated to 0.0 or a negative value. Aborting...");
+		}
+		if ((averageSpeed_kmh - freeFlowSpeed_kmh) > 1.0){
+			throw new RuntimeException("Average speed has been calculated to be greater than free flow speed; this might produce negative warm emissions. Aborting...");
+		}
+		/* NOTE: the following comparision does not make sense since HBEFA assumes free flow speeds to be different from speed limits.
+		 * For instance, for RUR/MW/80/Freeflow HBEFA assumes a free flow speed of 82.80 kmh.
+		 * benjamin, amit 01'2014
+		 * */		
+//		if(freeFlowSpeedFromTable_kmh - freeFlowSpeed_kmh > 1.0 || freeFlowSpeedFromTable_kmh - freeFlowSpeed_kmh <-1.0){
+//			logger.warn("The given free flow speed does not match the table's value. Please check consistency of your scenario!");
+//			logger.info("Using given speed value to avoid negative emission values...");	
+//		}
 		
-		double freeFlowSpeedFromTable_kmh;
 		double stopGoSpeedFromTable_kmh;
 		double efFreeFlow_gpkm;
 		double efStopGo_gpkm;
 
-		for (WarmPollutant warmPollutant : WarmPollutant.values()) {
+		for (WarmPollutant warmPollutant : WARM_POLLUTANTS) {
 			double generatedEmissions;
 
-			keyFreeFlow.setHbefaComponent(warmPollutant);
-			keyStopAndGo.setHbefaComponent(warmPollutant);
+			int idxFreeFlow = this.warmEmissionFactorTable.getIndex(hbefaVehicleCategory, roadCategoryCode, HbefaTrafficSituation.FREEFLOW, warmPollutant);
+			int idxStopAndGo = this.warmEmissionFactorTable.getIndex(hbefaVehicleCategory, roadCategoryCode, HbefaTrafficSituation.STOPANDGO, warmPollutant);
 			
-			if(this.detailedHbefaWarmTable != null){
-				if(this.detailedHbefaWarmTable.get(keyFreeFlow) != null && this.detailedHbefaWarmTable.get(keyStopAndGo) != null){
-					stopGoSpeedFromTable_kmh = this.detailedHbefaWarmTable.get(keyStopAndGo).getSpeed();
-					efFreeFlow_gpkm = this.detailedHbefaWarmTable.get(keyFreeFlow).getWarmEmissionFactor();
-					efStopGo_gpkm = this.detailedHbefaWarmTable.get(keyStopAndGo).getWarmEmissionFactor();
-					freeFlowSpeedFromTable_kmh = this.detailedHbefaWarmTable.get(keyFreeFlow).getSpeed();
-
-				} else {
+			if(detailedSpeeds != null && !Double.isNaN(detailedSpeeds[idxFreeFlow]) && !Double.isNaN(detailedSpeeds[idxStopAndGo])){
+				stopGoSpeedFromTable_kmh = detailedSpeeds[idxStopAndGo];
+				efFreeFlow_gpkm = detailedFactors[idxFreeFlow];
+				efStopGo_gpkm = detailedFactors[idxStopAndGo];
+			} else {
+				if(this.warmEmissionFactorTable.isDetailed()){
 					vehAttributesNotSpecifiedCnt++;
-					stopGoSpeedFromTable_kmh = this.avgHbefaWarmTable.get(keyStopAndGo).getSpeed();
-					efFreeFlow_gpkm = this.avgHbefaWarmTable.get(keyFreeFlow).getWarmEmissionFactor();
-					efStopGo_gpkm = this.avgHbefaWarmTable.get(keyStopAndGo).getWarmEmissionFactor();
-					freeFlowSpeedFromTable_kmh = this.avgHbefaWarmTable.get(keyFreeFlow).getSpeed();
-
-                    int maxWarnCnt = 3;
-                    if(vehAttributesNotSpecifiedCnt <= maxWarnCnt) {
+					int maxWarnCnt = 3;
+					if(vehAttributesNotSpecifiedCnt <= maxWarnCnt) {
 						logger.warn("Detailed vehicle attributes are not specified correctly for vehicle " + vehicleId + ": " + 
-								"`" + vehicleInformationTuple.getSecond() + "'. Using fleet average values instead.");
+								"`" + vehicleInformation.hbefaVehicleAttributes + "'. Using fleet average values instead.");
 						if(vehAttributesNotSpecifiedCnt == maxWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
 					}
 //					vehAttributesNotSpecified.add(personId);
 				}
-			} else {
-				stopGoSpeedFromTable_kmh = this.avgHbefaWarmTable.get(keyStopAndGo).getSpeed();
-				efFreeFlow_gpkm = this.avgHbefaWarmTable.get(keyFreeFlow).getWarmEmissionFactor();
-				efStopGo_gpkm = this.avgHbefaWarmTable.get(keyStopAndGo).getWarmEmissionFactor();
-				freeFlowSpeedFromTable_kmh = this.avgHbefaWarmTable.get(keyFreeFlow).getSpeed();
-//				vehAttributesNotSpecified.add(personId);
+				if(avgSpeeds == null || Double.isNaN(avgSpeeds[idxFreeFlow]) || Double.isNaN(avgSpeeds[idxStopAndGo])){
+					throw new RuntimeException("No average warm emission factors found for "
+							+ hbefaVehicleCategory + "; " + warmPollutant + "; " + this.warmEmissionFactorTable.getRoadCategory(roadCategoryCode) + "; "
+							+ (this.warmEmissionFactorTable.isDetailed() ? vehicleInformation.hbefaVehicleAttributes : new HbefaVehicleAttributes()) + ". Aborting...");
+				}
+				stopGoSpeedFromTable_kmh = avgSpeeds[idxStopAndGo];
+				efFreeFlow_gpkm = avgFactors[idxFreeFlow];
+				efStopGo_gpkm = avgFactors[idxStopAndGo];
 			}
 			
-			if(averageSpeed_kmh <= 0.0){
-				throw new RuntimeException("Average speed has been calculated to 0.0 or a negative value. Aborting...");
-			}
-			if ((averageSpeed_kmh - freeFlowSpeed_kmh) > 1.0){
-				throw new RuntimeException("Average speed has been calculated to be greater than free flow speed; this might produce negative warm emissions. Aborting...");
-			}
-			/* NOTE: the following comparision does not make sense since HBEFA assumes free flow speeds to be different from speed limits.
-			 * For instance, for RUR/MW/80/Freeflow HBEFA assumes a free flow speed of 82.80 kmh.
-			 * benjamin, amit 01'2014
-			 * */		
-//			if(freeFlowSpeedFromTable_kmh - freeFlowSpeed_kmh > 1.0 || freeFlowSpeedFromTable_kmh - freeFlowSpeed_kmh <-1.0){
-//				logger.warn("The given free flow speed does not match the table's value. Please check consistency of your scenario!");
-//				logger.info("Using given speed value to avoid negative emission values...");	
-//			}
 			if((averageSpeed_kmh - freeFlowSpeed_kmh) >= -1.0) { // both speeds are assumed to be not very different > only freeFlow on link
 				generatedEmissions = linkLength_km * efFreeFlow_gpkm;
 				freeFlowCounter++;
@@ -294,11 +337,10 @@ public class WarmEmissionAnalysisModule {
 				freeFlowKmCounter = freeFlowKmCounter + distanceFreeFlow_km;
 			}
 			kmCounter = kmCounter + linkLength_km;
-			warmEmissionsOfEvent.put(warmPollutant, generatedEmissions);
+			warmEmissionsOfEvent[warmPollutant.ordinal()] = generatedEmissions;
 		}
 		emissionEventCounter++;
 //		vehicleIdSet.add(personId);
-		return warmEmissionsOfEvent;
 	}
 
 	private Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> convertVehicleTypeId2VehicleInformationTuple(Id<VehicleType> vehicleTypeId) {
@@ -352,4 +394,4 @@ public class WarmEmissionAnalysisModule {
 		return emissionEventCounter;
 	}
 	
-}
\ No newline at end of file
+}
\ No newline at end of file
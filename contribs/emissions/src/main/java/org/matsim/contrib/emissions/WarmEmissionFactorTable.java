@@ -0,0 +1,203 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * WarmEmissionFactorTable.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.matsim.contrib.emissions.types.HbefaTrafficSituation;
+import org.matsim.contrib.emissions.types.HbefaVehicleAttributes;
+import org.matsim.contrib.emissions.types.HbefaVehicleCategory;
+import org.matsim.contrib.emissions.types.HbefaWarmEmissionFactor;
+import org.matsim.contrib.emissions.types.HbefaWarmEmissionFactorKey;
+import org.matsim.contrib.emissions.types.WarmPollutant;
+
+
+/**
+ * Precompiled form of the average and detailed HBEFA warm emission tables. Vehicle attributes and
+ * road categories are mapped to dense codes once; for each vehicle attributes code, speeds and
+ * emission factors are stored in primitive arrays indexed by
+ * [vehicle category][road category][traffic situation][pollutant]. Missing entries are NaN.
+ * <p>
+ * Only road categories reachable via the road type mapping are kept. The table is immutable and
+ * can be shared between threads.
+ */
+class WarmEmissionFactorTable {
+	static final int CATEGORY_COUNT = HbefaVehicleCategory.values().length;
+	static final int SITUATION_COUNT = HbefaTrafficSituation.values().length;
+	static final int POLLUTANT_COUNT = WarmPollutant.values().length;
+
+	// road types outside this range are looked up in a map
+	private static final int MAX_ROAD_TYPE_ARRAY_SIZE = 1 << 16;
+
+	private final Map<HbefaVehicleAttributes, Integer> vehicleAttributesCodes = new HashMap<>();
+	private final Map<String, Integer> roadCategoryCodes = new HashMap<>();
+	private final String[] roadCategories;
+
+	private final int[] roadTypeCodes;// by road type; -1 if not mapped
+	private final Map<Integer, Integer> otherRoadTypeCodes = new HashMap<>();
+
+	private final boolean detailed;
+	private final double[][] avgSpeeds;// by vehicle attributes code; null if not in the table
+	private final double[][] avgFactors;
+	private final double[][] detailedSpeeds;
+	private final double[][] detailedFactors;
+
+	WarmEmissionFactorTable(Map<Integer, String> roadTypeMapping,
+			Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable,
+			Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable) {
+
+		for (String roadCategory : roadTypeMapping.values()) {
+			if (roadCategory != null && !roadCategoryCodes.containsKey(roadCategory)) {
+				roadCategoryCodes.put(roadCategory, roadCategoryCodes.size());
+			}
+		}
+		roadCategories = new String[roadCategoryCodes.size()];
+		for (Entry<String, Integer> e : roadCategoryCodes.entrySet()) {
+			roadCategories[e.getValue()] = e.getKey();
+		}
+
+		int maxRoadType = -1;
+		for (Integer roadType : roadTypeMapping.keySet()) {
+			if (roadType >= 0 && roadType < MAX_ROAD_TYPE_ARRAY_SIZE) {
+				maxRoadType = Math.max(maxRoadType, roadType);
+			}
+		}
+		roadTypeCodes = new int[maxRoadType + 1];
+		Arrays.fill(roadTypeCodes, -1);
+		for (Entry<Integer, String> e : roadTypeMapping.entrySet()) {
+			if (e.getValue() == null) {
+				continue;
+			}
+			int code = roadCategoryCodes.get(e.getValue());
+			if (e.getKey() >= 0 && e.getKey() <= maxRoadType) {
+				roadTypeCodes[e.getKey()] = code;
+			} else {
+				otherRoadTypeCodes.put(e.getKey(), code);
+			}
+		}
+
+		addVehicleAttributes(avgHbefaWarmTable);
+		addVehicleAttributes(detailedHbefaWarmTable);
+
+		avgSpeeds = new double[vehicleAttributesCodes.size()][];
+		avgFactors = new double[vehicleAttributesCodes.size()][];
+		fill(avgHbefaWarmTable, avgSpeeds, avgFactors);
+
+		detailed = detailedHbefaWarmTable != null;
+		detailedSpeeds = new double[vehicleAttributesCodes.size()][];
+		detailedFactors = new double[vehicleAttributesCodes.size()][];
+		fill(detailedHbefaWarmTable, detailedSpeeds, detailedFactors);
+	}
+
+	private void addVehicleAttributes(Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> table) {
+		if (table == null) {
+			return;
+		}
+		for (HbefaWarmEmissionFactorKey key : table.keySet()) {
+			HbefaVehicleAttributes attributes = key.getHbefaVehicleAttributes();
+			if (!vehicleAttributesCodes.containsKey(attributes)) {
+				vehicleAttributesCodes.put(attributes, vehicleAttributesCodes.size());
+			}
+		}
+	}
+
+	private void fill(Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> table, double[][] speeds, double[][] factors) {
+		if (table == null) {
+			return;
+		}
+		int rowLength = CATEGORY_COUNT * roadCategories.length * SITUATION_COUNT * POLLUTANT_COUNT;
+		for (Entry<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> e : table.entrySet()) {
+			HbefaWarmEmissionFactorKey key = e.getKey();
+			Integer roadCategoryCode = roadCategoryCodes.get(key.getHbefaRoadCategory());
+			if (roadCategoryCode == null) {
+				continue; // not used by any road type
+			}
+
+			int attributesCode = vehicleAttributesCodes.get(key.getHbefaVehicleAttributes());
+			if (speeds[attributesCode] == null) {
+				speeds[attributesCode] = new double[rowLength];
+				factors[attributesCode] = new double[rowLength];
+				Arrays.fill(speeds[attributesCode], Double.NaN);
+				Arrays.fill(factors[attributesCode], Double.NaN);
+			}
+
+			int idx = getIndex(key.getHbefaVehicleCategory(), roadCategoryCode, key.getHbefaTrafficSituation(), key.getHbefaComponent());
+			speeds[attributesCode][idx] = e.getValue().getSpeed();
+			factors[attributesCode][idx] = e.getValue().getWarmEmissionFactor();
+		}
+	}
+
+	boolean isDetailed() {
+		return detailed;
+	}
+
+	/**
+	 * @return -1 if the attributes appear in neither table
+	 */
+	int getVehicleAttributesCode(HbefaVehicleAttributes attributes) {
+		Integer code = vehicleAttributesCodes.get(attributes);
+		return code == null ? -1 : code;
+	}
+
+	/**
+	 * @return -1 if the road type is not mapped to an HBEFA road category
+	 */
+	int getRoadCategoryCode(int roadType) {
+		if (roadType >= 0 && roadType < roadTypeCodes.length) {
+			return roadTypeCodes[roadType];
+		}
+		Integer code = otherRoadTypeCodes.get(roadType);
+		return code == null ? -1 : code;
+	}
+
+	String getRoadCategory(int roadCategoryCode) {
+		return roadCategories[roadCategoryCode];
+	}
+
+	int getIndex(HbefaVehicleCategory vehicleCategory, int roadCategoryCode, HbefaTrafficSituation trafficSituation, WarmPollutant warmPollutant) {
+		return ((vehicleCategory.ordinal() * roadCategories.length + roadCategoryCode) * SITUATION_COUNT
+				+ trafficSituation.ordinal()) * POLLUTANT_COUNT + warmPollutant.ordinal();
+	}
+
+	/**
+	 * @return speeds of the average table, or null if there are none for these vehicle attributes
+	 */
+	double[] getAvgSpeeds(int vehicleAttributesCode) {
+		return vehicleAttributesCode < 0 ? null : avgSpeeds[vehicleAttributesCode];
+	}
+
+	double[] getAvgFactors(int vehicleAttributesCode) {
+		return vehicleAttributesCode < 0 ? null : avgFactors[vehicleAttributesCode];
+	}
+
+	/**
+	 * @return speeds of the detailed table, or null if there are none for these vehicle attributes
+	 */
+	double[] getDetailedSpeeds(int vehicleAttributesCode) {
+		return vehicleAttributesCode < 0 ? null : detailedSpeeds[vehicleAttributesCode];
+	}
+
+	double[] getDetailedFactors(int vehicleAttributesCode) {
+		return vehicleAttributesCode < 0 ? null : detailedFactors[vehicleAttributesCode];
+	}
+}
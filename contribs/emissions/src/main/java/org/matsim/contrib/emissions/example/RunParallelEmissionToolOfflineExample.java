@@ -0,0 +1,65 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RunParallelEmissionToolOfflineExample.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions.example;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.contrib.emissions.EmissionModule;
+import org.matsim.contrib.emissions.OfflineEmissionCalculator;
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+
+/**
+ * Same as {@link RunEmissionToolOfflineExample}, but for the events files of several iterations and with
+ * several threads. Instead of emission events, emissions per link and hour are written; emission events
+ * are only written for the last iteration.
+ */
+public class RunParallelEmissionToolOfflineExample {
+
+	private final static String runDirectory = "./test/output/";
+	private static final String configFile = runDirectory + "output_config.xml.gz";
+
+	private static final double timeBinSize = 3600.;
+
+	// =======================================================================================================
+
+	public static void main (String[] args) throws Exception{
+		Config config = ConfigUtils.loadConfig(configFile, new EmissionsConfigGroup());
+
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		EmissionModule emissionModule = new EmissionModule(scenario);
+		emissionModule.createLookupTables();
+
+		int numberOfThreads = Runtime.getRuntime().availableProcessors();
+		OfflineEmissionCalculator calculator = new OfflineEmissionCalculator(emissionModule, scenario.getNetwork(),
+				numberOfThreads, timeBinSize);
+
+		int firstIteration = config.controler().getFirstIteration();
+		int lastIteration = config.controler().getLastIteration();
+		for(int iteration = firstIteration; iteration <= lastIteration; iteration++){
+			String eventsPath = runDirectory + "ITERS/it." + iteration + "/" + iteration;
+			String emissionEventOutputFile = iteration == lastIteration ? eventsPath + ".emission.events.offline.xml.gz" : null;
+			calculator.run(eventsPath + ".events.xml.gz", eventsPath + ".emission.totals.offline.txt.gz", emissionEventOutputFile);
+		}
+	}
+}
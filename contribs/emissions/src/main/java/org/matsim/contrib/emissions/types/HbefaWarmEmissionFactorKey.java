@@ -34,7 +34,7 @@ public class HbefaWarmEmissionFactorKey {
 	public HbefaWarmEmissionFactorKey(){
 	}
 
-	HbefaVehicleCategory getHbefaVehicleCategory() {
+	public HbefaVehicleCategory getHbefaVehicleCategory() {
 		return this.hbefaVehicleCategory;
 	}
 
@@ -42,7 +42,7 @@ public class HbefaWarmEmissionFactorKey {
 		this.hbefaVehicleCategory = hbefaVehicleCategory;
 	}
 
-	WarmPollutant getHbefaComponent(){
+	public WarmPollutant getHbefaComponent(){
 		return this.hbefaComponent;
 	}
 	
@@ -50,7 +50,7 @@ public class HbefaWarmEmissionFactorKey {
 		this.hbefaComponent = warmPollutant;
 	}
 
-	String getHbefaRoadCategory() {
+	public String getHbefaRoadCategory() {
 		return this.hbefaRoadCategory;
 	}
 
@@ -58,7 +58,7 @@ public class HbefaWarmEmissionFactorKey {
 		this.hbefaRoadCategory = hbefaRoadCategory;
 	}
 
-	HbefaTrafficSituation getHbefaTrafficSituation() {
+	public HbefaTrafficSituation getHbefaTrafficSituation() {
 		return this.hbefaTrafficSituation;
 	}
 
@@ -66,7 +66,7 @@ public class HbefaWarmEmissionFactorKey {
 		this.hbefaTrafficSituation = hbefaTrafficSituation;
 	}
 
-	HbefaVehicleAttributes getHbefaVehicleAttributes(){
+	public HbefaVehicleAttributes getHbefaVehicleAttributes(){
 		return this.hbefaVehicleAttributes;
 	}
 	
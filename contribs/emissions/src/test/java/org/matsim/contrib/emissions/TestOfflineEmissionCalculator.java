@@ -0,0 +1,167 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TestOfflineEmissionCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+
+/**
+ * Checks that {@link OfflineEmissionCalculator} yields the same emission events as the sequential
+ * emission handlers, and the same totals regardless of the number of threads.
+ */
+public class TestOfflineEmissionCalculator {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	private static final String inputDirectory = "./test/input/org/matsim/contrib/emissions/";
+
+	private static final String[] vehicleIds = { "555928.1#7278", "570902.2#10897", "570902.2#14854", "570902.2#2983",
+			"pv_car_10041_9162_1", "pv_car_5315_9162_1", "gv_4499", "gv_4500" };
+	private static final String[][] routes = { { "link12", "link23", "link36", "link69" },
+			{ "link14", "link45", "link56", "link65", "link54" }, { "link21", "link14", "link47", "link78", "link89" } };
+
+	@Test
+	public void testSameResultsAsSequentialCalculation() throws IOException {
+		EmissionsConfigGroup ecg = new EmissionsConfigGroup();
+		ecg.setEmissionRoadTypeMappingFile(inputDirectory + "sample_roadTypeMapping.txt");
+		ecg.setEmissionVehicleFile(inputDirectory + "sample_emissionVehicles.xml");
+		ecg.setAverageWarmEmissionFactorsFile(inputDirectory + "sample_EFA_HOT_vehcat_2005average.txt");
+		ecg.setAverageColdEmissionFactorsFile(inputDirectory + "sample_EFA_ColdStart_vehcat_2005average.txt");
+		ecg.setUsingDetailedEmissionCalculation(true);
+		ecg.setDetailedWarmEmissionFactorsFile(inputDirectory + "sample_EFA_HOT_SubSegm_2005detailed.txt");
+		ecg.setDetailedColdEmissionFactorsFile(inputDirectory + "sample_EFA_ColdStart_SubSegm_2005detailed.txt");
+		Config config = ConfigUtils.createConfig(ecg);
+		config.network().setInputFile(inputDirectory + "sample_network.xml");
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		String eventsFile = utils.getOutputDirectory() + "events.xml";
+		writeEvents(eventsFile);
+
+		EmissionModule emissionModule = new EmissionModule(scenario);
+		emissionModule.createLookupTables();
+		emissionModule.createEmissionHandler();
+
+		// sequential calculation as in RunEmissionToolOfflineExample
+		String sequentialEmissionEventsFile = utils.getOutputDirectory() + "sequential.emission.events.xml";
+		String sequentialTotalsFile = utils.getOutputDirectory() + "sequential.emission.totals.txt";
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		eventsManager.addHandler(emissionModule.getWarmEmissionHandler());
+		eventsManager.addHandler(emissionModule.getColdEmissionHandler());
+		EventWriterXML emissionEventWriter = new EventWriterXML(sequentialEmissionEventsFile);
+		emissionModule.getEmissionEventsManager().addHandler(emissionEventWriter);
+		LinkEmissionAggregator aggregator = new LinkEmissionAggregator(scenario.getNetwork(), 900.);
+		emissionModule.getEmissionEventsManager().addHandler(aggregator);
+		new MatsimEventsReader(eventsManager).readFile(eventsFile);
+		emissionEventWriter.closeFile();
+		aggregator.writeFile(sequentialTotalsFile);
+
+		List<String> sequentialEmissionEvents = readLines(sequentialEmissionEventsFile);
+		List<String> sequentialTotals = readLines(sequentialTotalsFile);
+		Assert.assertTrue("There should be emission events.", sequentialEmissionEvents.size() > 100);
+		Assert.assertTrue("There should be emission totals.", sequentialTotals.size() > 10);
+
+		for(int numberOfThreads : new int[] { 1, 3 }){
+			String emissionEventsFile = utils.getOutputDirectory() + numberOfThreads + ".emission.events.xml";
+			String totalsFile = utils.getOutputDirectory() + numberOfThreads + ".emission.totals.txt";
+			new OfflineEmissionCalculator(emissionModule, scenario.getNetwork(), numberOfThreads, 900.)
+					.run(eventsFile, totalsFile, emissionEventsFile);
+
+			Assert.assertEquals(sequentialEmissionEvents, readLines(emissionEventsFile));
+			Assert.assertEquals(sequentialTotals, readLines(totalsFile));
+		}
+	}
+
+	// each vehicle drives its route a number of times; enough events for several batches of the calculator
+	private static void writeEvents(String eventsFile) {
+		List<Event> events = new ArrayList<>();
+		for(int v = 0; v < vehicleIds.length; v++){
+			Id<Vehicle> vehicleId = Id.create(vehicleIds[v], Vehicle.class);
+			Id<Person> personId = Id.create("person" + v, Person.class);
+			String[] route = routes[v % routes.length];
+			double time = 100. * v;
+			for(int trip = 0; trip < 300; trip++){
+				Id<Link> firstLinkId = Id.createLinkId(route[0]);
+				events.add(new VehicleEntersTrafficEvent(time, personId, firstLinkId, vehicleId, TransportMode.car, 1.0));
+				for(int l = 1; l < route.length; l++){
+					events.add(new LinkLeaveEvent(time, vehicleId, Id.createLinkId(route[l - 1])));
+					events.add(new LinkEnterEvent(time, vehicleId, Id.createLinkId(route[l])));
+					time += 40. + 7. * ((v + l + trip) % 5);
+				}
+				Id<Link> lastLinkId = Id.createLinkId(route[route.length - 1]);
+				events.add(new VehicleLeavesTrafficEvent(time, personId, lastLinkId, vehicleId, TransportMode.car, 1.0));
+				time += 600. + 300. * ((v + trip) % 4);
+			}
+		}
+
+		Collections.sort(events, new Comparator<Event>() {
+			@Override
+			public int compare(Event e1, Event e2) {
+				return Double.compare(e1.getTime(), e2.getTime());
+			}
+		});
+		EventWriterXML writer = new EventWriterXML(eventsFile);
+		for(Event event : events){
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+	}
+
+	private static List<String> readLines(String file) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = IOUtils.getBufferedReader(file)) {
+			String line;
+			while((line = reader.readLine()) != null){
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+}
@@ -772,6 +772,51 @@ public class TestWarmEmissionAnalysisModule {
 		
 	}
 	
+	@Test
+	public void testCheckVehicleInfoAndCalculateWarmEmissionsIntoArray(){
+		// the array variant must give the same values as the map variant, also when rescaling
+		Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable = new HashMap<>();
+		Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable = new HashMap<>();
+		Map<Integer, String> roadTypeMapping = new HashMap<>();
+		fillAverageTable(avgHbefaWarmTable);
+		fillDetailedTable(detailedHbefaWarmTable);
+		fillRoadTypeMapping(roadTypeMapping);
+
+		double rescaleF = 1.0003;
+		WarmEmissionAnalysisModuleParameter weamParameter = new WarmEmissionAnalysisModuleParameter(roadTypeMapping, avgHbefaWarmTable, detailedHbefaWarmTable);
+		WarmEmissionAnalysisModule weam = new WarmEmissionAnalysisModule(weamParameter, new HandlerToTestEmissionAnalysisModules(), rescaleF);
+
+		VehiclesFactory vehFac = VehicleUtils.getFactory();
+		// case 1 - data in both tables -> use detailed
+		Id<VehicleType> petrolVehicleTypeId = Id.create(passengercar+ ";"+petrolTechnology+";"+petrolSizeClass+";"+petrolConcept, VehicleType.class);
+		Vehicle petrolVehicle = vehFac.createVehicle(Id.create("veh 1", Vehicle.class), vehFac.createVehicleType(petrolVehicleTypeId));
+		// case 3 - stop go entry in both tables, free flow entry in average table -> use average
+		Id<VehicleType> dieselVehicleTypeId = Id.create(passengercar +";"+ dieselTechnology+ ";"+ dieselSizeClass+";"+dieselConcept, VehicleType.class);
+		Vehicle dieselVehicle = vehFac.createVehicle(Id.create("veh 3", Vehicle.class), vehFac.createVehicleType(dieselVehicleTypeId));
+
+		double linkLength = 2000.;
+		double[] warmEmissionsArray = new double[numberOfWarmPollutants];
+
+		// fraction of free flow and stop&go
+		double travelTime = .5 * linkLength/petrolSpeedFf *3.6 + .5* (linkLength/petrolSpeedSg)*3.6;
+		warmEmissions = weam.checkVehicleInfoAndCalculateWarmEmissions(petrolVehicle, roadType, petrolSpeedFf/3.6, linkLength, travelTime);
+		weam.checkVehicleInfoAndCalculateWarmEmissions(petrolVehicle, roadType, petrolSpeedFf/3.6, linkLength, travelTime, warmEmissionsArray);
+		for(WarmPollutant wp : WarmPollutant.values()){
+			Assert.assertEquals(rescaleF*(detailedPetrolFactorFf + .01)*linkLength/2000., warmEmissions.get(wp), MatsimTestUtils.EPSILON);
+			Assert.assertEquals(warmEmissions.get(wp), warmEmissionsArray[wp.ordinal()], 0.);
+		}
+
+		// free flow, values from the average table
+		travelTime = linkLength/dieselFreeVelocity*3.6;
+		warmEmissions = weam.checkVehicleInfoAndCalculateWarmEmissions(dieselVehicle, roadType, dieselFreeVelocity/3.6, linkLength, travelTime);
+		weam.checkVehicleInfoAndCalculateWarmEmissions(dieselVehicle, roadType, dieselFreeVelocity/3.6, linkLength, travelTime, warmEmissionsArray);
+		for(WarmPollutant wp : WarmPollutant.values()){
+			Assert.assertEquals(rescaleF*avgDieselFactorFf*linkLength/1000., warmEmissions.get(wp), MatsimTestUtils.EPSILON);
+			Assert.assertEquals(warmEmissions.get(wp), warmEmissionsArray[wp.ordinal()], 0.);
+		}
+		Assert.assertEquals(4, weam.getWarmEmissionEventCounter());
+	}
+
 	private void setUp() {
 		roadTypeMapping = new HashMap<>();
 		avgHbefaWarmTable = new HashMap<>();
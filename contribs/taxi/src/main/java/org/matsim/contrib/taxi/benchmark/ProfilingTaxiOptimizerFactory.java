@@ -0,0 +1,108 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.taxi.optimizer.*;
+import org.matsim.core.config.ConfigGroup;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.vehicles.Vehicle;
+
+
+/**
+ * Creates optimizers with {@link DefaultTaxiOptimizerFactory}, wrapped by
+ * {@link ProfilingTaxiOptimizer}. The optimizers get a travel disutility that counts the link cost
+ * evaluations, which measures the routing effort of all routers used by the optimizer (except the
+ * one of the scheduler).
+ */
+public class ProfilingTaxiOptimizerFactory
+    implements TaxiOptimizerFactory
+{
+    private final TaxiOptimizerFactory delegate = new DefaultTaxiOptimizerFactory();
+
+    private ProfilingTaxiOptimizer optimizer;
+    private CountingTravelDisutility travelDisutility;
+
+
+    @Override
+    public TaxiOptimizer createTaxiOptimizer(TaxiOptimizerContext optimContext,
+            ConfigGroup optimizerConfigGroup)
+    {
+        travelDisutility = new CountingTravelDisutility(optimContext.travelDisutility);
+        TaxiOptimizerContext countingContext = new TaxiOptimizerContext(optimContext.taxiData,
+                optimContext.scenario, optimContext.timer, optimContext.travelTime,
+                travelDisutility, optimContext.scheduler);
+
+        TaxiOptimizer taxiOptimizer = delegate.createTaxiOptimizer(countingContext,
+                optimizerConfigGroup);
+        travelDisutility.count.set(0);//skip pre-processing (e.g. by A*)
+
+        optimizer = new ProfilingTaxiOptimizer(taxiOptimizer);
+        return optimizer;
+    }
+
+
+    /**
+     * @return the optimizer created for the last mobsim
+     */
+    ProfilingTaxiOptimizer getOptimizer()
+    {
+        return optimizer;
+    }
+
+
+    long getLinkCostEvaluations()
+    {
+        return travelDisutility.count.get();
+    }
+
+
+    private static class CountingTravelDisutility
+        implements TravelDisutility
+    {
+        private final TravelDisutility delegate;
+        private final AtomicLong count = new AtomicLong();//routers may run in parallel
+
+
+        private CountingTravelDisutility(TravelDisutility delegate)
+        {
+            this.delegate = delegate;
+        }
+
+
+        @Override
+        public double getLinkTravelDisutility(Link link, double time, Person person,
+                Vehicle vehicle)
+        {
+            count.incrementAndGet();
+            return delegate.getLinkTravelDisutility(link, time, person, vehicle);
+        }
+
+
+        @Override
+        public double getLinkMinimumTravelDisutility(Link link)
+        {
+            return delegate.getLinkMinimumTravelDisutility(link);
+        }
+    }
+}
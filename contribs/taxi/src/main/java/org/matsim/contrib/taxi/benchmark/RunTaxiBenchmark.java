@@ -74,7 +74,7 @@ public class RunTaxiBenchmark
     }
 
 
-    private static Scenario loadBenchmarkScenario(Config config, int interval, int maxTime)
+    static Scenario loadBenchmarkScenario(Config config, int interval, int maxTime)
     {
         Scenario scenario = new ScenarioBuilder(config).build();
 
@@ -0,0 +1,204 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.benchmark;
+
+import java.io.*;
+import java.util.*;
+
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.trafficmonitoring.VrpTravelTimeModules;
+import org.matsim.contrib.dynagent.run.DynQSimModule;
+import org.matsim.contrib.taxi.data.TaxiData;
+import org.matsim.contrib.taxi.optimizer.*;
+import org.matsim.contrib.taxi.optimizer.DefaultTaxiOptimizerFactory.OptimizerType;
+import org.matsim.contrib.taxi.optimizer.assignment.AssignmentTaxiOptimizerParams;
+import org.matsim.contrib.taxi.run.*;
+import org.matsim.core.config.*;
+import org.matsim.core.controler.*;
+import org.matsim.core.utils.io.IOUtils;
+
+
+/**
+ * Compares the computational performance of taxi optimizers (see {@link TaxiPerformanceStats}).
+ * Each optimizer type is run with each fleet size on the same generated demand: requests between
+ * random links, uniformly distributed over one hour, served by taxis starting at random links. The
+ * network, the optimizer params (shared by all types) and the remaining settings are taken from
+ * the config file, as in {@link RunTaxiBenchmark}.
+ * <p>
+ * Each case is written to a subdirectory of the output directory, and all cases are summarised in
+ * <code>performance_stats.csv</code>.
+ */
+public class RunTaxiPerformanceBenchmark
+{
+    private static final int DEMAND_DURATION = 3600;
+    private static final int TAXI_T1 = 30 * 3600;
+
+
+    public static void run(String configFile, OptimizerType[] optimizerTypes, int[] fleetSizes,
+            int requestCount, int runs)
+    {
+        String outputDir = loadConfig(configFile).controler().getOutputDirectory();
+        new File(outputDir).mkdirs();
+
+        PrintWriter pw = new PrintWriter(
+                IOUtils.getBufferedWriter(outputDir + "/performance_stats.csv"));
+        pw.println(TaxiPerformanceStats.HEADER);
+
+        for (OptimizerType type : optimizerTypes) {
+            for (int fleetSize : fleetSizes) {
+                TaxiPerformanceStats stats = runCase(configFile, type, fleetSize, requestCount,
+                        runs);
+                stats.printRow(pw);
+                pw.flush();
+            }
+        }
+
+        pw.close();
+    }
+
+
+    private static Config loadConfig(String configFile)
+    {
+        Config config = ConfigUtils.loadConfig(configFile, new TaxiConfigGroup());
+        config.addConfigConsistencyChecker(new TaxiBenchmarkConfigConsistencyChecker());
+        config.checkConsistency();
+        return config;
+    }
+
+
+    private static TaxiPerformanceStats runCase(String configFile, OptimizerType type,
+            int fleetSize, int requestCount, int runs)
+    {
+        Config config = loadConfig(configFile);
+        TaxiConfigGroup taxiCfg = (TaxiConfigGroup)config.getModule(TaxiConfigGroup.GROUP_NAME);
+        setOptimizerType(taxiCfg.getOptimizerConfigGroup(), type);
+
+        config.plans().setInputFile(null);//demand is generated
+        config.controler().setOutputDirectory(
+                config.controler().getOutputDirectory() + "/" + type + "_" + fleetSize);
+        config.controler().setLastIteration(runs - 1);
+
+        Scenario scenario = RunTaxiBenchmark.loadBenchmarkScenario(config, 15 * 60, 30 * 3600);
+        Random random = new Random(config.global().getRandomSeed());
+        List<Link> links = new ArrayList<>(scenario.getNetwork().getLinks().values());
+        generateRequests(scenario.getPopulation(), links, requestCount, random);
+        final TaxiData taxiData = generateTaxis(links, fleetSize, random);
+
+        final ProfilingTaxiOptimizerFactory optimizerFactory = new ProfilingTaxiOptimizerFactory();
+        final TaxiPerformanceStats stats = new TaxiPerformanceStats(type.name(), taxiData,
+                optimizerFactory);
+
+        Controler controler = new Controler(scenario);
+        controler.addOverridingModule(new TaxiModule(taxiData, taxiCfg));
+        controler.addOverridingModule(VrpTravelTimeModules.createFreespeedTravelTimeModule(false));
+        controler.addOverridingModule(new DynQSimModule<>(TaxiQSimProvider.class));
+
+        controler.addOverridingModule(new AbstractModule() {
+            @Override
+            public void install()
+            {
+                bind(TaxiOptimizerFactory.class).toInstance(optimizerFactory);
+                addControlerListenerBinding().toInstance(stats);
+            };
+        });
+
+        controler.run();
+        return stats;
+    }
+
+
+    /**
+     * All types use the same params; the ones missing for a given type are set to their typical
+     * values.
+     */
+    private static void setOptimizerType(ConfigGroup optimizerCfg, OptimizerType type)
+    {
+        optimizerCfg.addParam(DefaultTaxiOptimizerFactory.TYPE, type.name());
+        optimizerCfg.addParam(AbstractTaxiOptimizerParams.ID, type.name());
+
+        if (type == OptimizerType.ASSIGNMENT) {
+            Map<String, String> params = optimizerCfg.getParams();
+            if (!params.containsKey(AssignmentTaxiOptimizerParams.MODE)) {
+                optimizerCfg.addParam(AssignmentTaxiOptimizerParams.MODE, "DSE");
+            }
+            if (!params.containsKey(AssignmentTaxiOptimizerParams.VEH_PLANNING_HORIZON_OVERSUPPLY)) {
+                optimizerCfg.addParam(AssignmentTaxiOptimizerParams.VEH_PLANNING_HORIZON_OVERSUPPLY,
+                        "120");
+            }
+            if (!params
+                    .containsKey(AssignmentTaxiOptimizerParams.VEH_PLANNING_HORIZON_UNDERSUPPLY)) {
+                optimizerCfg.addParam(
+                        AssignmentTaxiOptimizerParams.VEH_PLANNING_HORIZON_UNDERSUPPLY, "30");
+            }
+        }
+    }
+
+
+    private static void generateRequests(Population population, List<Link> links, int count,
+            Random random)
+    {
+        PopulationFactory pf = population.getFactory();
+        for (int i = 0; i < count; i++) {
+            Link fromLink = links.get(random.nextInt(links.size()));
+            Link toLink;
+            do {
+                toLink = links.get(random.nextInt(links.size()));
+            }
+            while (toLink == fromLink);
+
+            Activity from = pf.createActivityFromLinkId("dummy", fromLink.getId());
+            from.setEndTime(random.nextInt(DEMAND_DURATION));
+            Activity to = pf.createActivityFromLinkId("dummy", toLink.getId());
+
+            Plan plan = pf.createPlan();
+            plan.addActivity(from);
+            plan.addLeg(pf.createLeg(TaxiModule.TAXI_MODE));
+            plan.addActivity(to);
+
+            Person person = pf.createPerson(Id.createPersonId("passenger_" + i));
+            person.addPlan(plan);
+            population.addPerson(person);
+        }
+    }
+
+
+    private static TaxiData generateTaxis(List<Link> links, int count, Random random)
+    {
+        TaxiData taxiData = new TaxiData();
+        for (int i = 0; i < count; i++) {
+            Link startLink = links.get(random.nextInt(links.size()));
+            taxiData.addVehicle(new VehicleImpl(Id.create("taxi_" + i, Vehicle.class), startLink,
+                    1, 0, TAXI_T1));
+        }
+        return taxiData;
+    }
+
+
+    public static void main(String[] args)
+    {
+        run("./src/main/resources/mielec_2014_02/config.xml",
+                new OptimizerType[] { OptimizerType.RULE_BASED, OptimizerType.ASSIGNMENT,
+                        OptimizerType.ZONAL, OptimizerType.FIFO },
+                new int[] { 25, 50, 100 }, 1000, 3);
+    }
+}
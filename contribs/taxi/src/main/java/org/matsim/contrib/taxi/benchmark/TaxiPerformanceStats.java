@@ -0,0 +1,121 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.benchmark;
+
+import java.io.PrintWriter;
+
+import org.apache.commons.math3.stat.descriptive.*;
+import org.matsim.contrib.taxi.data.TaxiData;
+import org.matsim.contrib.taxi.optimizer.ProfilingTaxiOptimizer;
+import org.matsim.contrib.taxi.util.stats.*;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+
+
+/**
+ * Computational performance of one optimizer and fleet size, averaged over all runs (iterations).
+ * One CSV row per benchmark case, so that the rows of different cases can be compared directly.
+ */
+public class TaxiPerformanceStats
+    implements AfterMobsimListener
+{
+    static final String HEADER = "optimizer,n,m,"//
+            + "Reoptimizations,"//
+            + "ReoptTime_mean[ms],"//
+            + "ReoptTime_p95[ms],"//
+            + "ReoptTime_max[ms],"//
+            + "OptimTime[s],"//
+            + "LinkCostEvals,"//
+            + "SimSteps,"//
+            + "MobsimTime[s],"//
+            + "SimStepsPerSec,"//
+            + "PassWait";
+
+    private final String optimizerName;
+    private final TaxiData taxiData;
+    private final ProfilingTaxiOptimizerFactory optimizerFactory;
+
+    private final SummaryStatistics reoptimizations = new SummaryStatistics();
+    private final SummaryStatistics meanReoptimizationTime = new SummaryStatistics();
+    private final SummaryStatistics pc95ReoptimizationTime = new SummaryStatistics();
+    private final SummaryStatistics maxReoptimizationTime = new SummaryStatistics();
+    private final SummaryStatistics optimizerTime = new SummaryStatistics();
+    private final SummaryStatistics linkCostEvaluations = new SummaryStatistics();
+    private final SummaryStatistics simSteps = new SummaryStatistics();
+    private final SummaryStatistics mobsimTime = new SummaryStatistics();
+    private final SummaryStatistics passengerWaitTime = new SummaryStatistics();
+
+
+    public TaxiPerformanceStats(String optimizerName, TaxiData taxiData,
+            ProfilingTaxiOptimizerFactory optimizerFactory)
+    {
+        this.optimizerName = optimizerName;
+        this.taxiData = taxiData;
+        this.optimizerFactory = optimizerFactory;
+    }
+
+
+    @Override
+    public void notifyAfterMobsim(AfterMobsimEvent event)
+    {
+        ProfilingTaxiOptimizer optimizer = optimizerFactory.getOptimizer();
+        DescriptiveStatistics reoptimizationTimes = optimizer.getReoptimizationTimes();
+
+        reoptimizations.addValue(reoptimizationTimes.getN());
+        if (reoptimizationTimes.getN() > 0) {
+            meanReoptimizationTime.addValue(reoptimizationTimes.getMean());
+            pc95ReoptimizationTime.addValue(reoptimizationTimes.getPercentile(95));
+            maxReoptimizationTime.addValue(reoptimizationTimes.getMax());
+        }
+        optimizerTime.addValue(optimizer.getOptimizerTime());
+        linkCostEvaluations.addValue(optimizerFactory.getLinkCostEvaluations());
+        simSteps.addValue(optimizer.getSimSteps());
+        mobsimTime.addValue(optimizer.getMobsimTime());
+
+        TaxiStats singleRunStats = new TaxiStatsCalculator(taxiData.getVehicles().values())
+                .getStats();
+        passengerWaitTime.addValue(singleRunStats.passengerWaitTimes.getMean());
+    }
+
+
+    void printRow(PrintWriter pw)
+    {
+        pw.printf("%s,%d,%d,"//
+                + "%.0f,%.3f,%.3f,%.3f,%.3f,"//
+                + "%.0f,%.0f,%.3f,%.0f,"//
+                + "%.0f\n", //
+                optimizerName, //
+                taxiData.getRequests().size(), //
+                taxiData.getVehicles().size(), //
+                //
+                reoptimizations.getMean(), //
+                meanReoptimizationTime.getMean(), //
+                pc95ReoptimizationTime.getMean(), //
+                maxReoptimizationTime.getMean(), //
+                optimizerTime.getMean(), //
+                //
+                linkCostEvaluations.getMean(), //
+                simSteps.getMean(), //
+                mobsimTime.getMean(), //
+                simSteps.getSum() / mobsimTime.getSum(), //
+                //
+                passengerWaitTime.getMean());
+    }
+}
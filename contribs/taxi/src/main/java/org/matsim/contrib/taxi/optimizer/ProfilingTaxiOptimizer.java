@@ -0,0 +1,142 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.matsim.contrib.dvrp.data.Request;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.core.mobsim.framework.events.*;
+import org.matsim.core.mobsim.framework.listeners.*;
+
+
+/**
+ * Measures the wall time spent in the wrapped optimizer during one mobsim. A reoptimization is a
+ * sim step in which {@link AbstractTaxiOptimizer} has scheduled the unplanned requests; for other
+ * optimizers, every sim step is counted as a reoptimization.
+ */
+public class ProfilingTaxiOptimizer
+    implements TaxiOptimizer, MobsimInitializedListener, MobsimBeforeCleanupListener
+{
+    private final TaxiOptimizer delegate;
+
+    private final DescriptiveStatistics reoptimizationTimes = new DescriptiveStatistics();//[ms]
+    private long optimizerNanos = 0;//all calls, including requestSubmitted() and nextTask()
+    private int simSteps = 0;
+    private long mobsimStartNanos;
+    private long mobsimNanos;
+
+
+    public ProfilingTaxiOptimizer(TaxiOptimizer delegate)
+    {
+        this.delegate = delegate;
+    }
+
+
+    @Override
+    public void notifyMobsimInitialized(@SuppressWarnings("rawtypes") MobsimInitializedEvent e)
+    {
+        mobsimStartNanos = System.nanoTime();
+    }
+
+
+    @Override
+    public void notifyMobsimBeforeSimStep(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e)
+    {
+        AbstractTaxiOptimizer abstractOptimizer = delegate instanceof AbstractTaxiOptimizer ? //
+                (AbstractTaxiOptimizer)delegate : null;
+        boolean reoptimizationRequired = abstractOptimizer == null
+                || abstractOptimizer.requiresReoptimization;
+
+        long t0 = System.nanoTime();
+        delegate.notifyMobsimBeforeSimStep(e);
+        long nanos = System.nanoTime() - t0;
+
+        optimizerNanos += nanos;
+        simSteps++;
+
+        if (reoptimizationRequired
+                && (abstractOptimizer == null || !abstractOptimizer.requiresReoptimization)) {
+            reoptimizationTimes.addValue(nanos / 1e6);
+        }
+    }
+
+
+    @Override
+    public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e)
+    {
+        mobsimNanos = System.nanoTime() - mobsimStartNanos;
+
+        //only this wrapper is registered as a mobsim listener
+        if (delegate instanceof MobsimBeforeCleanupListener) {
+            ((MobsimBeforeCleanupListener)delegate).notifyMobsimBeforeCleanup(e);
+        }
+    }
+
+
+    @Override
+    public void requestSubmitted(Request request)
+    {
+        long t0 = System.nanoTime();
+        delegate.requestSubmitted(request);
+        optimizerNanos += System.nanoTime() - t0;
+    }
+
+
+    @Override
+    public void nextTask(Schedule<? extends Task> schedule)
+    {
+        long t0 = System.nanoTime();
+        delegate.nextTask(schedule);
+        optimizerNanos += System.nanoTime() - t0;
+    }
+
+
+    @Override
+    public void nextLinkEntered(DriveTask driveTask)
+    {
+        long t0 = System.nanoTime();
+        delegate.nextLinkEntered(driveTask);
+        optimizerNanos += System.nanoTime() - t0;
+    }
+
+
+    public DescriptiveStatistics getReoptimizationTimes()
+    {
+        return reoptimizationTimes;
+    }
+
+
+    public double getOptimizerTime()
+    {
+        return optimizerNanos / 1e9;
+    }
+
+
+    public int getSimSteps()
+    {
+        return simSteps;
+    }
+
+
+    public double getMobsimTime()
+    {
+        return mobsimNanos / 1e9;
+    }
+}
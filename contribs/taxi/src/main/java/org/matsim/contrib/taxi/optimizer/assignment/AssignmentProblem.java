@@ -21,13 +21,16 @@ package org.matsim.contrib.taxi.optimizer.assignment;
 
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.*;
 import org.matsim.contrib.dvrp.path.*;
 import org.matsim.contrib.locationchoice.router.BackwardFastMultiNodeDijkstra;
 import org.matsim.contrib.taxi.data.TaxiRequest;
 import org.matsim.contrib.taxi.optimizer.*;
+import org.matsim.contrib.taxi.optimizer.assignment.AssignmentTaxiOptimizerParams.Solver;
 import org.matsim.contrib.taxi.optimizer.filter.*;
 import org.matsim.contrib.taxi.scheduler.*;
 import org.matsim.core.router.*;
@@ -41,8 +44,9 @@ public class AssignmentProblem
     private final TaxiOptimizerContext optimContext;
     private final AssignmentTaxiOptimizerParams params;
 
-    private final MultiNodeDijkstra router;
-    private final BackwardFastMultiNodeDijkstra backwardRouter;
+    private final ThreadLocal<AssignmentRouters> routers;
+    private final ExecutorService executor;
+    private final AuctionWarmStart auctionWarmStart;
 
     private final KStraightLineNearestRequestFilter requestFilter;
     private final KStraightLineNearestVehicleDepartureFilter vehicleFilter;
@@ -51,14 +55,21 @@ public class AssignmentProblem
     private AssignmentRequestData rData;
 
 
-    public AssignmentProblem(TaxiOptimizerContext optimContext,
-            AssignmentTaxiOptimizerParams params, MultiNodeDijkstra router,
-            BackwardFastMultiNodeDijkstra backwardRouter)
+    /**
+     * @param routers routers of the calling thread and of the threads of the executor
+     * @param executor runs the path searches for different vehicles (or requests) in parallel;
+     *            <code>null</code> for computing them sequentially
+     * @param auctionWarmStart the state of the previous auction; <code>null</code> for no warm start
+     */
+    AssignmentProblem(TaxiOptimizerContext optimContext, AssignmentTaxiOptimizerParams params,
+            ThreadLocal<AssignmentRouters> routers, ExecutorService executor,
+            AuctionWarmStart auctionWarmStart)
     {
         this.optimContext = optimContext;
         this.params = params;
-        this.router = router;
-        this.backwardRouter = backwardRouter;
+        this.routers = routers;
+        this.executor = executor;
+        this.auctionWarmStart = auctionWarmStart;
 
         this.requestFilter = new KStraightLineNearestRequestFilter(optimContext.scheduler,
                 params.nearestRequestsLimit);
@@ -71,8 +82,14 @@ public class AssignmentProblem
     {
         if (initDataAndCheckIfSchedulingRequired(unplannedRequests)) {
             RequestPathData[][] pathDataMatrix = createPathDataMatrix();
-            double[][] costMatrix = createCostMatrix(pathDataMatrix);
-            int[] assignments = new HungarianAlgorithm(costMatrix).execute();
+            int[] assignments;
+            if (params.solver == Solver.AUCTION) {
+                assignments = solveWithAuction(pathDataMatrix);
+            }
+            else {
+                double[][] costMatrix = createCostMatrix(pathDataMatrix);
+                assignments = new HungarianAlgorithm(costMatrix).execute();
+            }
             scheduleRequests(assignments, pathDataMatrix, unplannedRequests);
         }
     }
@@ -136,120 +153,207 @@ public class AssignmentProblem
     }
 
 
-    private void calcPathsForVehicles(RequestPathData[][] pathDataMatrix)
+    private interface PathSearch
     {
-        for (int v = 0; v < vData.dimension; v++) {
-            VehicleData.Entry departure = vData.entries.get(v);
-            Node fromNode = departure.link.getToNode();
-
-            Map<Id<Node>, InitialNode> reqInitialNodes = new HashMap<>();
-            Map<Id<Node>, Path> pathsToReqNodes = new HashMap<>();
+        void search(int idx, AssignmentRouters routers);
+    }
 
-            Iterable<TaxiRequest> filteredReqs = requestFilter
-                    .filterRequestsForVehicle(rData.requests, departure.vehicle);
 
-            for (TaxiRequest req : filteredReqs) {
-                int r = rData.reqIdx.get(req.getId());
-                RequestPathData pathData = pathDataMatrix[v][r] = new RequestPathData();
-                Link reqLink = req.getFromLink();
+    /**
+     * Runs the searches for <code>0, ..., count-1</code>. The searches must not write to the
+     * same data.
+     */
+    private void runPathSearches(int count, final PathSearch pathSearch)
+    {
+        if (executor == null || count < 2) {
+            AssignmentRouters threadRouters = routers.get();
+            for (int i = 0; i < count; i++) {
+                pathSearch.search(i, threadRouters);
+            }
+            return;
+        }
 
-                if (departure.link == reqLink) {
-                    //hack: we are basically there (on the same link), so let's pretend reqNode == fromNode
-                    pathData.node = fromNode;
-                    pathData.delay = 0;
-                }
-                else {
-                    pathData.node = reqLink.getFromNode();
-                    //simplified, but works for taxis, since pickup trips are short (about 5 mins)
-                    pathData.delay = 1 + reqLink.getFreespeed(departure.time);
+        //more chunks than threads, so that the threads finish at about the same time
+        int chunks = Math.min(count, 4 * params.threads);
+        List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int from = (int)((long)c * count / chunks);
+            final int to = (int)((long) (c + 1) * count / chunks);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call()
+                {
+                    AssignmentRouters threadRouters = routers.get();
+                    for (int i = from; i < to; i++) {
+                        pathSearch.search(i, threadRouters);
+                    }
+                    return null;
                 }
+            });
+        }
 
-                if (!reqInitialNodes.containsKey(pathData.node.getId())) {
-                    InitialNode newInitialNode = new InitialNode(pathData.node, 0, 0);
-                    reqInitialNodes.put(pathData.node.getId(), newInitialNode);
-                }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
             }
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
-            ImaginaryNode toNodes = router.createImaginaryNode(reqInitialNodes.values());
-            Path path = router.calcLeastCostPath(fromNode, toNodes, departure.time, null, null);
-            Node bestReqNode = path.nodes.get(path.nodes.size() - 1);
-            pathsToReqNodes.put(bestReqNode.getId(), path);
-
-            //get paths for all remaining endNodes 
-            for (InitialNode i : reqInitialNodes.values()) {
-                Node reqNode = i.node;
-                if (reqNode.getId() != bestReqNode.getId()) {
-                    path = router.constructPath(fromNode, reqNode, departure.time);
-                    pathsToReqNodes.put(reqNode.getId(), path);
-                }
+
+    private void calcPathsForVehicles(final RequestPathData[][] pathDataMatrix)
+    {
+        final KSpatialIndexNearestRequestFilter spatialRequestFilter = params.spatialIndexFilter
+                ? new KSpatialIndexNearestRequestFilter(rData.requests, params.nearestRequestsLimit)
+                : null;
+
+        runPathSearches(vData.dimension, new PathSearch() {
+            @Override
+            public void search(int v, AssignmentRouters threadRouters)
+            {
+                VehicleData.Entry departure = vData.entries.get(v);
+                Iterable<TaxiRequest> filteredReqs = spatialRequestFilter != null
+                        ? spatialRequestFilter.filterRequestsForDeparture(departure.link)
+                        : requestFilter.filterRequestsForVehicle(rData.requests, departure.vehicle);
+                calcPathsForVehicle(departure, filteredReqs, pathDataMatrix[v],
+                        threadRouters.router);
             }
+        });
+    }
 
-            for (TaxiRequest req : filteredReqs) {
-                int r = rData.reqIdx.get(req.getId());
-                RequestPathData pathData = pathDataMatrix[v][r];
-                pathData.path = pathsToReqNodes.get(pathData.node.getId());
+
+    private void calcPathsForVehicle(VehicleData.Entry departure,
+            Iterable<TaxiRequest> filteredReqs, RequestPathData[] pathDataRow,
+            MultiNodeDijkstra router)
+    {
+        Node fromNode = departure.link.getToNode();
+
+        Map<Id<Node>, InitialNode> reqInitialNodes = new HashMap<>();
+        Map<Id<Node>, Path> pathsToReqNodes = new HashMap<>();
+
+        for (TaxiRequest req : filteredReqs) {
+            int r = rData.reqIdx.get(req.getId());
+            RequestPathData pathData = pathDataRow[r] = new RequestPathData();
+            Link reqLink = req.getFromLink();
+
+            if (departure.link == reqLink) {
+                //hack: we are basically there (on the same link), so let's pretend reqNode == fromNode
+                pathData.node = fromNode;
+                pathData.delay = 0;
+            }
+            else {
+                pathData.node = reqLink.getFromNode();
+                //simplified, but works for taxis, since pickup trips are short (about 5 mins)
+                pathData.delay = 1 + reqLink.getFreespeed(departure.time);
+            }
+
+            if (!reqInitialNodes.containsKey(pathData.node.getId())) {
+                InitialNode newInitialNode = new InitialNode(pathData.node, 0, 0);
+                reqInitialNodes.put(pathData.node.getId(), newInitialNode);
+            }
+        }
+
+        ImaginaryNode toNodes = router.createImaginaryNode(reqInitialNodes.values());
+        Path path = router.calcLeastCostPath(fromNode, toNodes, departure.time, null, null);
+        Node bestReqNode = path.nodes.get(path.nodes.size() - 1);
+        pathsToReqNodes.put(bestReqNode.getId(), path);
+
+        //get paths for all remaining endNodes 
+        for (InitialNode i : reqInitialNodes.values()) {
+            Node reqNode = i.node;
+            if (reqNode.getId() != bestReqNode.getId()) {
+                path = router.constructPath(fromNode, reqNode, departure.time);
+                pathsToReqNodes.put(reqNode.getId(), path);
             }
         }
+
+        for (TaxiRequest req : filteredReqs) {
+            int r = rData.reqIdx.get(req.getId());
+            RequestPathData pathData = pathDataRow[r];
+            pathData.path = pathsToReqNodes.get(pathData.node.getId());
+        }
     }
 
 
     //TODO does not support adv reqs
-    private void calcPathsForRequests(RequestPathData[][] pathDataMatrix)
+    private void calcPathsForRequests(final RequestPathData[][] pathDataMatrix)
     {
-        double currTime = optimContext.timer.getTimeOfDay();
-
-        for (int r = 0; r < rData.dimension; r++) {
-            TaxiRequest req = rData.requests.get(r);
-            Link toLink = req.getFromLink();
-            Node toNode = toLink.getFromNode();
+        final double currTime = optimContext.timer.getTimeOfDay();
+        final KSpatialIndexNearestVehicleDepartureFilter spatialVehicleFilter = params.spatialIndexFilter
+                ? new KSpatialIndexNearestVehicleDepartureFilter(vData.entries,
+                        params.nearestVehiclesLimit)
+                : null;
+
+        runPathSearches(rData.dimension, new PathSearch() {
+            @Override
+            public void search(int r, AssignmentRouters threadRouters)
+            {
+                TaxiRequest req = rData.requests.get(r);
+                Iterable<VehicleData.Entry> filteredVehs = spatialVehicleFilter != null
+                        ? spatialVehicleFilter.filterVehiclesForRequest(req)
+                        : vehicleFilter.filterVehiclesForRequest(vData.entries, req);
+                calcPathsForRequest(req, r, filteredVehs, pathDataMatrix, currTime,
+                        threadRouters.backwardRouter);
+            }
+        });
+    }
 
-            Map<Id<Node>, InitialNode> vehInitialNodes = new HashMap<>();
-            Map<Id<Node>, Path> pathsFromVehNodes = new HashMap<>();
 
-            Iterable<VehicleData.Entry> filteredVehs = vehicleFilter
-                    .filterVehiclesForRequest(vData.entries, req);
+    private void calcPathsForRequest(TaxiRequest req, int r,
+            Iterable<VehicleData.Entry> filteredVehs, RequestPathData[][] pathDataMatrix,
+            double currTime, BackwardFastMultiNodeDijkstra backwardRouter)
+    {
+        Link toLink = req.getFromLink();
+        Node toNode = toLink.getFromNode();
 
-            for (VehicleData.Entry departure : filteredVehs) {
-                int v = departure.idx;
-                RequestPathData pathData = pathDataMatrix[v][r] = new RequestPathData();
+        Map<Id<Node>, InitialNode> vehInitialNodes = new HashMap<>();
+        Map<Id<Node>, Path> pathsFromVehNodes = new HashMap<>();
 
-                if (departure.link == toLink) {
-                    //hack: we are basically there (on the same link), so let's pretend vehNode == toNode
-                    pathData.node = toNode;
-                    pathData.delay = 0;
-                }
-                else {
-                    pathData.node = departure.link.getToNode();
-                    //simplified, but works for taxis, since pickup trips are short (about 5 mins)
-                    pathData.delay = 1 + toLink.getFreespeed(departure.time);
-                }
+        for (VehicleData.Entry departure : filteredVehs) {
+            int v = departure.idx;
+            RequestPathData pathData = pathDataMatrix[v][r] = new RequestPathData();
 
-                if (!vehInitialNodes.containsKey(pathData.node.getId())) {
-                    InitialNode newInitialNode = new InitialNode(pathData.node, 0, 0);
-                    vehInitialNodes.put(pathData.node.getId(), newInitialNode);
-                }
+            if (departure.link == toLink) {
+                //hack: we are basically there (on the same link), so let's pretend vehNode == toNode
+                pathData.node = toNode;
+                pathData.delay = 0;
+            }
+            else {
+                pathData.node = departure.link.getToNode();
+                //simplified, but works for taxis, since pickup trips are short (about 5 mins)
+                pathData.delay = 1 + toLink.getFreespeed(departure.time);
             }
 
-            ImaginaryNode fromNodes = backwardRouter.createImaginaryNode(vehInitialNodes.values());
-            Path path = backwardRouter.calcLeastCostPath(toNode, fromNodes, currTime, null, null);
-            Node bestVehNode = path.nodes.get(path.nodes.size() - 1);
-            pathsFromVehNodes.put(bestVehNode.getId(), path);
-
-            //get paths for all remaining endNodes 
-            for (InitialNode i : vehInitialNodes.values()) {
-                Node vehNode = i.node;
-                if (vehNode.getId() != bestVehNode.getId()) {
-                    path = backwardRouter.constructPath(toNode, vehNode, currTime);
-                    pathsFromVehNodes.put(vehNode.getId(), path);
-                }
+            if (!vehInitialNodes.containsKey(pathData.node.getId())) {
+                InitialNode newInitialNode = new InitialNode(pathData.node, 0, 0);
+                vehInitialNodes.put(pathData.node.getId(), newInitialNode);
             }
+        }
 
-            for (VehicleData.Entry departure : filteredVehs) {
-                int v = departure.idx;
-                RequestPathData pathData = pathDataMatrix[v][r];
-                pathData.path = pathsFromVehNodes.get(pathData.node.getId());
+        ImaginaryNode fromNodes = backwardRouter.createImaginaryNode(vehInitialNodes.values());
+        Path path = backwardRouter.calcLeastCostPath(toNode, fromNodes, currTime, null, null);
+        Node bestVehNode = path.nodes.get(path.nodes.size() - 1);
+        pathsFromVehNodes.put(bestVehNode.getId(), path);
+
+        //get paths for all remaining endNodes 
+        for (InitialNode i : vehInitialNodes.values()) {
+            Node vehNode = i.node;
+            if (vehNode.getId() != bestVehNode.getId()) {
+                path = backwardRouter.constructPath(toNode, vehNode, currTime);
+                pathsFromVehNodes.put(vehNode.getId(), path);
             }
         }
+
+        for (VehicleData.Entry departure : filteredVehs) {
+            int v = departure.idx;
+            RequestPathData pathData = pathDataMatrix[v][r];
+            pathData.path = pathsFromVehNodes.get(pathData.node.getId());
+        }
     }
 
 
@@ -287,6 +391,123 @@ public class AssignmentProblem
     }
 
 
+    /**
+     * Only the pairs with paths (i.e. the filtered nearest vehicles or requests) are considered. The
+     * smaller side bids for the larger one.
+     * 
+     * @return the request of each vehicle, or -1
+     */
+    private int[] solveWithAuction(RequestPathData[][] pathDataMatrix)
+    {
+        Mode currentMode = getCurrentMode();
+        boolean vehiclesBid = vData.dimension <= rData.dimension;
+        SparseCostMatrix matrix = vehiclesBid ? new SparseCostMatrix(vData.dimension, rData.dimension)
+                : new SparseCostMatrix(rData.dimension, vData.dimension);
+
+        double maxCost = 0;
+        for (int i = 0; i < matrix.rows; i++) {
+            for (int j = 0; j < matrix.cols; j++) {
+                int v = vehiclesBid ? i : j;
+                int r = vehiclesBid ? j : i;
+                RequestPathData pathData = pathDataMatrix[v][r];
+                if (pathData != null) {
+                    double cost = calcCost(vData.entries.get(v), rData.requests.get(r), pathData,
+                            currentMode);
+                    matrix.add(i, j, cost);
+                    maxCost = Math.max(maxCost, cost);
+                }
+            }
+        }
+
+        //staying unassigned is worse than any pair with a path
+        double[] unassignedCosts = new double[matrix.rows];
+        Arrays.fill(unassignedCosts, maxCost + params.nullPathCost);
+
+        AuctionAlgorithm auction = new AuctionAlgorithm(matrix, unassignedCosts,
+                params.auctionEpsilon);
+        if (executor != null) {
+            auction.setExecutor(executor, params.threads);
+        }
+        if (auctionWarmStart != null) {
+            setWarmStart(auction, vehiclesBid);
+        }
+
+        int[] jobs = auction.execute();
+
+        int[] assignments = new int[vData.dimension];
+        Arrays.fill(assignments, -1);
+        for (int i = 0; i < jobs.length; i++) {
+            if (jobs[i] != -1) {
+                assignments[vehiclesBid ? i : jobs[i]] = vehiclesBid ? jobs[i] : i;
+            }
+        }
+
+        if (auctionWarmStart != null) {
+            updateWarmStart(auction.getPrices(), assignments, vehiclesBid);
+        }
+        return assignments;
+    }
+
+
+    private void setWarmStart(AuctionAlgorithm auction, boolean vehiclesBid)
+    {
+        double[] prices = new double[vehiclesBid ? rData.dimension : vData.dimension];
+        int[] initialAssignment = new int[vehiclesBid ? vData.dimension : rData.dimension];
+        Arrays.fill(initialAssignment, -1);
+
+        for (int v = 0; v < vData.dimension; v++) {
+            Vehicle vehicle = vData.entries.get(v).vehicle;
+            Id<Request> reqId = auctionWarmStart.assignments.get(vehicle.getId());
+            Integer r = reqId == null ? null : rData.reqIdx.get(reqId);
+            if (vehiclesBid) {
+                if (r != null) {
+                    initialAssignment[v] = r;
+                }
+            }
+            else {
+                Double price = auctionWarmStart.vehiclePrices.get(vehicle.getId());
+                prices[v] = price == null ? 0 : price;
+                if (r != null) {
+                    initialAssignment[r] = v;
+                }
+            }
+        }
+
+        if (vehiclesBid) {
+            for (int r = 0; r < rData.dimension; r++) {
+                Double price = auctionWarmStart.requestPrices.get(rData.requests.get(r).getId());
+                prices[r] = price == null ? 0 : price;
+            }
+        }
+
+        auction.setWarmStart(prices, initialAssignment);
+    }
+
+
+    private void updateWarmStart(double[] prices, int[] assignments, boolean vehiclesBid)
+    {
+        auctionWarmStart.requestPrices.clear();
+        auctionWarmStart.vehiclePrices.clear();
+        auctionWarmStart.assignments.clear();
+
+        for (int j = 0; j < prices.length; j++) {
+            if (vehiclesBid) {
+                auctionWarmStart.requestPrices.put(rData.requests.get(j).getId(), prices[j]);
+            }
+            else {
+                auctionWarmStart.vehiclePrices.put(vData.entries.get(j).vehicle.getId(), prices[j]);
+            }
+        }
+
+        for (int v = 0; v < assignments.length; v++) {
+            if (assignments[v] != -1) {
+                auctionWarmStart.assignments.put(vData.entries.get(v).vehicle.getId(),
+                        rData.requests.get(assignments[v]).getId());
+            }
+        }
+    }
+
+
     private double calcCost(VehicleData.Entry departure, TaxiRequest request,
             RequestPathData pathData, Mode currentMode)
     {
@@ -345,7 +566,7 @@ public class AssignmentProblem
 
             VrpPathWithTravelData vrpPath = pathData == null ? //
                     VrpPaths.calcAndCreatePath(departure.link, req.getFromLink(), departure.time,
-                            router, optimContext.travelTime)
+                            routers.get().router, optimContext.travelTime)
                     : VrpPaths.createPath(departure.link, req.getFromLink(), departure.time,
                             pathData.path, optimContext.travelTime);
 
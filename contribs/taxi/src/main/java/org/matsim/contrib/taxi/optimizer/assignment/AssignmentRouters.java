@@ -0,0 +1,55 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.locationchoice.router.*;
+import org.matsim.contrib.taxi.optimizer.TaxiOptimizerContext;
+import org.matsim.core.router.*;
+import org.matsim.core.router.util.*;
+
+
+/**
+ * Routers used by one thread. Each pair has its own routing networks, which keep the node data
+ * of the searches in arrays. The routers are the same regardless of the number of threads.
+ */
+class AssignmentRouters
+{
+    final FastMultiNodeDijkstra router;
+    final BackwardFastMultiNodeDijkstra backwardRouter;
+
+
+    AssignmentRouters(TaxiOptimizerContext optimContext)
+    {
+        Network network = optimContext.scenario.getNetwork();
+        FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
+
+        RoutingNetwork routingNetwork = new ArrayRoutingNetworkFactory(null)
+                .createRoutingNetwork(network);
+        router = new FastMultiNodeDijkstra(routingNetwork, optimContext.travelDisutility,
+                optimContext.travelTime, null, fastRouterFactory, true);
+
+        RoutingNetwork inverseRoutingNetwork = new InverseArrayRoutingNetworkFactory(null)
+                .createRoutingNetwork(network);
+        backwardRouter = new BackwardFastMultiNodeDijkstra(inverseRoutingNetwork,
+                optimContext.travelDisutility, optimContext.travelTime, null, fastRouterFactory,
+                true);
+    }
+}
@@ -20,45 +20,70 @@
 package org.matsim.contrib.taxi.optimizer.assignment;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.matsim.contrib.dvrp.data.Requests;
-import org.matsim.contrib.locationchoice.router.*;
 import org.matsim.contrib.taxi.data.TaxiRequest;
 import org.matsim.contrib.taxi.optimizer.*;
-import org.matsim.core.router.*;
-import org.matsim.core.router.util.RoutingNetwork;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
 
 
 public class AssignmentTaxiOptimizer
     extends AbstractTaxiOptimizer
+    implements MobsimBeforeCleanupListener
 {
     private final AssignmentTaxiOptimizerParams params;
-    private final MultiNodeDijkstra router;
-    private final BackwardFastMultiNodeDijkstra backwardRouter;
+    private final ThreadLocal<AssignmentRouters> routers;
+    private final ExecutorService executor;//null if the paths are computed sequentially
+    private final AuctionWarmStart auctionWarmStart;
 
 
-    public AssignmentTaxiOptimizer(TaxiOptimizerContext optimContext,
+    public AssignmentTaxiOptimizer(final TaxiOptimizerContext optimContext,
             AssignmentTaxiOptimizerParams params)
     {
         super(optimContext, params, new TreeSet<TaxiRequest>(Requests.ABSOLUTE_COMPARATOR), true);
 
         this.params = params;
 
-        router = new MultiNodeDijkstra(optimContext.scenario.getNetwork(),
-                optimContext.travelDisutility, optimContext.travelTime, true);
+        //each thread has its own routers, since they store the search data in their networks
+        routers = new ThreadLocal<AssignmentRouters>() {
+            @Override
+            protected AssignmentRouters initialValue()
+            {
+                return new AssignmentRouters(optimContext);
+            }
+        };
 
-        FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
-        RoutingNetwork routingNetwork = new InverseArrayRoutingNetworkFactory(null)
-                .createRoutingNetwork(optimContext.scenario.getNetwork());
-        backwardRouter = new BackwardFastMultiNodeDijkstra(routingNetwork,
-                optimContext.travelDisutility, optimContext.travelTime, null, fastRouterFactory,
-                true);
+        executor = params.threads > 1 ? Executors.newFixedThreadPool(params.threads,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread thread = new Thread(r, "AssignmentPaths");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }) : null;
+
+        auctionWarmStart = params.auctionWarmStart ? new AuctionWarmStart() : null;
     }
 
 
     protected void scheduleUnplannedRequests()
     {
-        new AssignmentProblem(optimContext, params, router, backwardRouter)
+        new AssignmentProblem(optimContext, params, routers, executor, auctionWarmStart)
                 .scheduleUnplannedRequests((SortedSet<TaxiRequest>)unplannedRequests);
     }
+
+
+    @Override
+    public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e)
+    {
+        //a new optimizer is created for every QSim, so its threads and routers are released here
+        if (executor != null) {
+            executor.shutdown();
+        }
+        routers.remove();//the routers of the mobsim thread
+    }
 }
@@ -27,6 +27,13 @@ import org.matsim.contrib.taxi.optimizer.assignment.AssignmentProblem.Mode;
 public class AssignmentTaxiOptimizerParams
     extends AbstractTaxiOptimizerParams
 {
+    public enum Solver
+    {
+        HUNGARIAN, //dense cost matrix, optimal
+        AUCTION;//only the filtered (nearest) pairs, near-optimal, faster for large problems
+    }
+
+
     public static final String MODE = "mode";
     public static final String NULL_PATH_COST = "nullPathCost";
 
@@ -35,6 +42,13 @@ public class AssignmentTaxiOptimizerParams
 
     public static final String NEAREST_REQUESTS_LIMIT = "nearestRequestsLimit";
     public static final String NEAREST_VEHICLES_LIMIT = "nearestVehiclesLimit";
+    public static final String SPATIAL_INDEX_FILTER = "spatialIndexFilter";
+
+    public static final String THREADS = "threads";
+
+    public static final String SOLVER = "solver";
+    public static final String AUCTION_EPSILON = "auctionEpsilon";
+    public static final String AUCTION_WARM_START = "auctionWarmStart";
 
     public final Mode mode;
     public final double nullPathCost;
@@ -44,6 +58,13 @@ public class AssignmentTaxiOptimizerParams
 
     public final int nearestRequestsLimit;
     public final int nearestVehiclesLimit;
+    public final boolean spatialIndexFilter;//k-nearest search in a spatial index instead of a linear scan
+
+    public final int threads;//for computing the paths (and the auction bids)
+
+    public final Solver solver;
+    public final double auctionEpsilon;//in the units of the costs (usually seconds)
+    public final boolean auctionWarmStart;//start with the prices of the previous reoptimization
 
 
     public AssignmentTaxiOptimizerParams(Configuration optimizerConfig)
@@ -61,5 +82,12 @@ public class AssignmentTaxiOptimizerParams
 
         nearestRequestsLimit = optimizerConfig.getInt(NEAREST_REQUESTS_LIMIT);
         nearestVehiclesLimit = optimizerConfig.getInt(NEAREST_VEHICLES_LIMIT);
+        spatialIndexFilter = optimizerConfig.getBoolean(SPATIAL_INDEX_FILTER, false);
+
+        threads = optimizerConfig.getInt(THREADS, 1);
+
+        solver = Solver.valueOf(optimizerConfig.getString(SOLVER, Solver.HUNGARIAN.name()));
+        auctionEpsilon = optimizerConfig.getDouble(AUCTION_EPSILON, 1);
+        auctionWarmStart = optimizerConfig.getBoolean(AUCTION_WARM_START, true);
     }
 }
@@ -0,0 +1,313 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * The auction algorithm (Bertsekas) for assignment problems with a {@link SparseCostMatrix}, as a
+ * faster alternative to the {@link HungarianAlgorithm} for large problems, where each worker is
+ * allowed to take only a few (e.g. the nearest) jobs.
+ * <p>
+ * Unassigned workers bid for their best job by raising its price as far as the job remains at least
+ * as good as their second best choice (plus <code>epsilon</code>). A worker may also stay
+ * unassigned at its <code>unassignedCost</code>. So a solution always exists, but workers whose
+ * allowed jobs are all taken may end up unassigned, even if the matrix has fewer rows than columns.
+ * The bids of all unassigned workers are computed at once (Jacobi auction), optionally by several
+ * threads; the result does not depend on the number of threads.
+ * <p>
+ * Starting with zero prices, the total cost is at most <code>rows * epsilon</code> above the
+ * optimum. Since staying unassigned is always possible, there are usually more jobs than workers,
+ * so <code>epsilon</code> is not scaled down in phases, which would lose this bound. A warm start
+ * with the prices and the assignment of a similar problem (e.g. from the previous reoptimization)
+ * usually saves most of the bidding, but does not come with the bound either.
+ */
+public class AuctionAlgorithm
+{
+    private static final int MIN_BIDS_PER_TASK = 512;
+
+    private final SparseCostMatrix matrix;
+    private final double[] unassignedCosts;
+    private final double epsilon;
+
+    private final double[] prices;
+    private int[] initialAssignment = null;
+
+    private ExecutorService executor = null;
+    private int threads = 1;
+
+    private final int[] jobByWorker;
+    private final int[] workerByJob;
+
+    // bids of the current round, for the workers in the queue
+    private int[] queue;
+    private int[] bidJobs;
+    private double[] bidPrices;
+
+    private int rounds = 0;
+
+
+    /**
+     * @param unassignedCosts the cost of not assigning a worker, which should be higher than the cost of
+     *            its allowed jobs
+     * @param epsilon the minimal bid increment, in the units of the costs
+     */
+    public AuctionAlgorithm(SparseCostMatrix matrix, double[] unassignedCosts, double epsilon)
+    {
+        if (unassignedCosts.length != matrix.rows) {
+            throw new IllegalArgumentException("One unassigned cost per row needed");
+        }
+        if (! (epsilon > 0)) {
+            throw new IllegalArgumentException("epsilon must be positive");
+        }
+
+        this.matrix = matrix;
+        this.unassignedCosts = unassignedCosts;
+        this.epsilon = epsilon;
+
+        prices = new double[matrix.cols];
+        jobByWorker = new int[matrix.rows];
+        workerByJob = new int[matrix.cols];
+        queue = new int[matrix.rows];
+        bidJobs = new int[matrix.rows];
+        bidPrices = new double[matrix.rows];
+    }
+
+
+    /**
+     * @param initialPrices the prices of the jobs, e.g. from {@link #getPrices()} of a similar problem
+     * @param initialAssignment the jobs of the workers (or -1), kept as long as they are still almost
+     *            optimal for the workers at the initial prices; may be <code>null</code>
+     */
+    public void setWarmStart(double[] initialPrices, int[] initialAssignment)
+    {
+        System.arraycopy(initialPrices, 0, prices, 0, prices.length);
+        this.initialAssignment = initialAssignment;
+    }
+
+
+    /**
+     * @param executor computes the bids of large rounds with <code>threads</code> tasks
+     */
+    public void setExecutor(ExecutorService executor, int threads)
+    {
+        this.executor = executor;
+        this.threads = threads;
+    }
+
+
+    /**
+     * @return the job of each worker, or -1 if the worker is unassigned
+     */
+    public int[] execute()
+    {
+        runAuction();
+        return jobByWorker.clone();
+    }
+
+
+    /**
+     * @return the job prices at the end of the auction; they can be used for a warm start
+     */
+    public double[] getPrices()
+    {
+        return prices.clone();
+    }
+
+
+    /**
+     * @return the number of bidding rounds
+     */
+    public int getRounds()
+    {
+        return rounds;
+    }
+
+
+    private void runAuction()
+    {
+        Arrays.fill(jobByWorker, -1);
+        Arrays.fill(workerByJob, -1);
+
+        if (initialAssignment != null) {
+            keepInitialAssignment();
+        }
+
+        int queueSize = 0;
+        for (int w = 0; w < matrix.rows; w++) {
+            if (jobByWorker[w] == -1) {
+                queue[queueSize++] = w;
+            }
+        }
+
+        int[] nextQueue = new int[matrix.rows];
+        int[] roundWinners = new int[matrix.cols];
+        Arrays.fill(roundWinners, -1);
+        double[] roundBids = new double[matrix.cols];
+        int[] wonJobs = new int[matrix.cols];
+
+        while (queueSize > 0) {
+            rounds++;
+            computeBids(queueSize);
+
+            // the highest bid wins the job; ties go to the worker with the lower index
+            int wonJobCount = 0;
+            int nextQueueSize = 0;
+            for (int k = 0; k < queueSize; k++) {
+                int job = bidJobs[k];
+                if (job == -1) {
+                    continue;// the worker stays unassigned
+                }
+
+                int winner = roundWinners[job];
+                if (winner == -1) {
+                    roundWinners[job] = k;
+                    roundBids[job] = bidPrices[k];
+                    wonJobs[wonJobCount++] = job;
+                }
+                else if (bidPrices[k] > roundBids[job]) {
+                    nextQueue[nextQueueSize++] = queue[winner];
+                    roundWinners[job] = k;
+                    roundBids[job] = bidPrices[k];
+                }
+                else {
+                    nextQueue[nextQueueSize++] = queue[k];
+                }
+            }
+
+            for (int i = 0; i < wonJobCount; i++) {
+                int job = wonJobs[i];
+                int worker = queue[roundWinners[job]];
+                int previousWorker = workerByJob[job];
+                if (previousWorker != -1) {
+                    jobByWorker[previousWorker] = -1;
+                    nextQueue[nextQueueSize++] = previousWorker;
+                }
+                workerByJob[job] = worker;
+                jobByWorker[worker] = job;
+                prices[job] = roundBids[job];
+                roundWinners[job] = -1;
+            }
+
+            int[] tmp = queue;
+            queue = nextQueue;
+            nextQueue = tmp;
+            queueSize = nextQueueSize;
+        }
+    }
+
+
+    private void keepInitialAssignment()
+    {
+        for (int w = 0; w < matrix.rows; w++) {
+            int job = initialAssignment[w];
+            if (job == -1 || workerByJob[job] != -1) {
+                continue;
+            }
+
+            double bestProfit = -unassignedCosts[w];
+            double jobProfit = Double.NEGATIVE_INFINITY;
+            for (int e = matrix.getRowStart(w), end = matrix.getRowEnd(w); e < end; e++) {
+                int j = matrix.entryCols[e];
+                double profit = -matrix.entryCosts[e] - prices[j];
+                bestProfit = Math.max(bestProfit, profit);
+                if (j == job) {
+                    jobProfit = profit;
+                }
+            }
+
+            // epsilon-complementary slackness
+            if (jobProfit >= bestProfit - epsilon) {
+                jobByWorker[w] = job;
+                workerByJob[job] = w;
+            }
+        }
+    }
+
+
+    private void computeBids(final int queueSize)
+    {
+        int tasks = executor == null ? 1 : Math.min(threads, queueSize / MIN_BIDS_PER_TASK);
+        if (tasks <= 1) {
+            computeBids(0, queueSize);
+            return;
+        }
+
+        List<Callable<Void>> bidTasks = new ArrayList<>(tasks);
+        for (int t = 0; t < tasks; t++) {
+            final int from = (int)((long)t * queueSize / tasks);
+            final int to = (int)((long) (t + 1) * queueSize / tasks);
+            bidTasks.add(new Callable<Void>() {
+                @Override
+                public Void call()
+                {
+                    computeBids(from, to);
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(bidTasks)) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+
+    private void computeBids(int from, int to)
+    {
+        for (int k = from; k < to; k++) {
+            int w = queue[k];
+
+            // staying unassigned costs nothing
+            int bestJob = -1;
+            double bestProfit = -unassignedCosts[w];
+            double secondProfit = Double.NEGATIVE_INFINITY;
+
+            for (int e = matrix.getRowStart(w), end = matrix.getRowEnd(w); e < end; e++) {
+                int j = matrix.entryCols[e];
+                double profit = -matrix.entryCosts[e] - prices[j];
+                if (profit > bestProfit) {
+                    secondProfit = bestProfit;
+                    bestProfit = profit;
+                    bestJob = j;
+                }
+                else if (profit > secondProfit) {
+                    secondProfit = profit;
+                }
+            }
+
+            bidJobs[k] = bestJob;
+            if (bestJob != -1) {
+                // the second best option exists, since staying unassigned is always possible
+                bidPrices[k] = prices[bestJob] + bestProfit - secondProfit + epsilon;
+            }
+        }
+    }
+}
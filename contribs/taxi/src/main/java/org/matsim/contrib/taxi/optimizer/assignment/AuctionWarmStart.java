@@ -0,0 +1,38 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.dvrp.data.*;
+
+
+/**
+ * Prices and assignments of the last {@link AuctionAlgorithm} run, used as the warm start of the
+ * next reoptimization. Depending on which side is smaller, the jobs are either requests or
+ * vehicles, so prices are kept for both.
+ */
+class AuctionWarmStart
+{
+    final Map<Id<Request>, Double> requestPrices = new HashMap<>();
+    final Map<Id<Vehicle>, Double> vehiclePrices = new HashMap<>();
+    final Map<Id<Vehicle>, Id<Request>> assignments = new HashMap<>();
+}
@@ -0,0 +1,109 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import java.util.Arrays;
+
+
+/**
+ * Cost matrix of an assignment problem, which contains only the allowed pairs of workers (rows)
+ * and jobs (columns). The entries are stored row by row in arrays.
+ */
+public class SparseCostMatrix
+{
+    final int rows;
+    final int cols;
+
+    // the entries of row i are at firstEntry[i], ..., firstEntry[i + 1] - 1
+    final int[] firstEntry;
+    int[] entryCols;
+    double[] entryCosts;
+    int entryCount = 0;
+
+    private int currentRow = 0;
+
+
+    public SparseCostMatrix(int rows, int cols)
+    {
+        this.rows = rows;
+        this.cols = cols;
+        firstEntry = new int[rows + 1];
+        entryCols = new int[Math.max(16, 4 * rows)];
+        entryCosts = new double[entryCols.length];
+    }
+
+
+    /**
+     * The entries must be added row by row, i.e. <code>row</code> must not be smaller than in the
+     * previous call. A pair must not be added twice.
+     */
+    public void add(int row, int col, double cost)
+    {
+        if (row < currentRow || row >= rows) {
+            throw new IllegalArgumentException("Row " + row + " added after row " + currentRow);
+        }
+        if (col < 0 || col >= cols) {
+            throw new IllegalArgumentException("Column " + col + " out of range");
+        }
+
+        while (currentRow < row) {
+            firstEntry[++currentRow] = entryCount;
+        }
+
+        if (entryCount == entryCols.length) {
+            entryCols = Arrays.copyOf(entryCols, 2 * entryCount);
+            entryCosts = Arrays.copyOf(entryCosts, 2 * entryCount);
+        }
+        entryCols[entryCount] = col;
+        entryCosts[entryCount] = cost;
+        entryCount++;
+        firstEntry[row + 1] = entryCount;
+    }
+
+
+    public int getRows()
+    {
+        return rows;
+    }
+
+
+    public int getCols()
+    {
+        return cols;
+    }
+
+
+    public int getEntryCount()
+    {
+        return entryCount;
+    }
+
+
+    int getRowStart(int row)
+    {
+        return row <= currentRow ? firstEntry[row] : entryCount;
+    }
+
+
+    int getRowEnd(int row)
+    {
+        return row < currentRow ? firstEntry[row + 1] : entryCount;
+    }
+}
@@ -0,0 +1,61 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.filter;
+
+import java.util.List;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.taxi.data.TaxiRequest;
+import org.matsim.core.utils.collections.PackedRTree;
+
+
+/**
+ * Same as {@link KStraightLineNearestRequestFilter}, but the requests are put into a spatial
+ * index once, so that each query takes only logarithmic time in the number of requests.
+ */
+public class KSpatialIndexNearestRequestFilter
+{
+    private final PackedRTree<TaxiRequest> requestIndex;
+    private final int k;
+
+
+    public KSpatialIndexNearestRequestFilter(Iterable<TaxiRequest> requests, int k)
+    {
+        PackedRTree.Builder<TaxiRequest> builder = new PackedRTree.Builder<>();
+        for (TaxiRequest req : requests) {
+            Coord coord = req.getFromLink().getCoord();
+            builder.put(coord.getX(), coord.getY(), req);
+        }
+
+        this.requestIndex = builder.build();
+        this.k = k;
+    }
+
+
+    /**
+     * May be called by several threads concurrently.
+     */
+    public List<TaxiRequest> filterRequestsForDeparture(Link fromLink)
+    {
+        Coord coord = fromLink.getCoord();
+        return requestIndex.getKNearest(coord.getX(), coord.getY(), k);
+    }
+}
@@ -0,0 +1,62 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.filter;
+
+import java.util.List;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.contrib.taxi.data.TaxiRequest;
+import org.matsim.contrib.taxi.optimizer.VehicleData;
+import org.matsim.core.utils.collections.PackedRTree;
+
+
+/**
+ * Same as {@link KStraightLineNearestVehicleDepartureFilter}, but the vehicle departures are put
+ * into a spatial index once, so that each query takes only logarithmic time in the number of
+ * vehicles.
+ */
+public class KSpatialIndexNearestVehicleDepartureFilter
+{
+    private final PackedRTree<VehicleData.Entry> departureIndex;
+    private final int k;
+
+
+    public KSpatialIndexNearestVehicleDepartureFilter(Iterable<VehicleData.Entry> vehicles, int k)
+    {
+        PackedRTree.Builder<VehicleData.Entry> builder = new PackedRTree.Builder<>();
+        for (VehicleData.Entry veh : vehicles) {
+            Coord coord = veh.link.getCoord();
+            builder.put(coord.getX(), coord.getY(), veh);
+        }
+
+        this.departureIndex = builder.build();
+        this.k = k;
+    }
+
+
+    /**
+     * May be called by several threads concurrently.
+     */
+    public List<VehicleData.Entry> filterVehiclesForRequest(TaxiRequest request)
+    {
+        Coord coord = request.getFromLink().getCoord();
+        return departureIndex.getKNearest(coord.getX(), coord.getY(), k);
+    }
+}
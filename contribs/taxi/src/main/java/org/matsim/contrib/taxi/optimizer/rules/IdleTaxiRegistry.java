@@ -0,0 +1,45 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.rules;
+
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.dvrp.data.Vehicle;
+
+
+/**
+ * Keeps track of the idle vehicles. Vehicles are added when they start staying idle, and removed
+ * when the stay task (now the previous task) has ended.
+ */
+public interface IdleTaxiRegistry
+{
+    void addVehicle(Vehicle vehicle);
+
+
+    void removeVehicle(Vehicle vehicle);
+
+
+    Iterable<Vehicle> findNearestVehicles(Node node, int minCount);
+
+
+    Iterable<Vehicle> getVehicles();
+
+
+    int getVehicleCount();
+}
@@ -0,0 +1,129 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.rules;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.schedule.Schedules;
+import org.matsim.contrib.taxi.schedule.TaxiStayTask;
+import org.matsim.contrib.taxi.scheduler.*;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.collections.QuadTree;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.*;
+
+
+/**
+ * Idle vehicles indexed by the to-node of the link they stay at. Unlike {@link IdleTaxiZonalRegistry},
+ * the nearest vehicles are found by an exact k-nearest (straight-line) search, so the number of
+ * candidates passed on to the network search does not depend on the density of vehicles in a zone.
+ */
+public class IdleTaxiSpatialRegistry
+    implements IdleTaxiRegistry
+{
+    private final QuadTree<Vehicle> quadTree;
+    private final Map<Id<Vehicle>, Vehicle> vehicles = new LinkedHashMap<>();
+
+    private final Predicate<Vehicle> isIdle;
+
+
+    public IdleTaxiSpatialRegistry(Network network, TaxiScheduleInquiry scheduleInquiry)
+    {
+        double[] bounds = NetworkUtils.getBoundingBox(network.getNodes().values());
+        quadTree = new QuadTree<>(bounds[0], bounds[1], bounds[2], bounds[3]);
+
+        isIdle = TaxiSchedulerUtils.createIsIdle(scheduleInquiry);
+    }
+
+
+    @Override
+    public void addVehicle(Vehicle vehicle)
+    {
+        TaxiStayTask stayTask = (TaxiStayTask)vehicle.getSchedule().getCurrentTask();
+        Coord coord = getCoord(stayTask);
+
+        if (vehicles.put(vehicle.getId(), vehicle) != null) {
+            throw new IllegalStateException(vehicle + " is already in the registry");
+        }
+
+        quadTree.put(coord.getX(), coord.getY(), vehicle);
+    }
+
+
+    @Override
+    public void removeVehicle(Vehicle vehicle)
+    {
+        TaxiStayTask stayTask = (TaxiStayTask)Schedules.getPreviousTask(vehicle.getSchedule());
+        Coord coord = getCoord(stayTask);
+
+        if (vehicles.remove(vehicle.getId()) == null
+                || !quadTree.remove(coord.getX(), coord.getY(), vehicle)) {
+            throw new IllegalStateException(vehicle + " is not in the registry");
+        }
+    }
+
+
+    @Override
+    public Iterable<Vehicle> findNearestVehicles(Node node, int minCount)
+    {
+        if (minCount >= vehicles.size()) {
+            return getVehicles();
+        }
+
+        //vehicles that have just been dispatched stay in the registry until their next task starts,
+        //so keep on extending the search until enough idle vehicles are found
+        Coord coord = node.getCoord();
+        int k = minCount;
+        while (true) {
+            List<Vehicle> nearestVehs = new ArrayList<>(
+                    Collections2.filter(quadTree.getKNearest(coord.getX(), coord.getY(), k), isIdle));
+
+            if (nearestVehs.size() >= minCount || k >= vehicles.size()) {
+                return nearestVehs;
+            }
+
+            k = Math.min(2 * k, vehicles.size());
+        }
+    }
+
+
+    private Coord getCoord(TaxiStayTask stayTask)
+    {
+        return stayTask.getLink().getToNode().getCoord();
+    }
+
+
+    @Override
+    public Iterable<Vehicle> getVehicles()
+    {
+        return Iterables.filter(vehicles.values(), isIdle);
+    }
+
+
+    @Override
+    public int getVehicleCount()
+    {
+        return vehicles.size();
+    }
+}
@@ -34,6 +34,7 @@ import com.google.common.collect.*;
 
 
 public class IdleTaxiZonalRegistry
+    implements IdleTaxiRegistry
 {
     private final ZonalSystem zonalSystem;
     private final Map<Id<Zone>, List<Zone>> zonesSortedByDistance;
@@ -58,6 +59,7 @@ public class IdleTaxiZonalRegistry
     }
 
 
+    @Override
     public void addVehicle(Vehicle vehicle)
     {
         TaxiStayTask stayTask = (TaxiStayTask)vehicle.getSchedule().getCurrentTask();
@@ -73,6 +75,7 @@ public class IdleTaxiZonalRegistry
     }
 
 
+    @Override
     public void removeVehicle(Vehicle vehicle)
     {
         TaxiStayTask stayTask = (TaxiStayTask)Schedules.getPreviousTask(vehicle.getSchedule());
@@ -88,6 +91,7 @@ public class IdleTaxiZonalRegistry
     }
 
 
+    @Override
     public Iterable<Vehicle> findNearestVehicles(Node node, int minCount)
     {
         if (minCount >= vehicles.size()) {
@@ -117,12 +121,14 @@ public class IdleTaxiZonalRegistry
     }
 
 
+    @Override
     public Iterable<Vehicle> getVehicles()
     {
         return Iterables.filter(vehicles.values(), isIdle);
     }
 
 
+    @Override
     public int getVehicleCount()
     {
         return vehicles.size();
@@ -21,7 +21,7 @@ package org.matsim.contrib.taxi.optimizer.rules;
 
 import java.util.*;
 
-import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.*;
 import org.matsim.contrib.dvrp.data.*;
 import org.matsim.contrib.dvrp.schedule.*;
 import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
@@ -37,8 +37,8 @@ public class RuleBasedTaxiOptimizer
 {
     protected final BestDispatchFinder dispatchFinder;
 
-    private final IdleTaxiZonalRegistry idleTaxiRegistry;
-    private final UnplannedRequestZonalRegistry unplannedRequestRegistry;
+    private final IdleTaxiRegistry idleTaxiRegistry;
+    private final UnplannedRequestRegistry unplannedRequestRegistry;
 
     private final RuleBasedTaxiOptimizerParams params;
 
@@ -46,11 +46,14 @@ public class RuleBasedTaxiOptimizer
     public RuleBasedTaxiOptimizer(TaxiOptimizerContext optimContext,
             RuleBasedTaxiOptimizerParams params)
     {
-        this(optimContext, params,
-                new SquareGridSystem(optimContext.scenario.getNetwork(), params.cellSize));
+        this(optimContext, params, null);
     }
 
 
+    /**
+     * @param zonalSystem zones for {@link SpatialIndex#ZONAL}; if {@code null}, a square grid with
+     *            {@code params.cellSize} is used. Ignored for {@link SpatialIndex#QUAD_TREE}.
+     */
     public RuleBasedTaxiOptimizer(TaxiOptimizerContext optimContext,
             RuleBasedTaxiOptimizerParams params, ZonalSystem zonalSystem)
     {
@@ -63,8 +66,24 @@ public class RuleBasedTaxiOptimizer
         }
 
         dispatchFinder = new BestDispatchFinder(optimContext);
-        idleTaxiRegistry = new IdleTaxiZonalRegistry(zonalSystem, optimContext.scheduler);
-        unplannedRequestRegistry = new UnplannedRequestZonalRegistry(zonalSystem);
+        Network network = optimContext.scenario.getNetwork();
+        switch (params.spatialIndex) {
+            case ZONAL:
+                if (zonalSystem == null) {
+                    zonalSystem = new SquareGridSystem(network, params.cellSize);
+                }
+                idleTaxiRegistry = new IdleTaxiZonalRegistry(zonalSystem, optimContext.scheduler);
+                unplannedRequestRegistry = new UnplannedRequestZonalRegistry(zonalSystem);
+                break;
+
+            case QUAD_TREE:
+                idleTaxiRegistry = new IdleTaxiSpatialRegistry(network, optimContext.scheduler);
+                unplannedRequestRegistry = new UnplannedRequestSpatialRegistry(network);
+                break;
+
+            default:
+                throw new IllegalStateException();
+        }
     }
 
 
@@ -86,6 +105,13 @@ public class RuleBasedTaxiOptimizer
     };
 
 
+    public enum SpatialIndex
+    {
+        ZONAL, //zone-ring search in a square grid (see cellSize)
+        QUAD_TREE; //exact k-nearest search in a quad tree
+    };
+
+
     private boolean isReduceTP()
     {
         switch (params.goal) {
@@ -21,7 +21,7 @@ package org.matsim.contrib.taxi.optimizer.rules;
 
 import org.apache.commons.configuration.Configuration;
 import org.matsim.contrib.taxi.optimizer.*;
-import org.matsim.contrib.taxi.optimizer.rules.RuleBasedTaxiOptimizer.Goal;
+import org.matsim.contrib.taxi.optimizer.rules.RuleBasedTaxiOptimizer.*;
 
 
 public class RuleBasedTaxiOptimizerParams
@@ -32,6 +32,7 @@ public class RuleBasedTaxiOptimizerParams
     public static final String NEAREST_REQUESTS_LIMIT = "nearestRequestsLimit";
     public static final String NEAREST_VEHICLES_LIMIT = "nearestVehiclesLimit";
 
+    public static final String SPATIAL_INDEX = "spatialIndex";
     public static final String CELL_SIZE = "cellSize";
 
     public final Goal goal;
@@ -39,7 +40,8 @@ public class RuleBasedTaxiOptimizerParams
     public final int nearestRequestsLimit;
     public final int nearestVehiclesLimit;
 
-    public final double cellSize;
+    public final SpatialIndex spatialIndex;
+    public final double cellSize;//used only by SpatialIndex.ZONAL
 
 
     public RuleBasedTaxiOptimizerParams(Configuration optimizerConfig)
@@ -51,6 +53,10 @@ public class RuleBasedTaxiOptimizerParams
         nearestRequestsLimit = optimizerConfig.getInt(NEAREST_REQUESTS_LIMIT);
         nearestVehiclesLimit = optimizerConfig.getInt(NEAREST_VEHICLES_LIMIT);
 
-        cellSize = optimizerConfig.getDouble(CELL_SIZE);//1000 m tested for Berlin
+        spatialIndex = SpatialIndex
+                .valueOf(optimizerConfig.getString(SPATIAL_INDEX, SpatialIndex.ZONAL.name()));
+        cellSize = spatialIndex == SpatialIndex.ZONAL ? //
+                optimizerConfig.getDouble(CELL_SIZE) : //1000 m tested for Berlin
+                optimizerConfig.getDouble(CELL_SIZE, Double.NaN);
     }
 }
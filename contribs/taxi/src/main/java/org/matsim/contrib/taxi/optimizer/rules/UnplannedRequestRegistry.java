@@ -0,0 +1,43 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.rules;
+
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.taxi.data.TaxiRequest;
+
+
+/**
+ * Keeps track of the requests that have been submitted but not scheduled yet.
+ */
+public interface UnplannedRequestRegistry
+{
+    //after submitted
+    void addRequest(TaxiRequest request);
+
+
+    //after scheduled
+    void removeRequest(TaxiRequest request);
+
+
+    Iterable<TaxiRequest> findNearestRequests(Node node, int minCount);
+
+
+    int getRequestCount();
+}
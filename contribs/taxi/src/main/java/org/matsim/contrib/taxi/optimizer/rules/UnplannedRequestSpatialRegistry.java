@@ -0,0 +1,89 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.rules;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.taxi.data.TaxiRequest;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.collections.QuadTree;
+
+
+/**
+ * Unplanned requests indexed by the from-node of their pickup link, with an exact k-nearest
+ * (straight-line) search instead of the zone-ring search of {@link UnplannedRequestZonalRegistry}.
+ */
+public class UnplannedRequestSpatialRegistry
+    implements UnplannedRequestRegistry
+{
+    private final QuadTree<TaxiRequest> quadTree;
+
+
+    public UnplannedRequestSpatialRegistry(Network network)
+    {
+        double[] bounds = NetworkUtils.getBoundingBox(network.getNodes().values());
+        quadTree = new QuadTree<>(bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+
+
+    //after submitted
+    @Override
+    public void addRequest(TaxiRequest request)
+    {
+        Coord coord = getCoord(request);
+
+        if (!quadTree.put(coord.getX(), coord.getY(), request)) {
+            throw new IllegalStateException(request + " is already in the registry");
+        }
+    }
+
+
+    //after scheduled
+    @Override
+    public void removeRequest(TaxiRequest request)
+    {
+        Coord coord = getCoord(request);
+
+        if (!quadTree.remove(coord.getX(), coord.getY(), request)) {
+            throw new IllegalStateException(request + " is not in the registry");
+        }
+    }
+
+
+    @Override
+    public Iterable<TaxiRequest> findNearestRequests(Node node, int minCount)
+    {
+        Coord coord = node.getCoord();
+        return quadTree.getKNearest(coord.getX(), coord.getY(), minCount);
+    }
+
+
+    private Coord getCoord(TaxiRequest request)
+    {
+        return request.getFromLink().getFromNode().getCoord();
+    }
+
+
+    @Override
+    public int getRequestCount()
+    {
+        return quadTree.size();
+    }
+}
@@ -29,6 +29,7 @@ import org.matsim.contrib.zone.*;
 
 
 public class UnplannedRequestZonalRegistry
+    implements UnplannedRequestRegistry
 {
     private final ZonalSystem zonalSystem;
     private final Map<Id<Zone>, List<Zone>> zonesSortedByDistance;
@@ -50,6 +51,7 @@ public class UnplannedRequestZonalRegistry
 
 
     //after submitted
+    @Override
     public void addRequest(TaxiRequest request)
     {
         Id<Zone> zoneId = getZoneId(request);
@@ -63,6 +65,7 @@ public class UnplannedRequestZonalRegistry
 
 
     //after scheduled
+    @Override
     public void removeRequest(TaxiRequest request)
     {
         Id<Zone> zoneId = getZoneId(request);
@@ -75,6 +78,7 @@ public class UnplannedRequestZonalRegistry
     }
 
 
+    @Override
     public Iterable<TaxiRequest> findNearestRequests(Node node, int minCount)
     {
         Zone zone = zonalSystem.getZone(node);
@@ -99,6 +103,7 @@ public class UnplannedRequestZonalRegistry
     }
 
 
+    @Override
     public int getRequestCount()
     {
         return requestCount;
@@ -0,0 +1,37 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2014 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.benchmark;
+
+import org.junit.Test;
+import org.matsim.contrib.taxi.optimizer.DefaultTaxiOptimizerFactory.OptimizerType;
+
+
+public class RunTaxiPerformanceBenchmarkTest
+{
+    @Test
+    public void testRunSmallMatrix()
+    {
+        String configFile = "./src/main/resources/one_taxi_benchmark/one_taxi_benchmark_config.xml";
+        RunTaxiPerformanceBenchmark.run(configFile,
+                new OptimizerType[] { OptimizerType.RULE_BASED, OptimizerType.ASSIGNMENT,
+                        OptimizerType.ZONAL, OptimizerType.FIFO },
+                new int[] { 2, 5 }, 20, 2);
+    }
+}
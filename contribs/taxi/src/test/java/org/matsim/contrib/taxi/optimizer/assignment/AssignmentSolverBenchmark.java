@@ -0,0 +1,146 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.matsim.core.utils.collections.PackedRTree;
+
+
+/**
+ * Compares the {@link HungarianAlgorithm} and the {@link AuctionAlgorithm} on generated problems
+ * similar to the ones of the {@link AssignmentTaxiOptimizer}: vehicles and requests are placed
+ * randomly in a square, each vehicle may only take its <code>k</code> nearest requests and the
+ * cost is the straight-line travel time. As in {@link AssignmentProblem}, the Hungarian algorithm
+ * gets the dense matrix with <code>nullPathCost</code> for the other pairs.
+ * <p>
+ * Arguments (all optional): vehicles, requests, k, threads
+ */
+public class AssignmentSolverBenchmark
+{
+    private static final double SIZE = 20_000;// m
+    private static final double SPEED = 10;// m/s
+    private static final double NULL_PATH_COST = 48 * 3600;
+
+
+    public static void main(String[] args)
+    {
+        int[] sizes = args.length > 0 ? new int[] { Integer.parseInt(args[0]) }
+                : new int[] { 250, 500, 1000, 2000 };
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+        System.out.println("vehicles\trequests\tk\thungarian[ms]\tauction[ms]\twarm[ms]"
+                + "\thungarianCost\tauctionCost\tgap[%]\tunassigned");
+        for (int vehicles : sizes) {
+            int requests = args.length > 1 ? Integer.parseInt(args[1]) : vehicles;
+            run(vehicles, requests, k, threads, new Random(vehicles));
+        }
+    }
+
+
+    private static void run(int vehicles, int requests, int k, int threads, Random random)
+    {
+        double[][] vehCoords = randomCoords(vehicles, random);
+        double[][] reqCoords = randomCoords(requests, random);
+
+        PackedRTree.Builder<Integer> builder = new PackedRTree.Builder<>();
+        for (int r = 0; r < requests; r++) {
+            builder.put(reqCoords[r][0], reqCoords[r][1], r);
+        }
+        PackedRTree<Integer> requestIndex = builder.build();
+
+        double[][] denseCosts = new double[vehicles][requests];
+        SparseCostMatrix sparseCosts = new SparseCostMatrix(vehicles, requests);
+        double maxCost = 0;
+        for (int v = 0; v < vehicles; v++) {
+            Arrays.fill(denseCosts[v], NULL_PATH_COST);
+            List<Integer> nearest = requestIndex.getKNearest(vehCoords[v][0], vehCoords[v][1], k);
+            Collections.sort(nearest);
+            for (int r : nearest) {
+                double cost = Math.hypot(vehCoords[v][0] - reqCoords[r][0],
+                        vehCoords[v][1] - reqCoords[r][1]) / SPEED;
+                denseCosts[v][r] = cost;
+                sparseCosts.add(v, r, cost);
+                maxCost = Math.max(maxCost, cost);
+            }
+        }
+        double[] unassignedCosts = new double[vehicles];
+        Arrays.fill(unassignedCosts, maxCost + NULL_PATH_COST);
+
+        long t0 = System.nanoTime();
+        int[] hungarian = new HungarianAlgorithm(denseCosts).execute();
+        long t1 = System.nanoTime();
+        AuctionAlgorithm auction = new AuctionAlgorithm(sparseCosts, unassignedCosts, 1);
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        if (executor != null) {
+            auction.setExecutor(executor, threads);
+        }
+        int[] auctionResult = auction.execute();
+        long t2 = System.nanoTime();
+
+        // the same problem once more, e.g. the next reoptimization without any changes
+        AuctionAlgorithm warmAuction = new AuctionAlgorithm(sparseCosts, unassignedCosts, 1);
+        warmAuction.setWarmStart(auction.getPrices(), auctionResult);
+        warmAuction.execute();
+        long t3 = System.nanoTime();
+        if (executor != null) {
+            executor.shutdown();
+        }
+
+        // pairs not assigned by the auction count as null paths, as in the Hungarian algorithm
+        double hungarianCost = calcCost(denseCosts, hungarian);
+        double auctionCost = calcCost(denseCosts, auctionResult);
+        int unassigned = 0;
+        for (int v = 0; v < vehicles; v++) {
+            if (auctionResult[v] == -1) {
+                unassigned++;
+            }
+        }
+        auctionCost += (Math.min(vehicles, requests) - (vehicles - unassigned)) * NULL_PATH_COST;
+
+        System.out.printf("%d\t%d\t%d\t%d\t%d\t%d\t%.0f\t%.0f\t%.3f\t%d\n", vehicles, requests, k,
+                (t1 - t0) / 1_000_000, (t2 - t1) / 1_000_000, (t3 - t2) / 1_000_000, hungarianCost,
+                auctionCost, 100 * (auctionCost - hungarianCost) / hungarianCost, unassigned);
+    }
+
+
+    private static double[][] randomCoords(int count, Random random)
+    {
+        double[][] coords = new double[count][];
+        for (int i = 0; i < count; i++) {
+            coords[i] = new double[] { SIZE * random.nextDouble(), SIZE * random.nextDouble() };
+        }
+        return coords;
+    }
+
+
+    private static double calcCost(double[][] costs, int[] assignment)
+    {
+        double sum = 0;
+        for (int v = 0; v < assignment.length; v++) {
+            if (assignment[v] != -1) {
+                sum += costs[v][assignment[v]];
+            }
+        }
+        return sum;
+    }
+}
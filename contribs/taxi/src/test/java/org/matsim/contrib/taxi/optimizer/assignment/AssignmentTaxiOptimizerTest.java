@@ -0,0 +1,207 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import java.util.*;
+
+import org.apache.commons.configuration.MapConfiguration;
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.contrib.taxi.data.*;
+import org.matsim.contrib.taxi.optimizer.*;
+import org.matsim.contrib.taxi.schedule.*;
+import org.matsim.contrib.taxi.scheduler.*;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.mobsim.framework.events.*;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.matsim.core.router.util.TravelTime;
+
+
+/**
+ * The schedules must not depend on the number of threads computing the paths, nor on whether the
+ * nearest requests/vehicles are found with a spatial index or by a linear scan.
+ */
+public class AssignmentTaxiOptimizerTest
+{
+    private static final int GRID_SIZE = 12;
+    private static final int NEAREST_LIMIT = 5;
+
+
+    @Test
+    public void testSameSchedules_moreRequests()
+    {
+        //paths are computed for each vehicle
+        assertSameSchedules(10, 30);
+    }
+
+
+    @Test
+    public void testSameSchedules_moreVehicles()
+    {
+        //paths are computed for each request
+        assertSameSchedules(30, 10);
+    }
+
+
+    @Test
+    public void testThreadsStoppedAtCleanup()
+        throws InterruptedException
+    {
+        calcSchedules(10, 30, 4, false);
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("AssignmentPaths")) {
+                thread.join(10000);
+                Assert.assertFalse(thread.isAlive());
+            }
+        }
+    }
+
+
+    private void assertSameSchedules(int vehicleCount, int requestCount)
+    {
+        List<String> expected = calcSchedules(vehicleCount, requestCount, 1, false);
+        Assert.assertEquals(expected, calcSchedules(vehicleCount, requestCount, 4, false));
+        Assert.assertEquals(expected, calcSchedules(vehicleCount, requestCount, 1, true));
+        Assert.assertEquals(expected, calcSchedules(vehicleCount, requestCount, 4, true));
+    }
+
+
+    private List<String> calcSchedules(int vehicleCount, int requestCount, int threads,
+            boolean spatialIndexFilter)
+    {
+        Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+        Random random = new Random(4711);
+        List<Link> links = createNetwork(scenario.getNetwork(), random);
+
+        //vehicles and requests at different links, so that all straight-line distances differ
+        Collections.shuffle(links, random);
+        TaxiData taxiData = new TaxiData();
+        for (int i = 0; i < vehicleCount; i++) {
+            taxiData.addVehicle(new VehicleImpl(Id.create(i, Vehicle.class), links.get(i), 1, 0,
+                    36000));
+        }
+
+        MobsimTimer timer = new MobsimTimer();
+        TravelTime travelTime = new FreeSpeedTravelTime();
+        TimeAsTravelDisutility travelDisutility = new TimeAsTravelDisutility(travelTime);
+        TaxiScheduler scheduler = new TaxiScheduler(scenario, taxiData, timer,
+                new TaxiSchedulerParams(false, false, 60, 30, 1), travelTime, travelDisutility);
+        for (Vehicle veh : taxiData.getVehicles().values()) {
+            veh.getSchedule().nextTask();
+        }
+
+        TaxiOptimizerContext optimContext = new TaxiOptimizerContext(taxiData, scenario, timer,
+                travelTime, travelDisutility, scheduler);
+        AssignmentTaxiOptimizer optimizer = new AssignmentTaxiOptimizer(optimContext,
+                createParams(threads, spatialIndexFilter));
+
+        for (int i = 0; i < requestCount; i++) {
+            TaxiRequest request = new TaxiRequest(Id.create(i, Request.class), null,
+                    links.get(vehicleCount + i), links.get(links.size() - 1 - i), 0, 0);
+            taxiData.addRequest(request);
+            optimizer.requestSubmitted(request);
+        }
+        optimizer.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<>(null, 0));
+        optimizer.notifyMobsimBeforeCleanup(new MobsimBeforeCleanupEvent<>(null));
+
+        List<String> schedules = new ArrayList<>();
+        for (Vehicle veh : taxiData.getVehicles().values()) {
+            StringBuilder sb = new StringBuilder(veh.getId().toString());
+            for (TaxiTask task : TaxiSchedules.asTaxiSchedule(veh.getSchedule()).getTasks()) {
+                sb.append(' ').append(task);
+                if (task instanceof TaxiTaskWithRequest) {
+                    sb.append(" req=").append(((TaxiTaskWithRequest)task).getRequest().getId());
+                }
+                if (task instanceof DriveTask) {
+                    sb.append(" to=").append(((DriveTask)task).getPath().getToLink().getId());
+                }
+            }
+            schedules.add(sb.toString());
+        }
+        return schedules;
+    }
+
+
+    //grid with slightly shifted nodes
+    private List<Link> createNetwork(Network network, Random random)
+    {
+        NetworkFactory factory = network.getFactory();
+        Node[][] nodes = new Node[GRID_SIZE][GRID_SIZE];
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                Coord coord = new Coord(500 * i + 200 * random.nextDouble(),
+                        500 * j + 200 * random.nextDouble());
+                nodes[i][j] = factory.createNode(Id.createNodeId(i + "_" + j), coord);
+                network.addNode(nodes[i][j]);
+            }
+        }
+
+        List<Link> links = new ArrayList<>();
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                if (i + 1 < GRID_SIZE) {
+                    links.add(createLink(network, nodes[i][j], nodes[i + 1][j], random));
+                    links.add(createLink(network, nodes[i + 1][j], nodes[i][j], random));
+                }
+                if (j + 1 < GRID_SIZE) {
+                    links.add(createLink(network, nodes[i][j], nodes[i][j + 1], random));
+                    links.add(createLink(network, nodes[i][j + 1], nodes[i][j], random));
+                }
+            }
+        }
+        return links;
+    }
+
+
+    private Link createLink(Network network, Node fromNode, Node toNode, Random random)
+    {
+        Link link = network.getFactory().createLink(
+                Id.createLinkId(fromNode.getId() + "-" + toNode.getId()), fromNode, toNode);
+        Coord from = fromNode.getCoord();
+        Coord to = toNode.getCoord();
+        link.setLength(Math.hypot(from.getX() - to.getX(), from.getY() - to.getY()));
+        link.setFreespeed(8 + 8 * random.nextDouble());
+        link.setCapacity(1000);
+        link.setNumberOfLanes(1);
+        network.addLink(link);
+        return link;
+    }
+
+
+    private AssignmentTaxiOptimizerParams createParams(int threads, boolean spatialIndexFilter)
+    {
+        Map<String, Object> params = new HashMap<>();
+        params.put(AbstractTaxiOptimizerParams.ID, "assignment");
+        params.put(AssignmentTaxiOptimizerParams.MODE, "DSE");
+        params.put(AssignmentTaxiOptimizerParams.VEH_PLANNING_HORIZON_OVERSUPPLY, 120);
+        params.put(AssignmentTaxiOptimizerParams.VEH_PLANNING_HORIZON_UNDERSUPPLY, 30);
+        params.put(AssignmentTaxiOptimizerParams.NEAREST_REQUESTS_LIMIT, NEAREST_LIMIT);
+        params.put(AssignmentTaxiOptimizerParams.NEAREST_VEHICLES_LIMIT, NEAREST_LIMIT);
+        params.put(AssignmentTaxiOptimizerParams.SPATIAL_INDEX_FILTER, spatialIndexFilter);
+        params.put(AssignmentTaxiOptimizerParams.THREADS, threads);
+        return new AssignmentTaxiOptimizerParams(new MapConfiguration(params));
+    }
+}
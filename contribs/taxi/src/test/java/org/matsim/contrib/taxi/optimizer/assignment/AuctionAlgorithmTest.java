@@ -0,0 +1,185 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+
+public class AuctionAlgorithmTest
+{
+    @Test
+    public void testSameCostAsHungarian_square()
+    {
+        assertSameCostAsHungarian(30, 30, 1);
+    }
+
+
+    @Test
+    public void testSameCostAsHungarian_moreJobs()
+    {
+        assertSameCostAsHungarian(20, 35, 2);
+    }
+
+
+    @Test
+    public void testSameCostAsHungarian_moreWorkers()
+    {
+        // with more workers than jobs, the jobs should bid; here the workers bid anyway
+        assertSameCostAsHungarian(35, 20, 3);
+    }
+
+
+    @Test
+    public void testWorkersWithoutJobs()
+    {
+        SparseCostMatrix matrix = new SparseCostMatrix(4, 2);
+        matrix.add(0, 0, 5);
+        matrix.add(0, 1, 1);
+        matrix.add(2, 1, 2);// worker 1 and 3 have no jobs
+
+        int[] assignment = new AuctionAlgorithm(matrix, new double[] { 100, 100, 100, 100 }, 0.1)
+                .execute();
+        Assert.assertArrayEquals(new int[] { 0, -1, 1, -1 }, assignment);
+    }
+
+
+    @Test
+    public void testStayingUnassignedIsCheaper()
+    {
+        SparseCostMatrix matrix = new SparseCostMatrix(2, 1);
+        matrix.add(0, 0, 50);
+        matrix.add(1, 0, 10);
+
+        int[] assignment = new AuctionAlgorithm(matrix, new double[] { 30, 30 }, 0.1).execute();
+        Assert.assertArrayEquals(new int[] { -1, 0 }, assignment);
+    }
+
+
+    @Test
+    public void testMultipleThreads()
+    {
+        Random random = new Random(4711);
+        SparseCostMatrix matrix = createSparseMatrix(3000, 3000, 10, random);
+        double[] unassignedCosts = new double[3000];
+        Arrays.fill(unassignedCosts, 10000);
+
+        int[] expected = new AuctionAlgorithm(matrix, unassignedCosts, 1).execute();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AuctionAlgorithm auction = new AuctionAlgorithm(matrix, unassignedCosts, 1);
+            auction.setExecutor(executor, 4);
+            Assert.assertArrayEquals(expected, auction.execute());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testWarmStart()
+    {
+        Random random = new Random(1234);
+        SparseCostMatrix matrix = createSparseMatrix(500, 600, 8, random);
+        double[] unassignedCosts = new double[500];
+        Arrays.fill(unassignedCosts, 10000);
+
+        AuctionAlgorithm cold = new AuctionAlgorithm(matrix, unassignedCosts, 1);
+        int[] coldAssignment = cold.execute();
+
+        AuctionAlgorithm warm = new AuctionAlgorithm(matrix, unassignedCosts, 1);
+        warm.setWarmStart(cold.getPrices(), coldAssignment);
+        int[] warmAssignment = warm.execute();
+
+        // the previous solution is still optimal, only the unassigned workers bid once more
+        Assert.assertArrayEquals(coldAssignment, warmAssignment);
+        Assert.assertTrue(warm.getRounds() <= 1);
+        Assert.assertTrue(cold.getRounds() > 1);
+    }
+
+
+    private static void assertSameCostAsHungarian(int workers, int jobs, long seed)
+    {
+        Random random = new Random(seed);
+        double[][] costs = new double[workers][jobs];
+        SparseCostMatrix matrix = new SparseCostMatrix(workers, jobs);
+        for (int w = 0; w < workers; w++) {
+            for (int j = 0; j < jobs; j++) {
+                costs[w][j] = random.nextInt(1000);
+                matrix.add(w, j, costs[w][j]);
+            }
+        }
+
+        double[] unassignedCosts = new double[workers];
+        Arrays.fill(unassignedCosts, 100000);
+
+        // integer costs: epsilon < 1/n gives the optimum
+        int[] auction = new AuctionAlgorithm(matrix, unassignedCosts, 1. / (workers + 1)).execute();
+        int[] hungarian = new HungarianAlgorithm(costs).execute();
+
+        Assert.assertEquals(calcCost(costs, hungarian), calcCost(costs, auction), 1e-9);
+        Assert.assertEquals(Math.min(workers, jobs), countAssigned(auction));
+    }
+
+
+    static SparseCostMatrix createSparseMatrix(int workers, int jobs, int jobsPerWorker,
+            Random random)
+    {
+        SparseCostMatrix matrix = new SparseCostMatrix(workers, jobs);
+        for (int w = 0; w < workers; w++) {
+            Set<Integer> selected = new TreeSet<>();
+            while (selected.size() < jobsPerWorker) {
+                selected.add(random.nextInt(jobs));
+            }
+            for (int j : selected) {
+                matrix.add(w, j, random.nextInt(1000));
+            }
+        }
+        return matrix;
+    }
+
+
+    private static double calcCost(double[][] costs, int[] assignment)
+    {
+        double sum = 0;
+        for (int w = 0; w < assignment.length; w++) {
+            if (assignment[w] != -1) {
+                sum += costs[w][assignment[w]];
+            }
+        }
+        return sum;
+    }
+
+
+    private static int countAssigned(int[] assignment)
+    {
+        int count = 0;
+        for (int job : assignment) {
+            if (job != -1) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
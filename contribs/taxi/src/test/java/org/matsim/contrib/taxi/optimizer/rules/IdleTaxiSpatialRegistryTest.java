@@ -0,0 +1,187 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.rules;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.schedule.Schedule;
+import org.matsim.contrib.dvrp.util.LinkTimePair;
+import org.matsim.contrib.taxi.schedule.*;
+import org.matsim.contrib.taxi.scheduler.TaxiScheduleInquiry;
+import org.matsim.core.network.NetworkUtils;
+
+import com.google.common.collect.Lists;
+
+
+public class IdleTaxiSpatialRegistryTest
+{
+    private static final int VEHICLE_COUNT = 10;
+
+    private final Network network = NetworkUtils.createNetwork();
+    private final List<Link> links = new ArrayList<>();
+    private final List<Vehicle> vehicles = new ArrayList<>();
+
+    //vehicles that have just been dispatched, but are still staying at their links
+    private final Set<Vehicle> dispatched = new HashSet<>();
+
+    private IdleTaxiSpatialRegistry registry;
+
+
+    @Before
+    public void setUp()
+    {
+        //link i ends at node i; the further i, the further node i is from node 0
+        NetworkFactory factory = network.getFactory();
+        for (int i = 0; i < VEHICLE_COUNT; i++) {
+            Node node = factory.createNode(Id.createNodeId(i), new Coord(100 * i, 50 * (i % 3)));
+            network.addNode(node);
+        }
+        for (int i = 0; i < VEHICLE_COUNT; i++) {
+            Node fromNode = network.getNodes().get(Id.createNodeId(i == 0 ? 1 : i - 1));
+            Node toNode = network.getNodes().get(Id.createNodeId(i));
+            Link link = factory.createLink(Id.createLinkId(i), fromNode, toNode);
+            network.addLink(link);
+            links.add(link);
+        }
+
+        registry = new IdleTaxiSpatialRegistry(network, new TestScheduleInquiry());
+
+        for (int i = 0; i < VEHICLE_COUNT; i++) {
+            Vehicle vehicle = new VehicleImpl(Id.create(i, Vehicle.class), links.get(i), 1, 0, 1000);
+            Schedule<TaxiTask> schedule = TaxiSchedules.asTaxiSchedule(vehicle.getSchedule());
+            schedule.addTask(new TaxiStayTask(0, 1000, links.get(i)));
+            schedule.nextTask();
+            vehicles.add(vehicle);
+            registry.addVehicle(vehicle);
+        }
+    }
+
+
+    @Test
+    public void testFindNearestVehicles()
+    {
+        Assert.assertEquals(vehicles.subList(0, 3), findNearestVehicles(0, 3));
+        Assert.assertEquals(Arrays.asList(vehicles.get(5), vehicles.get(4), vehicles.get(6)),
+                findNearestVehicles(5, 3));
+    }
+
+
+    @Test
+    public void testFindNearestVehicles_allVehicles()
+    {
+        Assert.assertEquals(VEHICLE_COUNT, findNearestVehicles(0, VEHICLE_COUNT).size());
+        Assert.assertEquals(VEHICLE_COUNT, findNearestVehicles(0, VEHICLE_COUNT + 5).size());
+    }
+
+
+    @Test
+    public void testFindNearestVehicles_justDispatched()
+    {
+        //the search is extended until enough idle vehicles are found
+        dispatched.addAll(vehicles.subList(0, 5));
+        Assert.assertEquals(vehicles.subList(5, 8), findNearestVehicles(0, 2));
+
+        //not enough idle vehicles
+        dispatched.addAll(vehicles.subList(5, 9));
+        Assert.assertEquals(vehicles.subList(9, 10), findNearestVehicles(0, 2));
+        Assert.assertEquals(vehicles.subList(9, 10), findNearestVehicles(0, VEHICLE_COUNT));
+    }
+
+
+    @Test
+    public void testRemoveVehicle()
+    {
+        Vehicle vehicle = vehicles.get(0);
+        startNextStayTask(vehicle);
+        registry.removeVehicle(vehicle);
+
+        Assert.assertEquals(VEHICLE_COUNT - 1, registry.getVehicleCount());
+        Assert.assertEquals(vehicles.subList(1, 3), findNearestVehicles(0, 2));
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testRemoveVehicle_notInRegistry()
+    {
+        Vehicle vehicle = vehicles.get(0);
+        startNextStayTask(vehicle);
+        registry.removeVehicle(vehicle);
+        registry.removeVehicle(vehicle);
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddVehicle_alreadyInRegistry()
+    {
+        registry.addVehicle(vehicles.get(0));
+    }
+
+
+    private List<Vehicle> findNearestVehicles(int nodeIdx, int minCount)
+    {
+        Node node = network.getNodes().get(Id.createNodeId(nodeIdx));
+        return Lists.newArrayList(registry.findNearestVehicles(node, minCount));
+    }
+
+
+    //the stay task, at which the vehicle has been registered, becomes the previous task
+    private void startNextStayTask(Vehicle vehicle)
+    {
+        Schedule<TaxiTask> schedule = TaxiSchedules.asTaxiSchedule(vehicle.getSchedule());
+        schedule.addTask(new TaxiStayTask(1000, 2000, links.get(0)));
+        schedule.nextTask();
+    }
+
+
+    private class TestScheduleInquiry
+        implements TaxiScheduleInquiry
+    {
+        @Override
+        public boolean isIdle(Vehicle vehicle)
+        {
+            return !dispatched.contains(vehicle);
+        }
+
+
+        @Override
+        public LinkTimePair getImmediateDiversion(Vehicle veh)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public LinkTimePair getEarliestIdleness(Vehicle veh)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public LinkTimePair getImmediateDiversionOrEarliestIdleness(Vehicle veh)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.rules;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.Request;
+import org.matsim.contrib.taxi.data.TaxiRequest;
+import org.matsim.core.network.NetworkUtils;
+
+import com.google.common.collect.Lists;
+
+
+public class UnplannedRequestSpatialRegistryTest
+{
+    private static final int REQUEST_COUNT = 10;
+
+    private final Network network = NetworkUtils.createNetwork();
+    private final List<TaxiRequest> requests = new ArrayList<>();
+
+    private UnplannedRequestSpatialRegistry registry;
+
+
+    @Before
+    public void setUp()
+    {
+        //link i starts at node i; the further i, the further node i is from node 0
+        NetworkFactory factory = network.getFactory();
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            Node node = factory.createNode(Id.createNodeId(i), new Coord(100 * i, 50 * (i % 3)));
+            network.addNode(node);
+        }
+        List<Link> links = new ArrayList<>();
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            Node fromNode = network.getNodes().get(Id.createNodeId(i));
+            Node toNode = network.getNodes().get(Id.createNodeId(i == 0 ? 1 : i - 1));
+            Link link = factory.createLink(Id.createLinkId(i), fromNode, toNode);
+            network.addLink(link);
+            links.add(link);
+        }
+
+        registry = new UnplannedRequestSpatialRegistry(network);
+
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            TaxiRequest request = new TaxiRequest(Id.create(i, Request.class), null, links.get(i),
+                    links.get(0), 0, 0);
+            requests.add(request);
+            registry.addRequest(request);
+        }
+    }
+
+
+    @Test
+    public void testFindNearestRequests()
+    {
+        Assert.assertEquals(requests.subList(0, 3), findNearestRequests(0, 3));
+        Assert.assertEquals(Arrays.asList(requests.get(5), requests.get(4), requests.get(6)),
+                findNearestRequests(5, 3));
+        Assert.assertEquals(REQUEST_COUNT, findNearestRequests(9, REQUEST_COUNT + 5).size());
+    }
+
+
+    @Test
+    public void testRemoveRequest()
+    {
+        registry.removeRequest(requests.get(1));
+
+        Assert.assertEquals(REQUEST_COUNT - 1, registry.getRequestCount());
+        Assert.assertEquals(Arrays.asList(requests.get(0), requests.get(2)), findNearestRequests(0, 2));
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testRemoveRequest_notInRegistry()
+    {
+        registry.removeRequest(requests.get(1));
+        registry.removeRequest(requests.get(1));
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddRequest_alreadyInRegistry()
+    {
+        registry.addRequest(requests.get(0));
+    }
+
+
+    private List<TaxiRequest> findNearestRequests(int nodeIdx, int minCount)
+    {
+        Node node = network.getNodes().get(Id.createNodeId(nodeIdx));
+        return Lists.newArrayList(registry.findNearestRequests(node, minCount));
+    }
+}
@@ -22,7 +22,10 @@ package org.matsim.analysis;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -37,7 +40,6 @@ import org.matsim.api.core.v01.events.handler.ActivityStartEventHandler;
 import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
 import org.matsim.api.core.v01.events.handler.PersonDepartureEventHandler;
 import org.matsim.api.core.v01.population.Person;
-import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.core.utils.misc.Time;
@@ -60,16 +62,24 @@ public class CalcLegTimes implements PersonDepartureEventHandler, PersonArrivalE
 	private static final int SLOT_SIZE = 300;	// 5-min slots
 	private static final int MAXINDEX = 12; // slots 0..11 are regular slots, slot 12 is anything above
 
-	private final Map<Id<Person>, Double> agentDepartures = new HashMap<>();
-	private final Map<Id<Person>, Double> agentArrivals = new HashMap<>();
-	private final Map<String, int[]> legStats = new TreeMap<>();
-	private final Map<Id<Person>, String> previousActivityTypes = new HashMap<>();
+	// the times and activity types are stored per person index, the persons get their indices in the
+	// order they appear; NaN/-1 if not known
+	private final Map<Id<Person>, Integer> personIndices = new HashMap<>();
+	private double[] agentDepartures = new double[0];
+	private double[] agentArrivals = new double[0];
+	private int[] previousActivityTypes = new int[0];
+
+	// the stats are stored per index of the from and to activity types
+	private final Map<String, Integer> actTypeIndices = new HashMap<>();
+	private final List<String> actTypes = new ArrayList<>();
+	private int[][][] legStats = new int[0][][];
+
 	private double sumTripDurations = 0;
 	private int sumTrips = 0;
 
 	@Inject
-	CalcLegTimes(EventsManager eventsManager) {
-		eventsManager.addHandler(this);
+	CalcLegTimes(IterationAnalysisEngine analysisEngine) {
+		analysisEngine.addAnalyzer(this);
 	}
 
 	public CalcLegTimes() {
@@ -78,56 +88,122 @@ public class CalcLegTimes implements PersonDepartureEventHandler, PersonArrivalE
 
 	@Override
 	public void handleEvent(ActivityEndEvent event) {
-		this.previousActivityTypes.put(event.getPersonId(), event.getActType());
+		int personIndex = getPersonIndex(event.getPersonId());
+		this.previousActivityTypes[personIndex] = getActTypeIndex(event.getActType());
 	}
 	
 	@Override
 	public void handleEvent(final PersonDepartureEvent event) {
-		this.agentDepartures.put(event.getPersonId(), event.getTime());
+		int personIndex = getPersonIndex(event.getPersonId());
+		this.agentDepartures[personIndex] = event.getTime();
 	}
 
 	@Override
 	public void handleEvent(final PersonArrivalEvent event) {
-		this.agentArrivals.put(event.getPersonId(), event.getTime());
+		int personIndex = getPersonIndex(event.getPersonId());
+		this.agentArrivals[personIndex] = event.getTime();
 	}
 
 
 	@Override
 	public void handleEvent(ActivityStartEvent event) {
-		Double depTime = this.agentDepartures.remove(event.getPersonId());
-		Double arrTime = this.agentArrivals.remove(event.getPersonId());
-		if (depTime != null) {
+		int personIndex = getPersonIndex(event.getPersonId());
+		double depTime = this.agentDepartures[personIndex];
+		double arrTime = this.agentArrivals[personIndex];
+		this.agentDepartures[personIndex] = Double.NaN;
+		this.agentArrivals[personIndex] = Double.NaN;
+		if (!Double.isNaN(depTime)) {
 			double travTime = arrTime - depTime;
-			String fromActType = previousActivityTypes.remove(event.getPersonId());
-			String toActType = event.getActType();
-			String legType = fromActType + "---" + toActType;
-			int[] stats = this.legStats.get(legType);
-			if (stats == null) {
-				stats = new int[MAXINDEX+1];
-				for (int i = 0; i <= MAXINDEX; i++) {
-					stats[i] = 0;
-				}
-				this.legStats.put(legType, stats);
+			int fromActType = this.previousActivityTypes[personIndex];
+			if (fromActType < 0) {
+				fromActType = getActTypeIndex(null);
 			}
-			stats[getTimeslotIndex(travTime)]++;
+			this.previousActivityTypes[personIndex] = -1;
+			int toActType = getActTypeIndex(event.getActType());
+			getStats(fromActType, toActType)[getTimeslotIndex(travTime)]++;
 
 			this.sumTripDurations += travTime;
 			this.sumTrips++;
 		}
 	}
 
+	private int getPersonIndex(final Id<Person> personId) {
+		Integer index = this.personIndices.get(personId);
+		if (index == null) {
+			index = this.personIndices.size();
+			this.personIndices.put(personId, index);
+			if (this.agentDepartures.length <= index) {
+				int length = Math.max(16, this.agentDepartures.length * 2);
+				this.agentDepartures = copyOf(this.agentDepartures, length, Double.NaN);
+				this.agentArrivals = copyOf(this.agentArrivals, length, Double.NaN);
+				int[] types = Arrays.copyOf(this.previousActivityTypes, length);
+				Arrays.fill(types, this.previousActivityTypes.length, length, -1);
+				this.previousActivityTypes = types;
+			}
+		}
+		return index;
+	}
+
+	private static double[] copyOf(final double[] original, final int length, final double fill) {
+		double[] copy = Arrays.copyOf(original, length);
+		Arrays.fill(copy, original.length, length, fill);
+		return copy;
+	}
+
+	private int getActTypeIndex(final String actType) {
+		Integer index = this.actTypeIndices.get(actType);
+		if (index == null) {
+			index = this.actTypes.size();
+			this.actTypeIndices.put(actType, index);
+			this.actTypes.add(actType);
+		}
+		return index;
+	}
+
+	private int[] getStats(final int fromActType, final int toActType) {
+		if (this.legStats.length <= fromActType) {
+			this.legStats = Arrays.copyOf(this.legStats, this.actTypes.size());
+		}
+		int[][] statsFrom = this.legStats[fromActType];
+		if (statsFrom == null || statsFrom.length <= toActType) {
+			statsFrom = statsFrom == null ? new int[this.actTypes.size()][] : Arrays.copyOf(statsFrom, this.actTypes.size());
+			this.legStats[fromActType] = statsFrom;
+		}
+		int[] stats = statsFrom[toActType];
+		if (stats == null) {
+			stats = new int[MAXINDEX+1];
+			statsFrom[toActType] = stats;
+		}
+		return stats;
+	}
+
 	
 	@Override
 	public void reset(final int iteration) {
-		this.previousActivityTypes.clear();
-		this.agentDepartures.clear();
-		this.legStats.clear();
+		Arrays.fill(this.previousActivityTypes, -1);
+		Arrays.fill(this.agentDepartures, Double.NaN);
+		Arrays.fill(this.agentArrivals, Double.NaN);
+		this.legStats = new int[0][][];
 		this.sumTripDurations = 0;
 		this.sumTrips = 0;
 	}
 
+	/**
+	 * @return the stats per leg type "fromActType---toActType", sorted by leg type
+	 */
 	public Map<String, int[]> getLegStats() {
-		return this.legStats;
+		Map<String, int[]> stats = new TreeMap<>();
+		for (int from = 0; from < this.legStats.length; from++) {
+			if (this.legStats[from] == null) {
+				continue;
+			}
+			for (int to = 0; to < this.legStats[from].length; to++) {
+				if (this.legStats[from][to] != null) {
+					stats.put(this.actTypes.get(from) + "---" + this.actTypes.get(to), this.legStats[from][to]);
+				}
+			}
+		}
+		return stats;
 	}
 
 	public static int getTimeslotIndex(final double time_s) {
@@ -155,7 +231,7 @@ public class CalcLegTimes implements PersonDepartureEventHandler, PersonArrivalE
 	public void writeStats(final java.io.Writer out) throws UncheckedIOException {
 		try {
 		boolean first = true;
-		for (Map.Entry<String, int[]> entry : this.legStats.entrySet()) {
+		for (Map.Entry<String, int[]> entry : getLegStats().entrySet()) {
 			String key = entry.getKey();
 			int[] counts = entry.getValue();
 			if (first) {
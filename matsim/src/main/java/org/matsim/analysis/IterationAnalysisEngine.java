@@ -0,0 +1,255 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.events.handler.EventHandler;
+
+/**
+ * Feeds the events of an iteration to the analyzers of the default controler modules
+ * ({@link VolumesAnalyzer}, {@link LegHistogram} and {@link CalcLegTimes}).
+ * <p></p>
+ * Instead of registering every analyzer with the {@link EventsManager}, only this
+ * class is registered, so each event is dispatched once. While the mobsim runs, the
+ * events are passed in batches to a dedicated thread, which updates all analyzers.
+ * The core controler listeners wait for this thread right after the events manager
+ * has finished processing, so the analyzers are complete when the after mobsim
+ * listeners are called. Outside of the mobsim, e.g. when the analyzers are used
+ * without a controler, the events are handled directly.
+ * <p></p>
+ * This is only done if {@link ParallelEventHandlingConfigGroup#getAnalysisInSeparateThread()}
+ * is enabled. Otherwise (the default), the analyzers are registered with the events manager
+ * as before.
+ */
+@Singleton
+public final class IterationAnalysisEngine implements BasicEventHandler, BeforeMobsimListener, AfterMobsimListener {
+
+	private final static Logger log = Logger.getLogger(IterationAnalysisEngine.class);
+
+	private static final int BATCH_SIZE = 1024;
+	private static final int QUEUE_CAPACITY = 64;
+	private static final List<Event> END_OF_ITERATION = Collections.emptyList();
+
+	private final EventsManager eventsManager;
+	private final boolean separateThread;
+	private boolean registered = false;
+
+	private final List<VolumesAnalyzer> volumesAnalyzers = new ArrayList<>();
+	private final List<LegHistogram> legHistograms = new ArrayList<>();
+	private final List<CalcLegTimes> legTimes = new ArrayList<>();
+
+	private BlockingQueue<List<Event>> queue = null;
+	private List<Event> batch = null;
+	private Thread worker = null;
+	private volatile Throwable workerException = null;
+
+	@Inject
+	IterationAnalysisEngine(final EventsManager eventsManager, final ParallelEventHandlingConfigGroup config) {
+		this.eventsManager = eventsManager;
+		this.separateThread = config.getAnalysisInSeparateThread() != null && config.getAnalysisInSeparateThread();
+	}
+
+	void addAnalyzer(final VolumesAnalyzer analyzer) {
+		if (register(analyzer)) {
+			this.volumesAnalyzers.add(analyzer);
+		}
+	}
+
+	void addAnalyzer(final LegHistogram analyzer) {
+		if (register(analyzer)) {
+			this.legHistograms.add(analyzer);
+		}
+	}
+
+	void addAnalyzer(final CalcLegTimes analyzer) {
+		if (register(analyzer)) {
+			this.legTimes.add(analyzer);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the events for the analyzer are dispatched by this class
+	 */
+	private boolean register(final EventHandler analyzer) {
+		if (!this.separateThread) {
+			this.eventsManager.addHandler(analyzer);
+			return false;
+		}
+		if (!this.registered) {
+			this.eventsManager.addHandler(this);
+			this.registered = true;
+		}
+		return true;
+	}
+
+	@Override
+	public void notifyBeforeMobsim(final BeforeMobsimEvent event) {
+		if (this.registered) {
+			this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+			this.batch = new ArrayList<>(BATCH_SIZE);
+			this.workerException = null;
+			this.worker = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					processQueue();
+				}
+			}, "IterationAnalysis");
+			this.worker.setDaemon(true);
+			this.worker.start();
+		}
+	}
+
+	@Override
+	public void notifyAfterMobsim(final AfterMobsimEvent event) {
+		if (this.worker == null) {
+			return;
+		}
+		try {
+			this.queue.put(this.batch);
+			this.queue.put(END_OF_ITERATION);
+			this.worker.join();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			this.worker = null;
+			this.queue = null;
+			this.batch = null;
+		}
+		if (this.workerException != null) {
+			throw new RuntimeException("Exception while analyzing the events of iteration " + event.getIteration(), this.workerException);
+		}
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		if (this.worker == null) {
+			dispatch(event);
+			return;
+		}
+		this.batch.add(event);
+		if (this.batch.size() == BATCH_SIZE) {
+			try {
+				this.queue.put(this.batch);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			this.batch = new ArrayList<>(BATCH_SIZE);
+		}
+	}
+
+	private void processQueue() {
+		try {
+			List<Event> events;
+			while ((events = this.queue.take()) != END_OF_ITERATION) {
+				if (this.workerException != null) {
+					// keep on taking the batches, so the mobsim is not blocked
+					continue;
+				}
+				try {
+					for (Event event : events) {
+						dispatch(event);
+					}
+				} catch (Throwable e) {
+					log.error("Exception while analyzing events, ignoring all further events of this iteration.", e);
+					this.workerException = e;
+				}
+			}
+		} catch (InterruptedException e) {
+			this.workerException = e;
+		}
+	}
+
+	private void dispatch(final Event event) {
+		if (event instanceof LinkLeaveEvent) {
+			for (VolumesAnalyzer analyzer : this.volumesAnalyzers) {
+				analyzer.handleEvent((LinkLeaveEvent) event);
+			}
+		} else if (event instanceof VehicleEntersTrafficEvent) {
+			for (VolumesAnalyzer analyzer : this.volumesAnalyzers) {
+				analyzer.handleEvent((VehicleEntersTrafficEvent) event);
+			}
+		} else if (event instanceof PersonDepartureEvent) {
+			for (LegHistogram analyzer : this.legHistograms) {
+				analyzer.handleEvent((PersonDepartureEvent) event);
+			}
+			for (CalcLegTimes analyzer : this.legTimes) {
+				analyzer.handleEvent((PersonDepartureEvent) event);
+			}
+		} else if (event instanceof PersonArrivalEvent) {
+			for (LegHistogram analyzer : this.legHistograms) {
+				analyzer.handleEvent((PersonArrivalEvent) event);
+			}
+			for (CalcLegTimes analyzer : this.legTimes) {
+				analyzer.handleEvent((PersonArrivalEvent) event);
+			}
+		} else if (event instanceof PersonStuckEvent) {
+			for (LegHistogram analyzer : this.legHistograms) {
+				analyzer.handleEvent((PersonStuckEvent) event);
+			}
+		} else if (event instanceof ActivityEndEvent) {
+			for (CalcLegTimes analyzer : this.legTimes) {
+				analyzer.handleEvent((ActivityEndEvent) event);
+			}
+		} else if (event instanceof ActivityStartEvent) {
+			for (CalcLegTimes analyzer : this.legTimes) {
+				analyzer.handleEvent((ActivityStartEvent) event);
+			}
+		}
+	}
+
+	@Override
+	public void reset(final int iteration) {
+		for (VolumesAnalyzer analyzer : this.volumesAnalyzers) {
+			analyzer.reset(iteration);
+		}
+		for (LegHistogram analyzer : this.legHistograms) {
+			analyzer.reset(iteration);
+		}
+		for (CalcLegTimes analyzer : this.legTimes) {
+			analyzer.reset(iteration);
+		}
+	}
+
+}
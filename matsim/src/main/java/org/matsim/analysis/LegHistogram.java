@@ -27,16 +27,20 @@ import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
 import org.matsim.api.core.v01.events.handler.PersonDepartureEventHandler;
 import org.matsim.api.core.v01.events.handler.PersonStuckEventHandler;
 import org.matsim.api.core.v01.population.Population;
-import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.utils.misc.Time;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * @author mrieser
@@ -54,13 +58,16 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 	private int iteration = 0;
 	private final int binSize;
 	private final int nofBins;
-	private final Map<String, DataFrame> data = new TreeMap<>();
+	// the counts are stored per mode index; the modes get their indices in the order they appear
+	private final Map<String, Integer> modeIndices = new HashMap<>();
+	private final List<String> modes = new ArrayList<>();
+	private DataFrame[] data = new DataFrame[4];
 
 	@Inject
-	LegHistogram(Population population, EventsManager eventsManager) {
+	LegHistogram(Population population, IterationAnalysisEngine analysisEngine) {
 		this(300);
 		this.population = population;
-		eventsManager.addHandler(this);
+		analysisEngine.addAnalyzer(this);
 	}
 
 	/**
@@ -91,8 +98,7 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 	public void handleEvent(final PersonDepartureEvent event) {
 		int index = getBinIndex(event.getTime());
 		if ((population == null || population.getPersons().keySet().contains(event.getPersonId())) && event.getLegMode() != null) {
-			DataFrame dataFrame = getDataForMode(event.getLegMode());
-			dataFrame.countsDep[index]++;
+			getDataForMode(event.getLegMode()).countsDep[index]++;
 		}
 	}
 
@@ -100,8 +106,7 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 	public void handleEvent(final PersonArrivalEvent event) {
 		int index = getBinIndex(event.getTime());
 		if ((population == null || population.getPersons().keySet().contains(event.getPersonId())) && event.getLegMode() != null) {
-			DataFrame dataFrame = getDataForMode(event.getLegMode());
-			dataFrame.countsArr[index]++;
+			getDataForMode(event.getLegMode()).countsArr[index]++;
 		}
 	}
 
@@ -109,15 +114,16 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 	public void handleEvent(final PersonStuckEvent event) {
 		int index = getBinIndex(event.getTime());
 		if ((population == null || population.getPersons().keySet().contains(event.getPersonId())) && event.getLegMode() != null) {
-			DataFrame dataFrame = getDataForMode(event.getLegMode());
-			dataFrame.countsStuck[index]++;
+			getDataForMode(event.getLegMode()).countsStuck[index]++;
 		}
 	}
 
 	@Override
 	public void reset(final int iter) {
 		this.iteration = iter;
-		this.data.clear();
+		this.modeIndices.clear();
+		this.modes.clear();
+		Arrays.fill(this.data, null);
 	}
 
 	/**
@@ -139,13 +145,14 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 	 * @param stream The data stream where to write the gathered data.
 	 */
 	public void write(final PrintStream stream) {
+		Set<String> legModes = getLegModes();
 		stream.print("time\ttime\tdepartures_all\tarrivals_all\tstuck_all\ten-route_all");
-		for (String legMode : this.data.keySet()) {
+		for (String legMode : legModes) {
 			stream.print("\tdepartures_" + legMode + "\tarrivals_" + legMode + "\tstuck_" + legMode + "\ten-route_" + legMode);
 		}
 		stream.print("\n");
 		int allEnRoute = 0;
-		int[] modeEnRoute = new int[this.data.size()];
+		int[] modeEnRoute = new int[legModes.size()];
         DataFrame allModesData = getAllModesData();
         for (int i = 0; i < allModesData.countsDep.length; i++) {
 			// data about all modes
@@ -155,7 +162,8 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 
 			// data about single modes
 			int mode = 0;
-			for (DataFrame dataFrame : this.data.values()) {
+			for (String legMode : legModes) {
+				DataFrame dataFrame = this.data[this.modeIndices.get(legMode)];
 				modeEnRoute[mode] = modeEnRoute[mode] + dataFrame.countsDep[i] - dataFrame.countsArr[i] - dataFrame.countsStuck[i];
 				stream.print("\t" + dataFrame.countsDep[i] + "\t" + dataFrame.countsArr[i] + "\t" + dataFrame.countsStuck[i] + "\t" + modeEnRoute[mode]);
 				mode++;
@@ -191,7 +199,7 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 	 * @return Set of all transportation modes data is available for
 	 */
 	public Set<String> getLegModes() {
-		return this.data.keySet();
+		return Collections.unmodifiableSet(new TreeSet<>(this.modes));
 	}
 
 	/**
@@ -199,11 +207,11 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 	 * @return number of departures per time-bin, for all legs with the specified mode
 	 */
 	public int[] getDepartures(final String legMode) {
-		DataFrame dataFrame = this.data.get(legMode);
-		if (dataFrame == null) {
+		Integer modeIndex = this.modeIndices.get(legMode);
+		if (modeIndex == null) {
 			return new int[0];
 		}
-		return dataFrame.countsDep.clone();
+		return this.data[modeIndex].countsDep.clone();
 	}
 
 	/**
@@ -211,11 +219,11 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 	 * @return number of all arrivals per time-bin, for all legs with the specified mode
 	 */
 	public int[] getArrivals(final String legMode) {
-		DataFrame dataFrame = this.data.get(legMode);
-		if (dataFrame == null) {
+		Integer modeIndex = this.modeIndices.get(legMode);
+		if (modeIndex == null) {
 			return new int[0];
 		}
-		return dataFrame.countsArr.clone();
+		return this.data[modeIndex].countsArr.clone();
 	}
 
 	/**
@@ -223,11 +231,11 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 	 * @return number of vehicles that got stuck in a time-bin, for all legs with the specified mode
 	 */
 	public int[] getStuck(final String legMode) {
-		DataFrame dataFrame = this.data.get(legMode);
-		if (dataFrame == null) {
+		Integer modeIndex = this.modeIndices.get(legMode);
+		if (modeIndex == null) {
 			return new int[0];
 		}
-		return dataFrame.countsStuck.clone();
+		return this.data[modeIndex].countsStuck.clone();
 	}
 
     int getIteration() {
@@ -236,7 +244,8 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 
     DataFrame getAllModesData() {
         DataFrame result = new DataFrame(this.binSize, this.nofBins + 1);
-        for (DataFrame byMode : data.values()) {
+        for (int m = 0; m < this.modes.size(); m++) {
+            DataFrame byMode = this.data[m];
             for (int i=0;i<result.countsDep.length;++i) {
                 result.countsDep[i] += byMode.countsDep[i];
             }
@@ -259,12 +268,22 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 	}
 
 	DataFrame getDataForMode(final String legMode) {
-		DataFrame dataFrame = this.data.get(legMode);
-		if (dataFrame == null) {
-			dataFrame = new DataFrame(this.binSize, this.nofBins + 1); // +1 for all times out of our range
-			this.data.put(legMode, dataFrame);
+		int modeIndex = getModeIndex(legMode);
+		return this.data[modeIndex];
+	}
+
+	private int getModeIndex(final String legMode) {
+		Integer index = this.modeIndices.get(legMode);
+		if (index == null) {
+			index = this.modes.size();
+			this.modeIndices.put(legMode, index);
+			this.modes.add(legMode);
+			if (this.data.length <= index) {
+				this.data = Arrays.copyOf(this.data, this.data.length * 2);
+			}
+			this.data[index] = new DataFrame(this.binSize, this.nofBins + 1); // +1 for all times out of our range
 		}
-		return dataFrame;
+		return index;
 	}
 
 	static class DataFrame {
@@ -20,7 +20,11 @@
 
 package org.matsim.analysis;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -34,7 +38,6 @@ import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.vehicles.Vehicle;
-import org.matsim.core.api.experimental.events.EventsManager;
 
 import javax.inject.Inject;
 
@@ -49,17 +52,21 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	private final int timeBinSize;
 	private final int maxTime;
 	private final int maxSlotIndex;
-	private final Map<Id<Link>, int[]> links;
+	// the volumes are stored per link index; the links of the network get the first indices,
+	// links only known from the events are appended
+	private final Map<Id<Link>, Integer> linkIndices;
+	private final List<Id<Link>> linkIds;
+	private int[][] links;
 	
 	// for multi-modal support
 	private final boolean observeModes;
 	private final Map<Id<Vehicle>, String> enRouteModes;
-	private final Map<Id<Link>, Map<String, int[]>> linksPerMode;
+	private final Map<String, int[][]> linksPerMode;
 
 	@Inject
-	VolumesAnalyzer(Network network, EventsManager eventsManager) {
+	VolumesAnalyzer(Network network, IterationAnalysisEngine analysisEngine) {
 		this(3600, 24 * 3600 - 1, network);
-		eventsManager.addHandler(this);
+		analysisEngine.addAnalyzer(this);
 	}
 
 	public VolumesAnalyzer(final int timeBinSize, final int maxTime, final Network network) {
@@ -70,12 +77,18 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 		this.timeBinSize = timeBinSize;
 		this.maxTime = maxTime;
 		this.maxSlotIndex = (this.maxTime/this.timeBinSize) + 1;
-		this.links = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+		this.linkIndices = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+		this.linkIds = new ArrayList<>(network.getLinks().size());
+		for (Id<Link> linkId : network.getLinks().keySet()) {
+			this.linkIndices.put(linkId, this.linkIds.size());
+			this.linkIds.add(linkId);
+		}
+		this.links = new int[this.linkIds.size()][];
 		
 		this.observeModes = observeModes;
 		if (this.observeModes) {
 			this.enRouteModes = new HashMap<>();
-			this.linksPerMode = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+			this.linksPerMode = new HashMap<>();
 		} else {
 			this.enRouteModes = null;
 			this.linksPerMode = null;
@@ -91,30 +104,48 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	
 	@Override
 	public void handleEvent(final LinkLeaveEvent event) {
-		int[] volumes = this.links.get(event.getLinkId());
+		int linkIndex = getLinkIndex(event.getLinkId());
+		int timeslot = getTimeSlotIndex(event.getTime());
+		int[] volumes = this.links[linkIndex];
 		if (volumes == null) {
 			volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-			this.links.put(event.getLinkId(), volumes);
+			this.links[linkIndex] = volumes;
 		}
-		int timeslot = getTimeSlotIndex(event.getTime());
 		volumes[timeslot]++;
 		
 		if (observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(event.getLinkId());
+			String mode = enRouteModes.get(event.getVehicleId());
+			int[][] modeVolumes = this.linksPerMode.get(mode);
 			if (modeVolumes == null) {
-				modeVolumes = new HashMap<>();
-				this.linksPerMode.put(event.getLinkId(), modeVolumes);
+				modeVolumes = new int[this.links.length][];
+				this.linksPerMode.put(mode, modeVolumes);
+			} else if (modeVolumes.length <= linkIndex) {
+				modeVolumes = Arrays.copyOf(modeVolumes, this.links.length);
+				this.linksPerMode.put(mode, modeVolumes);
 			}
-			String mode = enRouteModes.get(event.getVehicleId());
-			volumes = modeVolumes.get(mode);
+			volumes = modeVolumes[linkIndex];
 			if (volumes == null) {
 				volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-				modeVolumes.put(mode, volumes);
+				modeVolumes[linkIndex] = volumes;
 			}
 			volumes[timeslot]++;
 		}
 	}
 
+	private int getLinkIndex(final Id<Link> linkId) {
+		Integer index = this.linkIndices.get(linkId);
+		if (index == null) {
+			// a link which is not part of the network
+			index = this.linkIds.size();
+			this.linkIndices.put(linkId, index);
+			this.linkIds.add(linkId);
+			if (this.links.length <= index) {
+				this.links = Arrays.copyOf(this.links, Math.max(16, this.links.length * 2));
+			}
+		}
+		return index;
+	}
+
 	private int getTimeSlotIndex(final double time) {
 		if (time > this.maxTime) {
 			return this.maxSlotIndex;
@@ -128,7 +159,8 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * 		starting with time bin 0 from 0 seconds to (timeBinSize-1)seconds.
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId) {
-		return this.links.get(linkId);
+		Integer index = this.linkIndices.get(linkId);
+		return index == null ? null : this.links[index];
 	}
 	
 	/**
@@ -139,8 +171,9 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId, String mode) {
 		if (observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(linkId);
-			if (modeVolumes != null) return modeVolumes.get(mode);
+			Integer index = this.linkIndices.get(linkId);
+			int[][] modeVolumes = this.linksPerMode.get(mode);
+			if (index != null && modeVolumes != null && index < modeVolumes.length) return modeVolumes[index];
 		} 
 		return null;
 	}
@@ -227,9 +260,7 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	public Set<String> getModes() {
 		Set<String> modes = new TreeSet<>();
 		
-		for (Map<String, int[]> map : this.linksPerMode.values()) {
-			modes.addAll(map.keySet());
-		}
+		modes.addAll(this.linksPerMode.keySet());
 		
 		return modes;
 	}
@@ -238,12 +269,18 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * @return Set of Strings containing all link ids for which counting-values are available.
 	 */
 	public Set<Id<Link>> getLinkIds() {
-		return this.links.keySet();
+		Set<Id<Link>> result = new HashSet<>();
+		for (int i = 0; i < this.linkIds.size(); i++) {
+			if (this.links[i] != null) {
+				result.add(this.linkIds.get(i));
+			}
+		}
+		return result;
 	}
 
 	@Override
 	public void reset(final int iteration) {
-		this.links.clear();
+		Arrays.fill(this.links, null);
 		if (observeModes) {
 			this.linksPerMode.clear();
 			this.enRouteModes.clear();
@@ -59,7 +59,7 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	final String DUMP_DATA_AT_END = "dumpDataAtEnd";
 
 	/*package*/ static final String MOBSIM = "mobsim";
-	public enum MobsimType {qsim, JDEQSim}
+	public enum MobsimType {qsim, JDEQSim, mesosim}
 
     public static final String WRITE_SNAPSHOTS_INTERVAL = "writeSnapshotsInterval";
 
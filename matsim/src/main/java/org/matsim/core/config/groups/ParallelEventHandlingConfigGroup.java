@@ -44,6 +44,9 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 	
 	private final static String ONE_THREAD_PER_HANDLER = "oneThreadPerHandler"; 
 	private Boolean oneThreadPerHandler = false;
+
+	private final static String ANALYSIS_IN_SEPARATE_THREAD = "analysisInSeparateThread";
+	private Boolean analysisInSeparateThread = false;
 	
 	private boolean locked = false;
 
@@ -60,6 +63,9 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 				+ "before the next time step is simulated. E.g. neccessary when within-day replanning is used.");
 		comments.put(ONE_THREAD_PER_HANDLER, "If enabled, each event handler is assigned to its own thread. Note that enabling this feature disabled the " + NUMBER_OF_THREADS + " option! "
 				+ "This feature is still experimental!");
+		comments.put(ANALYSIS_IN_SEPARATE_THREAD, "If enabled, the volumes, leg histogram and leg times of each iteration are calculated by one event handler "
+				+ "in a separate thread during the mobsim. "
+				+ "This feature is still experimental!");
 		return comments;
 	}
 
@@ -127,6 +133,20 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 		}
 	}
 	
+	@StringGetter( ANALYSIS_IN_SEPARATE_THREAD )
+	public Boolean getAnalysisInSeparateThread() {
+		return this.analysisInSeparateThread;
+	}
+
+	@StringSetter( ANALYSIS_IN_SEPARATE_THREAD )
+	public void setAnalysisInSeparateThread(Boolean analysisInSeparateThread) {
+		if ( !this.locked ) {
+			this.analysisInSeparateThread = analysisInSeparateThread;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+
 	public void makeLocked() {
 		this.locked = true;
 	}
@@ -22,6 +22,7 @@ package org.matsim.core.controler;
 
 import com.google.inject.Provider;
 import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationAnalysisEngine;
 import org.matsim.analysis.IterationStopWatch;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.consistency.ConfigConsistencyCheckerImpl;
@@ -43,6 +44,7 @@ class NewControler extends AbstractController implements ControlerI {
 	private final Config config;
 	private final PrepareForSim prepareForSim;
 	private final EventsHandling eventsHandling;
+	private final IterationAnalysisEngine iterationAnalysisEngine;
 	private final PlansDumping plansDumping;
 	private final PlansReplanning plansReplanning;
 	private final Provider<Mobsim> mobsimProvider;
@@ -55,12 +57,13 @@ class NewControler extends AbstractController implements ControlerI {
 	private final OutputDirectoryHierarchy outputDirectoryHierarchy;
 
 	@Inject
-	NewControler(Config config, ControlerListenerManagerImpl controlerListenerManager, MatsimServices matsimServices, IterationStopWatch stopWatch, PrepareForSim prepareForSim, EventsHandling eventsHandling, PlansDumping plansDumping, PlansReplanning plansReplanning, Provider<Mobsim> mobsimProvider, PlansScoring plansScoring, TerminationCriterion terminationCriterion, DumpDataAtEnd dumpDataAtEnd, Set<ControlerListener> controlerListenersDeclaredByModules, Collection<Provider<MobsimListener>> mobsimListeners, ControlerConfigGroup controlerConfigGroup, OutputDirectoryHierarchy outputDirectoryHierarchy) {
+	NewControler(Config config, ControlerListenerManagerImpl controlerListenerManager, MatsimServices matsimServices, IterationStopWatch stopWatch, PrepareForSim prepareForSim, EventsHandling eventsHandling, IterationAnalysisEngine iterationAnalysisEngine, PlansDumping plansDumping, PlansReplanning plansReplanning, Provider<Mobsim> mobsimProvider, PlansScoring plansScoring, TerminationCriterion terminationCriterion, DumpDataAtEnd dumpDataAtEnd, Set<ControlerListener> controlerListenersDeclaredByModules, Collection<Provider<MobsimListener>> mobsimListeners, ControlerConfigGroup controlerConfigGroup, OutputDirectoryHierarchy outputDirectoryHierarchy) {
 		super(controlerListenerManager, stopWatch, matsimServices);
 		this.config = config;
 		this.config.addConfigConsistencyChecker(new ConfigConsistencyCheckerImpl());
 		this.prepareForSim = prepareForSim;
 		this.eventsHandling = eventsHandling;
+		this.iterationAnalysisEngine = iterationAnalysisEngine;
 		this.plansDumping = plansDumping;
 		this.plansReplanning = plansReplanning;
 		this.mobsimProvider = mobsimProvider;
@@ -96,6 +99,8 @@ class NewControler extends AbstractController implements ControlerI {
 		this.addCoreControlerListener(this.plansScoring);
 		this.addCoreControlerListener(this.plansReplanning);
 		this.addCoreControlerListener(this.plansDumping);
+		// waits for the analysis of the events, right after all events are processed
+		this.addCoreControlerListener(this.iterationAnalysisEngine);
 		this.addCoreControlerListener(this.eventsHandling);
 		// must be last being added (=first being executed)
 
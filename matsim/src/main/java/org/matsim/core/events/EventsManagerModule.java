@@ -1,5 +1,6 @@
 package org.matsim.core.events;
 
+import org.matsim.analysis.IterationAnalysisEngine;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.events.handler.EventHandler;
@@ -23,6 +24,8 @@ public class EventsManagerModule extends AbstractModule {
 			bindEventsManager().to(SimStepParallelEventsManagerImpl.class).asEagerSingleton();
 		}
 		bind(EventHandlerRegistrator.class).asEagerSingleton();
+		// the default analyzers receive their events from this one handler
+		bind(IterationAnalysisEngine.class);
 	}
 
 	private static class EventHandlerRegistrator {
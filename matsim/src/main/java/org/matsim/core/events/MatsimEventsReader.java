@@ -20,28 +20,49 @@
 
 package org.matsim.core.events;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Stack;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.internal.MatsimSomeReader;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.io.MatsimXmlParser;
+import org.matsim.core.utils.io.ReadAheadInputStream;
 import org.matsim.core.utils.io.UncheckedIOException;
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
  * A reader for events-files of MATSim. This reader recognizes the format of the events-file and uses
  * the correct reader for the specific events-version, without manual setting.
+ * <p></p>
+ * Optionally (see {@link #setPipelined(boolean)}), files are read in a pipeline of three threads: one
+ * reads and decompresses the file, one parses it and creates the events, and the calling
+ * thread passes the events on to the events manager. The events are passed on in the order of the file,
+ * and the handlers are called by the calling thread as without the pipeline.
  *
  * @author mrieser
  */
 public class MatsimEventsReader implements MatsimSomeReader {
 
 	private final static Logger log = Logger.getLogger(MatsimEventsReader.class);
+
+	private static final int BATCH_SIZE = 1024;
+	private static final int NUMBER_OF_BATCHES = 16;
+
 	private final EventsManager events;
+	private boolean pipelined = false;
 
 	/**
 	 * Creates a new reader for MATSim events files.
@@ -52,6 +73,15 @@ public class MatsimEventsReader implements MatsimSomeReader {
 		this.events = events;
 	}
 
+	/**
+	 * Sets if files are read in a pipeline of several threads, see the class description.
+	 * By default, files are read sequentially. The pipeline can only help on machines
+	 * with several cores.
+	 */
+	public void setPipelined(final boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+
 	/**
 	 * Parses the specified events file.
 	 *
@@ -60,7 +90,11 @@ public class MatsimEventsReader implements MatsimSomeReader {
 	public void readFile(final String filename) {
 		String lcFilename = filename.toLowerCase(Locale.ROOT);
 		if (lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz")) {
-			new XmlEventsReader(this.events).readFile(filename);
+			if (this.pipelined) {
+				readFilePipelined(filename);
+			} else {
+				new XmlEventsReader(this.events).readFile(filename);
+			}
 		} else if (lcFilename.endsWith(".txt") || lcFilename.endsWith(".txt.gz")) {
 			throw new RuntimeException("text events are no longer supported. Please use MATSim 0.6.1 or earlier to read text events.");
 		} else {
@@ -72,6 +106,179 @@ public class MatsimEventsReader implements MatsimSomeReader {
 		new XmlEventsReader(this.events).parse(stream);
 	}
 
+	private void readFilePipelined(final String filename) {
+		log.info("starting to read events from file " + filename + " in a pipeline ...");
+		final InputStream stream = new ReadAheadInputStream(IOUtils.getInputStream(filename));
+		final EventsBatcher batcher = new EventsBatcher();
+		Thread parser = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					new XmlEventsReader(batcher).parse(stream, filename);
+				} catch (RuntimeException | Error e) {
+					batcher.setException(e);
+				} finally {
+					batcher.finish();
+				}
+			}
+		}, "EventsParser");
+		parser.setDaemon(true);
+		parser.start();
+
+		try {
+			List<Event> batch;
+			while ((batch = batcher.takeBatch()) != EventsBatcher.END) {
+				for (Event event : batch) {
+					this.events.processEvent(event);
+				}
+			}
+		} finally {
+			// stops the parser if a handler has thrown an exception
+			batcher.cancel();
+			joinUninterruptibly(parser);
+			try {
+				stream.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		batcher.rethrowException();
+	}
+
+	/**
+	 * Reading the events file sequentially is not interrupted either, so an interrupt is
+	 * only passed on to the handlers.
+	 */
+	private static void joinUninterruptibly(final Thread thread) {
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Collects the events created by the parser in batches, which are handed over to the
+	 * calling thread through a bounded queue.
+	 */
+	private static class EventsBatcher implements EventsManager {
+
+		static final List<Event> END = new ArrayList<>(0);
+
+		private final BlockingQueue<List<Event>> batches = new ArrayBlockingQueue<>(NUMBER_OF_BATCHES);
+		private List<Event> batch = new ArrayList<>(BATCH_SIZE);
+		private volatile boolean cancelled = false;
+		private volatile Throwable exception = null;
+
+		@Override
+		public void processEvent(final Event event) {
+			this.batch.add(event);
+			if (this.batch.size() == BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		void flush() {
+			if (!this.batch.isEmpty()) {
+				put(this.batch);
+				this.batch = new ArrayList<>(BATCH_SIZE);
+			}
+		}
+
+		/**
+		 * passes on the remaining events and marks the end of the events
+		 */
+		void finish() {
+			if (!this.cancelled) {
+				try {
+					flush();
+					put(END);
+				} catch (IllegalStateException e) {
+					// cancelled in the meantime, nobody waits for the events
+				}
+			}
+		}
+
+		private void put(final List<Event> events) {
+			try {
+				while (!this.batches.offer(events, 100, TimeUnit.MILLISECONDS)) {
+					if (this.cancelled) {
+						throw new IllegalStateException("reading the events was cancelled.");
+					}
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		List<Event> takeBatch() {
+			boolean interrupted = false;
+			try {
+				while (true) {
+					try {
+						return this.batches.take();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			} finally {
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		void cancel() {
+			this.cancelled = true;
+			this.batches.clear();
+		}
+
+		void setException(final Throwable exception) {
+			this.exception = exception;
+		}
+
+		void rethrowException() {
+			if (this.exception instanceof RuntimeException) {
+				throw (RuntimeException) this.exception;
+			} else if (this.exception instanceof Error) {
+				throw (Error) this.exception;
+			}
+		}
+
+		@Override
+		public void addHandler(final EventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void removeHandler(final EventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void resetHandlers(final int iteration) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void initProcessing() {
+		}
+
+		@Override
+		public void afterSimStep(final double time) {
+		}
+
+		@Override
+		public void finishProcessing() {
+		}
+	}
+
 	private static class XmlEventsReader extends MatsimXmlParser {
 
 		final EventsManager events;
@@ -110,6 +317,15 @@ public class MatsimEventsReader implements MatsimSomeReader {
 			parse(filename);
 		}
 
+		/**
+		 * @param filename the name of the file read by the stream, used in error messages
+		 */
+		void parse(final InputStream stream, final String filename) throws UncheckedIOException {
+			InputSource input = new InputSource(stream);
+			input.setSystemId(filename);
+			parse(input);
+		}
+
 		@Override
 		protected void setDoctype(final String doctype) {
 			super.setDoctype(doctype);
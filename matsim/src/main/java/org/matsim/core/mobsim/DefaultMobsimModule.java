@@ -29,6 +29,8 @@ import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.mobsim.external.ExternalMobsim;
 import org.matsim.core.mobsim.jdeqsim.JDEQSimConfigGroup;
 import org.matsim.core.mobsim.jdeqsim.JDEQSimulation;
+import org.matsim.core.mobsim.jdeqsim.ParallelJDEQSimulation;
+import org.matsim.core.mobsim.mesosim.MesoSimulation;
 import org.matsim.core.mobsim.qsim.QSimModule;
 
 public class DefaultMobsimModule extends AbstractModule {
@@ -37,7 +39,13 @@ public class DefaultMobsimModule extends AbstractModule {
         if (getConfig().controler().getMobsim().equals(ControlerConfigGroup.MobsimType.qsim.toString())) {
             install(new QSimModule());
         } else if (getConfig().controler().getMobsim().equals(ControlerConfigGroup.MobsimType.JDEQSim.toString())) {
-            bindMobsim().to(JDEQSimulation.class);
+            if (ConfigUtils.addOrGetModule(getConfig(), JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class).getNumberOfThreads() > 1) {
+                bindMobsim().to(ParallelJDEQSimulation.class);
+            } else {
+                bindMobsim().to(JDEQSimulation.class);
+            }
+        } else if (getConfig().controler().getMobsim().equals(ControlerConfigGroup.MobsimType.mesosim.toString())) {
+            bindMobsim().to(MesoSimulation.class);
         } else if (getConfig().getModule(SimulationConfigGroup.GROUP_NAME) != null &&
                 ((SimulationConfigGroup) getConfig().getModule(SimulationConfigGroup.GROUP_NAME)).getExternalExe() != null) {
             bindMobsim().to(ExternalMobsim.class);
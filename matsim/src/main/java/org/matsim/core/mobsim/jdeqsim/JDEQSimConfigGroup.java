@@ -19,6 +19,8 @@
 
 package org.matsim.core.mobsim.jdeqsim;
 
+import java.util.Map;
+
 import org.matsim.core.config.ReflectiveConfigGroup;
 import org.matsim.core.utils.misc.Time;
 
@@ -57,6 +59,7 @@ public class JDEQSimConfigGroup extends ReflectiveConfigGroup {
 	public final static String CAR_SIZE = "carSize";
 	public final static String GAP_TRAVEL_SPEED = "gapTravelSpeed";
 	public final static String END_TIME = "endTime";
+	public final static String NUMBER_OF_THREADS = "numberOfThreads";
 
 	// INPUT
 	private double simulationEndTime = Double.MAX_VALUE; // in s
@@ -71,11 +74,22 @@ public class JDEQSimConfigGroup extends ReflectiveConfigGroup {
 	 * 'stuckTime' for entering next road, it will enter the next. in seconds
 	 */
 	private double squeezeTime = 1800;
+	private int numberOfThreads = 1;
 
 	public JDEQSimConfigGroup() {
 		super(NAME);
 	}
 
+	@Override
+	public Map<String, String> getComments() {
+		Map<String, String> map = super.getComments();
+		map.put(NUMBER_OF_THREADS, "Number of threads used for the simulation. If larger than 1, the network is split into as many partitions, "
+				+ "which are simulated in parallel (see ParallelJDEQSimulation). The parallel simulation orders messages with the same "
+				+ "time stamp by person id, so its events do not depend on the number of threads, but may differ from the ones with "
+				+ "one thread, which keeps the sequential order of simultaneous messages.");
+		return map;
+	}
+
 	// should garbage collection of messages be activated
 	private static boolean GC_MESSAGES = false;
 
@@ -171,4 +185,14 @@ public class JDEQSimConfigGroup extends ReflectiveConfigGroup {
 		this.squeezeTime = squeezeTime;
 	}
 
+	@StringGetter(NUMBER_OF_THREADS)
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	@StringSetter(NUMBER_OF_THREADS)
+	public void setNumberOfThreads(int numberOfThreads) {
+		this.numberOfThreads = numberOfThreads;
+	}
+
 }
@@ -44,7 +44,7 @@ public class JDEQSimulation implements Mobsim {
 
 	private final static Logger log = Logger.getLogger(JDEQSimulation.class);
 
-	private final JDEQSimConfigGroup config;
+	protected final JDEQSimConfigGroup config;
 	protected Scenario scenario;
 
 	protected final PlansConfigGroup.ActivityDurationInterpretation activityDurationInterpretation;
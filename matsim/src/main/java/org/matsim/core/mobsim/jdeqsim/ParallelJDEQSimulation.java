@@ -0,0 +1,160 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.mobsim.jdeqsim.util.Timer;
+
+/**
+ * A parallel version of the {@link JDEQSimulation}. The network is split into
+ * <code>numberOfThreads</code> stripes along the x-axis with the same number of
+ * nodes; each road belongs to the partition of its from-node. The partitions are
+ * simulated by a {@link ParallelScheduler} in time windows, which are bounded
+ * by the minimal time a vehicle needs to affect another partition: the free
+ * speed travel time and the inverse flow capacity of the roads crossing the
+ * partition boundary and the time a gap needs to travel back through the roads
+ * behind them. Legs which are not simulated on the network and take the vehicle
+ * to another partition faster than that (e.g. car legs with an empty route) are
+ * handled at the end of a time window, see {@link ParallelScheduler}.
+ * <p></p>
+ * Messages with the same time stamp are ordered by the owner of their vehicle, see
+ * {@link ParallelScheduler}. So the resulting events do not depend on the number of
+ * partitions, but may differ from the ones of the {@link JDEQSimulation}, which
+ * handles simultaneous messages in the order they were scheduled.
+ */
+public class ParallelJDEQSimulation extends JDEQSimulation {
+
+	private final static Logger log = Logger.getLogger(ParallelJDEQSimulation.class);
+
+	private final EventsManager events;
+
+	private long numberOfTimeWindows = 0;
+	private double lookahead = Double.POSITIVE_INFINITY;
+
+	@Inject
+	public ParallelJDEQSimulation(final JDEQSimConfigGroup config, final Scenario scenario, final EventsManager events) {
+		super(config, scenario, events);
+		this.events = events;
+	}
+
+	@Override
+	public void run() {
+		Timer t = new Timer();
+		t.startTimer();
+
+		int numberOfPartitions = Math.max(1, this.config.getNumberOfThreads());
+		if (numberOfPartitions > 1 && this.scenario.getConfig().network().isTimeVariantNetwork()) {
+			// the free speed of the roads may increase during the simulation, so no lookahead can be given
+			log.warn("Time variant networks are simulated without splitting the network.");
+			numberOfPartitions = 1;
+		}
+
+		ParallelScheduler scheduler = new ParallelScheduler(numberOfPartitions, this.config.getSimulationEndTime());
+		Map<Id<Node>, Integer> nodePartitions = partitionNodes(numberOfPartitions);
+
+		// initialize network
+		Road.setAllRoads(new HashMap<Id<Link>, Road>());
+		Set<Road> cutRoads = new HashSet<>();
+		for (Link link : this.scenario.getNetwork().getLinks().values()) {
+			Road road = new Road(scheduler.getPartition(nodePartitions.get(link.getFromNode().getId())), link);
+			Road.getAllRoads().put(link.getId(), road);
+			if (!nodePartitions.get(link.getFromNode().getId()).equals(nodePartitions.get(link.getToNode().getId()))) {
+				cutRoads.add(road);
+			}
+		}
+
+		double lookahead = Double.POSITIVE_INFINITY;
+		for (Road road : cutRoads) {
+			Link link = road.getLink();
+			lookahead = Math.min(lookahead, link.getLength() / link.getFreespeed());
+			lookahead = Math.min(lookahead, road.getInverseOutFlowCapacity());
+			for (Link nextLink : link.getToNode().getOutLinks().values()) {
+				lookahead = Math.min(lookahead, Road.getRoad(nextLink.getId()).getGapTravelTime());
+			}
+		}
+		scheduler.setPartitionBoundary(cutRoads, lookahead);
+		this.lookahead = lookahead;
+		log.info("Simulating " + numberOfPartitions + " partitions with " + cutRoads.size() + " roads between them; lookahead: " + lookahead + "[s]");
+		if (lookahead <= 0) {
+			log.warn("The lookahead is 0, e.g. because of a road with length 0 between two partitions. "
+					+ "All messages are processed sequentially, so the simulation is not faster than the JDEQSimulation.");
+		}
+
+		for (Person person : this.scenario.getPopulation().getPersons().values()) {
+			// the vehicle registers itself to the scheduler of the road of its first activity
+			new Vehicle(scheduler.getPartition(0), person, this.activityDurationInterpretation);
+		}
+
+		scheduler.startSimulation(this.events);
+		this.numberOfTimeWindows = scheduler.getNumberOfWindows();
+
+		t.endTimer();
+		log.info("Time needed for one iteration (only ParallelJDEQSimulation part): " + t.getMeasuredTime() + "[ms]; time windows: "
+				+ this.numberOfTimeWindows);
+	}
+
+	long getNumberOfTimeWindows() {
+		return this.numberOfTimeWindows;
+	}
+
+	double getLookahead() {
+		return this.lookahead;
+	}
+
+	/**
+	 * sorts the nodes by their x coordinate and cuts them into stripes with the same number of nodes
+	 */
+	private Map<Id<Node>, Integer> partitionNodes(int numberOfPartitions) {
+		List<Node> nodes = new ArrayList<>(this.scenario.getNetwork().getNodes().values());
+		Collections.sort(nodes, new Comparator<Node>() {
+			@Override
+			public int compare(Node n1, Node n2) {
+				int result = Double.compare(n1.getCoord().getX(), n2.getCoord().getX());
+				if (result == 0) {
+					result = Double.compare(n1.getCoord().getY(), n2.getCoord().getY());
+				}
+				return result == 0 ? n1.getId().compareTo(n2.getId()) : result;
+			}
+		});
+		Map<Id<Node>, Integer> nodePartitions = new HashMap<>();
+		for (int i = 0; i < nodes.size(); i++) {
+			nodePartitions.put(nodes.get(i).getId(), (int) ((long) i * numberOfPartitions / nodes.size()));
+		}
+		return nodePartitions;
+	}
+
+}
@@ -0,0 +1,348 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.gbl.Gbl;
+
+/**
+ * Runs the partitions of the {@link ParallelJDEQSimulation} with conservative
+ * synchronization in time windows.
+ * <p></p>
+ * A time window starts at the time of the first pending message and is at
+ * most <code>lookahead</code> long, where the lookahead is the minimal time
+ * between handling a message and any effect of this handling on another
+ * partition. It also ends at the first boundary message, i.e. a message whose
+ * handling immediately changes the state of a road in another partition. Within
+ * a window, all partitions process their messages in parallel. Afterwards, the
+ * messages sent between partitions are delivered and the boundary messages at
+ * the end of the window are processed sequentially, in the order of
+ * {@link #MESSAGE_ORDER}.
+ * <p></p>
+ * The events of a time window are buffered per partition and passed on in the
+ * order, in which a sequential scheduler would have processed the messages
+ * which created them. Unlike the {@link Scheduler}, whose queue leaves the order
+ * of messages with the same time and priority open, all partitions order such
+ * messages by the vehicle owner, see {@link #MESSAGE_ORDER}. So the events and
+ * their order do not depend on the number of partitions, but may differ from the
+ * sequential simulation where it processes simultaneous messages in another order.
+ */
+final class ParallelScheduler {
+
+	/**
+	 * Orders the messages like {@link Message#compareTo(Message)}, and messages with the
+	 * same time and priority by the id of the person owning the vehicle.
+	 */
+	static final Comparator<Message> MESSAGE_ORDER = new Comparator<Message>() {
+		@Override
+		public int compare(Message m1, Message m2) {
+			int result = m1.compareTo(m2);
+			if (result == 0 && m1 instanceof EventMessage && m2 instanceof EventMessage) {
+				Vehicle vehicle1 = ((EventMessage) m1).vehicle;
+				Vehicle vehicle2 = ((EventMessage) m2).vehicle;
+				if (vehicle1 != null && vehicle2 != null) {
+					result = vehicle1.getOwnerPerson().getId().compareTo(vehicle2.getOwnerPerson().getId());
+				}
+			}
+			return result;
+		}
+	};
+
+	private static final Logger log = Logger.getLogger(ParallelScheduler.class);
+
+	private final PartitionScheduler[] partitions;
+	private final double simulationEndTime;
+
+	private double lookahead = Double.POSITIVE_INFINITY;
+	private Set<Road> cutRoads = null;
+
+	private boolean parallelPhase = false;
+	private double windowEnd = Double.NEGATIVE_INFINITY;
+
+	private double simTime = 0;
+	private double hourlyLogTime = 3600;
+	private final double simulationStartTime = System.currentTimeMillis();
+	private long numberOfWindows = 0;
+
+	ParallelScheduler(int numberOfPartitions, double simulationEndTime) {
+		this.partitions = new PartitionScheduler[numberOfPartitions];
+		for (int i = 0; i < numberOfPartitions; i++) {
+			this.partitions[i] = new PartitionScheduler(i, this);
+		}
+		this.simulationEndTime = simulationEndTime;
+	}
+
+	PartitionScheduler getPartition(int index) {
+		return this.partitions[index];
+	}
+
+	/**
+	 * @param cutRoads the roads, whose end is in another partition than the road itself
+	 * @param lookahead see class description
+	 */
+	void setPartitionBoundary(Set<Road> cutRoads, double lookahead) {
+		this.cutRoads = cutRoads;
+		this.lookahead = lookahead;
+	}
+
+	boolean isParallelPhase() {
+		return this.parallelPhase;
+	}
+
+	double getWindowEnd() {
+		return this.windowEnd;
+	}
+
+	long getNumberOfWindows() {
+		return this.numberOfWindows;
+	}
+
+	/**
+	 * A message is a boundary message, if its handling accesses a road of another
+	 * partition: a vehicle at the end of a cut road asks the next road for entrance,
+	 * a deadlock prevention message makes the vehicle leave the previous road.
+	 * Departures for legs, which are not simulated on the network and end in another
+	 * partition within less than the lookahead (e.g. car legs with an empty route,
+	 * which take no time), are boundary messages as well, so they need not limit the
+	 * lookahead.
+	 */
+	boolean isBoundaryMessage(Message m, PartitionScheduler partition) {
+		if (m instanceof EndRoadMessage) {
+			return this.cutRoads.contains(m.getReceivingUnit());
+		} else if (m instanceof DeadlockPreventionMessage) {
+			Vehicle vehicle = ((DeadlockPreventionMessage) m).vehicle;
+			return vehicle.getLinkIndex() >= 0 && vehicle.getPreviousRoad().getScheduler() != partition;
+		} else if (m instanceof StartingLegMessage) {
+			Vehicle vehicle = ((StartingLegMessage) m).vehicle;
+			return getOffNetworkLegTravelTime(vehicle) < this.lookahead && getNextActivityRoad(vehicle).getScheduler() != partition;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the time the {@link StartingLegMessage} needs to take the vehicle to the road of the next
+	 * activity, if its current leg is not simulated on the network; infinity otherwise
+	 */
+	private static double getOffNetworkLegTravelTime(Vehicle vehicle) {
+		Leg leg = vehicle.getCurrentLeg();
+		if (!leg.getMode().equals(TransportMode.car)) {
+			return leg.getTravelTime();
+		}
+		return vehicle.getCurrentLinkRoute().length == 0 ? 0 : Double.POSITIVE_INFINITY;
+	}
+
+	private static Road getNextActivityRoad(Vehicle vehicle) {
+		List<PlanElement> planElements = vehicle.getOwnerPerson().getSelectedPlan().getPlanElements();
+		return Road.getRoad(((Activity) planElements.get(vehicle.getLegIndex() + 1)).getLinkId());
+	}
+
+	void startSimulation(EventsManager events) {
+		EventsBuffer eventsBuffer = new EventsBuffer(events);
+		Message.setEventsManager(eventsBuffer);
+		ExecutorService executor = Executors.newFixedThreadPool(this.partitions.length);
+		List<PartitionScheduler> tasks = Arrays.asList(this.partitions);
+		try {
+			PartitionScheduler next;
+			while ((next = getPartitionWithNextMessage()) != null) {
+				double now = next.peekNextMessage().getMessageArrivalTime();
+				if (now >= this.simulationEndTime) {
+					// as in the sequential scheduler, the first message after the end time is still processed
+					next.processNextMessage();
+					break;
+				}
+
+				double nextBoundaryTime = Double.POSITIVE_INFINITY;
+				for (PartitionScheduler partition : this.partitions) {
+					nextBoundaryTime = Math.min(nextBoundaryTime, partition.getNextBoundaryMessageTime());
+				}
+				this.windowEnd = Math.min(Math.min(now + this.lookahead, nextBoundaryTime), this.simulationEndTime);
+				this.numberOfWindows++;
+
+				if (this.windowEnd > now) {
+					this.parallelPhase = true;
+					try {
+						for (Future<Void> future : executor.invokeAll(tasks)) {
+							future.get();
+						}
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					} catch (ExecutionException e) {
+						throw new RuntimeException(e.getCause());
+					} finally {
+						this.parallelPhase = false;
+					}
+					for (PartitionScheduler partition : this.partitions) {
+						partition.flushInbox();
+					}
+					eventsBuffer.flush(this.partitions);
+					this.simTime = this.windowEnd;
+				}
+
+				// boundary messages and all messages at the end of a window of length 0
+				if (this.windowEnd == nextBoundaryTime || this.windowEnd == now) {
+					while ((next = getPartitionWithNextMessage()) != null) {
+						double time = next.peekNextMessage().getMessageArrivalTime();
+						if (time > this.windowEnd || time >= this.simulationEndTime) {
+							break;
+						}
+						next.processNextMessage();
+						this.simTime = time;
+					}
+				}
+				printLog();
+			}
+		} finally {
+			executor.shutdown();
+			Message.setEventsManager(events);
+		}
+	}
+
+	/**
+	 * @return the partition with the message, which a sequential scheduler would process next
+	 */
+	private PartitionScheduler getPartitionWithNextMessage() {
+		PartitionScheduler result = null;
+		Message first = null;
+		for (PartitionScheduler partition : this.partitions) {
+			Message m = partition.peekNextMessage();
+			if (m != null && (first == null || MESSAGE_ORDER.compare(m, first) < 0)) {
+				first = m;
+				result = partition;
+			}
+		}
+		return result;
+	}
+
+	private void printLog() {
+		// print output each hour
+		if (this.simTime / this.hourlyLogTime > 1) {
+			this.hourlyLogTime = this.simTime + 3600;
+			log.info("Simulation at " + this.simTime / 3600 + "[h]; s/r:" + this.simTime / (System.currentTimeMillis() - this.simulationStartTime) * 1000
+					+ "; time windows: " + this.numberOfWindows);
+			Gbl.printMemoryUsage();
+		}
+	}
+
+	/**
+	 * Buffers the events created during the parallel phase per partition and passes
+	 * all other events directly on to the events manager.
+	 */
+	private static class EventsBuffer implements EventsManager {
+
+		private final EventsManager delegate;
+
+		EventsBuffer(EventsManager delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void processEvent(Event event) {
+			PartitionScheduler partition = PartitionScheduler.getCurrentPartition();
+			if (partition == null) {
+				this.delegate.processEvent(event);
+			} else {
+				partition.bufferEvent(event);
+			}
+		}
+
+		/**
+		 * Merges the buffered events of all partitions in the order, in which a sequential
+		 * scheduler would have processed the messages creating them. As the partitions are
+		 * independent within a time window, this order is obtained by always taking the
+		 * smallest of the next processed messages of all partitions, including the messages
+		 * without events: these may create messages with the same time, but a higher priority.
+		 */
+		void flush(PartitionScheduler[] partitions) {
+			int[] positions = new int[partitions.length];
+			while (true) {
+				int nextPartition = -1;
+				Message first = null;
+				for (int i = 0; i < partitions.length; i++) {
+					if (positions[i] < partitions[i].getProcessedMessages().size()) {
+						Message m = partitions[i].getProcessedMessages().get(positions[i]);
+						if (first == null || MESSAGE_ORDER.compare(m, first) < 0) {
+							first = m;
+							nextPartition = i;
+						}
+					}
+				}
+				if (nextPartition < 0) {
+					break;
+				}
+				for (Event event : partitions[nextPartition].getBufferedEvents(positions[nextPartition])) {
+					this.delegate.processEvent(event);
+				}
+				positions[nextPartition]++;
+			}
+			for (PartitionScheduler partition : partitions) {
+				partition.clearBufferedEvents();
+			}
+		}
+
+		@Override
+		public void addHandler(EventHandler handler) {
+			this.delegate.addHandler(handler);
+		}
+
+		@Override
+		public void removeHandler(EventHandler handler) {
+			this.delegate.removeHandler(handler);
+		}
+
+		@Override
+		public void resetHandlers(int iteration) {
+			this.delegate.resetHandlers(iteration);
+		}
+
+		@Override
+		public void initProcessing() {
+			this.delegate.initProcessing();
+		}
+
+		@Override
+		public void afterSimStep(double time) {
+			this.delegate.afterSimStep(time);
+		}
+
+		@Override
+		public void finishProcessing() {
+			this.delegate.finishProcessing();
+		}
+
+	}
+
+}
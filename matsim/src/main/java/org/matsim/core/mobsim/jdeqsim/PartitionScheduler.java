@@ -0,0 +1,178 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.matsim.api.core.v01.events.Event;
+
+/**
+ * The scheduler of one partition of the network in the {@link ParallelJDEQSimulation}.
+ * All roads of the partition share this scheduler, so every message sent to one of
+ * these roads ends up in the message queue of this partition.
+ * <p></p>
+ * Messages whose handling touches roads of other partitions are
+ * <em>boundary messages</em>. They are additionally tracked here, so the
+ * {@link ParallelScheduler} knows until when the partitions can run independently.
+ *
+ * @see ParallelScheduler
+ */
+final class PartitionScheduler extends Scheduler implements Callable<Void> {
+
+	/** the partition processed by the current thread, <code>null</code> outside of the parallel phase */
+	private static final ThreadLocal<PartitionScheduler> currentPartition = new ThreadLocal<>();
+
+	static PartitionScheduler getCurrentPartition() {
+		return currentPartition.get();
+	}
+
+	private final int index;
+	private final ParallelScheduler parallelScheduler;
+
+	private final PriorityQueue<Message> boundaryMessages = new PriorityQueue<>(11, ParallelScheduler.MESSAGE_ORDER);
+
+	/** messages sent by other partitions during the parallel phase, added to the queue afterwards */
+	private final ConcurrentLinkedQueue<Message> inbox = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * the messages processed in the current time window and the events they created; the events of
+	 * processed message i start at firstEventIndices[i]
+	 */
+	private final ArrayList<Message> processedMessages = new ArrayList<>();
+	private int[] firstEventIndices = new int[1024];
+	private final ArrayList<Event> bufferedEvents = new ArrayList<>();
+
+	PartitionScheduler(int index, ParallelScheduler parallelScheduler) {
+		super(new MessageQueue(ParallelScheduler.MESSAGE_ORDER));
+		this.index = index;
+		this.parallelScheduler = parallelScheduler;
+	}
+
+	int getIndex() {
+		return this.index;
+	}
+
+	@Override
+	public void schedule(Message m) {
+		if (this.parallelScheduler.isParallelPhase() && currentPartition.get() != this) {
+			if (m.getMessageArrivalTime() < this.parallelScheduler.getWindowEnd()) {
+				throw new IllegalStateException("Message for partition " + this.index + " at time " + m.getMessageArrivalTime()
+						+ " sent during the time window ending at " + this.parallelScheduler.getWindowEnd() + ". The lookahead is wrong.");
+			}
+			this.inbox.add(m);
+		} else {
+			putMessage(m);
+		}
+	}
+
+	private void putMessage(Message m) {
+		this.queue.putMessage(m);
+		if (this.parallelScheduler.isBoundaryMessage(m, this)) {
+			this.boundaryMessages.add(m);
+		}
+	}
+
+	void flushInbox() {
+		Message m;
+		while ((m = this.inbox.poll()) != null) {
+			putMessage(m);
+		}
+	}
+
+	Message peekNextMessage() {
+		return this.queue.peekNextMessage();
+	}
+
+	double getNextBoundaryMessageTime() {
+		Message m;
+		// boundary messages are killed by unscheduling them, see MessageQueue.removeMessage
+		while ((m = this.boundaryMessages.peek()) != null && !m.isAlive()) {
+			this.boundaryMessages.poll();
+		}
+		return m == null ? Double.POSITIVE_INFINITY : m.getMessageArrivalTime();
+	}
+
+	/**
+	 * processes the first message in the queue
+	 */
+	void processNextMessage() {
+		Message m = this.queue.getNextMessage();
+		// boundary messages are only processed outside of the parallel phase
+		if (currentPartition.get() == null && !this.boundaryMessages.isEmpty()) {
+			this.boundaryMessages.remove(m);
+		}
+		if (currentPartition.get() == this) {
+			int i = this.processedMessages.size();
+			if (i == this.firstEventIndices.length) {
+				this.firstEventIndices = Arrays.copyOf(this.firstEventIndices, i * 2);
+			}
+			this.firstEventIndices[i] = this.bufferedEvents.size();
+			this.processedMessages.add(m);
+		}
+		m.processEvent();
+		m.handleMessage();
+	}
+
+	/**
+	 * processes all messages of this partition before the end of the current
+	 * time window, none of which may be a boundary message.
+	 */
+	@Override
+	public Void call() {
+		double windowEnd = this.parallelScheduler.getWindowEnd();
+		currentPartition.set(this);
+		try {
+			Message m;
+			while ((m = this.queue.peekNextMessage()) != null && m.getMessageArrivalTime() < windowEnd) {
+				processNextMessage();
+			}
+		} finally {
+			currentPartition.remove();
+		}
+		return null;
+	}
+
+	void bufferEvent(Event event) {
+		this.bufferedEvents.add(event);
+	}
+
+	ArrayList<Message> getProcessedMessages() {
+		return this.processedMessages;
+	}
+
+	/**
+	 * @return the events created by the i-th processed message of the current time window
+	 */
+	List<Event> getBufferedEvents(int i) {
+		int end = i + 1 < this.processedMessages.size() ? this.firstEventIndices[i + 1] : this.bufferedEvents.size();
+		return this.bufferedEvents.subList(this.firstEventIndices[i], end);
+	}
+
+	void clearBufferedEvents() {
+		this.processedMessages.clear();
+		this.bufferedEvents.clear();
+	}
+
+}
@@ -322,6 +322,14 @@ public class Road extends SimUnit {
 		return this.link;
 	}
 
+	public double getGapTravelTime() {
+		return this.gapTravelTime;
+	}
+
+	public double getInverseOutFlowCapacity() {
+		return this.inverseOutFlowCapacity;
+	}
+
 	public void setTimeOfLastEnteringVehicle(double timeOfLastEnteringVehicle) {
 		this.timeOfLastEnteringVehicle = timeOfLastEnteringVehicle;
 	}
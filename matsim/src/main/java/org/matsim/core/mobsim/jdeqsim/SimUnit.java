@@ -36,7 +36,8 @@ public abstract class SimUnit {
 		m.setSendingUnit(this);
 		m.setReceivingUnit(targetUnit);
 		m.setMessageArrivalTime(messageArrivalTime);
-		scheduler.schedule(m);
+		// the message is handled by the scheduler of the receiving unit
+		targetUnit.getScheduler().schedule(m);
 	}
 
 	public Scheduler getScheduler() {
@@ -246,6 +246,16 @@ public class Vehicle extends SimUnit {
 	}
 
 	public void scheduleLeavePreviousRoadMessage(double scheduleTime) {
+		scheduleLeaveRoadMessage(scheduleTime, getPreviousRoad());
+	}
+
+	/**
+	 * the road, which needs to be left before entering the current road
+	 * (attention: only applicable, if getLinkIndex() >= 0)
+	 *
+	 * @return
+	 */
+	public Road getPreviousRoad() {
 		Road previousRoad = null;
 		Id<Link> previousLinkId = null;
 		/*
@@ -263,8 +273,7 @@ public class Vehicle extends SimUnit {
 		} else {
 			log.error("Some thing is wrong with the simulation: Why is this.getLinkIndex() negative");
 		}
-
-		scheduleLeaveRoadMessage(scheduleTime, previousRoad);
+		return previousRoad;
 	}
 
 	protected void _scheduleEnterRoadMessage(double scheduleTime, Road road) {
@@ -0,0 +1,92 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.mesosim;
+
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * The state of a person executing its selected plan in the mesoscopic mobsim.
+ * As in JDEQSim, every person uses its own vehicle with the same id as the person.
+ */
+final class MesoAgent {
+
+	final Person person;
+	final Id<Vehicle> vehicleId;
+	private final List<PlanElement> planElements;
+	private int planElementIndex = 0;
+
+	/**
+	 * The links of the current network leg, including the departure and the arrival
+	 * link, <code>null</code> while not driving.
+	 */
+	MesoLink[] route = null;
+	int routeIndex = 0;
+	double earliestLinkExitTime = 0;
+
+	MesoAgent(final Person person) {
+		this.person = person;
+		this.vehicleId = Id.create(person.getId(), Vehicle.class);
+		this.planElements = person.getSelectedPlan().getPlanElements();
+	}
+
+	boolean hasNextPlanElement() {
+		return this.planElementIndex + 1 < this.planElements.size();
+	}
+
+	void advancePlanElement() {
+		this.planElementIndex++;
+	}
+
+	Activity getCurrentActivity() {
+		return (Activity) this.planElements.get(this.planElementIndex);
+	}
+
+	Leg getCurrentLeg() {
+		return (Leg) this.planElements.get(this.planElementIndex);
+	}
+
+	Activity getNextActivity() {
+		return (Activity) this.planElements.get(this.planElementIndex + 1);
+	}
+
+	boolean isOnLeg() {
+		return this.planElements.get(this.planElementIndex) instanceof Leg;
+	}
+
+	MesoLink getCurrentLink() {
+		return this.route[this.routeIndex];
+	}
+
+	MesoLink getNextLink() {
+		return this.route[this.routeIndex + 1];
+	}
+
+	boolean isOnArrivalLink() {
+		return this.routeIndex == this.route.length - 1;
+	}
+
+}
@@ -0,0 +1,84 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.mesosim;
+
+import java.util.ArrayDeque;
+
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * A link of the mesoscopic mobsim: a single FIFO queue of vehicles, bounded by
+ * the storage capacity of the link, with a minimal time headway between two
+ * leaving vehicles derived from its flow capacity.
+ * <p></p>
+ * The link does not move vehicles itself; it only keeps the state needed by
+ * {@link MesoSimulation} to compute when its frontmost vehicle can leave.
+ */
+final class MesoLink {
+
+	final Link link;
+
+	final double freeSpeedTravelTime;
+	final double minExitHeadway;
+	final int storageCapacity;
+
+	final ArrayDeque<MesoAgent> vehicles = new ArrayDeque<>();
+
+	/** upstream links whose frontmost vehicle waits for space on this link, in the order they got blocked */
+	final ArrayDeque<MesoLink> blockedUpstreamLinks = new ArrayDeque<>();
+
+	double lastExitTime = Double.NEGATIVE_INFINITY;
+
+	/** the downstream link the frontmost vehicle is waiting for, <code>null</code> if not blocked */
+	MesoLink blockedBy = null;
+	double blockedSince = Double.NaN;
+
+	/**
+	 * Incremented whenever a new exit of the frontmost vehicle is scheduled; exit
+	 * messages carrying an older value are outdated and are ignored.
+	 */
+	int exitVersion = 0;
+
+	MesoLink(final Link link, final double capacityPeriod, final MesoSimConfigGroup config) {
+		this.link = link;
+		this.freeSpeedTravelTime = link.getLength() / link.getFreespeed();
+
+		double flowCapacityPerSec = link.getCapacity() / capacityPeriod * config.getFlowCapacityFactor();
+		this.minExitHeadway = flowCapacityPerSec > 0 ? 1.0 / flowCapacityPerSec : Double.MAX_VALUE;
+
+		long storage = Math.round(link.getLength() * link.getNumberOfLanes() * config.getStorageCapacityFactor() / config.getEffectiveCellSize());
+		// a link must be able to hold at least one vehicle
+		this.storageCapacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE, storage));
+	}
+
+	boolean hasSpace() {
+		return this.vehicles.size() < this.storageCapacity;
+	}
+
+	/**
+	 * @return the earliest time, not before <code>now</code>, at which the frontmost
+	 * vehicle may leave this link considering its free speed travel time and the flow capacity
+	 */
+	double getNextExitTime(final double now) {
+		MesoAgent first = this.vehicles.peekFirst();
+		return Math.max(now, Math.max(first.earliestLinkExitTime, this.lastExitTime + this.minExitHeadway));
+	}
+
+}
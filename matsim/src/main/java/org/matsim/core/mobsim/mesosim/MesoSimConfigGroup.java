@@ -0,0 +1,148 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.mesosim;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.core.config.ReflectiveConfigGroup;
+import org.matsim.core.utils.collections.CollectionUtils;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * The parameters of the mesoscopic mobsim.
+ */
+public class MesoSimConfigGroup extends ReflectiveConfigGroup {
+
+	public final static String NAME = "mesosim";
+
+	private final static String END_TIME = "endTime";
+	private final static String FLOW_CAPACITY_FACTOR = "flowCapacityFactor";
+	private final static String STORAGE_CAPACITY_FACTOR = "storageCapacityFactor";
+	private final static String EFFECTIVE_CELL_SIZE = "effectiveCellSize";
+	private final static String STUCK_TIME = "stuckTime";
+	private final static String MAIN_MODE = "mainMode";
+
+	private double endTime = Time.UNDEFINED_TIME;
+	private double flowCapacityFactor = 1.0;
+	private double storageCapacityFactor = 1.0;
+	private double effectiveCellSize = 7.5; // in meter
+	private double stuckTime = 10.0; // in s
+	private Collection<String> mainModes = Arrays.asList(TransportMode.car);
+
+	public MesoSimConfigGroup() {
+		super(NAME);
+	}
+
+	@Override
+	public Map<String, String> getComments() {
+		Map<String, String> map = super.getComments();
+		map.put(END_TIME, "Time at which the simulation stops. Agents still on the road at this time are reported as stuck. "
+				+ "If not set, the simulation runs until all agents have completed their plans.");
+		map.put(FLOW_CAPACITY_FACTOR, "Scales the flow capacity of all links, e.g. when simulating a sample of the population.");
+		map.put(STORAGE_CAPACITY_FACTOR, "Scales the storage capacity of all links, e.g. when simulating a sample of the population.");
+		map.put(EFFECTIVE_CELL_SIZE, "Space (in meter) a vehicle occupies on a lane. Together with the link length and the number "
+				+ "of lanes, this defines the storage capacity of a link.");
+		map.put(STUCK_TIME, "time in seconds.  Time after which the frontmost vehicle on a link is forced into the next link, "
+				+ "even if that link is full.  Prevents gridlocks.");
+		map.put(MAIN_MODE, "[comma-separated list] Modes that are simulated on the network. All other modes are teleported.");
+		return map;
+	}
+
+	@StringGetter(END_TIME)
+	private String getEndTimeAsString() {
+		return Time.writeTime(this.endTime);
+	}
+
+	@StringSetter(END_TIME)
+	private void setEndTime(String value) {
+		this.endTime = Time.parseTime(value);
+	}
+
+	public double getEndTime() {
+		return this.endTime;
+	}
+
+	public void setEndTime(double endTime) {
+		this.endTime = endTime;
+	}
+
+	@StringGetter(FLOW_CAPACITY_FACTOR)
+	public double getFlowCapacityFactor() {
+		return this.flowCapacityFactor;
+	}
+
+	@StringSetter(FLOW_CAPACITY_FACTOR)
+	public void setFlowCapacityFactor(double flowCapacityFactor) {
+		this.flowCapacityFactor = flowCapacityFactor;
+	}
+
+	@StringGetter(STORAGE_CAPACITY_FACTOR)
+	public double getStorageCapacityFactor() {
+		return this.storageCapacityFactor;
+	}
+
+	@StringSetter(STORAGE_CAPACITY_FACTOR)
+	public void setStorageCapacityFactor(double storageCapacityFactor) {
+		this.storageCapacityFactor = storageCapacityFactor;
+	}
+
+	@StringGetter(EFFECTIVE_CELL_SIZE)
+	public double getEffectiveCellSize() {
+		return this.effectiveCellSize;
+	}
+
+	@StringSetter(EFFECTIVE_CELL_SIZE)
+	public void setEffectiveCellSize(double effectiveCellSize) {
+		this.effectiveCellSize = effectiveCellSize;
+	}
+
+	@StringGetter(STUCK_TIME)
+	public double getStuckTime() {
+		return this.stuckTime;
+	}
+
+	@StringSetter(STUCK_TIME)
+	public void setStuckTime(double stuckTime) {
+		this.stuckTime = stuckTime;
+	}
+
+	@StringGetter(MAIN_MODE)
+	private String getMainModesAsString() {
+		return CollectionUtils.setToString(new LinkedHashSet<>(this.mainModes));
+	}
+
+	@StringSetter(MAIN_MODE)
+	private void setMainModes(String value) {
+		setMainModes(CollectionUtils.stringToSet(value));
+	}
+
+	public Collection<String> getMainModes() {
+		return this.mainModes;
+	}
+
+	public void setMainModes(Collection<String> mainModes) {
+		this.mainModes = mainModes;
+	}
+
+}
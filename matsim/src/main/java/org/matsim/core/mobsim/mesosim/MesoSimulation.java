@@ -0,0 +1,373 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.mesosim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlansConfigGroup;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.mobsim.framework.Mobsim;
+import org.matsim.core.mobsim.qsim.agents.ActivityDurationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * A mesoscopic, event-driven mobsim. It sits between the {@link org.matsim.core.mobsim.qsim.QSim},
+ * which updates every link in every second, and pure teleportation.
+ * <p></p>
+ * Every link is a single FIFO queue with a storage capacity and a flow capacity (see {@link MesoLink}).
+ * Instead of stepping through time, the simulation only keeps a priority queue of the next points in
+ * time at which something happens: an agent ends an activity, a teleported agent arrives, or the
+ * frontmost vehicle of a link may leave it. Links without vehicles, and vehicles that are not at the
+ * front of their link, cost nothing.
+ * <p></p>
+ * The dynamics are intentionally simple:
+ * <ul>
+ * <li>A vehicle needs at least the free speed travel time to traverse a link.</li>
+ * <li>Two vehicles leaving a link are separated by at least the inverse of the link's flow capacity.</li>
+ * <li>A vehicle can only enter a link that has free storage space. If it does not, the vehicle waits
+ * until a vehicle leaves the downstream link, or until it has been waiting for <code>stuckTime</code>,
+ * after which it is forced onto the downstream link. Backwards traveling holes are not modeled.</li>
+ * <li>Departing vehicles are placed at the end of their departure link; arriving vehicles traverse their
+ * arrival link completely and leave it without using its flow capacity, as in the QSim.</li>
+ * </ul>
+ * Legs with modes not listed in {@link MesoSimConfigGroup#getMainModes()} are teleported using the travel
+ * time of their route or leg.
+ */
+public class MesoSimulation implements Mobsim {
+
+	private final static Logger log = Logger.getLogger(MesoSimulation.class);
+
+	private final Scenario scenario;
+	private final EventsManager events;
+	private final MesoSimConfigGroup config;
+	private final PlansConfigGroup.ActivityDurationInterpretation activityDurationInterpretation;
+	private final Set<String> mainModes;
+
+	private final PriorityQueue<Message> messages = new PriorityQueue<>();
+	private Map<Id<Link>, MesoLink> links = null;
+	private long messageCounter = 0;
+
+	@Inject
+	public MesoSimulation(final Scenario scenario, final EventsManager events) {
+		this.scenario = scenario;
+		this.events = events;
+		this.config = ConfigUtils.addOrGetModule(scenario.getConfig(), MesoSimConfigGroup.NAME, MesoSimConfigGroup.class);
+		this.activityDurationInterpretation = scenario.getConfig().plans().getActivityDurationInterpretation();
+		this.mainModes = new HashSet<>(this.config.getMainModes());
+	}
+
+	@Override
+	public void run() {
+		long startTime = System.currentTimeMillis();
+
+		double capacityPeriod = this.scenario.getNetwork().getCapacityPeriod();
+		this.links = new HashMap<>((int) (this.scenario.getNetwork().getLinks().size() / 0.75) + 1);
+		for (Link link : this.scenario.getNetwork().getLinks().values()) {
+			this.links.put(link.getId(), new MesoLink(link, capacityPeriod, this.config));
+		}
+
+		List<MesoAgent> agents = new ArrayList<>(this.scenario.getPopulation().getPersons().size());
+		for (Person person : this.scenario.getPopulation().getPersons().values()) {
+			if (person.getSelectedPlan() == null) {
+				continue;
+			}
+			MesoAgent agent = new MesoAgent(person);
+			agents.add(agent);
+			if (agent.hasNextPlanElement()) {
+				scheduleActivityEnd(agent, 0.0);
+			}
+		}
+
+		double endTime = this.config.getEndTime() == Time.UNDEFINED_TIME ? Double.POSITIVE_INFINITY : this.config.getEndTime();
+		double now = 0;
+		double nextLogTime = 3600;
+		while (!this.messages.isEmpty() && this.messages.peek().time < endTime) {
+			Message m = this.messages.poll();
+			now = m.time;
+			switch (m.type) {
+			case ACTIVITY_END:
+				handleActivityEnd(m.agent, now);
+				break;
+			case TELEPORTATION_ARRIVAL:
+				handleTeleportationArrival(m.agent, now);
+				break;
+			case LINK_EXIT:
+				if (m.version == m.link.exitVersion) {
+					handleLinkExit(m.link, now);
+				}
+				break;
+			default:
+				throw new IllegalStateException("unknown message type: " + m.type);
+			}
+			if (now >= nextLogTime) {
+				log.info("SIMULATION AT " + Time.writeTime(now) + " : #messages=" + this.messages.size());
+				nextLogTime = now + 3600;
+			}
+		}
+
+		handleStuckAgents(agents, Math.min(now, endTime));
+		this.messages.clear();
+		this.links = null;
+
+		log.info("Time needed for one iteration (only MesoSimulation part): " + (System.currentTimeMillis() - startTime) + "[ms]");
+		Gbl.printMemoryUsage();
+	}
+
+	private void scheduleActivityEnd(final MesoAgent agent, final double now) {
+		double departureTime = ActivityDurationUtils.calculateDepartureTime(agent.getCurrentActivity(), now, this.activityDurationInterpretation);
+		if (departureTime == Double.POSITIVE_INFINITY) {
+			// the agent stays at this activity for the rest of the simulation
+			return;
+		}
+		schedule(new Message(Math.max(now, departureTime), MessageType.ACTIVITY_END, agent, null));
+	}
+
+	private void scheduleLinkExit(final MesoLink link, final double time) {
+		link.exitVersion++;
+		Message m = new Message(time, MessageType.LINK_EXIT, null, link);
+		m.version = link.exitVersion;
+		schedule(m);
+	}
+
+	private void schedule(final Message m) {
+		m.sequence = this.messageCounter++;
+		this.messages.add(m);
+	}
+
+	private void handleActivityEnd(final MesoAgent agent, final double now) {
+		Id<Person> personId = agent.person.getId();
+		Activity act = agent.getCurrentActivity();
+		this.events.processEvent(new ActivityEndEvent(now, personId, act.getLinkId(), act.getFacilityId(), act.getType()));
+
+		agent.advancePlanElement();
+		Leg leg = agent.getCurrentLeg();
+		Route route = leg.getRoute();
+		Id<Link> departureLinkId = act.getLinkId();
+		this.events.processEvent(new PersonDepartureEvent(now, personId, departureLinkId, leg.getMode()));
+
+		if (this.mainModes.contains(leg.getMode()) && route instanceof NetworkRoute) {
+			NetworkRoute networkRoute = (NetworkRoute) route;
+			if (networkRoute.getLinkIds().isEmpty() && departureLinkId.equals(networkRoute.getEndLinkId())) {
+				// nothing to drive
+				arrive(agent, now, departureLinkId, leg.getMode());
+				return;
+			}
+			agent.route = createRoute(departureLinkId, networkRoute);
+			agent.routeIndex = 0;
+			agent.earliestLinkExitTime = now;
+
+			this.events.processEvent(new PersonEntersVehicleEvent(now, personId, agent.vehicleId));
+			this.events.processEvent(new VehicleEntersTrafficEvent(now, personId, departureLinkId, agent.vehicleId, leg.getMode(), 1.0));
+			MesoLink link = agent.getCurrentLink();
+			link.vehicles.addLast(agent);
+			if (link.vehicles.size() == 1) {
+				scheduleLinkExit(link, link.getNextExitTime(now));
+			}
+		} else {
+			double travelTime = Time.UNDEFINED_TIME;
+			if (route != null) {
+				travelTime = route.getTravelTime();
+			}
+			if (travelTime == Time.UNDEFINED_TIME) {
+				travelTime = leg.getTravelTime();
+			}
+			if (travelTime == Time.UNDEFINED_TIME) {
+				throw new RuntimeException("teleportation does not work when travel time is undefined. person: " + personId + " mode: " + leg.getMode());
+			}
+			schedule(new Message(now + travelTime, MessageType.TELEPORTATION_ARRIVAL, agent, null));
+		}
+	}
+
+	private MesoLink[] createRoute(final Id<Link> departureLinkId, final NetworkRoute networkRoute) {
+		List<Id<Link>> linkIds = networkRoute.getLinkIds();
+		MesoLink[] route = new MesoLink[linkIds.size() + 2];
+		route[0] = this.links.get(departureLinkId);
+		int i = 1;
+		for (Id<Link> linkId : linkIds) {
+			route[i++] = this.links.get(linkId);
+		}
+		route[i] = this.links.get(networkRoute.getEndLinkId());
+		return route;
+	}
+
+	private void handleTeleportationArrival(final MesoAgent agent, final double now) {
+		Leg leg = agent.getCurrentLeg();
+		double distance = leg.getRoute() == null ? Double.NaN : leg.getRoute().getDistance();
+		this.events.processEvent(new TeleportationArrivalEvent(now, agent.person.getId(), distance));
+		arrive(agent, now, agent.getNextActivity().getLinkId(), leg.getMode());
+	}
+
+	private void handleLinkExit(final MesoLink link, final double now) {
+		MesoAgent agent = link.vehicles.peekFirst();
+		Id<Person> personId = agent.person.getId();
+
+		if (agent.isOnArrivalLink()) {
+			link.vehicles.pollFirst();
+			agent.route = null;
+			String mode = agent.getCurrentLeg().getMode();
+			this.events.processEvent(new VehicleLeavesTrafficEvent(now, personId, link.link.getId(), agent.vehicleId, mode, 1.0));
+			this.events.processEvent(new PersonLeavesVehicleEvent(now, personId, agent.vehicleId));
+			arrive(agent, now, link.link.getId(), mode);
+			releaseSpace(link, now);
+			if (!link.vehicles.isEmpty()) {
+				scheduleLinkExit(link, link.getNextExitTime(now));
+			}
+			return;
+		}
+
+		MesoLink nextLink = agent.getNextLink();
+		if (!nextLink.hasSpace()) {
+			if (link.blockedBy == null) {
+				if (Double.isNaN(link.blockedSince)) {
+					link.blockedSince = now;
+				}
+				link.blockedBy = nextLink;
+				nextLink.blockedUpstreamLinks.addLast(link);
+			}
+			double forcedExitTime = link.blockedSince + this.config.getStuckTime();
+			if (now < forcedExitTime) {
+				// wait until some space becomes available, or until the vehicle is stuck for too long
+				scheduleLinkExit(link, forcedExitTime);
+				return;
+			}
+		}
+
+		if (link.blockedBy != null) {
+			link.blockedBy.blockedUpstreamLinks.remove(link);
+			link.blockedBy = null;
+		}
+		link.blockedSince = Double.NaN;
+
+		link.vehicles.pollFirst();
+		link.lastExitTime = now;
+		this.events.processEvent(new LinkLeaveEvent(now, agent.vehicleId, link.link.getId()));
+		agent.routeIndex++;
+		agent.earliestLinkExitTime = now + nextLink.freeSpeedTravelTime;
+		this.events.processEvent(new LinkEnterEvent(now, agent.vehicleId, nextLink.link.getId()));
+		nextLink.vehicles.addLast(agent);
+		if (nextLink.vehicles.size() == 1) {
+			scheduleLinkExit(nextLink, nextLink.getNextExitTime(now));
+		}
+
+		releaseSpace(link, now);
+		if (!link.vehicles.isEmpty()) {
+			scheduleLinkExit(link, link.getNextExitTime(now));
+		}
+	}
+
+	/**
+	 * A vehicle has left <code>link</code>, so the first of the upstream links waiting for space on it can try again.
+	 */
+	private void releaseSpace(final MesoLink link, final double now) {
+		MesoLink upstream = link.blockedUpstreamLinks.pollFirst();
+		if (upstream != null) {
+			upstream.blockedBy = null;
+			scheduleLinkExit(upstream, upstream.getNextExitTime(now));
+		}
+	}
+
+	private void arrive(final MesoAgent agent, final double now, final Id<Link> linkId, final String mode) {
+		Id<Person> personId = agent.person.getId();
+		this.events.processEvent(new PersonArrivalEvent(now, personId, linkId, mode));
+		agent.advancePlanElement();
+		Activity act = agent.getCurrentActivity();
+		this.events.processEvent(new ActivityStartEvent(now, personId, linkId, act.getFacilityId(), act.getType()));
+		if (agent.hasNextPlanElement()) {
+			scheduleActivityEnd(agent, now);
+		}
+	}
+
+	private void handleStuckAgents(final List<MesoAgent> agents, final double now) {
+		int cntStuck = 0;
+		for (MesoAgent agent : agents) {
+			if (agent.isOnLeg()) {
+				Id<Link> linkId = agent.route == null ? agent.getNextActivity().getLinkId() : agent.getCurrentLink().link.getId();
+				this.events.processEvent(new PersonStuckEvent(now, agent.person.getId(), linkId, agent.getCurrentLeg().getMode()));
+				cntStuck++;
+			}
+		}
+		if (cntStuck > 0) {
+			log.warn(cntStuck + " agents were still traveling at the end of the simulation.");
+		}
+	}
+
+	private enum MessageType { ACTIVITY_END, TELEPORTATION_ARRIVAL, LINK_EXIT }
+
+	/**
+	 * Something that happens at a given point in time. Messages with the same time are processed in the
+	 * order they were scheduled, which keeps the simulation deterministic.
+	 */
+	private static final class Message implements Comparable<Message> {
+		final double time;
+		final MessageType type;
+		final MesoAgent agent;
+		final MesoLink link;
+		int version = 0;
+		long sequence = 0;
+
+		Message(final double time, final MessageType type, final MesoAgent agent, final MesoLink link) {
+			this.time = time;
+			this.type = type;
+			this.agent = agent;
+			this.link = link;
+		}
+
+		@Override
+		public int compareTo(final Message o) {
+			int cmp = Double.compare(this.time, o.time);
+			if (cmp != 0) {
+				return cmp;
+			}
+			return Long.compare(this.sequence, o.sequence);
+		}
+	}
+
+}
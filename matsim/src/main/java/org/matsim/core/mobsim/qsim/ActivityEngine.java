@@ -19,8 +19,11 @@
 
 package org.matsim.core.mobsim.qsim;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.PriorityBlockingQueue;
 
@@ -30,6 +33,9 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
+import org.matsim.core.mobsim.qsim.checkpoint.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.ActivityHandler;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
@@ -37,7 +43,7 @@ import org.matsim.core.utils.misc.Time;
 
 import javax.inject.Inject;
 
-public class ActivityEngine implements MobsimEngine, ActivityHandler {
+public class ActivityEngine implements MobsimEngine, ActivityHandler, Checkpointable {
 
 	private EventsManager eventsManager;
 	private AgentCounter agentCounter;
@@ -139,6 +145,32 @@ public class ActivityEngine implements MobsimEngine, ActivityHandler {
 		this.internalInterface = internalInterface;
 	}
 
+	/**
+	 * Writes the agents performing an activity which ends, together with the end time the agents are queued with.
+	 * Agents performing their last activity are not handled by this engine any more.
+	 */
+	@Override
+	public void writeCheckpoint(CheckpointWriter out) throws IOException {
+		out.writeBoolean(beforeFirstSimStep);
+		List<AgentEntry> entries = new ArrayList<>(activityEndsList);
+		out.writeInt(entries.size());
+		for (AgentEntry entry : entries) {
+			out.writeId(entry.agent.getId());
+			out.writeDouble(entry.activityEndTime);
+		}
+	}
+
+	@Override
+	public void readCheckpoint(CheckpointReader in) throws IOException {
+		beforeFirstSimStep = in.readBoolean();
+		int numberOfEntries = in.readInt();
+		for (int i = 0; i < numberOfEntries; i++) {
+			MobsimAgent agent = in.readAgent();
+			activityEndsList.add(new AgentEntry(agent, in.readDouble()));
+			internalInterface.registerAdditionalAgentOnLink(agent);
+		}
+	}
+
 	
 	/**
 	 * 
@@ -58,4 +58,8 @@ class AgentCounter implements org.matsim.core.mobsim.qsim.interfaces.AgentCounte
     @Override
     public final void decLiving() {living.decrementAndGet();}
 
+    final void setLiving(int living) {this.living.set(living);}
+
+    final void setLost(int lost) {this.lost.set(lost);}
+
 }
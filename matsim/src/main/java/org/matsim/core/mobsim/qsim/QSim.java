@@ -20,6 +20,7 @@
 
 package org.matsim.core.mobsim.qsim;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -44,10 +45,14 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.gbl.Gbl;
+import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.mobsim.framework.AgentSource;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.framework.listeners.MobsimListener;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
+import org.matsim.core.mobsim.qsim.checkpoint.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.ActivityHandler;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.DepartureHandler;
@@ -56,8 +61,10 @@ import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.Netsim;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
 import org.matsim.core.mobsim.qsim.pt.TransitQSimEngine;
+import org.matsim.core.mobsim.qsim.pt.TransitStopHandlingBuffer;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
@@ -128,6 +135,7 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 	private final Map<Id<Person>, MobsimAgent> agents = new LinkedHashMap<>();
 	private final List<AgentSource> agentSources = new ArrayList<>();
 	private TransitQSimEngine transitEngine;
+	private String checkpointToResumeFrom = null;
 
 	// for detailed run time analysis
 	public static boolean analyzeRunTimes = false;
@@ -197,11 +205,14 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 	@Inject
 	public QSim(final Scenario sc, EventsManager events) {
 		this.scenario = sc;
+		EventsManager eventsManager = events;
 		if (sc.getConfig().qsim().getNumberOfThreads() > 1) {
-			this.events = EventsUtils.getParallelFeedableInstance(events);
-		} else {
-			this.events = events;
+			eventsManager = EventsUtils.getParallelFeedableInstance(eventsManager);
+		}
+		if (sc.getConfig().transit().isUseTransit() && sc.getConfig().transit().isParallelStopHandling()) {
+			eventsManager = new TransitStopHandlingBuffer(eventsManager);
 		}
+		this.events = eventsManager;
 		this.listenerManager = new MobsimListenerManager(this);
 		this.agentCounter = new org.matsim.core.mobsim.qsim.AgentCounter();
 		this.simTimer = new MobsimTimer(sc.getConfig().qsim().getTimeStepSize());
@@ -226,8 +237,13 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 			// (can be located somewhere) before you execute a sim step.
 			// Agents can abort in this loop already, so we iterate over
 			// a defensive copy of the agent collection.
-			for (MobsimAgent agent : new ArrayList<>(this.agents.values())) {
-				arrangeNextAgentAction(agent);
+			if (this.checkpointToResumeFrom != null) {
+				// the agents are already handled by the engines in the checkpoint
+				readCheckpoint(this.checkpointToResumeFrom);
+			} else {
+				for (MobsimAgent agent : new ArrayList<>(this.agents.values())) {
+					arrangeNextAgentAction(agent);
+				}
 			}
 
 			// do iterations
@@ -268,6 +284,92 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		}
 	}
 
+	/**
+	 * Lets this simulation continue from the state in the given checkpoint instead of starting the plans
+	 * of the agents. Needs to be called before the simulation starts, or by a
+	 * {@link org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener}.
+	 *
+	 * @see #writeCheckpoint(String)
+	 */
+	public void resumeFromCheckpoint(final String filename) {
+		this.checkpointToResumeFrom = filename;
+	}
+
+	/**
+	 * Writes the state of the simulation at the end of the current time step into the given file. Needs
+	 * to be called between two time steps, e.g. by a
+	 * {@link org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener}.
+	 * <p></p>
+	 * The checkpoint contains the state of the agents and of the engines which are {@link Checkpointable}.
+	 * All other engines start from scratch when the simulation is resumed.
+	 */
+	public void writeCheckpoint(final String filename) {
+		try (CheckpointWriter out = new CheckpointWriter(filename)) {
+			out.writeDouble(this.simTimer.getSimStartTime());
+			out.writeDouble(this.simTimer.getTimeOfDay());
+			out.writeInt(this.agentCounter.getLiving());
+			out.writeInt(this.agentCounter.getLost());
+			out.writeRandomState(MatsimRandom.getRandom());
+			out.writeInt(this.agents.size());
+			for (MobsimAgent agent : this.agents.values()) {
+				out.writeId(agent.getId());
+				getCheckpointable(agent).writeCheckpoint(out);
+			}
+			for (MobsimEngine mobsimEngine : this.mobsimEngines) {
+				if (mobsimEngine instanceof Checkpointable) {
+					out.writeUTF(mobsimEngine.getClass().getName());
+					((Checkpointable) mobsimEngine).writeCheckpoint(out);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		log.info("wrote checkpoint at " + Time.writeTime(this.simTimer.getTimeOfDay()) + " to " + filename);
+	}
+
+	private void readCheckpoint(final String filename) {
+		try (CheckpointReader in = new CheckpointReader(filename, this.agents)) {
+			this.simTimer.setSimStartTime(in.readDouble());
+			this.simTimer.setTime(in.readDouble());
+			this.agentCounter.setLiving(in.readInt());
+			this.agentCounter.setLost(in.readInt());
+			in.readRandomState(MatsimRandom.getRandom());
+			int numberOfAgents = in.readInt();
+			if (numberOfAgents != this.agents.size()) {
+				throw new IllegalStateException("The checkpoint contains " + numberOfAgents + " agents, but the simulation " + this.agents.size() + ".");
+			}
+			for (int i = 0; i < numberOfAgents; i++) {
+				getCheckpointable(in.readAgent()).readCheckpoint(in);
+			}
+			for (MobsimEngine mobsimEngine : this.mobsimEngines) {
+				if (mobsimEngine instanceof Checkpointable) {
+					String engineClassName = in.readUTF();
+					if (!engineClassName.equals(mobsimEngine.getClass().getName())) {
+						throw new IllegalStateException("The checkpoint contains the state of " + engineClassName + " instead of "
+								+ mobsimEngine.getClass().getName() + ". It was written by a differently composed QSim.");
+					}
+					((Checkpointable) mobsimEngine).readCheckpoint(in);
+				} else {
+					log.warn(mobsimEngine.getClass().getName() + " does not support checkpoints; it is not restored.");
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		// the checkpoint was written at the end of its time step
+		this.simTimer.incrementTime();
+		this.infoTime = Math.floor(this.simTimer.getTimeOfDay() / INFO_PERIOD) * INFO_PERIOD;
+		log.info("resumed from checkpoint " + filename + " at " + Time.writeTime(this.simTimer.getTimeOfDay()));
+	}
+
+	private static Checkpointable getCheckpointable(MobsimAgent agent) {
+		if (!(agent instanceof Checkpointable)) {
+			throw new UnsupportedOperationException("Agent " + agent.getId() + " of type " + agent.getClass().getName()
+					+ " does not support checkpoints.");
+		}
+		return (Checkpointable) agent;
+	}
+
 	private void createAgents() {
 		for (AgentSource agentSource : this.agentSources) {
 			agentSource.insertAgentsIntoMobsim();
@@ -615,4 +717,4 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 			}
 		};
 	}
-}
+}
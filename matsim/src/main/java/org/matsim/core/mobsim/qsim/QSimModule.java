@@ -10,6 +10,8 @@ import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.NetworkConfigGroup;
 import org.matsim.core.mobsim.framework.Mobsim;
 import org.matsim.core.mobsim.qsim.changeeventsengine.NetworkChangeEventsPlugin;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointConfigGroup;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointPlugin;
 import org.matsim.core.mobsim.qsim.messagequeueengine.MessageQueuePlugin;
 import org.matsim.core.mobsim.qsim.pt.TransitEnginePlugin;
 import org.matsim.core.mobsim.qsim.qnetsimengine.DefaultQNetworkFactory;
@@ -48,6 +50,9 @@ public class QSimModule extends AbstractModule {
 		}
 		plugins.add(new TeleportationPlugin(config));
 		plugins.add(new PopulationPlugin(config));
+		if (config.getModules().containsKey(QSimCheckpointConfigGroup.GROUP_NAME)) {
+			plugins.add(new QSimCheckpointPlugin(config));
+		}
 		return plugins;
 	}
 }
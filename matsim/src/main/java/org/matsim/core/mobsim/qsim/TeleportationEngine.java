@@ -10,6 +10,9 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
 import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
+import org.matsim.core.mobsim.qsim.checkpoint.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.DepartureHandler;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.network.NetworkUtils;
@@ -21,6 +24,7 @@ import org.matsim.vis.snapshotwriters.TeleportationVisData;
 import org.matsim.vis.snapshotwriters.VisData;
 
 import javax.inject.Inject;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -28,7 +32,7 @@ import java.util.*;
  * NetsimEngine (often all != "car") or have two activities on the same link
  */
 public final class TeleportationEngine implements DepartureHandler, MobsimEngine,
-VisData {
+VisData, Checkpointable {
 	private static final Logger log = Logger.getLogger( TeleportationEngine.class ) ;
 	
 	private final Queue<Tuple<Double, MobsimAgent>> teleportationList = new PriorityQueue<>(
@@ -78,6 +82,12 @@ VisData {
 		this.teleportationList.add(new Tuple<>(arrivalTime, agent));
 		
 		// === below here is only visualization, no dynamics ===
+		addVisData(now, agent, linkId, travelTime);
+		
+		return true;
+	}
+
+	private void addVisData(double now, MobsimAgent agent, Id<Link> linkId, double travelTime) {
 		Id<Person> agentId = agent.getId();
 		Link currLink = this.scenario .getNetwork().getLinks().get(linkId);
 		Link destLink = this.scenario .getNetwork().getLinks().get(agent.getDestinationLinkId());
@@ -85,8 +95,6 @@ VisData {
 		Coord toCoord = destLink.getToNode().getCoord();
 		TeleportationVisData agentInfo = new TeleportationVisData(now, agentId, fromCoord, toCoord, travelTime);
 		this.teleportationData.put(agentId, agentInfo);
-		
-		return true;
 	}
 
 	@Override
@@ -144,6 +152,30 @@ VisData {
 		this.internalInterface = internalInterface;
 	}
 
+	@Override
+	public void writeCheckpoint(CheckpointWriter out) throws IOException {
+		out.writeInt(teleportationList.size());
+		for (Tuple<Double, MobsimAgent> entry : teleportationList) {
+			out.writeId(entry.getSecond().getId());
+			out.writeDouble(entry.getFirst());
+		}
+	}
+
+	/**
+	 * The visualization of the restored agents starts at the time of the checkpoint, at the link they departed from.
+	 */
+	@Override
+	public void readCheckpoint(CheckpointReader in) throws IOException {
+		double now = internalInterface.getMobsim().getSimTimer().getTimeOfDay();
+		int numberOfEntries = in.readInt();
+		for (int i = 0; i < numberOfEntries; i++) {
+			MobsimAgent agent = in.readAgent();
+			double arrivalTime = in.readDouble();
+			this.teleportationList.add(new Tuple<>(arrivalTime, agent));
+			addVisData(now, agent, agent.getCurrentLinkId(), arrivalTime - now);
+		}
+	}
+
 	private static Double travelTimeCheck(Double travelTime, Double speed, Facility<?> dpfac, Facility<?> arfac) {
 		if ( speed==null ) {
 			// if we don't have a bushwhacking speed, the only thing we can do is trust the router
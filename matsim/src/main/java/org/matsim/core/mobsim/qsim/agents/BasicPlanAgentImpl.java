@@ -1,5 +1,6 @@
 package org.matsim.core.mobsim.qsim.agents;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -26,6 +27,9 @@ import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.framework.PlanAgent;
 import org.matsim.core.mobsim.framework.VehicleUsingAgent;
 import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
+import org.matsim.core.mobsim.qsim.checkpoint.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.population.PlanImpl;
 import org.matsim.core.population.PopulationUtils;
@@ -37,7 +41,7 @@ import org.matsim.facilities.ActivityOption;
 import org.matsim.facilities.Facility;
 import org.matsim.vehicles.Vehicle;
 
-public final class BasicPlanAgentImpl implements MobsimAgent, PlanAgent, Identifiable<Person>, HasPerson, VehicleUsingAgent {
+public final class BasicPlanAgentImpl implements MobsimAgent, PlanAgent, Identifiable<Person>, HasPerson, VehicleUsingAgent, Checkpointable {
 	
 	private static final Logger log = Logger.getLogger(BasicPlanAgentImpl.class);
 	private static int finalActHasDpTimeWrnCnt = 0;
@@ -178,6 +182,35 @@ public final class BasicPlanAgentImpl implements MobsimAgent, PlanAgent, Identif
 		advancePlan(now);
 	}
 	
+	/**
+	 * Writes how far the plan is executed.  The plan itself is not written, so agents whose plan was modified during the
+	 * simulation cannot be checkpointed.  The vehicle is set by the engine which restores it.
+	 */
+	@Override
+	public final void writeCheckpoint(CheckpointWriter out) throws IOException {
+		if ( !this.firstTimeToGetModifiablePlan ) {
+			throw new UnsupportedOperationException("the plan of agent " + this.getId() + " was modified during the simulation; "
+					+ "such plans are not part of a checkpoint") ;
+		}
+		out.writeInt( this.currentPlanElementIndex );
+		out.writeByte( this.state.ordinal() );
+		out.writeDouble( this.activityEndTime );
+		out.writeId( this.currentLinkId );
+		out.writeInt( this.currentLinkIndex );
+	}
+
+	@Override
+	public final void readCheckpoint(CheckpointReader in) throws IOException {
+		this.currentPlanElementIndex = in.readInt() ;
+		if ( this.currentPlanElementIndex >= this.plan.getPlanElements().size() ) {
+			throw new IllegalStateException("plan of agent " + this.getId() + " is shorter than the one in the checkpoint") ;
+		}
+		this.state = MobsimAgent.State.values()[ in.readByte() ] ;
+		this.activityEndTime = in.readDouble() ;
+		this.currentLinkId = in.readId( Link.class ) ;
+		this.currentLinkIndex = in.readInt() ;
+	}
+
 	final void resetCaches() {
 		if ( this.getCurrentPlanElement() instanceof Activity ) {
 			Activity act = (Activity) this.getCurrentPlanElement() ;
@@ -20,6 +20,8 @@
 
 package org.matsim.core.mobsim.qsim.agents;
 
+import java.io.IOException;
+
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
@@ -28,6 +30,9 @@ import org.matsim.core.mobsim.framework.HasPerson;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.MobsimPassengerAgent;
 import org.matsim.core.mobsim.framework.PlanAgent;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
+import org.matsim.core.mobsim.qsim.checkpoint.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.Netsim;
 import org.matsim.core.population.PopulationUtils;
@@ -39,7 +44,7 @@ import org.matsim.vehicles.Vehicle;
  * <p/>
  * I think this class is reasonable in terms of what is public and/or final and what not.
  */
-public class PersonDriverAgentImpl implements MobsimDriverAgent, MobsimPassengerAgent, HasPerson, PlanAgent {
+public class PersonDriverAgentImpl implements MobsimDriverAgent, MobsimPassengerAgent, HasPerson, PlanAgent, Checkpointable {
 	// yy cannot make this final since it is overridden at 65 locations
 	// (but since all methods are final, it seems that all of these could be solved by delegation).
 	// kai, nov'14
@@ -193,6 +198,20 @@ public class PersonDriverAgentImpl implements MobsimDriverAgent, MobsimPassenger
 		driverAgentDelegate.resetCaches(); 
 	}
 
+	/**
+	 * Subclasses with a state of their own need to extend this and {@link #readCheckpoint(CheckpointReader)}.
+	 */
+	@Override
+	public void writeCheckpoint(CheckpointWriter out) throws IOException {
+		basicAgentDelegate.writeCheckpoint(out);
+	}
+
+	@Override
+	public void readCheckpoint(CheckpointReader in) throws IOException {
+		// (the driver delegate only caches the next link, which it re-computes from the restored route position)
+		basicAgentDelegate.readCheckpoint(in);
+	}
+
 	@Override
 	public Facility<? extends Facility<?>> getCurrentFacility() {
 		return this.basicAgentDelegate.getCurrentFacility();
@@ -20,6 +20,7 @@
 
 package org.matsim.core.mobsim.qsim.agents;
 
+import java.io.IOException;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -30,6 +31,9 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.core.mobsim.framework.HasPerson;
 import org.matsim.core.mobsim.framework.PlanAgent;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
+import org.matsim.core.mobsim.qsim.checkpoint.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.Netsim;
 import org.matsim.core.mobsim.qsim.pt.MobsimDriverPassengerAgent;
@@ -44,7 +48,7 @@ import org.matsim.vehicles.Vehicle;
 /**
  * @author mrieser
  */
-public final class TransitAgent implements MobsimDriverPassengerAgent, PlanAgent, HasPerson {
+public final class TransitAgent implements MobsimDriverPassengerAgent, PlanAgent, HasPerson, Checkpointable {
 	@SuppressWarnings("unused")
 	private static final Logger log = Logger.getLogger(TransitAgent.class);
 
@@ -183,6 +187,17 @@ public final class TransitAgent implements MobsimDriverPassengerAgent, PlanAgent
 		return this.basicAgentDelegate.getPreviousPlanElement();
 	}
 
+	@Override
+	public void writeCheckpoint(CheckpointWriter out) throws IOException {
+		basicAgentDelegate.writeCheckpoint(out);
+	}
+
+	@Override
+	public void readCheckpoint(CheckpointReader in) throws IOException {
+		// (the driver delegate only caches the next link, the transit delegate has no state of its own)
+		basicAgentDelegate.readCheckpoint(in);
+	}
+
 	@Override
 	public Facility<? extends Facility<?>> getCurrentFacility() {
 		return this.basicAgentDelegate.getCurrentFacility();
@@ -0,0 +1,92 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Reads a checkpoint written by the {@link CheckpointWriter}. The agents referenced in the
+ * checkpoint are looked up among the agents of the QSim which is resumed.
+ */
+public final class CheckpointReader extends DataInputStream {
+
+	private final List<String> ids = new ArrayList<>();
+	private final Map<Id<Person>, MobsimAgent> agents;
+
+	public CheckpointReader(final String filename, final Map<Id<Person>, MobsimAgent> agents) throws IOException {
+		super(IOUtils.getInputStream(filename));
+		this.agents = agents;
+		if (readInt() != CheckpointWriter.MAGIC_NUMBER) {
+			throw new IOException(filename + " is not a QSim checkpoint.");
+		}
+		int version = readInt();
+		if (version != CheckpointWriter.VERSION) {
+			throw new IOException("Unsupported version " + version + " of the QSim checkpoint " + filename + ".");
+		}
+	}
+
+	public <T> Id<T> readId(final Class<T> type) throws IOException {
+		int index = readInt();
+		if (index == -1) {
+			return null;
+		}
+		if (index == this.ids.size()) {
+			this.ids.add(readUTF());
+		} else if (index > this.ids.size()) {
+			throw new IOException("Corrupt checkpoint: unknown id index " + index + ".");
+		}
+		return Id.create(this.ids.get(index), type);
+	}
+
+	/**
+	 * Reads the id of an agent and returns the agent of the resumed QSim with this id, or <code>null</code>
+	 * if <code>null</code> was written instead of an id.
+	 */
+	public MobsimAgent readAgent() throws IOException {
+		Id<Person> agentId = readId(Person.class);
+		if (agentId == null) {
+			return null;
+		}
+		MobsimAgent agent = this.agents.get(agentId);
+		if (agent == null) {
+			throw new IllegalStateException("Agent " + agentId + " of the checkpoint is not part of the simulation.");
+		}
+		return agent;
+	}
+
+	/**
+	 * Sets the random number generator to the state written by {@link CheckpointWriter#writeRandomState(Random)}.
+	 */
+	public void readRandomState(final Random random) throws IOException {
+		// setSeed(...) scrambles the seed with the multiplier of the generator, which cancels this scrambling out
+		random.setSeed(readLong() ^ 0x5DEECE66DL);
+	}
+
+}
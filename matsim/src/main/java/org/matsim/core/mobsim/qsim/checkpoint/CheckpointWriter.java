@@ -0,0 +1,87 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Writes the binary checkpoint of a QSim. Besides the primitive types of the {@link DataOutputStream},
+ * it writes ids: every id is written only once as a string, afterwards only its index is written.
+ * The file is compressed if its name ends with <code>.gz</code>.
+ *
+ * @see CheckpointReader
+ */
+public final class CheckpointWriter extends DataOutputStream {
+
+	static final int MAGIC_NUMBER = 0x4d415443;
+	static final int VERSION = 1;
+
+	private final Map<Id<?>, Integer> idIndices = new HashMap<>();
+
+	public CheckpointWriter(final String filename) throws IOException {
+		super(IOUtils.getOutputStream(filename));
+		writeInt(MAGIC_NUMBER);
+		writeInt(VERSION);
+	}
+
+	/**
+	 * Writes the index of the id, which is -1 for <code>null</code>. Ids not written before are
+	 * followed by their string representation.
+	 */
+	public void writeId(final Id<?> id) throws IOException {
+		if (id == null) {
+			writeInt(-1);
+			return;
+		}
+		Integer index = this.idIndices.get(id);
+		if (index != null) {
+			writeInt(index);
+		} else {
+			index = this.idIndices.size();
+			this.idIndices.put(id, index);
+			writeInt(index);
+			writeUTF(id.toString());
+		}
+	}
+
+	/**
+	 * Writes the internal state of the random number generator, so the resumed simulation draws
+	 * the same random numbers as the original one.
+	 */
+	public void writeRandomState(final Random random) throws IOException {
+		try {
+			Field seed = Random.class.getDeclaredField("seed");
+			seed.setAccessible(true);
+			writeLong(((AtomicLong) seed.get(random)).get());
+		} catch (NoSuchFieldException | IllegalAccessException e) {
+			throw new RuntimeException("cannot access the state of the random number generator", e);
+		}
+	}
+
+}
@@ -0,0 +1,41 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.io.IOException;
+
+/**
+ * A part of the QSim, e.g. an agent or a {@link org.matsim.core.mobsim.qsim.interfaces.MobsimEngine},
+ * whose state can be written into a checkpoint and restored from it.
+ * <p></p>
+ * {@link #readCheckpoint(CheckpointReader)} is called on a freshly prepared QSim, i.e. after
+ * <code>onPrepareSim()</code>, but before any agent has been handed to an engine. It has to read exactly
+ * the data written by {@link #writeCheckpoint(CheckpointWriter)}, in the same order.
+ *
+ * @see org.matsim.core.mobsim.qsim.QSim#writeCheckpoint(String)
+ * @see org.matsim.core.mobsim.qsim.QSim#resumeFromCheckpoint(String)
+ */
+public interface Checkpointable {
+
+	void writeCheckpoint(CheckpointWriter out) throws IOException;
+
+	void readCheckpoint(CheckpointReader in) throws IOException;
+
+}
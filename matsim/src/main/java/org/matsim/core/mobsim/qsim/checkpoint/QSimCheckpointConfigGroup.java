@@ -0,0 +1,110 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.matsim.core.config.ReflectiveConfigGroup;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * Configures when the QSim writes checkpoints of its state and from which checkpoint it resumes.
+ */
+public final class QSimCheckpointConfigGroup extends ReflectiveConfigGroup {
+
+	public static final String GROUP_NAME = "qsimCheckpoint";
+
+	private static final String CHECKPOINT_TIMES = "checkpointTimes";
+	private static final String CHECKPOINT_DIRECTORY = "checkpointDirectory";
+	private static final String RESUME_FROM_CHECKPOINT = "resumeFromCheckpoint";
+
+	private final SortedSet<Double> checkpointTimes = new TreeSet<>();
+	private String checkpointDirectory = null;
+	private String resumeFromCheckpoint = null;
+
+	public QSimCheckpointConfigGroup() {
+		super(GROUP_NAME);
+	}
+
+	@Override
+	public Map<String, String> getComments() {
+		Map<String, String> comments = super.getComments();
+		comments.put(CHECKPOINT_TIMES, "Comma-separated simulation times (hh:mm:ss) at which the QSim writes a checkpoint of its state. "
+				+ "The checkpoint is written at the end of the first time step at or after the given time.");
+		comments.put(CHECKPOINT_DIRECTORY, "The directory for the checkpoints. Defaults to the output directory of the controler. "
+				+ "Each mobsim run overwrites the checkpoints of the previous one.");
+		comments.put(RESUME_FROM_CHECKPOINT, "A checkpoint file. If set, every mobsim run continues from the state in this file "
+				+ "instead of starting the plans of the agents, so the population needs to be the one of the checkpoint.");
+		return comments;
+	}
+
+	@StringGetter( CHECKPOINT_TIMES )
+	public String getCheckpointTimesAsString() {
+		StringBuilder result = new StringBuilder();
+		for (Double time : this.checkpointTimes) {
+			if (result.length() > 0) {
+				result.append(',');
+			}
+			result.append(Time.writeTime(time));
+		}
+		return result.toString();
+	}
+
+	@StringSetter( CHECKPOINT_TIMES )
+	public void setCheckpointTimesAsString(final String times) {
+		this.checkpointTimes.clear();
+		for (String time : times.split(",")) {
+			if (!time.trim().isEmpty()) {
+				this.checkpointTimes.add(Time.parseTime(time.trim()));
+			}
+		}
+	}
+
+	public SortedSet<Double> getCheckpointTimes() {
+		return this.checkpointTimes;
+	}
+
+	public void addCheckpointTime(final double time) {
+		this.checkpointTimes.add(time);
+	}
+
+	@StringGetter( CHECKPOINT_DIRECTORY )
+	public String getCheckpointDirectory() {
+		return this.checkpointDirectory;
+	}
+
+	@StringSetter( CHECKPOINT_DIRECTORY )
+	public void setCheckpointDirectory(final String checkpointDirectory) {
+		this.checkpointDirectory = checkpointDirectory;
+	}
+
+	@StringGetter( RESUME_FROM_CHECKPOINT )
+	public String getResumeFromCheckpoint() {
+		return this.resumeFromCheckpoint;
+	}
+
+	@StringSetter( RESUME_FROM_CHECKPOINT )
+	public void setResumeFromCheckpoint(final String resumeFromCheckpoint) {
+		this.resumeFromCheckpoint = resumeFromCheckpoint;
+	}
+
+}
@@ -0,0 +1,87 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import javax.inject.Inject;
+
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * Writes the checkpoints and lets the QSim resume from a checkpoint as configured in the
+ * {@link QSimCheckpointConfigGroup}.
+ */
+public final class QSimCheckpointListener implements MobsimInitializedListener, MobsimAfterSimStepListener {
+
+	private final QSimCheckpointConfigGroup checkpointConfig;
+	private final String directory;
+
+	private final TreeSet<Double> pendingCheckpointTimes = new TreeSet<>();
+	private boolean isFirstSimStep = true;
+
+	@Inject
+	QSimCheckpointListener(final Config config) {
+		this.checkpointConfig = ConfigUtils.addOrGetModule(config, QSimCheckpointConfigGroup.GROUP_NAME, QSimCheckpointConfigGroup.class);
+		this.directory = this.checkpointConfig.getCheckpointDirectory() != null ? this.checkpointConfig.getCheckpointDirectory()
+				: config.controler().getOutputDirectory();
+	}
+
+	public static String getCheckpointFilename(final String directory, final double time) {
+		return new File(directory, "qsim_checkpoint_" + Time.writeTime(time, Time.TIMEFORMAT_HHMMSS, '-') + ".bin.gz").getPath();
+	}
+
+	@Override
+	public void notifyMobsimInitialized(final MobsimInitializedEvent e) {
+		this.pendingCheckpointTimes.addAll(this.checkpointConfig.getCheckpointTimes());
+		if (this.checkpointConfig.getResumeFromCheckpoint() != null) {
+			((QSim) e.getQueueSimulation()).resumeFromCheckpoint(this.checkpointConfig.getResumeFromCheckpoint());
+		}
+	}
+
+	@Override
+	public void notifyMobsimAfterSimStep(final MobsimAfterSimStepEvent e) {
+		double now = e.getSimulationTime();
+		if (this.isFirstSimStep) {
+			// times before the start, e.g. the one of the checkpoint the simulation resumed from, are skipped
+			this.pendingCheckpointTimes.headSet(now).clear();
+			this.isFirstSimStep = false;
+		}
+		boolean isDue = false;
+		Iterator<Double> iterator = this.pendingCheckpointTimes.iterator();
+		while (iterator.hasNext() && iterator.next() <= now) {
+			iterator.remove();
+			isDue = true;
+		}
+		if (isDue) {
+			((QSim) e.getQueueSimulation()).writeCheckpoint(getCheckpointFilename(this.directory, now));
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.matsim.core.config.Config;
+import org.matsim.core.mobsim.framework.listeners.MobsimListener;
+import org.matsim.core.mobsim.qsim.AbstractQSimPlugin;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+public class QSimCheckpointPlugin extends AbstractQSimPlugin {
+
+	public QSimCheckpointPlugin(Config config) {
+		super(config);
+	}
+
+	@Override
+	public Collection<? extends Module> modules() {
+		Collection<Module> result = new ArrayList<>();
+		result.add(new AbstractModule() {
+			@Override
+			public void configure() {
+				bind(QSimCheckpointListener.class).asEagerSingleton();
+			}
+		});
+		return result;
+	}
+
+	@Override
+	public Collection<Class<? extends MobsimListener>> listeners() {
+		Collection<Class<? extends MobsimListener>> result = new ArrayList<>();
+		result.add(QSimCheckpointListener.class);
+		return result;
+	}
+}
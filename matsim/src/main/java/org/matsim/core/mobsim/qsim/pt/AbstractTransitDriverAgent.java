@@ -19,6 +19,7 @@
 
 package org.matsim.core.mobsim.qsim.pt;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -38,6 +39,9 @@ import org.matsim.core.mobsim.framework.PlanAgent;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.QSim;
 import org.matsim.core.mobsim.qsim.agents.PersonDriverAgentImpl;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
+import org.matsim.core.mobsim.qsim.checkpoint.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.utils.misc.Time;
@@ -66,6 +70,8 @@ public abstract class AbstractTransitDriverAgent implements TransitDriverAgent,
 
 	private final PassengerAccessEgressImpl accessEgress;
 
+	private TransitStopHandlingBuffer stopHandlingBuffer = null;
+
 	/* package */ MobsimAgent.State state = MobsimAgent.State.ACTIVITY ; 
 	// yy not so great: implicit instantiation at activity.  kai, nov'11
 	@Override
@@ -104,6 +110,14 @@ public abstract class AbstractTransitDriverAgent implements TransitDriverAgent,
 		this.dummyPerson = personImpl;
 	}
 
+	/**
+	 * @param stopHandlingBuffer buffers the events and agents of the stop handling, may be <code>null</code>
+	 */
+	final void setStopHandlingBuffer(TransitStopHandlingBuffer stopHandlingBuffer) {
+		this.stopHandlingBuffer = stopHandlingBuffer;
+		this.accessEgress.setStopHandlingBuffer(stopHandlingBuffer);
+	}
+
 	@Override
 	public final Id<Link> chooseNextLinkId() {
 		NetworkRoute netR = getCarRoute();
@@ -160,6 +174,15 @@ public abstract class AbstractTransitDriverAgent implements TransitDriverAgent,
 	public double handleTransitStop(final TransitStopFacility stop, final double now) {
 		// yy can't make this final because of tests.  kai, oct'12
 
+		if (this.stopHandlingBuffer == null) {
+			return handleTransitStopAndDepart(stop, now);
+		}
+		// buffered until the end of the link's sim step
+		this.stopHandlingBuffer.startStopHandling(stop);
+		return handleTransitStopAndDepart(stop, now);
+	}
+
+	private double handleTransitStopAndDepart(final TransitStopFacility stop, final double now) {
 		assertExpectedStop(stop);
 		processEventVehicleArrives(stop, now);
 
@@ -313,6 +336,48 @@ public abstract class AbstractTransitDriverAgent implements TransitDriverAgent,
 	}
 
 
+	/**
+	 * Writes how far the driver got on its current transit route, together with the state of the stop handling.
+	 * Subclasses which support checkpoints call this after writing their own state, which has to determine the
+	 * current transit route.
+	 */
+	protected final void writeTransitRouteCheckpoint(CheckpointWriter out) throws IOException {
+		out.writeByte(this.state.ordinal());
+		out.writeInt(this.nextLinkIndex);
+		out.writeInt(this.nextStop == null ? -1 : this.stopIterator.previousIndex());
+		out.writeBoolean(this.currentStop != null);
+		this.accessEgress.writeCheckpoint(out);
+		TransitStopHandler stopHandler = this.vehicle.getStopHandler();
+		if (!(stopHandler instanceof Checkpointable)) {
+			throw new UnsupportedOperationException("Checkpoints are not supported for transit stop handlers of type "
+					+ stopHandler.getClass().getName());
+		}
+		((Checkpointable) stopHandler).writeCheckpoint(out);
+	}
+
+	/**
+	 * Reads the state written by {@link #writeTransitRouteCheckpoint(CheckpointWriter)}; the current transit route
+	 * needs to be restored before.
+	 */
+	protected final void readTransitRouteCheckpoint(CheckpointReader in) throws IOException {
+		this.state = MobsimAgent.State.values()[in.readByte()];
+		this.nextLinkIndex = in.readInt();
+		int nextStopIndex = in.readInt();
+		if (getTransitRoute() != null) {
+			List<TransitRouteStop> stops = getTransitRoute().getStops();
+			if (nextStopIndex >= 0) {
+				this.stopIterator = stops.listIterator(nextStopIndex + 1);
+				this.nextStop = stops.get(nextStopIndex);
+			} else {
+				this.stopIterator = stops.listIterator(stops.size());
+				this.nextStop = null;
+			}
+		}
+		this.currentStop = in.readBoolean() ? this.nextStop : null;
+		this.accessEgress.readCheckpoint(in);
+		((Checkpointable) this.vehicle.getStopHandler()).readCheckpoint(in);
+	}
+
 	final NetworkRouteWrapper getWrappedCarRoute(NetworkRoute carRoute) {
 		return new NetworkRouteWrapper(carRoute);
 	}
@@ -19,9 +19,13 @@
 
 package org.matsim.core.mobsim.qsim.pt;
 
+import java.io.IOException;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
+import org.matsim.core.mobsim.qsim.checkpoint.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 import org.matsim.vehicles.Vehicle;
@@ -33,7 +37,7 @@ import org.matsim.vehicles.VehicleType;
  * 
  * @author aneumann
  */
-public class ComplexTransitStopHandler implements TransitStopHandler {
+public class ComplexTransitStopHandler implements TransitStopHandler, Checkpointable {
 	
 	private final static Logger log = Logger.getLogger(ComplexTransitStopHandler.class);
 
@@ -321,4 +325,18 @@ public class ComplexTransitStopHandler implements TransitStopHandler {
 		return stopTime;
 	}
 
+	@Override
+	public void writeCheckpoint(CheckpointWriter out) throws IOException {
+		out.writeBoolean(this.doorsOpen);
+		out.writeDouble(this.passengersLeavingTimeFraction);
+		out.writeDouble(this.passengersEnteringTimeFraction);
+	}
+
+	@Override
+	public void readCheckpoint(CheckpointReader in) throws IOException {
+		this.doorsOpen = in.readBoolean();
+		this.passengersLeavingTimeFraction = in.readDouble();
+		this.passengersEnteringTimeFraction = in.readDouble();
+	}
+
 }
@@ -19,8 +19,9 @@
  * *********************************************************************** */
 package org.matsim.core.mobsim.qsim.pt;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -37,6 +38,8 @@ import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.PassengerAgent;
 import org.matsim.core.mobsim.qsim.InternalInterface;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
 import org.matsim.core.mobsim.qsim.agents.PersonDriverAgentImpl;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.pt.transitSchedule.api.TransitLine;
@@ -59,6 +62,7 @@ class PassengerAccessEgressImpl implements PassengerAccessEgress {
 	private Set<PTPassengerAgent> agentsDeniedToBoard = null;
 	private Scenario scenario;
 	private EventsManager eventsManager;
+	private TransitStopHandlingBuffer stopHandlingBuffer = null;
 	
 	PassengerAccessEgressImpl(InternalInterface internalInterface, TransitStopAgentTracker agentTracker, Scenario scenario, EventsManager eventsManager) {
 		this.internalInterface = internalInterface;
@@ -68,10 +72,39 @@ class PassengerAccessEgressImpl implements PassengerAccessEgress {
 		this.isGeneratingDeniedBoardingEvents =
 				this.scenario.getConfig().vspExperimental().isGeneratingBoardingDeniedEvents() ;
 		if (this.isGeneratingDeniedBoardingEvents){
-			this.agentsDeniedToBoard = new HashSet<>();
+			// (linked, so that the events do not depend on the hash codes of the agents)
+			this.agentsDeniedToBoard = new LinkedHashSet<>();
 		}
 	}
 	
+	void setStopHandlingBuffer(TransitStopHandlingBuffer stopHandlingBuffer) {
+		this.stopHandlingBuffer = stopHandlingBuffer;
+	}
+
+	/**
+	 * Writes the agents denied to board at the current stop, whose events are fired when the vehicle departs.
+	 */
+	void writeCheckpoint(CheckpointWriter out) throws IOException {
+		if (!this.isGeneratingDeniedBoardingEvents) {
+			return;
+		}
+		out.writeInt(this.agentsDeniedToBoard.size());
+		for (PTPassengerAgent agent : this.agentsDeniedToBoard) {
+			out.writeId(agent.getId());
+		}
+	}
+
+	void readCheckpoint(CheckpointReader in) throws IOException {
+		if (!this.isGeneratingDeniedBoardingEvents) {
+			return;
+		}
+		this.agentsDeniedToBoard.clear();
+		int numberOfAgents = in.readInt();
+		for (int i = 0; i < numberOfAgents; i++) {
+			this.agentsDeniedToBoard.add((PTPassengerAgent) in.readAgent());
+		}
+	}
+
 	/**
 	 * @return should be 0.0 or 1.0, values greater than 1.0 may lead to buggy behavior, dependent on TransitStopHandler used
 	 */
@@ -180,7 +213,11 @@ class PassengerAccessEgressImpl implements PassengerAccessEgress {
 			MobsimAgent agent = (MobsimAgent) passenger ;
 			agent.notifyArrivalOnLinkByNonNetworkMode(toLinkId);
 			agent.endLegAndComputeNextState(time);
-			this.internalInterface.arrangeNextAgentState(agent) ;
+			if (this.stopHandlingBuffer != null) {
+				this.stopHandlingBuffer.arrangeNextAgentState(agent);
+			} else {
+				this.internalInterface.arrangeNextAgentState(agent) ;
+			}
 			// (cannot set trEngine to TransitQSimEngine because there are tests where this will not work. kai, dec'11)
 		}
 		return handled;
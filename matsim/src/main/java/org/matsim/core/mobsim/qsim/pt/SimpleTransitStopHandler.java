@@ -19,17 +19,22 @@
 
 package org.matsim.core.mobsim.qsim.pt;
 
+import java.io.IOException;
 import java.util.List;
 
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
+import org.matsim.core.mobsim.qsim.checkpoint.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 /**
  * @author mrieser
  */
-public class SimpleTransitStopHandler implements TransitStopHandler {
+public class SimpleTransitStopHandler implements TransitStopHandler, Checkpointable {
 
-	private TransitStopFacility lastHandledStop = null;
+	private Id<TransitStopFacility> lastHandledStopId = null; // (the id, so that it can be restored from a checkpoint)
 
 	public SimpleTransitStopHandler() {
 	}
@@ -42,7 +47,7 @@ public class SimpleTransitStopHandler implements TransitStopHandler {
 		double stopTime = 0;
 		if ((cntAccess > 0) || (cntEgress > 0)) {
 			stopTime = cntAccess * 4 + cntEgress * 2;
-			if (this.lastHandledStop != stop) {
+			if (!stop.getId().equals(this.lastHandledStopId)) {
 				stopTime += 15.0; // add fixed amount of time for door-operations and similar stuff
 			}
 			for (PTPassengerAgent passenger : leavingPassengers) {
@@ -52,8 +57,18 @@ public class SimpleTransitStopHandler implements TransitStopHandler {
 				accessEgress.handlePassengerEntering(passenger, vehicle, stop.getId(), now);
 			}
 		}
-		this.lastHandledStop = stop;
+		this.lastHandledStopId = stop.getId();
 		return stopTime;
 	}
 
+	@Override
+	public void writeCheckpoint(CheckpointWriter out) throws IOException {
+		out.writeId(this.lastHandledStopId);
+	}
+
+	@Override
+	public void readCheckpoint(CheckpointReader in) throws IOException {
+		this.lastHandledStopId = in.readId(TransitStopFacility.class);
+	}
+
 }
@@ -28,6 +28,9 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
+import org.matsim.core.mobsim.qsim.checkpoint.Checkpointable;
 import org.matsim.core.population.*;
 import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.router.ActivityWrapperFacility;
@@ -41,13 +44,14 @@ import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
 import org.matsim.vehicles.Vehicle;
 
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.ListIterator;
 
 /**
  * @author michaz
  */
-public class TransitDriverAgentImpl extends AbstractTransitDriverAgent {
+public class TransitDriverAgentImpl extends AbstractTransitDriverAgent implements Checkpointable {
 
 	private final EventsManager eventsManager;
 
@@ -81,6 +85,7 @@ public class TransitDriverAgentImpl extends AbstractTransitDriverAgent {
 
 	private final Umlauf umlauf;
 	private final Iterator<UmlaufStueckI> iUmlaufStueck;
+	private int numberOfStartedUmlaufStuecke = 0;
 	private final ListIterator<PlanElement> iPlanElement;
 	private NetworkRoute carRoute;
 	private double departureTime;
@@ -154,6 +159,7 @@ public class TransitDriverAgentImpl extends AbstractTransitDriverAgent {
 
 	private void setNextLeg() {
 		UmlaufStueckI umlaufStueck = this.iUmlaufStueck.next();
+		this.numberOfStartedUmlaufStuecke++;
 		if (umlaufStueck.isFahrt()) {
 			setLeg(umlaufStueck.getLine(), umlaufStueck.getRoute(), umlaufStueck.getDeparture());
 		} else {
@@ -177,6 +183,35 @@ public class TransitDriverAgentImpl extends AbstractTransitDriverAgent {
 		this.carRoute = route.getRoute();
 	}
 
+	/**
+	 * Writes the position in the umlauf and in the plan; the transit route of the current umlauf stueck is taken from
+	 * the umlauf again when the checkpoint is read.
+	 */
+	@Override
+	public void writeCheckpoint(CheckpointWriter out) throws IOException {
+		out.writeInt(this.numberOfStartedUmlaufStuecke);
+		out.writeInt(this.iPlanElement.previousIndex());
+		out.writeDouble(this.departureTime);
+		writeTransitRouteCheckpoint(out);
+	}
+
+	@Override
+	public void readCheckpoint(CheckpointReader in) throws IOException {
+		int numberOfUmlaufStuecke = in.readInt();
+		int planElementIndex = in.readInt();
+		if (numberOfUmlaufStuecke < this.numberOfStartedUmlaufStuecke || planElementIndex < this.iPlanElement.previousIndex()) {
+			throw new IllegalStateException("transit driver " + this.getId() + " is already further than in the checkpoint");
+		}
+		while (this.numberOfStartedUmlaufStuecke < numberOfUmlaufStuecke) {
+			setNextLeg();
+		}
+		while (this.iPlanElement.previousIndex() < planElementIndex) {
+			this.currentPlanElement = this.iPlanElement.next();
+		}
+		this.departureTime = in.readDouble();
+		readTransitRouteCheckpoint(in);
+	}
+
 	@Override
 	Leg getCurrentLeg() {
 		return (Leg) this.currentPlanElement;
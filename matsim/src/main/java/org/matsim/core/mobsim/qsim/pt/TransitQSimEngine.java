@@ -20,6 +20,7 @@
 
 package org.matsim.core.mobsim.qsim.pt;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -36,6 +37,9 @@ import org.matsim.core.mobsim.framework.AgentSource;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
+import org.matsim.core.mobsim.qsim.checkpoint.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.DepartureHandler;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.pt.ReconstructingUmlaufBuilder;
@@ -51,7 +55,7 @@ import javax.inject.Inject;
  * @author mrieser
  * @author mzilske
  */
-public class TransitQSimEngine implements  DepartureHandler, MobsimEngine, AgentSource {
+public class TransitQSimEngine implements  DepartureHandler, MobsimEngine, AgentSource, Checkpointable {
 
 
 	private Collection<MobsimAgent> ptDrivers;
@@ -80,10 +84,15 @@ public class TransitQSimEngine implements  DepartureHandler, MobsimEngine, Agent
 
 	private InternalInterface internalInterface = null ;
 
+	private final TransitStopHandlingBuffer stopHandlingBuffer;
+
 	@Override
 	public void setInternalInterface( InternalInterface internalInterface ) {
 		this.internalInterface = internalInterface ;
 		transitDriverFactory = new DefaultTransitDriverAgentFactory(internalInterface, agentTracker);
+		if (this.stopHandlingBuffer != null) {
+			this.stopHandlingBuffer.setInternalInterface(internalInterface);
+		}
 	}
 
 	@Inject
@@ -91,6 +100,12 @@ public class TransitQSimEngine implements  DepartureHandler, MobsimEngine, Agent
 		this.qSim = queueSimulation;
 		this.schedule = queueSimulation.getScenario().getTransitSchedule();
 		this.agentTracker = new TransitStopAgentTracker(this.qSim.getEventsManager());
+		if (this.qSim.getEventsManager() instanceof TransitStopHandlingBuffer) {
+			// see TransitConfigGroup.isParallelStopHandling()
+			this.stopHandlingBuffer = (TransitStopHandlingBuffer) this.qSim.getEventsManager();
+		} else {
+			this.stopHandlingBuffer = null;
+		}
 	}
 
 	// For tests (which create an Engine, and externally create Agents as well).
@@ -154,6 +169,7 @@ public class TransitQSimEngine implements  DepartureHandler, MobsimEngine, Agent
 		veh.setDriver(driver);
 		veh.setStopHandler(this.stopHandlerFactory.createTransitStopHandler(veh.getVehicle()));
 		driver.setVehicle(veh);
+		driver.setStopHandlingBuffer(this.stopHandlingBuffer);
 		Leg firstLeg = (Leg) driver.getNextPlanElement();
 		Id<Link> startLinkId = firstLeg.getRoute().getStartLinkId();
 		this.qSim.addParkedVehicle(veh, startLinkId);
@@ -208,7 +224,27 @@ public class TransitQSimEngine implements  DepartureHandler, MobsimEngine, Agent
 
 	@Override
 	public void doSimStep(double time) {
-		// Nothing to do here.
+		// Nothing to do here.  The stops are handled, and the stop handling buffer is flushed, by the network simulation.
+	}
+
+	/**
+	 * Writes the agents waiting at the stops.  The transit drivers are written together with the other agents, the
+	 * transit vehicles by the links they are on.
+	 */
+	@Override
+	public void writeCheckpoint(CheckpointWriter out) throws IOException {
+		// (the stop handling buffer is flushed at the end of every time step, so it has no state here)
+		this.agentTracker.writeCheckpoint(out);
+	}
+
+	@Override
+	public void readCheckpoint(CheckpointReader in) throws IOException {
+		this.agentTracker.readCheckpoint(in);
+		for (List<PTPassengerAgent> agentsAtStop : this.agentTracker.getAgentsAtStop().values()) {
+			for (PTPassengerAgent agent : agentsAtStop) {
+				this.internalInterface.registerAdditionalAgentOnLink((MobsimAgent) agent);
+			}
+		}
 	}
 
 	@Override
@@ -20,6 +20,7 @@
 
 package org.matsim.core.mobsim.qsim.pt;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,8 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 /**
@@ -87,4 +90,35 @@ public class TransitStopAgentTracker {
 	public Map<Id<TransitStopFacility>, List<PTPassengerAgent>> getAgentsAtStop() {
 		return this.agentsAtStops;
 	}
+
+	/**
+	 * Writes the waiting agents of every stop in the order in which they arrived there.
+	 */
+	void writeCheckpoint(final CheckpointWriter out) throws IOException {
+		out.writeInt(this.agentsAtStops.size());
+		for (Map.Entry<Id<TransitStopFacility>, List<PTPassengerAgent>> entry : this.agentsAtStops.entrySet()) {
+			out.writeId(entry.getKey());
+			out.writeInt(entry.getValue().size());
+			for (PTPassengerAgent agent : entry.getValue()) {
+				out.writeId(agent.getId());
+			}
+		}
+	}
+
+	/**
+	 * Replaces the waiting agents by the ones of the checkpoint.  No events are created, the agents already started
+	 * waiting in the simulation which wrote the checkpoint.
+	 */
+	void readCheckpoint(final CheckpointReader in) throws IOException {
+		this.agentsAtStops.clear();
+		int numberOfStops = in.readInt();
+		for (int i = 0; i < numberOfStops; i++) {
+			List<PTPassengerAgent> agents = new CopyOnWriteArrayList<>();
+			this.agentsAtStops.put(in.readId(TransitStopFacility.class), agents);
+			int numberOfAgents = in.readInt();
+			for (int j = 0; j < numberOfAgents; j++) {
+				agents.add((PTPassengerAgent) in.readAgent());
+			}
+		}
+	}
 }
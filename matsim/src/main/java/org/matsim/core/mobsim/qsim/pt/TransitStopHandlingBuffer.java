@@ -0,0 +1,193 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.mobsim.qsim.pt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.InternalInterface;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Makes the handling of transit stops by the threads of the QNetsimEngine
+ * deterministic. Stop handling already runs within the links' sim steps, so
+ * distinct stops are served concurrently if the qsim uses more than one thread.
+ * But the events and the agent state changes created by boarding and alighting
+ * would then be passed on in the order in which the threads happen to process
+ * the stops.
+ * <p></p>
+ * This class is installed as the events manager of the {@link org.matsim.core.mobsim.qsim.QSim}
+ * if {@link org.matsim.pt.config.TransitConfigGroup#isParallelStopHandling()} is set.
+ * The buffer is partitioned by the link of the stop: a stop is only served during the
+ * sim step of its link, which is processed by a single thread, so all vehicles serving
+ * the same stop are handled one after the other, in the order of the link's queues.
+ * From the first stop handling on a link until the end of the link's sim step, all
+ * events of the current thread and the agents leaving the vehicles are buffered, so
+ * that e.g. a vehicle arriving after its last stop cannot overtake its stop events.
+ * {@link #flush()} passes them on as soon as the links of the network simulation are
+ * moved, before any other engine, sorted by link and, for each link, in the order of
+ * creation. Events outside of stop handling are passed on directly.
+ *
+ * @see org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine#doSimStep(double)
+ */
+public final class TransitStopHandlingBuffer implements EventsManager {
+
+	private static final Comparator<LinkStopHandling> STOP_HANDLING_COMPARATOR = new Comparator<LinkStopHandling>() {
+		@Override
+		public int compare(LinkStopHandling o1, LinkStopHandling o2) {
+			return o1.linkId.compareTo(o2.linkId);
+		}
+	};
+
+	private final EventsManager delegate;
+	private InternalInterface internalInterface = null;
+
+	private final ThreadLocal<LinkStopHandling> currentStopHandling = new ThreadLocal<>();
+	private final ConcurrentLinkedQueue<LinkStopHandling> stopHandlings = new ConcurrentLinkedQueue<>();
+
+	public TransitStopHandlingBuffer(final EventsManager delegate) {
+		this.delegate = delegate;
+	}
+
+	void setInternalInterface(final InternalInterface internalInterface) {
+		this.internalInterface = internalInterface;
+	}
+
+	void startStopHandling(final TransitStopFacility stop) {
+		LinkStopHandling stopHandling = this.currentStopHandling.get();
+		if (stopHandling != null && stopHandling.linkId.equals(stop.getLinkId())) {
+			// another vehicle or stop on the same link
+			return;
+		}
+		stopHandling = new LinkStopHandling(stop.getLinkId());
+		this.stopHandlings.add(stopHandling);
+		this.currentStopHandling.set(stopHandling);
+	}
+
+	/**
+	 * Ends the buffering of the current thread. Called by the QNetsimEngine after the
+	 * sim step of every link, as long as stops are handled in parallel.
+	 */
+	public void endLinkSimStep() {
+		this.currentStopHandling.remove();
+	}
+
+	/**
+	 * Defers {@link InternalInterface#arrangeNextAgentState(MobsimAgent)} until
+	 * {@link #flush()}, if called during stop handling.
+	 */
+	void arrangeNextAgentState(final MobsimAgent agent) {
+		LinkStopHandling stopHandling = this.currentStopHandling.get();
+		if (stopHandling == null) {
+			this.internalInterface.arrangeNextAgentState(agent);
+		} else {
+			stopHandling.actions.add(agent);
+		}
+	}
+
+	/**
+	 * Passes on the buffered events and agents. Must only be called by the main
+	 * thread of the simulation, when no links are moved.
+	 */
+	public void flush() {
+		// stops handled outside of the network simulation, e.g. by tests
+		this.currentStopHandling.remove();
+		if (this.stopHandlings.isEmpty()) {
+			return;
+		}
+		List<LinkStopHandling> sorted = new ArrayList<>(this.stopHandlings);
+		this.stopHandlings.clear();
+		Collections.sort(sorted, STOP_HANDLING_COMPARATOR);
+		for (LinkStopHandling stopHandling : sorted) {
+			for (Object action : stopHandling.actions) {
+				if (action instanceof Event) {
+					this.delegate.processEvent((Event) action);
+				} else {
+					this.internalInterface.arrangeNextAgentState((MobsimAgent) action);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void processEvent(final Event event) {
+		LinkStopHandling stopHandling = this.currentStopHandling.get();
+		if (stopHandling == null) {
+			this.delegate.processEvent(event);
+		} else {
+			stopHandling.actions.add(event);
+		}
+	}
+
+	@Override
+	public void addHandler(final EventHandler handler) {
+		this.delegate.addHandler(handler);
+	}
+
+	@Override
+	public void removeHandler(final EventHandler handler) {
+		this.delegate.removeHandler(handler);
+	}
+
+	@Override
+	public void resetHandlers(final int iteration) {
+		this.delegate.resetHandlers(iteration);
+	}
+
+	@Override
+	public void initProcessing() {
+		this.delegate.initProcessing();
+	}
+
+	@Override
+	public void afterSimStep(final double time) {
+		// (usually empty, the network simulation flushes after moving the links)
+		flush();
+		this.delegate.afterSimStep(time);
+	}
+
+	@Override
+	public void finishProcessing() {
+		this.delegate.finishProcessing();
+	}
+
+	/**
+	 * The events and agents of the stop handling during one sim step of a link
+	 */
+	private static final class LinkStopHandling {
+		final Id<Link> linkId;
+		final List<Object> actions = new ArrayList<>();
+
+		LinkStopHandling(final Id<Link> linkId) {
+			this.linkId = linkId;
+		}
+	}
+
+}
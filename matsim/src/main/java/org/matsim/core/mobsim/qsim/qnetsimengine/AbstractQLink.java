@@ -19,6 +19,7 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -46,6 +47,8 @@ import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimAgent.State;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.PassengerAgent;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine.NetsimInternalInterface;
 import org.matsim.vehicles.Vehicle;
@@ -437,6 +440,121 @@ abstract class AbstractQLink extends QLinkI {
 		else return null;
 	}
 
+	/**
+	 * Writes the vehicles and agents handled by the link itself, i.e. not by its lanes.  Agents performing an activity
+	 * on the link are restored by the ActivityEngine.
+	 */
+	void writeCheckpoint(CheckpointWriter out) throws IOException {
+		out.writeInt(this.parkedVehicles.size());
+		for (QVehicle veh : this.parkedVehicles.values()) {
+			writeVehicle(out, veh);
+		}
+		out.writeInt(this.driversWaitingForCars.size());
+		for (Map.Entry<Id<Vehicle>, Queue<MobsimDriverAgent>> entry : this.driversWaitingForCars.entrySet()) {
+			out.writeId(entry.getKey());
+			out.writeInt(entry.getValue().size());
+			for (MobsimDriverAgent driver : entry.getValue()) {
+				out.writeId(driver.getId());
+			}
+		}
+		out.writeInt(this.driversWaitingForPassengers.size());
+		for (MobsimDriverAgent driver : this.driversWaitingForPassengers.values()) {
+			out.writeId(driver.getId());
+		}
+		out.writeInt(this.passengersWaitingForCars.size());
+		for (Map.Entry<Id<Vehicle>, Set<MobsimAgent>> entry : this.passengersWaitingForCars.entrySet()) {
+			out.writeId(entry.getKey());
+			out.writeInt(entry.getValue().size());
+			for (MobsimAgent passenger : entry.getValue()) {
+				out.writeId(passenger.getId());
+			}
+		}
+		out.writeInt(this.waitingList.size());
+		for (QVehicle veh : this.waitingList) {
+			writeVehicle(out, veh);
+		}
+	}
+
+	/**
+	 * Replaces the vehicles and agents of this link by the ones of the checkpoint.  The link is deactivated; the
+	 * engine re-activates the links in the order of the checkpoint.
+	 */
+	void readCheckpoint(CheckpointReader in, Map<Id<Vehicle>, QVehicle> vehicles) throws IOException {
+		this.parkedVehicles.clear();
+		int numberOfParkedVehicles = in.readInt();
+		for (int i = 0; i < numberOfParkedVehicles; i++) {
+			QVehicle veh = readVehicle(in, vehicles);
+			this.parkedVehicles.put(veh.getId(), veh);
+		}
+		this.driversWaitingForCars.clear();
+		int numberOfAwaitedCars = in.readInt();
+		for (int i = 0; i < numberOfAwaitedCars; i++) {
+			Queue<MobsimDriverAgent> queue = new LinkedList<>();
+			this.driversWaitingForCars.put(in.readId(Vehicle.class), queue);
+			int numberOfDrivers = in.readInt();
+			for (int j = 0; j < numberOfDrivers; j++) {
+				queue.add((MobsimDriverAgent) in.readAgent());
+			}
+		}
+		this.driversWaitingForPassengers.clear();
+		int numberOfDriversWaitingForPassengers = in.readInt();
+		for (int i = 0; i < numberOfDriversWaitingForPassengers; i++) {
+			MobsimDriverAgent driver = (MobsimDriverAgent) in.readAgent();
+			this.driversWaitingForPassengers.put(driver.getId(), driver);
+		}
+		this.passengersWaitingForCars.clear();
+		int numberOfCarsAwaitedByPassengers = in.readInt();
+		for (int i = 0; i < numberOfCarsAwaitedByPassengers; i++) {
+			Set<MobsimAgent> passengers = new LinkedHashSet<>();
+			this.passengersWaitingForCars.put(in.readId(Vehicle.class), passengers);
+			int numberOfPassengers = in.readInt();
+			for (int j = 0; j < numberOfPassengers; j++) {
+				passengers.add(in.readAgent());
+			}
+		}
+		this.waitingList.clear();
+		int numberOfWaitingVehicles = in.readInt();
+		for (int i = 0; i < numberOfWaitingVehicles; i++) {
+			this.waitingList.add(readVehicle(in, vehicles));
+		}
+		this.active = false;
+	}
+
+	static void writeVehicle(CheckpointWriter out, QVehicle veh) throws IOException {
+		out.writeId(veh.getId());
+		out.writeId(veh.getDriver() == null ? null : veh.getDriver().getId());
+		out.writeDouble(veh.getEarliestLinkExitTime());
+		out.writeInt(veh.getPassengers().size());
+		for (PassengerAgent passenger : veh.getPassengers()) {
+			out.writeId(passenger.getId());
+		}
+	}
+
+	/**
+	 * Reads a vehicle written by {@link #writeVehicle(CheckpointWriter, QVehicle)} and places it on this link.
+	 */
+	QVehicle readVehicle(CheckpointReader in, Map<Id<Vehicle>, QVehicle> vehicles) throws IOException {
+		Id<Vehicle> vehicleId = in.readId(Vehicle.class);
+		QVehicle veh = vehicles.get(vehicleId);
+		if (veh == null) {
+			throw new IllegalStateException("Vehicle " + vehicleId + " of the checkpoint is not part of the simulation.");
+		}
+		MobsimDriverAgent driver = (MobsimDriverAgent) in.readAgent();
+		if (driver != null) {
+			veh.setDriver(driver);
+			driver.setVehicle(veh);
+		}
+		veh.setEarliestLinkExitTime(in.readDouble());
+		int numberOfPassengers = in.readInt();
+		for (int i = 0; i < numberOfPassengers; i++) {
+			MobsimAgent passenger = in.readAgent();
+			veh.addPassenger((PassengerAgent) passenger);
+			((PassengerAgent) passenger).setVehicle(veh);
+		}
+		veh.setCurrentLink(this.link);
+		return veh;
+	}
+
 	@Override
 	public Link getLink() {
 		return link;
@@ -20,6 +20,8 @@
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
 
+import javax.inject.Provider;
+
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
@@ -30,6 +32,7 @@ import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine.NetsimInternalInterface;
 import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.LinkSpeedCalculator;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.VehicleQ;
 import org.matsim.core.network.NetworkImpl;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfoFactory;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
@@ -50,6 +53,7 @@ public final class ConfigurableQNetworkFactory extends QNetworkFactory {
 	private NetsimEngineContext context;
 	private NetsimInternalInterface netsimEngine ;
 	private LinkSpeedCalculator linkSpeedCalculator;
+	private Provider<VehicleQ<QVehicle>> vehicleQueueProvider = null ;
 
 	public ConfigurableQNetworkFactory( EventsManager events, Scenario scenario ) {
 		this.events = events;
@@ -68,12 +72,15 @@ public final class ConfigurableQNetworkFactory extends QNetworkFactory {
 		}
 		AgentSnapshotInfoFactory snapshotInfoFactory = new AgentSnapshotInfoFactory(linkWidthCalculator);
 		AbstractAgentSnapshotInfoBuilder agentSnapshotInfoBuilder = QNetsimEngine.createAgentSnapshotInfoBuilder( scenario, snapshotInfoFactory );
-		context = new NetsimEngineContext( events, effectiveCellSize, agentCounter, agentSnapshotInfoBuilder, qsimConfig, mobsimTimer, linkWidthCalculator );
+		context = new NetsimEngineContext( netsimEngine1.getNetworkEventsManager( events ), effectiveCellSize, agentCounter, agentSnapshotInfoBuilder, qsimConfig, mobsimTimer, linkWidthCalculator );
 	}
 	@Override
 	QLinkI createNetsimLink(final Link link, final QNode toQueueNode) {
 		QueueWithBuffer.Builder laneFactory = new QueueWithBuffer.Builder(context) ;
 		laneFactory.setLinkSpeedCalculator( linkSpeedCalculator );
+		if ( vehicleQueueProvider != null ) {
+			laneFactory.setVehicleQueue( vehicleQueueProvider.get() );
+		}
 
 		QLinkImpl.Builder linkBuilder = new QLinkImpl.Builder(context, netsimEngine) ;
 		linkBuilder.setLaneFactory(laneFactory);
@@ -88,4 +95,10 @@ public final class ConfigurableQNetworkFactory extends QNetworkFactory {
 	public final void setLinkSpeedCalculator(LinkSpeedCalculator linkSpeedCalculator) {
 		this.linkSpeedCalculator = linkSpeedCalculator;
 	}
+	/**
+	 * Every link gets its own vehicle queue from the provider.  If not set, the default of the link dynamics is used.
+	 */
+	public final void setVehicleQueueProvider(Provider<VehicleQ<QVehicle>> vehicleQueueProvider) {
+		this.vehicleQueueProvider = vehicleQueueProvider;
+	}
 }
@@ -82,7 +82,7 @@ public class QLanesNetworkFactory extends QNetworkFactory {
 		}
 		AgentSnapshotInfoFactory snapshotInfoFactory = new AgentSnapshotInfoFactory(linkWidthCalculator);
 		AbstractAgentSnapshotInfoBuilder agentSnapshotInfoBuilder = QNetsimEngine.createAgentSnapshotInfoBuilder( scenario, snapshotInfoFactory );
-		context = new NetsimEngineContext( events, effectiveCellSize, agentCounter, agentSnapshotInfoBuilder, qsimConfig, mobsimTimer, linkWidthCalculator );
+		context = new NetsimEngineContext( netsimEngine1.getNetworkEventsManager( events ), effectiveCellSize, agentCounter, agentSnapshotInfoBuilder, qsimConfig, mobsimTimer, linkWidthCalculator );
 		delegate.initializeFactory(agentCounter, mobsimTimer, netsimEngine1);
 	}
 
@@ -20,14 +20,20 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.SignalGroupState;
 import org.matsim.core.mobsim.qsim.interfaces.SignalizeableItem;
@@ -87,6 +93,9 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 
 	private final QLaneI qlane;
 
+	/** the nodes ask for the offering lanes in every time step, so the list is not created again and again */
+	private final List<QLaneI> offeringQLanes;
+
 	private NetsimEngineContext context;
 	
 	private QLinkImpl(final Link link2, final QNode toNode, final LaneFactory roadFactory, NetsimEngineContext context, NetsimInternalInterface netsimEngine) {
@@ -96,6 +105,7 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 		// so that the caller can use references to the created roads to wire them together,
 		// if it must.
 		this.qlane = roadFactory.createLane(this); 
+		this.offeringQLanes = Collections.singletonList(this.qlane);
 		this.visdata = this.new VisDataImpl() ; // instantiating this here and not earlier so we can cache some things
 		super.setTransitQLink( new TransitQLink(this.qlane) ) ;
 	}
@@ -223,6 +233,36 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 		return qlane.isActive()  || !this.getWaitingList().isEmpty() || !this.getTransitQLink().getTransitVehicleStopQueue().isEmpty() ;
 	}
 
+	/**
+	 * Writes the state of the link, its lane and the transit vehicles waiting at a stop without blocking the lane.
+	 */
+	@Override
+	void writeCheckpoint(CheckpointWriter out) throws IOException {
+		if (!(this.qlane instanceof QueueWithBuffer)) {
+			throw new UnsupportedOperationException("Checkpoints are only supported for lanes of type " + QueueWithBuffer.class.getSimpleName());
+		}
+		super.writeCheckpoint(out);
+		((QueueWithBuffer) this.qlane).writeCheckpoint(out);
+		Queue<QVehicle> transitVehicleStopQueue = this.getTransitQLink().getTransitVehicleStopQueue();
+		out.writeInt(transitVehicleStopQueue.size());
+		for (QVehicle veh : transitVehicleStopQueue) {
+			// (in the order of the priority queue; the earliest link exit times written with the vehicles restore the order)
+			writeVehicle(out, veh);
+		}
+	}
+
+	@Override
+	void readCheckpoint(CheckpointReader in, Map<Id<Vehicle>, QVehicle> vehicles) throws IOException {
+		super.readCheckpoint(in, vehicles);
+		((QueueWithBuffer) this.qlane).readCheckpoint(in, vehicles);
+		Queue<QVehicle> transitVehicleStopQueue = this.getTransitQLink().getTransitVehicleStopQueue();
+		transitVehicleStopQueue.clear();
+		int numberOfVehiclesAtStops = in.readInt();
+		for (int i = 0; i < numberOfVehiclesAtStops; i++) {
+			transitVehicleStopQueue.add(readVehicle(in, vehicles));
+		}
+	}
+
 	@Override public void setSignalStateAllTurningMoves(SignalGroupState state) {
 		((SignalizeableItem) qlane).setSignalStateAllTurningMoves(state);
 	}
@@ -288,9 +328,7 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 	}
 
 	@Override List<QLaneI> getOfferingQLanes() {
-		List<QLaneI> list = new ArrayList<>() ;
-		list.add( this.qlane ) ;
-		return list ;
+		return this.offeringQLanes ;
 	}
 	@Override QLaneI getAcceptingQLane() {
 		return qlane ;
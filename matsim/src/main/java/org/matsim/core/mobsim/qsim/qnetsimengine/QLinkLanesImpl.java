@@ -42,7 +42,7 @@ import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine.NetsimInternalInterface;
-import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.FIFOVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.RingBufferVehicleQ;
 import org.matsim.core.network.LinkImpl;
 import org.matsim.core.network.NetworkImpl;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
@@ -183,7 +183,7 @@ public final class QLinkLanesImpl extends AbstractQLink {
 			// (lane.getLaneData().getCapacityVehiclesPerHour()/3600.0));
 
 			QueueWithBuffer.Builder builder = new QueueWithBuffer.Builder( context ) ;
-			builder.setVehicleQueue(new FIFOVehicleQ());
+			builder.setVehicleQueue(new RingBufferVehicleQ());
 			builder.setLaneId(laneId);
 			builder.setLength(lane.getLength());
 			builder.setEffectiveNumberOfLanes(noEffectiveLanes);
@@ -20,6 +20,7 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -42,6 +43,7 @@ import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
@@ -55,10 +57,14 @@ import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
+import org.matsim.core.mobsim.qsim.checkpoint.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
+import org.matsim.core.mobsim.qsim.pt.TransitStopHandlingBuffer;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfoFactory;
@@ -70,7 +76,7 @@ import org.matsim.vis.snapshotwriters.AgentSnapshotInfoFactory;
  * @author dgrether
  * @author dstrippgen
  */
-public class QNetsimEngine implements MobsimEngine {
+public class QNetsimEngine implements MobsimEngine, Checkpointable {
 	public interface NetsimInternalInterface {
 
 		QNetwork getNetsimNetwork();
@@ -78,6 +84,12 @@ public class QNetsimEngine implements MobsimEngine {
 		void arrangeNextAgentState(MobsimAgent pp);
 
 		void letVehicleArrive(QVehicle veh);
+
+		/**
+		 * @return the events manager for the links and nodes: the given one, unless the stop handling of the links
+		 * is buffered, see {@link TransitStopHandlingBuffer}
+		 */
+		EventsManager getNetworkEventsManager(EventsManager events);
 	}
 	NetsimInternalInterface ii = new NetsimInternalInterface(){
 
@@ -95,6 +107,11 @@ public class QNetsimEngine implements MobsimEngine {
 		public void letVehicleArrive(QVehicle veh) {
 			QNetsimEngine.this.letVehicleArrive( veh ) ;
 		}
+
+		@Override
+		public EventsManager getNetworkEventsManager(EventsManager events) {
+			return stopHandlingBuffer != null ? stopHandlingBuffer : events ;
+		}
 		
 	} ;
 
@@ -128,6 +145,9 @@ public class QNetsimEngine implements MobsimEngine {
 	private ExecutorService pool;
 
 	private final boolean usingThreadpool;
+
+	/** not <code>null</code> if transit stops are handled in parallel, see {@link TransitStopHandlingBuffer} */
+	private final TransitStopHandlingBuffer stopHandlingBuffer;
 	
 	// for detailed run time analysis - used in combination with QSim.analyzeRunTimes
 	public static int numObservedTimeSteps = 24*3600;
@@ -172,6 +192,12 @@ public class QNetsimEngine implements MobsimEngine {
 			}
 		}
 		
+		if (sim.getEventsManager() instanceof TransitStopHandlingBuffer) {
+			this.stopHandlingBuffer = (TransitStopHandlingBuffer) sim.getEventsManager();
+		} else {
+			this.stopHandlingBuffer = null;
+		}
+
 		if (netsimNetworkFactory != null){
 			network = new QNetwork( sim.getScenario().getNetwork(), netsimNetworkFactory ) ;
 		} else {
@@ -276,6 +302,11 @@ public class QNetsimEngine implements MobsimEngine {
 	public void doSimStep(final double time) {
 		run(time);
 
+		if (this.stopHandlingBuffer != null) {
+			// pass on the stop handling of the links before anything else happens in this time step
+			this.stopHandlingBuffer.flush();
+		}
+
 		this.printSimLog(time);
 	}
 
@@ -387,6 +418,85 @@ public class QNetsimEngine implements MobsimEngine {
 		return this.network;
 	}
 
+	/**
+	 * Writes the state of all links together with the active links and nodes of every runner.  Only supported for
+	 * links of type {@link QLinkImpl}, i.e. not with lanes.
+	 */
+	@Override
+	public void writeCheckpoint(CheckpointWriter out) throws IOException {
+		out.writeInt(this.network.getNetsimLinks().size());
+		for (QLinkI link : this.network.getNetsimLinks().values()) {
+			if (!(link instanceof QLinkImpl)) {
+				throw new UnsupportedOperationException("Checkpoints are not supported for links of type " + link.getClass().getName());
+			}
+			out.writeId(link.getLink().getId());
+			((QLinkImpl) link).writeCheckpoint(out);
+		}
+		// the order of the active nodes and links decides which vehicles move first; as links and nodes are always
+		// assigned to the same runners, activating them runner by runner restores the order within every runner
+		out.writeInt(this.engines.size());
+		for (QNetsimEngineRunner runner : this.engines) {
+			out.writeInt(runner.getActiveLinks().size());
+			for (QLinkI link : runner.getActiveLinks()) {
+				out.writeId(link.getLink().getId());
+			}
+			List<QNode> activeNodes = new ArrayList<>(runner.getActiveNodes());
+			out.writeInt(activeNodes.size());
+			for (QNode node : activeNodes) {
+				out.writeId(node.getNode().getId());
+			}
+		}
+		// with several threads, the nodes do not draw from the global random number generator
+		out.writeBoolean(this.numOfThreads > 1);
+		if (this.numOfThreads > 1) {
+			out.writeInt(this.network.getNetsimNodes().size());
+			for (QNode node : this.network.getNetsimNodes().values()) {
+				out.writeId(node.getNode().getId());
+				out.writeRandomState(node.getRandom());
+			}
+		}
+	}
+
+	@Override
+	public void readCheckpoint(CheckpointReader in) throws IOException {
+		for (QNetsimEngineRunner runner : this.engines) {
+			runner.clearActiveNodesAndLinks();
+		}
+		int numberOfLinks = in.readInt();
+		if (numberOfLinks != this.network.getNetsimLinks().size()) {
+			throw new IOException("The checkpoint contains " + numberOfLinks + " links, but the network has " + this.network.getNetsimLinks().size());
+		}
+		for (int i = 0; i < numberOfLinks; i++) {
+			Id<Link> linkId = in.readId(Link.class);
+			QLinkI link = this.network.getNetsimLink(linkId);
+			if (link == null) {
+				throw new IOException("Link " + linkId + " of the checkpoint is not part of the network.");
+			}
+			((QLinkImpl) link).readCheckpoint(in, this.vehicles);
+		}
+		int numberOfRunners = in.readInt();
+		if (numberOfRunners != this.engines.size()) {
+			throw new IllegalStateException("The checkpoint was written with " + numberOfRunners + " runners in the "
+					+ QNetsimEngine.class.getSimpleName() + ", but there are " + this.engines.size() + ".");
+		}
+		for (int r = 0; r < numberOfRunners; r++) {
+			int numberOfActiveLinks = in.readInt();
+			for (int i = 0; i < numberOfActiveLinks; i++) {
+				((AbstractQLink) this.network.getNetsimLink(in.readId(Link.class))).activateLink();
+			}
+			int numberOfActiveNodes = in.readInt();
+			for (int i = 0; i < numberOfActiveNodes; i++) {
+				this.network.getNetsimNodes().get(in.readId(Node.class)).activateNode();
+			}
+		}
+		if (in.readBoolean()) {
+			int numberOfNodes = in.readInt();
+			for (int i = 0; i < numberOfNodes; i++) {
+				in.readRandomState(this.network.getNetsimNodes().get(in.readId(Node.class)).getRandom());
+			}
+		}
+	}
+
 	public VehicularDepartureHandler getDepartureHandler() {
 		return dpHandler;
 	}
@@ -451,6 +561,7 @@ public class QNetsimEngine implements MobsimEngine {
 				thread.setDaemon(true);	// make the Thread Daemons so they will terminate automatically
 				thread.start();
 			}
+			engine.setStopHandlingBuffer(this.stopHandlingBuffer);
 			this.engines.add(engine);
 		}
 
@@ -22,6 +22,7 @@ package org.matsim.core.mobsim.qsim.qnetsimengine;
 
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.pt.TransitStopHandlingBuffer;
 
 import java.util.*;
 import java.util.concurrent.Callable;
@@ -59,8 +60,10 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	 * are handled (by design) from links handled by the same thread. Therefore,
 	 * no concurrent add operation can occur.
 	 * cdobler, sep'14
+	 * An ArrayList which is compacted in place by moveLinks(), so that neither
+	 * activating nor moving the links allocates list nodes or iterators.
 	 */
-	private final List<QLinkI> linksList = new LinkedList<>();
+	private final ArrayList<QLinkI> linksList = new ArrayList<>();
 
 	/*
 	 * Ensure that nodes and links are only activate during times where we expect it.
@@ -76,6 +79,8 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 
 	private boolean movingNodes;
 
+	private TransitStopHandlingBuffer stopHandlingBuffer = null;
+
 	/*package*/ long[] runTimes;
 	private long startTime = 0;
 	{	
@@ -96,6 +101,10 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		this.endBarrier = null;
 	}
 
+	/*package*/ void setStopHandlingBuffer(final TransitStopHandlingBuffer stopHandlingBuffer) {
+		this.stopHandlingBuffer = stopHandlingBuffer;
+	}
+
 	/*package*/ void setTime(final double t) {
 		time = t;
 	}
@@ -180,13 +189,22 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		boolean remainsActive;
 		lockLinks = true;
 		QLinkI link;
-		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
-		while (simLinks.hasNext()) {
-			link = simLinks.next();
+		int numberOfLinks = this.linksList.size();
+		int numberOfActiveLinks = 0;
+		for (int i = 0; i < numberOfLinks; i++) {
+			link = this.linksList.get(i);
 
 			remainsActive = link.doSimStep();
+			if (this.stopHandlingBuffer != null) {
+				// the stop handling of a link is buffered until the end of its sim step
+				this.stopHandlingBuffer.endLinkSimStep();
+			}
 
-			if (!remainsActive) simLinks.remove();
+			// keep the active links at the front, in their original order
+			if (remainsActive) this.linksList.set(numberOfActiveLinks++, link);
+		}
+		for (int i = numberOfLinks - 1; i >= numberOfActiveLinks; i--) {
+			this.linksList.remove(i);
 		}
 		lockLinks = false;
 	}
@@ -229,6 +247,29 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		return this.nodesQueue.size();
 	}
 
+	/*
+	 * The order of the active nodes and links decides which vehicles move first,
+	 * so checkpoints need to keep it.
+	 */
+	Collection<QNode> getActiveNodes() {
+		return this.nodesQueue;
+	}
+
+	Collection<QLinkI> getActiveLinks() {
+		return this.linksList;
+	}
+
+	void clearActiveNodesAndLinks() {
+		for (QNode node : this.nodesQueue) {
+			node.deactivateNode();
+		}
+		this.nodesQueue.clear();
+		for (QLinkI link : this.linksList) {
+			((AbstractQLink) link).setActive(false);
+		}
+		this.linksList.clear();
+	}
+
 	public void setMovingNodes(boolean movingNodes) {
 		this.movingNodes = movingNodes;
 	}
@@ -23,6 +23,7 @@ package org.matsim.core.mobsim.qsim.qnetsimengine;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -157,6 +158,18 @@ public class QNode implements NetsimNode {
 		return this.active.get();
 	}
 
+	/*package*/ final void deactivateNode() {
+		this.active.set(false);
+	}
+
+	/*
+	 * With several threads, this is a random number generator of the node's own, so its state
+	 * needs to be part of a checkpoint.
+	 */
+	/*package*/ final Random getRandom() {
+		return this.random;
+	}
+
 	/**
 	 * Moves vehicles from the inlinks' buffer to the outlinks where possible.<br>
 	 * The inLinks are randomly chosen, and for each link all vehicles in the
@@ -222,7 +235,10 @@ public class QNode implements NetsimNode {
 			// else {} branch: link.isNotOfferingVehicle():boolean would return sequentially the state of the single
 			//lanes. Each call would have side effects on a state machine within QLinkLanesImpl. Proposal: think
 			//about a better interface first, then solve under the hood. dg, mar'14
-			for (QLaneI lane : link.getOfferingQLanes()) {
+			// (indexed loop since this is called for every offering link in every time step, and should not create an iterator)
+			List<QLaneI> lanes = link.getOfferingQLanes();
+			for (int i = 0; i < lanes.size(); i++) {
+				QLaneI lane = lanes.get(i);
 				while (! lane.isNotOfferingVehicle()) {
 					QVehicle veh = lane.getFirstVehicle();
 					Id<Link> nextLink = veh.getDriver().chooseNextLinkId();
@@ -19,10 +19,12 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
 import java.util.TreeMap;
 
@@ -40,6 +42,8 @@ import org.matsim.core.config.groups.QSimConfigGroup.TrafficDynamics;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointReader;
+import org.matsim.core.mobsim.qsim.checkpoint.CheckpointWriter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.SignalGroupState;
 import org.matsim.core.mobsim.qsim.interfaces.SignalizeableItem;
@@ -48,8 +52,8 @@ import org.matsim.core.mobsim.qsim.qnetsimengine.AbstractQLink.HandleTransitStop
 import org.matsim.core.mobsim.qsim.qnetsimengine.QLinkImpl.LaneFactory;
 import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.DefaultLinkSpeedCalculator;
 import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.LinkSpeedCalculator;
-import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.FIFOVehicleQ;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.PassingVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.RingBufferVehicleQ;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.VehicleQ;
 import org.matsim.core.network.LinkImpl;
 import org.matsim.core.network.NetworkUtils;
@@ -73,7 +77,7 @@ final class QueueWithBuffer extends QLaneI implements SignalizeableItem {
 	private static final Logger log = Logger.getLogger( QueueWithBuffer.class ) ;
 	
 	static final class Builder implements LaneFactory {
-		private VehicleQ<QVehicle> vehicleQueue = new FIFOVehicleQ() ;
+		private VehicleQ<QVehicle> vehicleQueue = new RingBufferVehicleQ() ;
 		private Id<Lane> id = null ;
 		private Double length = null ;
 		private Double effectiveNumberOfLanes = null ;
@@ -154,7 +158,7 @@ final class QueueWithBuffer extends QLaneI implements SignalizeableItem {
 	private double usedBufferStorageCapacity = 0.0 ;
 	private double remainingHolesStorageCapacity = 0.0 ;
 
-	private final Queue<QueueWithBuffer.Hole> holes = new LinkedList<QueueWithBuffer.Hole>();
+	private final Queue<QueueWithBuffer.Hole> holes = new ArrayDeque<>();
 
 	private double freespeedTravelTime = Double.NaN;
 	/** the last time-step the front-most vehicle in the buffer was moved. Used for detecting dead-locks. */
@@ -168,9 +172,10 @@ final class QueueWithBuffer extends QLaneI implements SignalizeableItem {
 	private double storageCapacity;
 	private double usedStorageCapacity;
 	/**
-	 * Holds all vehicles that are ready to cross the outgoing intersection
+	 * Holds all vehicles that are ready to cross the outgoing intersection.  (An array based queue, so that moving vehicles
+	 * through the buffer does not allocate list nodes in every time step.)
 	 */
-	private final Queue<QVehicle> buffer = new LinkedList<>() ;
+	private final Queue<QVehicle> buffer = new ArrayDeque<>() ;
 	/**
 	 * null if the link is not signalized
 	 */
@@ -489,6 +494,69 @@ final class QueueWithBuffer extends QLaneI implements SignalizeableItem {
 		}
 	}
 
+	/**
+	 * Writes the vehicles on the lane together with the state of its flow and storage capacity.  The capacities themselves
+	 * are not written, so they are the ones of the network at the beginning of the resumed simulation.
+	 */
+	final void writeCheckpoint( final CheckpointWriter out ) throws IOException {
+		if ( qSignalizedItem != null ) {
+			// the signal state belongs to the signal system, which is not restored
+			throw new UnsupportedOperationException( "Checkpoints of signalized links are not supported." ) ;
+		}
+		out.writeDouble( remainingflowCap ) ;
+		out.writeDouble( flowcap_accumulate.getTimeStep() ) ;
+		out.writeDouble( flowcap_accumulate.getValue() ) ;
+		out.writeDouble( lastUpdate ) ;
+		out.writeDouble( usedStorageCapacity ) ;
+		out.writeDouble( usedBufferStorageCapacity ) ;
+		out.writeDouble( remainingHolesStorageCapacity ) ;
+		out.writeDouble( bufferLastMovedTime ) ;
+		out.writeInt( noOfSeepModeBringFwd ) ;
+		out.writeInt( holes.size() ) ;
+		for ( Hole hole : holes ) {
+			out.writeDouble( hole.getEarliestLinkExitTime() ) ;
+			out.writeDouble( hole.getSizeInEquivalents() ) ;
+		}
+		out.writeInt( vehQueue.size() ) ;
+		for ( QVehicle veh : vehQueue ) {
+			AbstractQLink.writeVehicle( out, veh ) ;
+		}
+		out.writeInt( buffer.size() ) ;
+		for ( QVehicle veh : buffer ) {
+			AbstractQLink.writeVehicle( out, veh ) ;
+		}
+	}
+
+	final void readCheckpoint( final CheckpointReader in, final Map<Id<Vehicle>, QVehicle> vehicles ) throws IOException {
+		remainingflowCap = in.readDouble() ;
+		flowcap_accumulate.setTimeStep( in.readDouble() ) ;
+		flowcap_accumulate.setValue( in.readDouble() ) ;
+		lastUpdate = in.readDouble() ;
+		usedStorageCapacity = in.readDouble() ;
+		usedBufferStorageCapacity = in.readDouble() ;
+		remainingHolesStorageCapacity = in.readDouble() ;
+		bufferLastMovedTime = in.readDouble() ;
+		noOfSeepModeBringFwd = in.readInt() ;
+		holes.clear() ;
+		int numberOfHoles = in.readInt() ;
+		for ( int i = 0 ; i < numberOfHoles ; i++ ) {
+			Hole hole = new Hole() ;
+			hole.setEarliestLinkExitTime( in.readDouble() ) ;
+			hole.setSizeInEquivalents( in.readDouble() ) ;
+			holes.add( hole ) ;
+		}
+		vehQueue.clear() ;
+		int numberOfVehicles = in.readInt() ;
+		for ( int i = 0 ; i < numberOfVehicles ; i++ ) {
+			vehQueue.add( qLink.readVehicle( in, vehicles ) ) ;
+		}
+		buffer.clear() ;
+		int numberOfBufferedVehicles = in.readInt() ;
+		for ( int i = 0 ; i < numberOfBufferedVehicles ; i++ ) {
+			buffer.add( qLink.readVehicle( in, vehicles ) ) ;
+		}
+	}
+
 	@Override
 	public final void setSignalStateAllTurningMoves( final SignalGroupState state) {
 		qSignalizedItem.setSignalStateAllTurningMoves(state);
@@ -870,6 +938,11 @@ final class QueueWithBuffer extends QLaneI implements SignalizeableItem {
 	}
 
 	private QVehicle pollFromVehQueue(QVehicle veh2Remove){
+		if ( vehQueue.peek()==veh2Remove ) {
+			// the usual case; avoids the iterator which is created by remove(...)
+			vehQueue.poll() ;
+			return veh2Remove ;
+		}
 		if(vehQueue.remove(veh2Remove)){
 			return veh2Remove;
 		} else {
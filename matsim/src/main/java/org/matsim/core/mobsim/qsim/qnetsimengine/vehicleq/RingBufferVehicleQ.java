@@ -0,0 +1,183 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+
+/**
+ * A first-in-first-out vehicle queue like the {@link FIFOVehicleQ}, but backed by a circular array
+ * instead of a linked list. Once the array has grown to the maximal number of vehicles on the link,
+ * adding and removing vehicles does not allocate any objects.
+ */
+public final class RingBufferVehicleQ extends AbstractQueue<QVehicle> implements VehicleQ<QVehicle> {
+
+	private static final int DEFAULT_INITIAL_CAPACITY = 8;
+
+	/** the length is always a power of two, so indices can be wrapped with a bit mask */
+	private QVehicle[] elements;
+	private int head = 0;
+	private int size = 0;
+
+	public RingBufferVehicleQ() {
+		this(DEFAULT_INITIAL_CAPACITY);
+	}
+
+	public RingBufferVehicleQ(int initialCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(initialCapacity, 2) - 1) << 1;
+		this.elements = new QVehicle[capacity];
+	}
+
+	@Override
+	public boolean offer(QVehicle e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		if (this.size == this.elements.length) {
+			grow();
+		}
+		this.elements[(this.head + this.size) & (this.elements.length - 1)] = e;
+		this.size++;
+		return true;
+	}
+
+	@Override
+	public void addFirst(QVehicle e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		if (this.size == this.elements.length) {
+			grow();
+		}
+		this.head = (this.head - 1) & (this.elements.length - 1);
+		this.elements[this.head] = e;
+		this.size++;
+	}
+
+	@Override
+	public QVehicle peek() {
+		return this.elements[this.head];
+	}
+
+	@Override
+	public QVehicle poll() {
+		QVehicle e = this.elements[this.head];
+		if (e != null) {
+			this.elements[this.head] = null;
+			this.head = (this.head + 1) & (this.elements.length - 1);
+			this.size--;
+		}
+		return e;
+	}
+
+	/**
+	 * Vehicles are usually removed from the front of the queue, which is checked first without creating an iterator.
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if (o == null) {
+			return false;
+		}
+		for (int i = 0; i < this.size; i++) {
+			if (o.equals(this.elements[(this.head + i) & (this.elements.length - 1)])) {
+				removeAt(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < this.size; i++) {
+			this.elements[(this.head + i) & (this.elements.length - 1)] = null;
+		}
+		this.head = 0;
+		this.size = 0;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public Iterator<QVehicle> iterator() {
+		return new Itr();
+	}
+
+	/**
+	 * removes the element at the given position counted from the head by moving the following elements one step forward
+	 */
+	private void removeAt(int index) {
+		if (index == 0) {
+			poll();
+			return;
+		}
+		int mask = this.elements.length - 1;
+		for (int i = index; i < this.size - 1; i++) {
+			this.elements[(this.head + i) & mask] = this.elements[(this.head + i + 1) & mask];
+		}
+		this.elements[(this.head + this.size - 1) & mask] = null;
+		this.size--;
+	}
+
+	private void grow() {
+		QVehicle[] newElements = new QVehicle[this.elements.length << 1];
+		int firstPart = Math.min(this.size, this.elements.length - this.head);
+		System.arraycopy(this.elements, this.head, newElements, 0, firstPart);
+		System.arraycopy(this.elements, 0, newElements, firstPart, this.size - firstPart);
+		this.elements = newElements;
+		this.head = 0;
+	}
+
+	private final class Itr implements Iterator<QVehicle> {
+		private int next = 0;
+		private int lastReturned = -1;
+
+		@Override
+		public boolean hasNext() {
+			return this.next < RingBufferVehicleQ.this.size;
+		}
+
+		@Override
+		public QVehicle next() {
+			if (this.next >= RingBufferVehicleQ.this.size) {
+				throw new NoSuchElementException();
+			}
+			this.lastReturned = this.next;
+			this.next++;
+			return RingBufferVehicleQ.this.elements[(RingBufferVehicleQ.this.head + this.lastReturned) & (RingBufferVehicleQ.this.elements.length - 1)];
+		}
+
+		@Override
+		public void remove() {
+			if (this.lastReturned < 0) {
+				throw new IllegalStateException();
+			}
+			removeAt(this.lastReturned);
+			this.next = this.lastReturned;
+			this.lastReturned = -1;
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.utils.collections.PackedRTree;
+
+/**
+ * A spatial index to find the link closest to a coordinate, measured by the
+ * distance to the line segment between the from- and the to-node of the link,
+ * as in {@link LinkQuadTree}.
+ * <p></p>
+ * The bounding boxes of the links are stored in a {@link PackedRTree}, which is
+ * searched for the boxes closest to the coordinate; only for these, the exact distance
+ * to the segment is calculated. For queries restricted to links allowing a certain mode,
+ * a separate tree with only these links is built on first use, so rarely allowed modes
+ * do not need to skip over all other links.
+ * <p></p>
+ * The index does not change after it was created and all queries can be used by
+ * several threads concurrently. {@link #getNearestLinks(List, String, int)} maps many
+ * coordinates at once with several threads.
+ */
+public final class LinkSegmentIndex {
+
+	private final static Logger log = Logger.getLogger(LinkSegmentIndex.class);
+
+	private static final PackedRTree.Distance<Link> SEGMENT_DISTANCE = new PackedRTree.Distance<Link>() {
+		@Override
+		public double calcDistanceSq(double x, double y, Link link) {
+			return calcSegmentDistanceSq(x, y, link);
+		}
+	};
+
+	private final List<Link> links;
+	private final PackedRTree<Link> tree;
+	private final ConcurrentMap<String, PackedRTree<Link>> modeTrees = new ConcurrentHashMap<>();
+
+	public LinkSegmentIndex(final Network network) {
+		this(network.getLinks().values());
+	}
+
+	public LinkSegmentIndex(final Collection<? extends Link> links) {
+		this.links = new ArrayList<>(links);
+		long startTime = System.currentTimeMillis();
+		this.tree = buildTree(links, null);
+		log.info("Building LinkSegmentIndex for " + this.tree.size() + " links took " + ((System.currentTimeMillis() - startTime) / 1000.0) + " seconds.");
+	}
+
+	/**
+	 * @return the number of indexed links
+	 */
+	public int size() {
+		return this.tree.size();
+	}
+
+	/**
+	 * @return the link closest to <code>coord</code>, <code>null</code> if there are no links
+	 */
+	public Link getNearestLink(final Coord coord) {
+		return getNearestLink(coord.getX(), coord.getY());
+	}
+
+	/**
+	 * @return the link closest to x/y, <code>null</code> if there are no links
+	 */
+	public Link getNearestLink(final double x, final double y) {
+		return this.tree.getClosest(x, y, SEGMENT_DISTANCE);
+	}
+
+	/**
+	 * @param mode only links allowing this mode are considered, all links if <code>null</code>
+	 * @return the link closest to <code>coord</code>, <code>null</code> if there are no such links
+	 */
+	public Link getNearestLink(final Coord coord, final String mode) {
+		return getTree(mode).getClosest(coord.getX(), coord.getY(), SEGMENT_DISTANCE);
+	}
+
+	/**
+	 * Finds the closest link for every coordinate, using <code>numberOfThreads</code> threads.
+	 *
+	 * @param coords the coordinates to map
+	 * @param mode only links allowing this mode are considered, all links if <code>null</code>
+	 * @param numberOfThreads the number of threads to use, the calling thread only if 1 or less
+	 * @return the closest links in the order of the coordinates, <code>null</code> where no link was found
+	 */
+	public List<Link> getNearestLinks(final List<Coord> coords, final String mode, final int numberOfThreads) {
+		final PackedRTree<Link> modeTree = getTree(mode);
+		final Link[] result = new Link[coords.size()];
+		if (numberOfThreads <= 1 || coords.size() < 2) {
+			mapCoords(modeTree, coords, result, 0, coords.size());
+			return Arrays.asList(result);
+		}
+		// several chunks per thread, so threads finishing early can help the others
+		int numberOfChunks = Math.min(coords.size(), 4 * numberOfThreads);
+		List<Callable<Void>> tasks = new ArrayList<>(numberOfChunks);
+		for (int i = 0; i < numberOfChunks; i++) {
+			final int from = (int) ((long) coords.size() * i / numberOfChunks);
+			final int to = (int) ((long) coords.size() * (i + 1) / numberOfChunks);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					mapCoords(modeTree, coords, result, from, to);
+					return null;
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		return Arrays.asList(result);
+	}
+
+	private static void mapCoords(final PackedRTree<Link> tree, final List<Coord> coords, final Link[] result, final int from, final int to) {
+		for (int i = from; i < to; i++) {
+			Coord coord = coords.get(i);
+			result[i] = tree.getClosest(coord.getX(), coord.getY(), SEGMENT_DISTANCE);
+		}
+	}
+
+	private PackedRTree<Link> getTree(final String mode) {
+		if (mode == null) {
+			return this.tree;
+		}
+		PackedRTree<Link> modeTree = this.modeTrees.get(mode);
+		if (modeTree == null) {
+			// several threads may build the same tree, but all of them get the one put first
+			PackedRTree<Link> existing = this.modeTrees.putIfAbsent(mode, buildTree(this.links, mode));
+			modeTree = existing == null ? this.modeTrees.get(mode) : existing;
+		}
+		return modeTree;
+	}
+
+	private static PackedRTree<Link> buildTree(final Collection<? extends Link> links, final String mode) {
+		PackedRTree.Builder<Link> builder = new PackedRTree.Builder<>();
+		for (Link link : links) {
+			if (mode == null || link.getAllowedModes().contains(mode)) {
+				Coord from = link.getFromNode().getCoord();
+				Coord to = link.getToNode().getCoord();
+				builder.put(from.getX(), from.getY(), to.getX(), to.getY(), link);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return the squared distance of x/y to the line segment from the from-node to the to-node of the link
+	 */
+	static double calcSegmentDistanceSq(final double x, final double y, final Link link) {
+		Coord from = link.getFromNode().getCoord();
+		Coord to = link.getToNode().getCoord();
+		double fx = from.getX();
+		double fy = from.getY();
+		double lineDX = to.getX() - fx;
+		double lineDY = to.getY() - fy;
+		double lengthSq = lineDX * lineDX + lineDY * lineDY;
+		double u = lengthSq == 0.0 ? 0.0 : ((x - fx) * lineDX + (y - fy) * lineDY) / lengthSq;
+		// the closest point on the segment, the from- or to-node if the projection lies outside
+		u = u < 0.0 ? 0.0 : (u > 1.0 ? 1.0 : u);
+		double dx = fx + u * lineDX - x;
+		double dy = fy + u * lineDY - y;
+		return dx * dx + dy * dy;
+	}
+
+}
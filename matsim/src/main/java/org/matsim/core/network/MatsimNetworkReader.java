@@ -27,7 +27,9 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.api.internal.MatsimSomeReader;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.core.utils.io.BinarySnapshot;
 import org.matsim.core.utils.io.MatsimXmlParser;
+import org.matsim.core.utils.io.UncheckedIOException;
 import org.xml.sax.Attributes;
 
 /**
@@ -89,6 +91,19 @@ public class MatsimNetworkReader extends MatsimXmlParser implements MatsimSomeRe
 		}
 	}
 
+	/**
+	 * Binary snapshots written by the {@link NetworkSnapshotWriter} are passed on to the
+	 * {@link NetworkSnapshotReader}, all other files are parsed as xml.
+	 */
+	@Override
+	public void parse(final String filename) throws UncheckedIOException {
+		if (BinarySnapshot.getContentType(filename) == BinarySnapshot.NETWORK) {
+			new NetworkSnapshotReader(this.transformation, this.network).readFile(filename);
+		} else {
+			super.parse(filename);
+		}
+	}
+
 	@Override
 	protected void setDoctype(final String doctype) {
 		super.setDoctype(doctype);
@@ -64,7 +64,7 @@ public final class NetworkImpl implements Network {
 
 	private QuadTree<Node> nodeQuadTree = null;
 	
-	private LinkQuadTree linkQuadTree = null;
+	private volatile LinkSegmentIndex linkSegmentIndex = null;
 
 	private static final double DEFAULT_EFFECTIVE_CELL_SIZE = 7.5;
 
@@ -117,6 +117,7 @@ public final class NetworkImpl implements Network {
 		toNode.addInLink(link);
 
 		links.put(link.getId(), link);
+		this.linkSegmentIndex = null;
 		
 		// show counter
 		this.counter++;
@@ -200,6 +201,7 @@ public final class NetworkImpl implements Network {
 		}
 		l.getFromNode().getOutLinks().remove(l.getId());
 		l.getToNode().getInLinks().remove(l.getId());
+		this.linkSegmentIndex = null;
 		return l;
 	}
 
@@ -289,10 +291,19 @@ public final class NetworkImpl implements Network {
 	}
 
     public Link getNearestLinkExactly(final Coord coord) {
-		if (this.linkQuadTree == null) {
-			buildLinkQuadTree();
+		return getLinkSegmentIndex().getNearestLink(coord);
+	}
+
+	/**
+	 * @return the index to find the links closest to coordinates, built on first use
+	 * 		and again after links were added or removed
+	 */
+	public LinkSegmentIndex getLinkSegmentIndex() {
+		LinkSegmentIndex index = this.linkSegmentIndex;
+		if (index == null) {
+			index = buildLinkSegmentIndex();
 		}
-		return this.linkQuadTree.getNearest(coord.getX(), coord.getY());
+		return index;
 	}
 
     /**
@@ -379,34 +390,11 @@ public final class NetworkImpl implements Network {
 		log.info("Building QuadTree took " + ((System.currentTimeMillis() - startTime) / 1000.0) + " seconds.");
 	}
 	
-	synchronized private void buildLinkQuadTree() {
-		if (this.linkQuadTree != null) {
-			return;
-		}
-		double startTime = System.currentTimeMillis();
-		double minx = Double.POSITIVE_INFINITY;
-		double miny = Double.POSITIVE_INFINITY;
-		double maxx = Double.NEGATIVE_INFINITY;
-		double maxy = Double.NEGATIVE_INFINITY;
-		for (Node n : this.nodes.values()) {
-			if (n.getCoord().getX() < minx) { minx = n.getCoord().getX(); }
-			if (n.getCoord().getY() < miny) { miny = n.getCoord().getY(); }
-			if (n.getCoord().getX() > maxx) { maxx = n.getCoord().getX(); }
-			if (n.getCoord().getY() > maxy) { maxy = n.getCoord().getY(); }
-		}
-		minx -= 1.0;
-		miny -= 1.0;
-		maxx += 1.0;
-		maxy += 1.0;
-		// yy the above four lines are problematic if the coordinate values are much smaller than one. kai, oct'15
-		
-		log.info("building LinkQuadTree for nodes: xrange(" + minx + "," + maxx + "); yrange(" + miny + "," + maxy + ")");
-		LinkQuadTree qt = new LinkQuadTree(minx, miny, maxx, maxy);
-		for (Link l : this.links.values()) {
-			qt.put(l);
+	synchronized private LinkSegmentIndex buildLinkSegmentIndex() {
+		if (this.linkSegmentIndex == null) {
+			this.linkSegmentIndex = new LinkSegmentIndex(this.links.values());
 		}
-		this.linkQuadTree = qt;
-		log.info("Building LinkQuadTree took " + ((System.currentTimeMillis() - startTime) / 1000.0) + " seconds.");
+		return this.linkSegmentIndex;
 	}
 
 	@Override
@@ -0,0 +1,134 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.network;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.api.internal.MatsimSomeReader;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.core.utils.io.BinarySnapshot;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.core.utils.misc.StringUtils;
+
+/**
+ * Reads a network from a {@link BinarySnapshot} written by the {@link NetworkSnapshotWriter}.
+ * The file is memory-mapped, so no text has to be parsed; loading the network mostly
+ * consists of creating its nodes and links.
+ * <p></p>
+ * Usually, this class need not be used directly, as the {@link MatsimNetworkReader}
+ * recognizes snapshots and passes them on to this reader.
+ */
+public class NetworkSnapshotReader implements MatsimSomeReader {
+
+	private final static Logger log = Logger.getLogger(NetworkSnapshotReader.class);
+
+	private final Network network;
+	private final CoordinateTransformation transformation;
+
+	public NetworkSnapshotReader(final Network network) {
+		this(new IdentityTransformation(), network);
+	}
+
+	public NetworkSnapshotReader(final CoordinateTransformation transformation, final Network network) {
+		this.transformation = transformation;
+		this.network = network;
+	}
+
+	public void readFile(final String filename) throws UncheckedIOException {
+		log.info("reading binary network snapshot from " + filename);
+		try (BinarySnapshot.Input in = new BinarySnapshot.Input(filename, BinarySnapshot.NETWORK)) {
+			String name = in.readString();
+			double capacityPeriod = in.readDouble();
+			double effectiveCellSize = in.readDouble();
+			double effectiveLaneWidth = in.readDouble();
+			if (this.network instanceof NetworkImpl) {
+				NetworkImpl networkImpl = (NetworkImpl) this.network;
+				networkImpl.setName(name);
+				networkImpl.setCapacityPeriod(capacityPeriod);
+				networkImpl.setEffectiveCellSize(effectiveCellSize);
+				networkImpl.setEffectiveLaneWidth(effectiveLaneWidth);
+			}
+
+			int numberOfNodes = in.readInt();
+			Node[] nodes = new Node[numberOfNodes];
+			for (int i = 0; i < numberOfNodes; i++) {
+				Id<Node> id = Id.create(in.readString(), Node.class);
+				double x = in.readDouble();
+				double y = in.readDouble();
+				Node node = this.network.getFactory().createNode(id, this.transformation.transform(new Coord(x, y)));
+				this.network.addNode(node);
+				String type = in.readString();
+				String origId = in.readString();
+				if (node instanceof NodeImpl) {
+					((NodeImpl) node).setType(type);
+					if (origId != null) {
+						((NodeImpl) node).setOrigId(origId);
+					}
+				}
+				nodes[i] = node;
+			}
+
+			int numberOfLinks = in.readInt();
+			for (int i = 0; i < numberOfLinks; i++) {
+				Id<Link> id = Id.create(in.readString(), Link.class);
+				Link link = this.network.getFactory().createLink(id, nodes[in.readInt()], nodes[in.readInt()]);
+				link.setLength(in.readDouble());
+				link.setFreespeed(in.readDouble());
+				link.setCapacity(in.readDouble());
+				link.setNumberOfLanes(in.readDouble());
+				this.network.addLink(link);
+				String modes = in.readString();
+				String origId = in.readString();
+				String type = in.readString();
+				if (link instanceof LinkImpl) {
+					((LinkImpl) link).setOrigId(origId);
+					((LinkImpl) link).setType(type);
+				}
+				if (modes != null) {
+					link.setAllowedModes(parseModes(modes));
+				}
+			}
+			log.info("read " + numberOfNodes + " nodes and " + numberOfLinks + " links");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Set<String> parseModes(final String modes) {
+		Set<String> modeSet = new HashSet<>();
+		if (!modes.isEmpty()) {
+			for (String mode : StringUtils.explode(modes, ',')) {
+				modeSet.add(mode.intern());
+			}
+		}
+		return modeSet;
+	}
+
+}
@@ -0,0 +1,112 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.network;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.api.internal.MatsimSomeWriter;
+import org.matsim.core.utils.io.BinarySnapshot;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes a network as {@link BinarySnapshot}, which can be read again by the
+ * {@link NetworkSnapshotReader} or the {@link MatsimNetworkReader}. The snapshot
+ * contains the same information as a network_v1 file.
+ *
+ * @see NetworkSnapshotReader
+ */
+public class NetworkSnapshotWriter implements MatsimSomeWriter {
+
+	private final static Logger log = Logger.getLogger(NetworkSnapshotWriter.class);
+
+	private final Network network;
+
+	public NetworkSnapshotWriter(final Network network) {
+		this.network = network;
+	}
+
+	public void write(final String filename) throws UncheckedIOException {
+		log.info("writing binary network snapshot to " + filename);
+		try (BinarySnapshot.Output out = new BinarySnapshot.Output(filename, BinarySnapshot.NETWORK)) {
+			NetworkImpl networkImpl = this.network instanceof NetworkImpl ? (NetworkImpl) this.network : null;
+			out.writeString(networkImpl == null ? null : networkImpl.getName());
+			out.writeDouble(this.network.getCapacityPeriod());
+			out.writeDouble(networkImpl == null ? 7.5 : networkImpl.getEffectiveCellSize());
+			out.writeDouble(this.network.getEffectiveLaneWidth());
+
+			// the links refer to their nodes by the position of the nodes in the snapshot
+			Map<Id<Node>, Integer> nodeIndices = new HashMap<>();
+			out.writeInt(this.network.getNodes().size());
+			for (Node node : this.network.getNodes().values()) {
+				nodeIndices.put(node.getId(), nodeIndices.size());
+				out.writeString(node.getId().toString());
+				out.writeDouble(node.getCoord().getX());
+				out.writeDouble(node.getCoord().getY());
+				NodeImpl nodeImpl = node instanceof NodeImpl ? (NodeImpl) node : null;
+				out.writeString(nodeImpl == null ? null : nodeImpl.getType());
+				out.writeString(nodeImpl == null ? null : nodeImpl.getOrigId());
+			}
+
+			out.writeInt(this.network.getLinks().size());
+			for (Link link : this.network.getLinks().values()) {
+				out.writeString(link.getId().toString());
+				out.writeInt(nodeIndices.get(link.getFromNode().getId()));
+				out.writeInt(nodeIndices.get(link.getToNode().getId()));
+				out.writeDouble(link.getLength());
+				out.writeDouble(link.getFreespeed());
+				out.writeDouble(link.getCapacity());
+				out.writeDouble(link.getNumberOfLanes());
+				out.writeString(toString(link.getAllowedModes()));
+				LinkImpl linkImpl = link instanceof LinkImpl ? (LinkImpl) link : null;
+				out.writeString(linkImpl == null ? null : linkImpl.getOrigId());
+				out.writeString(linkImpl == null ? null : linkImpl.getType());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * the modes are stored as one string, so links with the same modes share it
+	 */
+	private static String toString(final Set<String> modes) {
+		if (modes == null) {
+			return null;
+		}
+		StringBuilder buffer = new StringBuilder();
+		for (String mode : modes) {
+			if (buffer.length() > 0) {
+				buffer.append(',');
+			}
+			buffer.append(mode);
+		}
+		return buffer.toString();
+	}
+
+}
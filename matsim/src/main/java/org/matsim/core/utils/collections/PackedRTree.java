@@ -0,0 +1,711 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.utils.collections;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.matsim.core.utils.collections.QuadTree.Executor;
+
+/**
+ * An immutable spatial index for data assigned to geometric points, as an
+ * alternative to the {@link QuadTree} for data that does not change after it
+ * was loaded, e.g. facilities, links or transit stops.
+ * <p></p>
+ * The index is a packed R-tree, built in one go by a {@link Builder}: the points
+ * are sorted in sort-tile-recursive order and grouped into nodes of <code>nodeSize</code>
+ * entries, which are sorted and grouped again until only the root is left. All coordinates
+ * and bounding boxes are stored in a single primitive array, so the tree needs
+ * no objects per entry, the nodes lie next to each other in memory and the bounds
+ * need not be known in advance.
+ * <p></p>
+ * The range queries are available with an {@link Executor}, which visits the
+ * found objects without creating a result collection, and with the
+ * {@link QuadTree}-like methods returning collections. In addition to the
+ * closest object, the <code>k</code> nearest objects can be searched for.
+ * All queries may be used by several threads concurrently.
+ * <p></p>
+ * Objects with an extent, e.g. links, can be put into the tree with their bounding
+ * box. The range queries then use the distance to the box and pass its minimal
+ * corner to the executor; {@link #getClosest(double, double, Distance)} refines the
+ * distance to the box with the exact distance to the object.
+ *
+ * @param <T> The type of data to be stored in the tree.
+ */
+public final class PackedRTree<T> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int DEFAULT_NODE_SIZE = 16;
+
+	private final int numberOfItems;
+	private final int nodeSize;
+	/** minX, minY, maxX, maxY of all items and nodes, the items first, the root last */
+	private final double[] boxes;
+	/** the position of the first child of every node, starting with the first node after the items */
+	private final int[] firstChild;
+	/** the position after the last entry of every level, level 0 are the items */
+	private final int[] levelEnds;
+	/** the values in the same order as the items */
+	private final Object[] values;
+
+	private PackedRTree(final double[] itemBoxes, final Object[] values, final int numberOfItems, final int nodeSize) {
+		this.numberOfItems = numberOfItems;
+		this.nodeSize = nodeSize;
+
+		List<Integer> ends = new ArrayList<>();
+		int count = numberOfItems;
+		int total = count;
+		ends.add(total);
+		do {
+			// an empty tree still has a root, without children
+			count = Math.max(1, (count + nodeSize - 1) / nodeSize);
+			total += count;
+			ends.add(total);
+		} while (count > 1);
+		this.levelEnds = new int[ends.size()];
+		for (int i = 0; i < this.levelEnds.length; i++) {
+			this.levelEnds[i] = ends.get(i);
+		}
+		this.boxes = new double[4 * total];
+		this.firstChild = new int[total - numberOfItems];
+		this.values = new Object[numberOfItems];
+
+		double[] centerXs = new double[numberOfItems];
+		double[] centerYs = new double[numberOfItems];
+		for (int i = 0; i < numberOfItems; i++) {
+			centerXs[i] = (itemBoxes[4 * i] + itemBoxes[4 * i + 2]) / 2;
+			centerYs[i] = (itemBoxes[4 * i + 1] + itemBoxes[4 * i + 3]) / 2;
+		}
+		int[] order = sortTileRecursive(centerXs, centerYs, numberOfItems, nodeSize);
+		for (int pos = 0; pos < numberOfItems; pos++) {
+			int i = order[pos];
+			System.arraycopy(itemBoxes, 4 * i, this.boxes, 4 * pos, 4);
+			this.values[pos] = values[i];
+		}
+
+		// group the entries of each level into the nodes of the next one
+		int pos = numberOfItems;
+		int start = 0;
+		for (int level = 0; level < this.levelEnds.length - 1; level++) {
+			int end = this.levelEnds[level];
+			for (int child = start; child < end; child += nodeSize) {
+				double nodeMinX = Double.POSITIVE_INFINITY;
+				double nodeMinY = Double.POSITIVE_INFINITY;
+				double nodeMaxX = Double.NEGATIVE_INFINITY;
+				double nodeMaxY = Double.NEGATIVE_INFINITY;
+				for (int j = child, last = Math.min(child + nodeSize, end); j < last; j++) {
+					nodeMinX = Math.min(nodeMinX, this.boxes[4 * j]);
+					nodeMinY = Math.min(nodeMinY, this.boxes[4 * j + 1]);
+					nodeMaxX = Math.max(nodeMaxX, this.boxes[4 * j + 2]);
+					nodeMaxY = Math.max(nodeMaxY, this.boxes[4 * j + 3]);
+				}
+				this.boxes[4 * pos] = nodeMinX;
+				this.boxes[4 * pos + 1] = nodeMinY;
+				this.boxes[4 * pos + 2] = nodeMaxX;
+				this.boxes[4 * pos + 3] = nodeMaxY;
+				this.firstChild[pos - numberOfItems] = child;
+				pos++;
+			}
+			if (level + 1 < this.levelEnds.length - 1) {
+				sortNodes(end, pos);
+			}
+			start = end;
+		}
+		if (numberOfItems == 0) {
+			this.boxes[0] = Double.POSITIVE_INFINITY;
+			this.boxes[1] = Double.POSITIVE_INFINITY;
+			this.boxes[2] = Double.NEGATIVE_INFINITY;
+			this.boxes[3] = Double.NEGATIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Creates a tree containing the same objects at the same locations as the
+	 * given QuadTree.
+	 */
+	public static <T> PackedRTree<T> copyOf(final QuadTree<T> quadTree) {
+		final Builder<T> builder = new Builder<>();
+		quadTree.execute(null, new Executor<T>() {
+			@Override
+			public void execute(double x, double y, T object) {
+				builder.put(x, y, object);
+			}
+		});
+		return builder.build();
+	}
+
+	/**
+	 * @return the number of objects in this tree
+	 */
+	public int size() {
+		return this.numberOfItems;
+	}
+
+	/** @return the minimum x coordinate (left-right, longitude, easting) of all objects */
+	public double getMinEasting() {
+		return this.boxes[4 * getRoot()];
+	}
+
+	/** @return the maximum x coordinate (left-right, longitude, easting) of all objects */
+	public double getMaxEasting() {
+		return this.boxes[4 * getRoot() + 2];
+	}
+
+	/** @return the minimum y coordinate (up-down, latitude, northing) of all objects */
+	public double getMinNorthing() {
+		return this.boxes[4 * getRoot() + 1];
+	}
+
+	/** @return the maximum y coordinate (up-down, latitude, northing) of all objects */
+	public double getMaxNorthing() {
+		return this.boxes[4 * getRoot() + 3];
+	}
+
+	/**
+	 * @return all objects of the tree, in the order of the leaves
+	 */
+	public List<T> values() {
+		return new AbstractList<T>() {
+			@Override
+			public T get(int index) {
+				return getValue(index);
+			}
+
+			@Override
+			public int size() {
+				return PackedRTree.this.numberOfItems;
+			}
+		};
+	}
+
+	/**
+	 * Gets the object closest to x/y
+	 *
+	 * @param x easting, left-right location, longitude
+	 * @param y northing, up-down location, latitude
+	 * @return the object found closest to x/y, <code>null</code> if the tree is empty
+	 */
+	public T getClosest(final double x, final double y) {
+		if (this.numberOfItems == 0) {
+			return null;
+		}
+		Nearest nearest = new Nearest(this.levelEnds.length * this.nodeSize);
+		findClosest(getRoot(), this.levelEnds.length - 1, x, y, null, nearest);
+		return getValue(nearest.position);
+	}
+
+	/**
+	 * Gets the object closest to x/y, measured by <code>distance</code>. The distance
+	 * to an object must not be smaller than the distance to the box it was put into
+	 * the tree with.
+	 *
+	 * @param x easting, left-right location, longitude
+	 * @param y northing, up-down location, latitude
+	 * @param distance calculates the exact distance of x/y to an object
+	 * @return the object found closest to x/y, <code>null</code> if the tree is empty
+	 * 		or <code>distance</code> returned infinity for all objects
+	 */
+	public T getClosest(final double x, final double y, final Distance<? super T> distance) {
+		if (this.numberOfItems == 0) {
+			return null;
+		}
+		Nearest nearest = new Nearest(this.levelEnds.length * this.nodeSize);
+		findClosest(getRoot(), this.levelEnds.length - 1, x, y, distance, nearest);
+		return nearest.position < 0 ? null : getValue(nearest.position);
+	}
+
+	/**
+	 * Gets the <code>k</code> objects closest to x/y.
+	 *
+	 * @param x easting, left-right location, longitude
+	 * @param y northing, up-down location, latitude
+	 * @param k the maximal number of objects to return
+	 * @return the objects found, ordered by their distance to x/y
+	 */
+	public List<T> getKNearest(final double x, final double y, final int k) {
+		return getKNearest(x, y, k, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Gets the <code>k</code> objects closest to x/y which are at most
+	 * <code>maxDistance</code> away.
+	 *
+	 * @param x easting, left-right location, longitude
+	 * @param y northing, up-down location, latitude
+	 * @param k the maximal number of objects to return
+	 * @param maxDistance the maximal distance returned objects can be away from x/y
+	 * @return the objects found, ordered by their distance to x/y
+	 */
+	public List<T> getKNearest(final double x, final double y, final int k, final double maxDistance) {
+		List<T> result = new ArrayList<>(Math.min(k, this.numberOfItems));
+		if (this.numberOfItems == 0 || k <= 0) {
+			return result;
+		}
+		double maxDistanceSq = maxDistance * maxDistance;
+		// best-first search: items and nodes are taken from the queue by their distance to x/y
+		DistanceQueue queue = new DistanceQueue();
+		queue.add(0.0, getRoot());
+		while (queue.size > 0) {
+			double distanceSq = queue.peekDistance();
+			if (distanceSq > maxDistanceSq) {
+				break;
+			}
+			int pos = queue.poll();
+			if (pos < this.numberOfItems) {
+				result.add(getValue(pos));
+				if (result.size() == k) {
+					break;
+				}
+			} else {
+				int start = this.firstChild[pos - this.numberOfItems];
+				int end = Math.min(start + this.nodeSize, this.levelEnds[getLevel(pos) - 1]);
+				for (int child = start; child < end; child++) {
+					queue.add(calcDistanceSq(child, x, y), child);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets all objects within a certain distance around x/y
+	 *
+	 * @param x left-right location, longitude
+	 * @param y up-down location, latitude
+	 * @param distance the maximal distance returned objects can be away from x/y
+	 * @return the objects found within distance to x/y
+	 */
+	public Collection<T> getDisk(final double x, final double y, final double distance) {
+		Collection<T> result = new ArrayList<>();
+		executeRing(x, y, 0, distance, new CollectingExecutor<>(result));
+		return result;
+	}
+
+	/**
+	 * Gets all objects within a linear ring (including borders).
+	 *
+	 * @param x left-right location, longitude
+	 * @param y up-down location, latitude
+	 * @param rMin inner ring radius
+	 * @param rMax outer ring radius
+	 * @return objects within the ring
+	 */
+	public Collection<T> getRing(final double x, final double y, final double rMin, final double rMax) {
+		Collection<T> result = new ArrayList<>();
+		executeRing(x, y, rMin, rMax, new CollectingExecutor<>(result));
+		return result;
+	}
+
+	/**
+	 * Gets all objects inside the specified area, including its border.
+	 *
+	 * @param minX The minimum left-right location, longitude
+	 * @param minY The minimum up-down location, latitude
+	 * @param maxX The maximum left-right location, longitude
+	 * @param maxY The maximum up-down location, latitude
+	 * @param values1 A collection to store the found objects in.
+	 * @return The objects found within the area.
+	 */
+	public Collection<T> getRectangle(final double minX, final double minY, final double maxX, final double maxY, final Collection<T> values1) {
+		executeRectangle(minX, minY, maxX, maxY, new CollectingExecutor<>(values1));
+		return values1;
+	}
+
+	/**
+	 * Executes executor on all objects within a certain distance around x/y.
+	 *
+	 * @return the count of objects found
+	 */
+	public int executeDisk(final double x, final double y, final double distance, final Executor<T> executor) {
+		return executeRing(x, y, 0, distance, executor);
+	}
+
+	/**
+	 * Executes executor on all objects within a linear ring (including borders).
+	 *
+	 * @return the count of objects found
+	 */
+	public int executeRing(final double x, final double y, final double rMin, final double rMax, final Executor<T> executor) {
+		if (this.numberOfItems == 0) {
+			return 0;
+		}
+		return visitRing(getRoot(), this.levelEnds.length - 1, x, y, rMin * rMin, rMax * rMax, executor);
+	}
+
+	/**
+	 * Executes executor on all objects inside the rectangle (minX,minY):(maxX,maxY),
+	 * including its border.
+	 *
+	 * @return the count of objects found
+	 */
+	public int executeRectangle(final double minX, final double minY, final double maxX, final double maxY, final Executor<T> executor) {
+		if (this.numberOfItems == 0) {
+			return 0;
+		}
+		return visitRectangle(getRoot(), this.levelEnds.length - 1, minX, minY, maxX, maxY, executor);
+	}
+
+	private int visitRectangle(final int pos, final int level, final double minX, final double minY, final double maxX, final double maxY,
+			final Executor<T> executor) {
+		int count = 0;
+		int start = this.firstChild[pos - this.numberOfItems];
+		int end = Math.min(start + this.nodeSize, this.levelEnds[level - 1]);
+		for (int child = start; child < end; child++) {
+			int b = 4 * child;
+			if (this.boxes[b + 2] < minX || this.boxes[b + 3] < minY || this.boxes[b] > maxX || this.boxes[b + 1] > maxY) {
+				continue;
+			}
+			if (level == 1) {
+				executor.execute(this.boxes[b], this.boxes[b + 1], getValue(child));
+				count++;
+			} else {
+				count += visitRectangle(child, level - 1, minX, minY, maxX, maxY, executor);
+			}
+		}
+		return count;
+	}
+
+	private int visitRing(final int pos, final int level, final double x, final double y, final double rMinSq, final double rMaxSq,
+			final Executor<T> executor) {
+		int count = 0;
+		int start = this.firstChild[pos - this.numberOfItems];
+		int end = Math.min(start + this.nodeSize, this.levelEnds[level - 1]);
+		for (int child = start; child < end; child++) {
+			if (level == 1) {
+				double distanceSq = calcDistanceSq(child, x, y);
+				if (distanceSq <= rMaxSq && distanceSq >= rMinSq) {
+					executor.execute(this.boxes[4 * child], this.boxes[4 * child + 1], getValue(child));
+					count++;
+				}
+			} else if (calcDistanceSq(child, x, y) <= rMaxSq && calcMaxDistanceSq(child, x, y) >= rMinSq) {
+				count += visitRing(child, level - 1, x, y, rMinSq, rMaxSq, executor);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * depth-first search, which descends into the closest child first. The distances
+	 * of the children are kept in <code>distances</code>, starting at <code>offset</code>.
+	 */
+	private void findClosest(final int pos, final int level, final double x, final double y, final Distance<? super T> distance,
+			final Nearest nearest) {
+		int start = this.firstChild[pos - this.numberOfItems];
+		int end = Math.min(start + this.nodeSize, this.levelEnds[level - 1]);
+		if (level == 1) {
+			for (int child = start; child < end; child++) {
+				double distanceSq = calcDistanceSq(child, x, y);
+				if (distance != null && distanceSq < nearest.distanceSq) {
+					distanceSq = distance.calcDistanceSq(x, y, getValue(child));
+				}
+				if (distanceSq < nearest.distanceSq) {
+					nearest.distanceSq = distanceSq;
+					nearest.position = child;
+				}
+			}
+			return;
+		}
+		double[] distances = nearest.distances;
+		int offset = (level - 2) * this.nodeSize;
+		int closestChild = -1;
+		double closestDistanceSq = Double.POSITIVE_INFINITY;
+		for (int child = start; child < end; child++) {
+			double distanceSq = calcDistanceSq(child, x, y);
+			distances[offset + child - start] = distanceSq;
+			if (distanceSq < closestDistanceSq) {
+				closestDistanceSq = distanceSq;
+				closestChild = child;
+			}
+		}
+		findClosest(closestChild, level - 1, x, y, distance, nearest);
+		for (int child = start; child < end; child++) {
+			if (child != closestChild && distances[offset + child - start] < nearest.distanceSq) {
+				findClosest(child, level - 1, x, y, distance, nearest);
+			}
+		}
+	}
+
+	/**
+	 * @return the squared distance of x/y to the box of the entry at pos, 0 if inside
+	 */
+	private double calcDistanceSq(final int pos, final double x, final double y) {
+		int b = 4 * pos;
+		double dx = this.boxes[b] - x;
+		double dx2 = x - this.boxes[b + 2];
+		dx = dx > dx2 ? dx : dx2;
+		dx = dx > 0 ? dx : 0;
+		double dy = this.boxes[b + 1] - y;
+		double dy2 = y - this.boxes[b + 3];
+		dy = dy > dy2 ? dy : dy2;
+		dy = dy > 0 ? dy : 0;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * @return the squared distance of x/y to the furthest corner of the box of the entry at pos
+	 */
+	private double calcMaxDistanceSq(final int pos, final double x, final double y) {
+		int b = 4 * pos;
+		double dx = Math.max(Math.abs(this.boxes[b] - x), Math.abs(this.boxes[b + 2] - x));
+		double dy = Math.max(Math.abs(this.boxes[b + 1] - y), Math.abs(this.boxes[b + 3] - y));
+		return dx * dx + dy * dy;
+	}
+
+	private int getRoot() {
+		return this.levelEnds[this.levelEnds.length - 1] - 1;
+	}
+
+	private int getLevel(final int pos) {
+		int level = 0;
+		while (pos >= this.levelEnds[level]) {
+			level++;
+		}
+		return level;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T getValue(final int pos) {
+		return (T) this.values[pos];
+	}
+
+	/**
+	 * Reorders the nodes between start and end with {@link #sortTileRecursive(double[], double[], int, int)},
+	 * before they are grouped into the next level. The children of every node stay where they are.
+	 */
+	private void sortNodes(final int start, final int end) {
+		int count = end - start;
+		double[] centerXs = new double[count];
+		double[] centerYs = new double[count];
+		for (int i = 0; i < count; i++) {
+			int b = 4 * (start + i);
+			centerXs[i] = (this.boxes[b] + this.boxes[b + 2]) / 2;
+			centerYs[i] = (this.boxes[b + 1] + this.boxes[b + 3]) / 2;
+		}
+		int[] order = sortTileRecursive(centerXs, centerYs, count, this.nodeSize);
+		double[] sortedBoxes = new double[4 * count];
+		int[] sortedFirstChild = new int[count];
+		for (int i = 0; i < count; i++) {
+			System.arraycopy(this.boxes, 4 * (start + order[i]), sortedBoxes, 4 * i, 4);
+			sortedFirstChild[i] = this.firstChild[start + order[i] - this.numberOfItems];
+		}
+		System.arraycopy(sortedBoxes, 0, this.boxes, 4 * start, 4 * count);
+		System.arraycopy(sortedFirstChild, 0, this.firstChild, start - this.numberOfItems, count);
+	}
+
+	/**
+	 * Sort-tile-recursive order of the given points: the points are sorted by x and
+	 * cut into vertical slices of about sqrt(count / nodeSize) nodes, the points
+	 * of each slice are sorted by y. Consecutive groups of <code>nodeSize</code> points
+	 * then form compact nodes, which overlap as little as possible.
+	 *
+	 * @return the indices of the points in their new order
+	 */
+	static int[] sortTileRecursive(final double[] xs, final double[] ys, final int count, final int nodeSize) {
+		long[] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			keys[i] = i;
+		}
+		sortByCoordinate(keys, 0, count, xs);
+		int numberOfNodes = (count + nodeSize - 1) / nodeSize;
+		int sliceSize = nodeSize * (int) Math.ceil(Math.sqrt(numberOfNodes));
+		for (int sliceStart = 0; sliceStart < count; sliceStart += sliceSize) {
+			sortByCoordinate(keys, sliceStart, Math.min(sliceStart + sliceSize, count), ys);
+		}
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = (int) keys[i];
+		}
+		return order;
+	}
+
+	/**
+	 * Sorts the indices in <code>keys</code> between from and to by their coordinate. The coordinates
+	 * are scaled to 31 bit integers and stored in the upper half of the keys, so a primitive sort can be used.
+	 */
+	private static void sortByCoordinate(final long[] keys, final int from, final int to, final double[] coordinates) {
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = from; i < to; i++) {
+			double c = coordinates[(int) keys[i]];
+			min = Math.min(min, c);
+			max = Math.max(max, c);
+		}
+		double scale = max > min ? Integer.MAX_VALUE / (max - min) : 0;
+		for (int i = from; i < to; i++) {
+			long index = keys[i] & Integer.MAX_VALUE;
+			long scaled = (long) ((coordinates[(int) index] - min) * scale);
+			keys[i] = (scaled << 32) | index;
+		}
+		Arrays.sort(keys, from, to);
+		for (int i = from; i < to; i++) {
+			keys[i] &= Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Calculates the exact distance of a location to an object in the tree.
+	 */
+	public interface Distance<T> {
+		/**
+		 * @return the squared distance of x/y to <code>object</code>, {@link Double#POSITIVE_INFINITY}
+		 * 		if the object should not be found
+		 */
+		double calcDistanceSq(double x, double y, T object);
+	}
+
+	/**
+	 * Collects the points or boxes and values of a {@link PackedRTree} before it is built.
+	 * An object can be put at several locations.
+	 */
+	public static final class Builder<T> {
+
+		private int nodeSize = DEFAULT_NODE_SIZE;
+		private double[] boxes = new double[64];
+		private Object[] values = new Object[16];
+		private int size = 0;
+
+		/**
+		 * @param nodeSize the maximal number of children of a node, at least 2
+		 */
+		public Builder<T> setNodeSize(final int nodeSize) {
+			if (nodeSize < 2) {
+				throw new IllegalArgumentException("nodeSize must be at least 2, but is " + nodeSize);
+			}
+			this.nodeSize = nodeSize;
+			return this;
+		}
+
+		public Builder<T> put(final double x, final double y, final T value) {
+			return put(x, y, x, y, value);
+		}
+
+		/**
+		 * Puts an object with the given bounding box into the tree.
+		 */
+		public Builder<T> put(final double minX, final double minY, final double maxX, final double maxY, final T value) {
+			if (this.size == this.values.length) {
+				int capacity = this.size * 2;
+				this.boxes = Arrays.copyOf(this.boxes, 4 * capacity);
+				this.values = Arrays.copyOf(this.values, capacity);
+			}
+			int b = 4 * this.size;
+			this.boxes[b] = Math.min(minX, maxX);
+			this.boxes[b + 1] = Math.min(minY, maxY);
+			this.boxes[b + 2] = Math.max(minX, maxX);
+			this.boxes[b + 3] = Math.max(minY, maxY);
+			this.values[this.size] = value;
+			this.size++;
+			return this;
+		}
+
+		public PackedRTree<T> build() {
+			return new PackedRTree<>(this.boxes, this.values, this.size, this.nodeSize);
+		}
+	}
+
+	private static final class Nearest {
+		double distanceSq = Double.POSITIVE_INFINITY;
+		int position = -1;
+		/** the distances of the children of the nodes on the current path, one block of nodeSize per level */
+		final double[] distances;
+
+		Nearest(final int size) {
+			this.distances = new double[size];
+		}
+	}
+
+	/**
+	 * A binary min-heap of positions, ordered by their distance.
+	 */
+	private static final class DistanceQueue {
+		private double[] distances = new double[64];
+		private int[] positions = new int[64];
+		private int size = 0;
+
+		void add(final double distance, final int position) {
+			if (this.size == this.distances.length) {
+				this.distances = Arrays.copyOf(this.distances, this.size * 2);
+				this.positions = Arrays.copyOf(this.positions, this.size * 2);
+			}
+			int i = this.size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (this.distances[parent] <= distance) {
+					break;
+				}
+				this.distances[i] = this.distances[parent];
+				this.positions[i] = this.positions[parent];
+				i = parent;
+			}
+			this.distances[i] = distance;
+			this.positions[i] = position;
+		}
+
+		double peekDistance() {
+			return this.distances[0];
+		}
+
+		int poll() {
+			int result = this.positions[0];
+			this.size--;
+			if (this.size > 0) {
+				double distance = this.distances[this.size];
+				int position = this.positions[this.size];
+				int i = 0;
+				int half = this.size >>> 1;
+				while (i < half) {
+					int child = 2 * i + 1;
+					if (child + 1 < this.size && this.distances[child + 1] < this.distances[child]) {
+						child++;
+					}
+					if (this.distances[child] >= distance) {
+						break;
+					}
+					this.distances[i] = this.distances[child];
+					this.positions[i] = this.positions[child];
+					i = child;
+				}
+				this.distances[i] = distance;
+				this.positions[i] = position;
+			}
+			return result;
+		}
+	}
+
+	private static final class CollectingExecutor<T> implements Executor<T> {
+		private final Collection<T> result;
+
+		CollectingExecutor(final Collection<T> result) {
+			this.result = result;
+		}
+
+		@Override
+		public void execute(double x, double y, T object) {
+			this.result.add(object);
+		}
+	}
+
+}
@@ -128,6 +128,49 @@ public class QuadTree<T> implements Serializable {
 		return this.top.get(x, y, new MutableDouble(Double.POSITIVE_INFINITY));
 	}
 
+	/**
+	 * Gets the <code>k</code> objects closest to x/y. Objects at the same
+	 * distance are returned in no particular order.
+	 *
+	 * @param x easting, left-right location, longitude
+	 * @param y northing, up-down location, latitude
+	 * @param k the maximal number of objects to return
+	 * @return the objects found, ordered by their distance to x/y
+	 */
+	public List<T> getKNearest(final double x, final double y, final int k) {
+		List<T> result = new ArrayList<T>(Math.max(0, Math.min(k, this.size)));
+		if (k <= 0 || this.size == 0) {
+			return result;
+		}
+		// best-first search: nodes and leaves are taken from the queue by their distance to x/y
+		PriorityQueue<NearestEntry<T>> queue = new PriorityQueue<NearestEntry<T>>();
+		queue.add(new NearestEntry<T>(0.0, this.top, null));
+		NearestEntry<T> entry;
+		while ((entry = queue.poll()) != null) {
+			if (entry.leaf != null) {
+				for (T value : entry.leaf.values) {
+					result.add(value);
+					if (result.size() == k) {
+						return result;
+					}
+				}
+			} else if (entry.node.hasChilds) {
+				addNearestEntry(queue, entry.node.northwest, x, y);
+				addNearestEntry(queue, entry.node.northeast, x, y);
+				addNearestEntry(queue, entry.node.southeast, x, y);
+				addNearestEntry(queue, entry.node.southwest, x, y);
+			} else if (entry.node.leaf != null) {
+				Leaf<T> leaf = entry.node.leaf;
+				queue.add(new NearestEntry<T>(Math.sqrt((leaf.x - x) * (leaf.x - x) + (leaf.y - y) * (leaf.y - y)), null, leaf));
+			}
+		}
+		return result;
+	}
+
+	private static <T> void addNearestEntry(final PriorityQueue<NearestEntry<T>> queue, final Node<T> child, final double x, final double y) {
+		queue.add(new NearestEntry<T>(child.bounds.calcDistance(x, y), child, null));
+	}
+
 	/**
 	 * Gets all objects within a certain distance around x/y
 	 *
@@ -567,6 +610,23 @@ public class QuadTree<T> implements Serializable {
 		
 	}
 
+	private static final class NearestEntry<T> implements Comparable<NearestEntry<T>> {
+		final double distance;
+		final Node<T> node;
+		final Leaf<T> leaf;
+
+		NearestEntry(final double distance, final Node<T> node, final Leaf<T> leaf) {
+			this.distance = distance;
+			this.node = node;
+			this.leaf = leaf;
+		}
+
+		@Override
+		public int compareTo(final NearestEntry<T> other) {
+			return Double.compare(this.distance, other.distance);
+		}
+	}
+
 	protected static class Leaf<T> implements Serializable {
 		private static final long serialVersionUID = -6527830222532634476L;
 		final public double x;
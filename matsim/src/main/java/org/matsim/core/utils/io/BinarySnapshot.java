@@ -0,0 +1,285 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.utils.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A versioned binary file format for data that is read often but seldom changes, e.g.
+ * networks or transit schedules. Such a snapshot is written once from the data
+ * loaded from the xml files and can then be loaded by memory-mapping the file,
+ * without parsing any text.
+ * <p></p>
+ * A snapshot starts with the magic bytes <code>MATSIMBS</code>, the type of its content and
+ * the version of the format. The content itself is a sequence of numbers, booleans and
+ * strings in big-endian byte order, defined by the classes reading and writing it.
+ * Every distinct string is only stored once and afterwards referenced by its
+ * index, so ids used several times cost only four bytes.
+ * <p></p>
+ * {@link MatsimFileTypeGuesser} recognizes snapshots by their magic bytes.
+ */
+public final class BinarySnapshot {
+
+	public static final int NETWORK = 1;
+	public static final int TRANSIT_SCHEDULE = 2;
+	public static final int OBJECT_ATTRIBUTES = 3;
+	public static final int DENSE_MATRIX = 4;
+
+	/** the version of the format, incremented whenever the content of a snapshot changes */
+	public static final int VERSION = 1;
+
+	private static final byte[] MAGIC = "MATSIMBS".getBytes(Charset.forName("US-ASCII"));
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int NULL_STRING = -1;
+	private static final int NEW_STRING = -2;
+
+	private BinarySnapshot() {
+	}
+
+	/**
+	 * @return the type of the content of the snapshot, <code>-1</code> if the file
+	 * 		does not exist or is no snapshot
+	 */
+	public static int getContentType(final String filename) {
+		File file = new File(filename);
+		if (!file.isFile() || file.length() < MAGIC.length + 8) {
+			return -1;
+		}
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(MAGIC, magic)) {
+				return -1;
+			}
+			return in.readInt();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes a snapshot, the strings are kept in memory to refer to them when they are used again.
+	 */
+	public static final class Output implements Closeable {
+
+		private final DataOutputStream out;
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		public Output(final String filename, final int contentType) throws UncheckedIOException {
+			try {
+				this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+				this.out.write(MAGIC);
+				this.out.writeInt(contentType);
+				this.out.writeInt(VERSION);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		public void writeInt(final int value) throws IOException {
+			this.out.writeInt(value);
+		}
+
+		public void writeLong(final long value) throws IOException {
+			this.out.writeLong(value);
+		}
+
+		public void writeDouble(final double value) throws IOException {
+			this.out.writeDouble(value);
+		}
+
+		public void writeBoolean(final boolean value) throws IOException {
+			this.out.writeByte(value ? 1 : 0);
+		}
+
+		/**
+		 * Writes a block of floats, converted in chunks instead of one by one.
+		 */
+		public void writeFloats(final float[] values, final int offset, final int length) throws IOException {
+			ByteBuffer bytes = ByteBuffer.allocate(1 << 16);
+			FloatBuffer floats = bytes.asFloatBuffer();
+			int position = offset;
+			int end = offset + length;
+			while (position < end) {
+				int count = Math.min(floats.capacity(), end - position);
+				floats.clear();
+				floats.put(values, position, count);
+				this.out.write(bytes.array(), 0, count * 4);
+				position += count;
+			}
+		}
+
+		/**
+		 * @param value may be <code>null</code>
+		 */
+		public void writeString(final String value) throws IOException {
+			if (value == null) {
+				this.out.writeInt(NULL_STRING);
+				return;
+			}
+			Integer index = this.strings.get(value);
+			if (index != null) {
+				this.out.writeInt(index);
+				return;
+			}
+			this.strings.put(value, this.strings.size());
+			byte[] bytes = value.getBytes(UTF8);
+			this.out.writeInt(NEW_STRING);
+			this.out.writeInt(bytes.length);
+			this.out.write(bytes);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.out.close();
+		}
+	}
+
+	/**
+	 * Reads a snapshot from a memory-mapped file.
+	 */
+	public static final class Input implements Closeable {
+
+		private final RandomAccessFile file;
+		private final MappedByteBuffer buffer;
+		private final List<String> strings = new ArrayList<>();
+
+		/**
+		 * @throws UncheckedIOException if the file is no snapshot of the expected type
+		 * 		or has an unsupported version
+		 */
+		public Input(final String filename, final int expectedContentType) throws UncheckedIOException {
+			int contentType = getContentType(filename);
+			if (contentType != expectedContentType) {
+				throw new UncheckedIOException(filename + " is no binary snapshot of type " + expectedContentType + " (found " + contentType + ")");
+			}
+			try {
+				this.file = new RandomAccessFile(filename, "r");
+				if (this.file.length() > Integer.MAX_VALUE) {
+					this.file.close();
+					throw new UncheckedIOException("Binary snapshots larger than 2GB are not supported: " + filename);
+				}
+				this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, this.file.length());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.buffer.position(MAGIC.length + 4);
+			int version = this.buffer.getInt();
+			if (version != VERSION) {
+				throw new UncheckedIOException("Unsupported version " + version + " of binary snapshot " + filename + ", expected " + VERSION
+						+ ". Please write the snapshot again.");
+			}
+		}
+
+		public int readInt() {
+			try {
+				return this.buffer.getInt();
+			} catch (BufferUnderflowException e) {
+				throw new UncheckedIOException("Unexpected end of binary snapshot.", e);
+			}
+		}
+
+		public long readLong() {
+			try {
+				return this.buffer.getLong();
+			} catch (BufferUnderflowException e) {
+				throw new UncheckedIOException("Unexpected end of binary snapshot.", e);
+			}
+		}
+
+		public double readDouble() {
+			try {
+				return this.buffer.getDouble();
+			} catch (BufferUnderflowException e) {
+				throw new UncheckedIOException("Unexpected end of binary snapshot.", e);
+			}
+		}
+
+		/**
+		 * Reads a block of floats written by {@link Output#writeFloats(float[], int, int)}
+		 * directly from the mapped file.
+		 */
+		public void readFloats(final float[] values, final int offset, final int length) {
+			if ((long) length * 4 > this.buffer.remaining()) {
+				throw new UncheckedIOException("Unexpected end of binary snapshot.");
+			}
+			this.buffer.asFloatBuffer().get(values, offset, length);
+			this.buffer.position(this.buffer.position() + length * 4);
+		}
+
+		public boolean readBoolean() {
+			try {
+				return this.buffer.get() != 0;
+			} catch (BufferUnderflowException e) {
+				throw new UncheckedIOException("Unexpected end of binary snapshot.", e);
+			}
+		}
+
+		/**
+		 * @return the string, the same instance for all uses of the same string
+		 */
+		public String readString() {
+			int index = readInt();
+			if (index == NULL_STRING) {
+				return null;
+			}
+			if (index == NEW_STRING) {
+				int length = readInt();
+				if (length < 0 || length > this.buffer.remaining()) {
+					throw new UncheckedIOException("Invalid string length " + length + " in binary snapshot.");
+				}
+				byte[] bytes = new byte[length];
+				this.buffer.get(bytes);
+				String value = new String(bytes, UTF8);
+				this.strings.add(value);
+				return value;
+			}
+			if (index < 0 || index >= this.strings.size()) {
+				throw new UncheckedIOException("Invalid string reference " + index + " in binary snapshot.");
+			}
+			return this.strings.get(index);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.file.close();
+		}
+	}
+
+}
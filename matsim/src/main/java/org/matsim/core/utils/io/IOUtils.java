@@ -532,7 +532,7 @@ public class IOUtils {
 					inputStream = new FileInputStream(filename);
 				}
 			} else if (new File(filename + GZ).exists()) {
-				inputStream = new GZIPInputStream(new FileInputStream(filename));
+				inputStream = new GZIPInputStream(new FileInputStream(filename + GZ));
 			} else {
 				// search in classpath
 				InputStream stream = IOUtils.class.getClassLoader().getResourceAsStream(filename);
@@ -58,10 +58,21 @@ public class MatsimFileTypeGuesser extends DefaultHandler {
 	private FileType fileType = null;
 	private String xmlPublicId = null;
 	private String xmlSystemId = null;
+	private boolean binarySnapshot = false;
 
 	public MatsimFileTypeGuesser(final String fileName) throws UncheckedIOException {
 		String name = fileName.toLowerCase(Locale.ROOT);
-		if (name.endsWith(".xml.gz") || name.endsWith(".xml")) {
+		int snapshotContentType = name.endsWith(".gz") ? -1 : BinarySnapshot.getContentType(fileName);
+		if (snapshotContentType != -1) {
+			this.binarySnapshot = true;
+			if (snapshotContentType == BinarySnapshot.NETWORK) {
+				this.fileType = FileType.Network;
+			} else if (snapshotContentType == BinarySnapshot.TRANSIT_SCHEDULE) {
+				this.fileType = FileType.TransitSchedule;
+			} else if (snapshotContentType == BinarySnapshot.OBJECT_ATTRIBUTES) {
+				this.fileType = FileType.ObjectAttributes;
+			}
+		} else if (name.endsWith(".xml.gz") || name.endsWith(".xml")) {
 			guessFileTypeXml(fileName);
 			// I think the following would also be useful for the API, but with which name?
 			String shortSystemId = null;
@@ -121,6 +132,13 @@ public class MatsimFileTypeGuesser extends DefaultHandler {
 		return this.xmlSystemId;
 	}
 
+	/**
+	 * @return <code>true</code> if the file is a {@link BinarySnapshot}, independent of its name.
+	 */
+	public boolean isBinarySnapshot() {
+		return this.binarySnapshot;
+	}
+
 	private void guessFileTypeXml(final String fileName) throws UncheckedIOException {
 		SAXParserFactory factory = SAXParserFactory.newInstance();
 		factory.setValidating(false);
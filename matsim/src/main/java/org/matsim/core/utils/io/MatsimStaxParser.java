@@ -0,0 +1,324 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.utils.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Drives a {@link MatsimXmlParser} with a StAX stream reader instead of a SAX parser, see
+ * {@link MatsimXmlParser.ParserBackend#STAX}. The parser gets the same callbacks as
+ * from SAX, so subclasses overriding e.g. <code>characters</code> work unchanged.
+ * <p></p>
+ * The document is not validated. The external DTD is still resolved with the
+ * parser's entity resolver, so the doctype is known and the default values of
+ * attributes are set. For documents with an XML schema, the doctype is taken from
+ * the <code>xsi:schemaLocation</code> of the root element.
+ */
+final class MatsimStaxParser {
+
+	private static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+	private static final Pattern SYSTEM_ID = Pattern.compile("(?:SYSTEM|PUBLIC\\s+[\"'][^\"']*[\"'])\\s+[\"']([^\"']*)[\"']");
+
+	private final MatsimXmlParser handler;
+	private final boolean namespaceAware;
+	private final String source;
+
+	MatsimStaxParser(final MatsimXmlParser handler, final boolean namespaceAware, final String source) {
+		this.handler = handler;
+		this.namespaceAware = namespaceAware;
+		this.source = source;
+	}
+
+	void parse(final InputSource input) throws UncheckedIOException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, this.namespaceAware);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
+		factory.setXMLResolver(new EntityResolverAdapter());
+
+		XMLStreamReader reader = null;
+		InputStream openedStream = null;
+		try {
+			if (input.getCharacterStream() != null) {
+				reader = factory.createXMLStreamReader(input.getSystemId(), input.getCharacterStream());
+			} else {
+				InputStream stream = input.getByteStream();
+				if (stream == null) {
+					openedStream = new URL(input.getSystemId()).openStream();
+					stream = openedStream;
+				}
+				reader = factory.createXMLStreamReader(input.getSystemId(), stream);
+			}
+			run(reader);
+		} catch (XMLStreamException e) {
+			throw new UncheckedIOException("XML-ERROR: " + this.source + getPosition(e.getLocation()) + ": " + e.getMessage(), e);
+		} catch (SAXException e) {
+			throw new UncheckedIOException(e);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			try {
+				if (reader != null) {
+					reader.close();
+				}
+				if (openedStream != null) {
+					openedStream.close();
+				}
+				if (input.getCharacterStream() != null) {
+					input.getCharacterStream().close();
+				}
+			} catch (XMLStreamException | IOException e) {
+				// the document is read completely or the parsing has failed anyway
+			}
+		}
+	}
+
+	private void run(final XMLStreamReader reader) throws XMLStreamException, SAXException {
+		StaxAttributes attributes = new StaxAttributes(reader, this.namespaceAware);
+		boolean isRootElement = true;
+		this.handler.startDocument();
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				if (isRootElement) {
+					isRootElement = false;
+					if (this.handler.getDoctype() == null) {
+						setDoctypeFromSchemaLocation(reader);
+					}
+				}
+				String uri = reader.getNamespaceURI();
+				String localName = reader.getLocalName();
+				this.handler.startElement(uri == null ? "" : uri, localName, getQName(reader.getPrefix(), localName), attributes);
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				uri = reader.getNamespaceURI();
+				localName = reader.getLocalName();
+				this.handler.endElement(uri == null ? "" : uri, localName, getQName(reader.getPrefix(), localName));
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+				this.handler.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				break;
+			case XMLStreamConstants.SPACE:
+				this.handler.ignorableWhitespace(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				break;
+			case XMLStreamConstants.DTD:
+				if (this.handler.getDoctype() == null) {
+					// only happens if the resolver was not asked for the external DTD
+					Matcher matcher = SYSTEM_ID.matcher(reader.getText());
+					if (matcher.find()) {
+						this.handler.setDoctype(getShortSystemId(matcher.group(1)));
+					}
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		this.handler.endDocument();
+	}
+
+	/**
+	 * A validating SAX parser resolves the schema of the document, which sets the doctype.
+	 */
+	private void setDoctypeFromSchemaLocation(final XMLStreamReader reader) {
+		String schemaLocation = reader.getAttributeValue(XSI_NAMESPACE, "schemaLocation");
+		if (schemaLocation == null) {
+			schemaLocation = reader.getAttributeValue(XSI_NAMESPACE, "noNamespaceSchemaLocation");
+		}
+		if (schemaLocation != null) {
+			String[] parts = schemaLocation.trim().split("\\s+");
+			this.handler.setDoctype(getShortSystemId(parts[parts.length - 1]));
+		}
+	}
+
+	private static String getShortSystemId(final String systemId) {
+		return systemId.substring(systemId.replace('\\', '/').lastIndexOf('/') + 1);
+	}
+
+	private static String getQName(final String prefix, final String localName) {
+		return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+	}
+
+	private static String getPosition(final Location location) {
+		return location == null ? "" : ", line " + location.getLineNumber() + ", column " + location.getColumnNumber();
+	}
+
+	/**
+	 * Resolves external entities, i.e. the DTD, with the entity resolver of the parser.
+	 */
+	private class EntityResolverAdapter implements XMLResolver {
+		@Override
+		public Object resolveEntity(final String publicId, final String systemId, final String baseUri, final String namespace) throws XMLStreamException {
+			InputSource source;
+			try {
+				source = MatsimStaxParser.this.handler.getEntityResolver().resolveEntity(publicId, systemId);
+			} catch (SAXException | IOException e) {
+				throw new XMLStreamException(e);
+			}
+			if (source == null) {
+				return null;
+			}
+			if (source.getByteStream() != null) {
+				return source.getByteStream();
+			}
+			try {
+				File file = new File(source.getSystemId());
+				if (file.isFile()) {
+					return new FileInputStream(file);
+				}
+				return new URL(source.getSystemId()).openStream();
+			} catch (IOException e) {
+				throw new XMLStreamException("Could not read " + source.getSystemId(), e);
+			}
+		}
+
+	}
+
+	/**
+	 * Presents the attributes of the current element of the stream reader as SAX
+	 * attributes. Names are compared directly with the names of the reader, so no
+	 * strings are created to look up an attribute.
+	 */
+	private static final class StaxAttributes implements Attributes {
+
+		private final XMLStreamReader reader;
+		private final boolean namespaceAware;
+
+		StaxAttributes(final XMLStreamReader reader, final boolean namespaceAware) {
+			this.reader = reader;
+			this.namespaceAware = namespaceAware;
+		}
+
+		@Override
+		public int getLength() {
+			return this.reader.getAttributeCount();
+		}
+
+		@Override
+		public String getURI(final int index) {
+			if (index < 0 || index >= this.reader.getAttributeCount()) {
+				return null;
+			}
+			String uri = this.reader.getAttributeNamespace(index);
+			return uri == null ? "" : uri;
+		}
+
+		@Override
+		public String getLocalName(final int index) {
+			if (index < 0 || index >= this.reader.getAttributeCount()) {
+				return null;
+			}
+			return this.reader.getAttributeLocalName(index);
+		}
+
+		@Override
+		public String getQName(final int index) {
+			if (index < 0 || index >= this.reader.getAttributeCount()) {
+				return null;
+			}
+			return MatsimStaxParser.getQName(this.reader.getAttributePrefix(index), this.reader.getAttributeLocalName(index));
+		}
+
+		@Override
+		public String getType(final int index) {
+			if (index < 0 || index >= this.reader.getAttributeCount()) {
+				return null;
+			}
+			return this.reader.getAttributeType(index);
+		}
+
+		@Override
+		public String getValue(final int index) {
+			if (index < 0 || index >= this.reader.getAttributeCount()) {
+				return null;
+			}
+			return this.reader.getAttributeValue(index);
+		}
+
+		@Override
+		public int getIndex(final String uri, final String localName) {
+			for (int i = 0, n = this.reader.getAttributeCount(); i < n; i++) {
+				if (localName.equals(this.reader.getAttributeLocalName(i)) && uri.equals(getURI(i))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public int getIndex(final String qName) {
+			int colon = qName.indexOf(':');
+			for (int i = 0, n = this.reader.getAttributeCount(); i < n; i++) {
+				String prefix = this.reader.getAttributePrefix(i);
+				boolean hasPrefix = prefix != null && !prefix.isEmpty();
+				if (colon < 0 || !this.namespaceAware) {
+					if (!hasPrefix && qName.equals(this.reader.getAttributeLocalName(i))) {
+						return i;
+					}
+				} else if (hasPrefix && qName.length() == prefix.length() + 1 + this.reader.getAttributeLocalName(i).length()
+						&& qName.startsWith(prefix) && qName.endsWith(this.reader.getAttributeLocalName(i))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public String getType(final String uri, final String localName) {
+			return getType(getIndex(uri, localName));
+		}
+
+		@Override
+		public String getType(final String qName) {
+			return getType(getIndex(qName));
+		}
+
+		@Override
+		public String getValue(final String uri, final String localName) {
+			return getValue(getIndex(uri, localName));
+		}
+
+		@Override
+		public String getValue(final String qName) {
+			return getValue(getIndex(qName));
+		}
+
+	}
+
+}
@@ -32,6 +32,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Locale;
 import java.util.Stack;
 
 /**
@@ -39,6 +41,10 @@ import java.util.Stack;
  * functionality required to parse xml-files. Extending classes have only to implement {@link #startTag} and {@link #endTag}
  * to implement a custom parser.<br/>
  * The parser implements a custom <code>EntityResolver</code> to look
+ * <p></p>
+ * By default, the files are read with a SAX parser. For large files that are known to be valid,
+ * the faster {@link ParserBackend#STAX} backend can be chosen with {@link #setParserBackend(ParserBackend)}
+ * or for all parsers with the system property <code>matsim.xmlParserBackend=stax</code>.
  *
  * @author mrieser
  */
@@ -46,11 +52,29 @@ public abstract class MatsimXmlParser extends DefaultHandler {
 
 	private static final Logger log = Logger.getLogger(MatsimXmlParser.class);
 
-	private final Stack<StringBuffer> buffers = new Stack<StringBuffer>();
+	private static final int MAX_REUSED_BUFFER_CAPACITY = 1 << 16;
+
+	/**
+	 * The parser reading the xml.
+	 */
+	public enum ParserBackend {
+		/** a SAX parser, which validates the document against its DTD or schema if validation is enabled */
+		SAX,
+		/**
+		 * a StAX stream reader, which never validates the document, see {@link MatsimStaxParser}. The doctype is
+		 * still recognized and the default values of attributes from the DTD are set.
+		 */
+		STAX
+	}
+
+	/** buffers for the content of the open tags, reused for all tags at the same depth */
+	private final ArrayList<StringBuilder> buffers = new ArrayList<StringBuilder>();
+	private int depth = 0;
 	private final Stack<String> context = new Stack<String>();
 
 	private boolean isValidating = true;
 	private boolean isNamespaceAware = true;
+	private ParserBackend parserBackend = ParserBackend.SAX;
 
 //	private String localDtdBase = "dtd";
 	private String localDtdBase = null;
@@ -79,6 +103,10 @@ public abstract class MatsimXmlParser extends DefaultHandler {
 		if (localDtd != null) {
 			this.preferLocalDtds = Boolean.parseBoolean(localDtd);
 		}
+		String backend = System.getProperty("matsim.xmlParserBackend");
+		if (backend != null) {
+			this.parserBackend = ParserBackend.valueOf(backend.toUpperCase(Locale.ROOT));
+		}
 	}
 
 	/**
@@ -111,6 +139,18 @@ public abstract class MatsimXmlParser extends DefaultHandler {
 		this.isValidating = validateXml;
 	}
 
+	/**
+	 * Sets the parser reading the xml, see {@link ParserBackend}. With {@link ParserBackend#STAX}, the
+	 * document is not validated, independent of {@link #setValidating(boolean)}.
+	 */
+	public void setParserBackend(final ParserBackend parserBackend) {
+		this.parserBackend = parserBackend;
+	}
+
+	public ParserBackend getParserBackend() {
+		return this.parserBackend;
+	}
+
 	/**
 	 * Specifies that the parser produced by this code will provide support for XML namespaces.
 	 * By default the value of this is set to <code>false</code>.
@@ -159,6 +199,11 @@ public abstract class MatsimXmlParser extends DefaultHandler {
 	}
 
 	protected void parse(final InputSource input) throws UncheckedIOException {
+		this.depth = 0;
+		if (this.parserBackend == ParserBackend.STAX) {
+			new MatsimStaxParser(this, this.isNamespaceAware, this.source).parse(input);
+			return;
+		}
 		try {
 			SAXParserFactory factory = SAXParserFactory.newInstance();
 			factory.setValidating(this.isValidating);
@@ -307,16 +352,25 @@ public abstract class MatsimXmlParser extends DefaultHandler {
 
 	@Override
 	public void characters(final char[] ch, final int start, final int length) throws SAXException {
-		StringBuffer buffer = this.buffers.peek();
-		if (buffer != null) {
-			buffer.append(ch, start, length);
+		if (this.depth > 0) {
+			this.buffers.get(this.depth - 1).append(ch, start, length);
 		}
 	}
 
 	@Override
 	public final void startElement(final String uri, final String localName, final String qName, Attributes atts) throws SAXException {
 		String tag = (uri.length() == 0) ? qName : localName;
-		this.buffers.push(new StringBuffer());
+		if (this.depth == this.buffers.size()) {
+			this.buffers.add(new StringBuilder());
+		} else {
+			StringBuilder buffer = this.buffers.get(this.depth);
+			if (buffer.capacity() > MAX_REUSED_BUFFER_CAPACITY) {
+				this.buffers.set(this.depth, new StringBuilder());
+			} else {
+				buffer.setLength(0);
+			}
+		}
+		this.depth++;
 		this.startTag(tag, atts, this.context);
 		this.context.push(tag);
 	}
@@ -325,8 +379,11 @@ public abstract class MatsimXmlParser extends DefaultHandler {
 	public void endElement(final String uri, final String localName, final String qName) throws SAXException {
 		String tag = (uri.length() == 0) ? qName : localName;
 		this.context.pop();
-		StringBuffer buffer = this.buffers.pop();
-		this.endTag(tag, buffer.toString(), this.context);
+		this.depth--;
+		StringBuilder buffer = this.buffers.get(this.depth);
+		// most tags have no content, so avoid creating a new empty string for each of them
+		String content = buffer.length() == 0 ? "" : buffer.toString();
+		this.endTag(tag, content, this.context);
 	}
 
 	/* implement ErrorHandler */
@@ -22,6 +22,7 @@ package org.matsim.core.utils.io;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -101,6 +102,7 @@ public class OsmNetworkReader implements MatsimSomeReader {
 	private boolean scaleMaxSpeed = false;
 
 	private boolean slowButLowMemory = false;
+	private int numberOfThreads = Runtime.getRuntime().availableProcessors();
 	
 	/*package*/ final List<OsmFilter> hierarchyLayers = new ArrayList<OsmFilter>();
 
@@ -143,7 +145,8 @@ public class OsmNetworkReader implements MatsimSomeReader {
 	}
 
 	/**
-	 * Parses the given osm file and creates a MATSim network from the data.
+	 * Parses the given osm file and creates a MATSim network from the data. Files
+	 * ending with <code>.pbf</code> are read in the binary PBF format, see {@link #setNumberOfThreads(int)}.
 	 *
 	 * @param osmFilename
 	 * @throws UncheckedIOException
@@ -174,6 +177,34 @@ public class OsmNetworkReader implements MatsimSomeReader {
 			log.warn("No hierarchy layer specified. Will convert every highway specified by setHighwayDefaults.");
 		}
 
+		long nodesRead;
+		long waysRead;
+		if (osmFilename != null && osmFilename.endsWith(".pbf")) {
+			long[] counts = parsePbf(osmFilename);
+			nodesRead = counts[0];
+			waysRead = counts[1];
+		} else {
+			OsmXmlParser parser = parseXml(osmFilename, stream);
+			nodesRead = parser.nodeCounter.getCounter();
+			waysRead = parser.wayCounter.getCounter();
+		}
+		convert();
+		log.info("= conversion statistics: ==========================");
+		log.info("osm: # nodes read:       " + nodesRead);
+		log.info("osm: # ways read:        " + waysRead);
+		log.info("MATSim: # nodes created: " + this.network.getNodes().size());
+		log.info("MATSim: # links created: " + this.network.getLinks().size());
+
+		if (this.unknownHighways.size() > 0) {
+			log.info("The following highway-types had no defaults set and were thus NOT converted:");
+			for (String highwayType : this.unknownHighways) {
+				log.info("- \"" + highwayType + "\"");
+			}
+		}
+		log.info("= end of conversion statistics ====================");
+	}
+
+	private OsmXmlParser parseXml(final String osmFilename, final InputStream stream) throws UncheckedIOException {
 		OsmXmlParser parser = null;
 		if (this.slowButLowMemory) {
 			log.info("parsing osm file first time: identifying nodes used by ways");
@@ -200,20 +231,110 @@ public class OsmNetworkReader implements MatsimSomeReader {
 				parser.parse(osmFilename);
 			}
 		}
-		convert();
-		log.info("= conversion statistics: ==========================");
-		log.info("osm: # nodes read:       " + parser.nodeCounter.getCounter());
-		log.info("osm: # ways read:        " + parser.wayCounter.getCounter());
-		log.info("MATSim: # nodes created: " + this.network.getNodes().size());
-		log.info("MATSim: # links created: " + this.network.getLinks().size());
+		return parser;
+	}
 
-		if (this.unknownHighways.size() > 0) {
-			log.info("The following highway-types had no defaults set and were thus NOT converted:");
-			for (String highwayType : this.unknownHighways) {
-				log.info("- \"" + highwayType + "\"");
+	/**
+	 * Reads a PBF file in two passes, so only the nodes used by highways are kept in memory:
+	 * the first pass collects the highways and the ids of their nodes, the second one
+	 * stores the coordinates of these nodes in arrays, in the order of the sorted ids.
+	 *
+	 * @return the number of nodes and ways read
+	 */
+	private long[] parsePbf(final String osmFilename) throws UncheckedIOException {
+		OsmPbfParser parser = new OsmPbfParser(this.numberOfThreads);
+		Set<String> tagKeys = new HashSet<>(Arrays.asList(ALL_TAGS));
+
+		log.info("parsing osm file first time: loading highways");
+		final long[][] nodeIds = new long[][] { new long[1024] };
+		final int[] numberOfNodeIds = new int[1];
+		parser.parse(osmFilename, null, new OsmPbfParser.WayHandler() {
+			@Override
+			public void handleWay(long id, long[] wayNodeIds, String[] tags) {
+				if (wayNodeIds.length == 0) {
+					return;
+				}
+				OsmWay way = new OsmWay(id);
+				for (int i = 0; i < tags.length; i += 2) {
+					way.tags.put(StringCache.get(tags[i]), StringCache.get(tags[i + 1]));
+				}
+				OsmHighwayDefaults defaults = OsmNetworkReader.this.highwayDefaults.get(way.tags.get(TAG_HIGHWAY));
+				if (defaults == null) {
+					return;
+				}
+				way.hierarchy = defaults.hierarchy;
+				if (numberOfNodeIds[0] + wayNodeIds.length > nodeIds[0].length) {
+					nodeIds[0] = Arrays.copyOf(nodeIds[0], Math.max(2 * nodeIds[0].length, numberOfNodeIds[0] + wayNodeIds.length));
+				}
+				for (long nodeId : wayNodeIds) {
+					way.nodes.add(nodeId);
+					nodeIds[0][numberOfNodeIds[0]++] = nodeId;
+				}
+				OsmNetworkReader.this.ways.put(id, way);
+			}
+		}, tagKeys);
+		final long[] usedNodeIds = sortUnique(nodeIds[0], numberOfNodeIds[0]);
+		nodeIds[0] = null;
+		log.info("found " + this.ways.size() + " highways with " + usedNodeIds.length + " nodes");
+
+		log.info("parsing osm file second time: loading coordinates of the highway nodes");
+		final double[] lons = new double[usedNodeIds.length];
+		final double[] lats = new double[usedNodeIds.length];
+		Arrays.fill(lons, Double.NaN);
+		parser.parse(osmFilename, new OsmPbfParser.NodeHandler() {
+			@Override
+			public void handleNode(long id, double lon, double lat) {
+				// every node is found at most once, so the threads never write to the same position
+				int index = Arrays.binarySearch(usedNodeIds, id);
+				if (index >= 0) {
+					lons[index] = lon;
+					lats[index] = lat;
+				}
+			}
+		}, null, tagKeys);
+
+		long nodesRead = 0;
+		for (int i = 0; i < usedNodeIds.length; i++) {
+			if (!Double.isNaN(lons[i])) {
+				this.nodes.put(usedNodeIds[i], new OsmNode(usedNodeIds[i], this.transform.transform(new Coord(lons[i], lats[i]))));
+				nodesRead++;
 			}
 		}
-		log.info("= end of conversion statistics ====================");
+		if (!this.hierarchyLayers.isEmpty()) {
+			// as in the xml parser, keep only the ways with at least one node in one of the layers
+			Iterator<OsmWay> it = this.ways.values().iterator();
+			while (it.hasNext()) {
+				OsmWay way = it.next();
+				if (!isInHierarchyLayer(way)) {
+					it.remove();
+				}
+			}
+		}
+		log.info("done loading data");
+		return new long[] { nodesRead, this.ways.size() };
+	}
+
+	private boolean isInHierarchyLayer(final OsmWay way) {
+		for (OsmFilter osmFilter : this.hierarchyLayers) {
+			for (Long nodeId : way.nodes) {
+				OsmNode node = this.nodes.get(nodeId);
+				if (node != null && osmFilter.coordInFilter(node.coord, way.hierarchy)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static long[] sortUnique(final long[] values, final int size) {
+		Arrays.sort(values, 0, size);
+		int unique = 0;
+		for (int i = 0; i < size; i++) {
+			if (unique == 0 || values[i] != values[unique - 1]) {
+				values[unique++] = values[i];
+			}
+		}
+		return Arrays.copyOf(values, unique);
 	}
 
 	/**
@@ -300,6 +421,19 @@ public class OsmNetworkReader implements MatsimSomeReader {
 	public void setMemoryOptimization(final boolean memoryEnabled) {
 		this.slowButLowMemory = memoryEnabled;
 	}
+
+	/**
+	 * Sets the number of threads decompressing and decoding the blocks of PBF files.
+	 * PBF files are always read with the memory optimization, as only the
+	 * nodes used by highways are kept in memory.
+	 *
+	 * Defaults to the number of available processors.
+	 *
+	 * @param numberOfThreads
+	 */
+	public void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = numberOfThreads;
+	}
 	
 	private void convert() {
 		if (this.network instanceof NetworkImpl) {
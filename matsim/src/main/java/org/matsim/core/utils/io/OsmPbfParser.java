@@ -0,0 +1,580 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.utils.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Streams the nodes and ways of an OSM file in the
+ * <a href="http://wiki.openstreetmap.org/wiki/PBF_Format">PBF format</a>.
+ * <p></p>
+ * The file consists of blobs of about 8000 entities each, which are read one after
+ * the other and decompressed and decoded by <code>numberOfThreads</code> threads.
+ * Nodes are passed to the {@link NodeHandler} by the decoding threads, ways
+ * are passed to the {@link WayHandler} by the calling thread in the order of
+ * the file. At most two blobs per thread are kept in memory at the same time.
+ * <p></p>
+ * The protocol buffer messages are decoded directly, as only a few fields of them
+ * are needed. Relations, the metadata of the entities and the tags of nodes are skipped.
+ *
+ * @see OsmNetworkReader
+ */
+final class OsmPbfParser {
+
+	private final static Logger log = Logger.getLogger(OsmPbfParser.class);
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int MAX_HEADER_SIZE = 64 * 1024;
+	private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+	/**
+	 * Receives the nodes of the file, possibly from several threads concurrently.
+	 */
+	interface NodeHandler {
+		/**
+		 * @param lon longitude in degrees (WGS84)
+		 * @param lat latitude in degrees (WGS84)
+		 */
+		void handleNode(long id, double lon, double lat);
+	}
+
+	/**
+	 * Receives the ways of the file in the order of the file.
+	 */
+	interface WayHandler {
+		/**
+		 * @param tags the keys and values of the tags with one of the requested keys, alternately
+		 */
+		void handleWay(long id, long[] nodeIds, String[] tags);
+	}
+
+	private final int numberOfThreads;
+
+	/**
+	 * @param numberOfThreads the number of threads decoding the blobs
+	 */
+	OsmPbfParser(final int numberOfThreads) {
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
+
+	/**
+	 * Reads the file once. Nodes are only decoded if <code>nodeHandler</code> is set, ways only
+	 * if <code>wayHandler</code> is set.
+	 *
+	 * @param tagKeys the keys of the tags passed on with the ways; ways without any of them are skipped
+	 */
+	void parse(final String filename, final NodeHandler nodeHandler, final WayHandler wayHandler, final Set<String> tagKeys) throws UncheckedIOException {
+		ExecutorService executor = Executors.newFixedThreadPool(this.numberOfThreads);
+		Deque<Future<List<Way>>> pending = new ArrayDeque<>();
+		long numberOfBlobs = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(IOUtils.getInputStream(filename), 1024 * 1024))) {
+			while (true) {
+				int headerSize;
+				try {
+					headerSize = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+					throw new UncheckedIOException("Invalid blob header size " + headerSize + " in " + filename);
+				}
+				BlobHeader header = BlobHeader.parse(readFully(in, headerSize));
+				if (header.dataSize < 0 || header.dataSize > MAX_BLOB_SIZE) {
+					throw new UncheckedIOException("Invalid blob size " + header.dataSize + " in " + filename);
+				}
+				final byte[] blob = readFully(in, header.dataSize);
+				if ("OSMHeader".equals(header.type)) {
+					checkHeaderBlock(decompress(blob));
+				} else if ("OSMData".equals(header.type)) {
+					numberOfBlobs++;
+					pending.add(executor.submit(new Callable<List<Way>>() {
+						@Override
+						public List<Way> call() throws Exception {
+							return decodePrimitiveBlock(decompress(blob), nodeHandler, wayHandler != null, tagKeys);
+						}
+					}));
+					while (pending.size() >= 2 * this.numberOfThreads) {
+						handleWays(pending.poll(), wayHandler);
+					}
+				}
+				// other blob types are unknown and ignored, as required by the format
+			}
+			while (!pending.isEmpty()) {
+				handleWays(pending.poll(), wayHandler);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			for (Future<List<Way>> future : pending) {
+				future.cancel(true);
+			}
+			executor.shutdown();
+		}
+		log.info("read " + numberOfBlobs + " data blobs from " + filename);
+	}
+
+	private static void handleWays(final Future<List<Way>> future, final WayHandler wayHandler) {
+		List<Way> ways;
+		try {
+			ways = future.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new UncheckedIOException(e.getCause());
+		}
+		if (wayHandler != null) {
+			for (Way way : ways) {
+				wayHandler.handleWay(way.id, way.nodeIds, way.tags);
+			}
+		}
+	}
+
+	private static byte[] readFully(final DataInputStream in, final int size) throws IOException {
+		byte[] bytes = new byte[size];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Blob: raw = 1, raw_size = 2, zlib_data = 3
+	 */
+	private static byte[] decompress(final byte[] blob) throws UncheckedIOException {
+		ProtobufInput in = new ProtobufInput(blob, 0, blob.length);
+		byte[] raw = null;
+		int rawSize = -1;
+		int zlibStart = -1;
+		int zlibLength = 0;
+		int tag;
+		while ((tag = in.readTag()) != 0) {
+			switch (tag) {
+			case (1 << 3) | ProtobufInput.LENGTH_DELIMITED:
+				int length = in.readLength();
+				raw = new byte[length];
+				System.arraycopy(blob, in.pos, raw, 0, length);
+				in.pos += length;
+				break;
+			case (2 << 3) | ProtobufInput.VARINT:
+				rawSize = (int) in.readVarint();
+				break;
+			case (3 << 3) | ProtobufInput.LENGTH_DELIMITED:
+				zlibLength = in.readLength();
+				zlibStart = in.pos;
+				in.pos += zlibLength;
+				break;
+			default:
+				in.skipField(tag);
+			}
+		}
+		if (raw != null) {
+			return raw;
+		}
+		if (zlibStart < 0 || rawSize < 0) {
+			throw new UncheckedIOException("Unsupported blob compression, only raw and zlib compressed data is supported.");
+		}
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(blob, zlibStart, zlibLength);
+			byte[] data = new byte[rawSize];
+			int size = 0;
+			while (size < rawSize && !inflater.finished()) {
+				int n = inflater.inflate(data, size, rawSize - size);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				size += n;
+			}
+			if (size != rawSize) {
+				throw new UncheckedIOException("Blob decompressed to " + size + " bytes instead of " + rawSize);
+			}
+			return data;
+		} catch (DataFormatException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * HeaderBlock: required_features = 4
+	 */
+	private static void checkHeaderBlock(final byte[] data) {
+		ProtobufInput in = new ProtobufInput(data, 0, data.length);
+		int tag;
+		while ((tag = in.readTag()) != 0) {
+			if (tag == ((4 << 3) | ProtobufInput.LENGTH_DELIMITED)) {
+				String feature = in.readString();
+				if (!"OsmSchema-V0.6".equals(feature) && !"DenseNodes".equals(feature)) {
+					throw new UncheckedIOException("The file requires the unsupported feature " + feature);
+				}
+			} else {
+				in.skipField(tag);
+			}
+		}
+	}
+
+	/**
+	 * PrimitiveBlock: stringtable = 1, primitivegroup = 2, granularity = 17,
+	 * lat_offset = 19, lon_offset = 20
+	 */
+	static List<Way> decodePrimitiveBlock(final byte[] data, final NodeHandler nodeHandler, final boolean decodeWays, final Set<String> tagKeys) {
+		ProtobufInput in = new ProtobufInput(data, 0, data.length);
+		String[] strings = null;
+		List<ProtobufInput> groups = new ArrayList<>();
+		long granularity = 100;
+		long latOffset = 0;
+		long lonOffset = 0;
+		int tag;
+		while ((tag = in.readTag()) != 0) {
+			switch (tag) {
+			case (1 << 3) | ProtobufInput.LENGTH_DELIMITED:
+				strings = decodeStringTable(in.readMessage());
+				break;
+			case (2 << 3) | ProtobufInput.LENGTH_DELIMITED:
+				groups.add(in.readMessage());
+				break;
+			case (17 << 3) | ProtobufInput.VARINT:
+				granularity = in.readVarint();
+				break;
+			case (19 << 3) | ProtobufInput.VARINT:
+				latOffset = in.readVarint();
+				break;
+			case (20 << 3) | ProtobufInput.VARINT:
+				lonOffset = in.readVarint();
+				break;
+			default:
+				in.skipField(tag);
+			}
+		}
+		if (strings == null) {
+			strings = new String[0];
+		}
+		List<Way> ways = decodeWays ? new ArrayList<Way>() : Collections.<Way>emptyList();
+		// PrimitiveGroup: nodes = 1, dense = 2, ways = 3
+		for (ProtobufInput group : groups) {
+			while ((tag = group.readTag()) != 0) {
+				if (tag == ((1 << 3) | ProtobufInput.LENGTH_DELIMITED) && nodeHandler != null) {
+					decodeNode(group.readMessage(), granularity, latOffset, lonOffset, nodeHandler);
+				} else if (tag == ((2 << 3) | ProtobufInput.LENGTH_DELIMITED) && nodeHandler != null) {
+					decodeDenseNodes(group.readMessage(), granularity, latOffset, lonOffset, nodeHandler);
+				} else if (tag == ((3 << 3) | ProtobufInput.LENGTH_DELIMITED) && decodeWays) {
+					Way way = decodeWay(group.readMessage(), strings, tagKeys);
+					if (way != null) {
+						ways.add(way);
+					}
+				} else {
+					group.skipField(tag);
+				}
+			}
+		}
+		return ways;
+	}
+
+	private static String[] decodeStringTable(final ProtobufInput in) {
+		List<String> strings = new ArrayList<>();
+		int tag;
+		while ((tag = in.readTag()) != 0) {
+			if (tag == ((1 << 3) | ProtobufInput.LENGTH_DELIMITED)) {
+				strings.add(in.readString());
+			} else {
+				in.skipField(tag);
+			}
+		}
+		return strings.toArray(new String[strings.size()]);
+	}
+
+	/**
+	 * Node: id = 1, lat = 8, lon = 9
+	 */
+	private static void decodeNode(final ProtobufInput in, final long granularity, final long latOffset, final long lonOffset,
+			final NodeHandler nodeHandler) {
+		long id = 0;
+		long lat = 0;
+		long lon = 0;
+		int tag;
+		while ((tag = in.readTag()) != 0) {
+			switch (tag) {
+			case (1 << 3) | ProtobufInput.VARINT:
+				id = in.readSignedVarint();
+				break;
+			case (8 << 3) | ProtobufInput.VARINT:
+				lat = in.readSignedVarint();
+				break;
+			case (9 << 3) | ProtobufInput.VARINT:
+				lon = in.readSignedVarint();
+				break;
+			default:
+				in.skipField(tag);
+			}
+		}
+		nodeHandler.handleNode(id, 1e-9 * (lonOffset + granularity * lon), 1e-9 * (latOffset + granularity * lat));
+	}
+
+	/**
+	 * DenseNodes: id = 1, lat = 8, lon = 9, all packed and delta coded
+	 */
+	private static void decodeDenseNodes(final ProtobufInput in, final long granularity, final long latOffset, final long lonOffset,
+			final NodeHandler nodeHandler) {
+		ProtobufInput ids = null;
+		ProtobufInput lats = null;
+		ProtobufInput lons = null;
+		int tag;
+		while ((tag = in.readTag()) != 0) {
+			switch (tag) {
+			case (1 << 3) | ProtobufInput.LENGTH_DELIMITED:
+				ids = in.readMessage();
+				break;
+			case (8 << 3) | ProtobufInput.LENGTH_DELIMITED:
+				lats = in.readMessage();
+				break;
+			case (9 << 3) | ProtobufInput.LENGTH_DELIMITED:
+				lons = in.readMessage();
+				break;
+			default:
+				in.skipField(tag);
+			}
+		}
+		if (ids == null || lats == null || lons == null) {
+			return;
+		}
+		long id = 0;
+		long lat = 0;
+		long lon = 0;
+		while (ids.hasMore()) {
+			id += ids.readSignedVarint();
+			lat += lats.readSignedVarint();
+			lon += lons.readSignedVarint();
+			nodeHandler.handleNode(id, 1e-9 * (lonOffset + granularity * lon), 1e-9 * (latOffset + granularity * lat));
+		}
+	}
+
+	/**
+	 * Way: id = 1, keys = 2, vals = 3, refs = 8 (delta coded); keys, vals and refs are packed
+	 */
+	private static Way decodeWay(final ProtobufInput in, final String[] strings, final Set<String> tagKeys) {
+		long id = 0;
+		ProtobufInput keys = null;
+		ProtobufInput values = null;
+		ProtobufInput refs = null;
+		int tag;
+		while ((tag = in.readTag()) != 0) {
+			switch (tag) {
+			case (1 << 3) | ProtobufInput.VARINT:
+				id = in.readVarint();
+				break;
+			case (2 << 3) | ProtobufInput.LENGTH_DELIMITED:
+				keys = in.readMessage();
+				break;
+			case (3 << 3) | ProtobufInput.LENGTH_DELIMITED:
+				values = in.readMessage();
+				break;
+			case (8 << 3) | ProtobufInput.LENGTH_DELIMITED:
+				refs = in.readMessage();
+				break;
+			default:
+				in.skipField(tag);
+			}
+		}
+		if (keys == null || values == null || refs == null) {
+			return null;
+		}
+		List<String> tags = null;
+		while (keys.hasMore()) {
+			String key = strings[(int) keys.readVarint()];
+			String value = strings[(int) values.readVarint()];
+			if (tagKeys.contains(key)) {
+				if (tags == null) {
+					tags = new ArrayList<>(4);
+				}
+				tags.add(key);
+				tags.add(value);
+			}
+		}
+		if (tags == null) {
+			return null;
+		}
+		long[] nodeIds = new long[8];
+		int numberOfNodes = 0;
+		long ref = 0;
+		while (refs.hasMore()) {
+			ref += refs.readSignedVarint();
+			if (numberOfNodes == nodeIds.length) {
+				nodeIds = Arrays.copyOf(nodeIds, 2 * numberOfNodes);
+			}
+			nodeIds[numberOfNodes++] = ref;
+		}
+		return new Way(id, Arrays.copyOf(nodeIds, numberOfNodes), tags.toArray(new String[tags.size()]));
+	}
+
+	static final class Way {
+		final long id;
+		final long[] nodeIds;
+		final String[] tags;
+
+		Way(final long id, final long[] nodeIds, final String[] tags) {
+			this.id = id;
+			this.nodeIds = nodeIds;
+			this.tags = tags;
+		}
+	}
+
+	/**
+	 * BlobHeader: type = 1, datasize = 3
+	 */
+	private static final class BlobHeader {
+		String type = null;
+		int dataSize = -1;
+
+		static BlobHeader parse(final byte[] data) {
+			BlobHeader header = new BlobHeader();
+			ProtobufInput in = new ProtobufInput(data, 0, data.length);
+			int tag;
+			while ((tag = in.readTag()) != 0) {
+				if (tag == ((1 << 3) | ProtobufInput.LENGTH_DELIMITED)) {
+					header.type = in.readString();
+				} else if (tag == ((3 << 3) | ProtobufInput.VARINT)) {
+					header.dataSize = (int) in.readVarint();
+				} else {
+					in.skipField(tag);
+				}
+			}
+			return header;
+		}
+	}
+
+	/**
+	 * Reads the fields of a protocol buffer message from a part of a byte array.
+	 */
+	static final class ProtobufInput {
+		static final int VARINT = 0;
+		static final int FIXED64 = 1;
+		static final int LENGTH_DELIMITED = 2;
+		static final int FIXED32 = 5;
+
+		private final byte[] buffer;
+		int pos;
+		private final int limit;
+
+		ProtobufInput(final byte[] buffer, final int offset, final int length) {
+			this.buffer = buffer;
+			this.pos = offset;
+			this.limit = offset + length;
+		}
+
+		boolean hasMore() {
+			return this.pos < this.limit;
+		}
+
+		/**
+		 * @return the field number and wire type of the next field, 0 at the end of the message
+		 */
+		int readTag() {
+			return hasMore() ? (int) readVarint() : 0;
+		}
+
+		long readVarint() {
+			long result = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				if (this.pos >= this.limit) {
+					throw new UncheckedIOException("Truncated protocol buffer message.");
+				}
+				byte b = this.buffer[this.pos++];
+				result |= (long) (b & 0x7f) << shift;
+				if (b >= 0) {
+					return result;
+				}
+			}
+			throw new UncheckedIOException("Malformed varint in protocol buffer message.");
+		}
+
+		/** zig-zag decoding of sint32/sint64 */
+		long readSignedVarint() {
+			long n = readVarint();
+			return (n >>> 1) ^ -(n & 1);
+		}
+
+		int readLength() {
+			long length = readVarint();
+			if (length < 0 || length > this.limit - this.pos) {
+				throw new UncheckedIOException("Truncated protocol buffer message.");
+			}
+			return (int) length;
+		}
+
+		ProtobufInput readMessage() {
+			int length = readLength();
+			ProtobufInput message = new ProtobufInput(this.buffer, this.pos, length);
+			this.pos += length;
+			return message;
+		}
+
+		String readString() {
+			int length = readLength();
+			String s = new String(this.buffer, this.pos, length, UTF8);
+			this.pos += length;
+			return s;
+		}
+
+		void skipField(final int tag) {
+			switch (tag & 7) {
+			case VARINT:
+				readVarint();
+				break;
+			case FIXED64:
+				this.pos += 8;
+				break;
+			case LENGTH_DELIMITED:
+				int length = readLength();
+				this.pos += length;
+				break;
+			case FIXED32:
+				this.pos += 4;
+				break;
+			default:
+				throw new UncheckedIOException("Unsupported wire type " + (tag & 7) + " in protocol buffer message.");
+			}
+		}
+	}
+
+}
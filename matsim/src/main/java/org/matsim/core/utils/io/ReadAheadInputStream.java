@@ -0,0 +1,193 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.utils.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads another stream on a separate thread into a bounded queue of chunks, so
+ * that e.g. the decompression of a gzip-compressed file runs in parallel to the
+ * processing of the data already read.
+ * <p></p>
+ * The stream must be closed to stop the reading thread if not all data is read.
+ */
+public final class ReadAheadInputStream extends InputStream {
+
+	private static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+	private static final int DEFAULT_NUMBER_OF_CHUNKS = 16;
+
+	/** marks the end of the stream in the queue */
+	private static final byte[] END = new byte[0];
+
+	private final InputStream delegate;
+	private final BlockingQueue<byte[]> chunks;
+	private final Thread thread;
+
+	private volatile boolean closed = false;
+	private volatile Throwable exception = null;
+
+	private byte[] chunk = null;
+	private int position = 0;
+	private boolean finished = false;
+
+	public ReadAheadInputStream(final InputStream delegate) {
+		this(delegate, DEFAULT_CHUNK_SIZE, DEFAULT_NUMBER_OF_CHUNKS);
+	}
+
+	/**
+	 * @param chunkSize the number of bytes read from <code>delegate</code> at once
+	 * @param numberOfChunks the number of chunks read in advance
+	 */
+	public ReadAheadInputStream(final InputStream delegate, final int chunkSize, final int numberOfChunks) {
+		this.delegate = delegate;
+		this.chunks = new ArrayBlockingQueue<>(numberOfChunks);
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readAhead(chunkSize);
+			}
+		}, "ReadAhead");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	private void readAhead(final int chunkSize) {
+		try {
+			while (!this.closed) {
+				byte[] buffer = new byte[chunkSize];
+				int length = 0;
+				int n;
+				while (length < chunkSize && (n = this.delegate.read(buffer, length, chunkSize - length)) >= 0) {
+					length += n;
+				}
+				if (length > 0) {
+					put(length == chunkSize ? buffer : Arrays.copyOf(buffer, length));
+				}
+				if (length < chunkSize) {
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			// the stream is closed
+		} catch (Throwable e) {
+			// also unchecked exceptions and errors, so that the reader does not take the data for complete
+			this.exception = e;
+		} finally {
+			try {
+				put(END);
+			} catch (InterruptedException e) {
+				// the stream is closed
+			}
+		}
+	}
+
+	private void put(final byte[] buffer) throws InterruptedException {
+		while (!this.chunks.offer(buffer, 100, TimeUnit.MILLISECONDS)) {
+			if (this.closed) {
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	/**
+	 * @return <code>false</code> at the end of the stream
+	 */
+	private boolean nextChunk() throws IOException {
+		if (this.finished) {
+			return false;
+		}
+		while (this.chunk == null || this.position == this.chunk.length) {
+			try {
+				this.chunk = this.chunks.take();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			this.position = 0;
+			if (this.chunk == END) {
+				this.finished = true;
+				if (this.exception instanceof IOException) {
+					throw (IOException) this.exception;
+				}
+				if (this.exception != null) {
+					throw new IOException(this.exception);
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (this.chunk == null || this.position == this.chunk.length) {
+			if (!nextChunk()) {
+				return -1;
+			}
+		}
+		return this.chunk[this.position++] & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (this.chunk == null || this.position == this.chunk.length) {
+			if (!nextChunk()) {
+				return -1;
+			}
+		}
+		int n = Math.min(len, this.chunk.length - this.position);
+		System.arraycopy(this.chunk, this.position, b, off, n);
+		this.position += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return this.chunk == null ? 0 : this.chunk.length - this.position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.closed = true;
+		this.chunks.clear();
+		// the reading thread stops within a short time, so wait for it even if interrupted
+		boolean interrupted = false;
+		while (this.thread.isAlive()) {
+			try {
+				this.thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		this.delegate.close();
+	}
+
+}
@@ -0,0 +1,461 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.matrices;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A square origin-destination matrix storing one float for every pair of zones,
+ * e.g. for skims or demand matrices with thousands of zones. The values are kept
+ * row by row in a single array, the zones are addressed either by their index
+ * or by their id.
+ * <p></p>
+ * Element-wise operations are split by rows and run in parallel for large
+ * matrices. The matrix can be converted from and to the sparse {@link Matrix},
+ * and thus be read and written in the <code>matrices_v1.dtd</code> format, or be
+ * stored in a compact binary file with {@link DenseMatrixWriter} and
+ * {@link DenseMatrixReader}.
+ * <p></p>
+ * The matrix is not thread-safe, apart from its own parallel operations.
+ */
+public final class DenseMatrix {
+
+	/**
+	 * @see DenseMatrix#transform(ElementOperation)
+	 */
+	public interface ElementOperation {
+		float apply(int fromIndex, int toIndex, float value);
+	}
+
+	/**
+	 * @see DenseMatrix#combine(DenseMatrix, ElementCombination)
+	 */
+	public interface ElementCombination {
+		float combine(float value, float otherValue);
+	}
+
+	/** smaller matrices are always processed by the calling thread */
+	private static final int MIN_PARALLEL_SIZE = 1 << 16;
+
+	private final String id;
+	private String desc = null;
+
+	private final List<String> zoneIds;
+	private final Map<String, Integer> zoneIndices;
+	private final int zoneCount;
+	private final float[] values;
+
+	private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Creates a matrix with all values set to 0.
+	 *
+	 * @param zoneIds the ids of the zones in the order of their indices
+	 */
+	public DenseMatrix(final String id, final List<String> zoneIds) {
+		if (id == null) {
+			throw new NullPointerException("id must not be null");
+		}
+		this.id = id;
+		this.zoneIds = Collections.unmodifiableList(new ArrayList<>(zoneIds));
+		this.zoneCount = this.zoneIds.size();
+		this.zoneIndices = new HashMap<>((int) (this.zoneCount / 0.75) + 1);
+		for (int i = 0; i < this.zoneCount; i++) {
+			String zoneId = this.zoneIds.get(i);
+			if (zoneId == null) {
+				throw new NullPointerException("zone ids must not be null");
+			}
+			if (this.zoneIndices.put(zoneId, i) != null) {
+				throw new IllegalArgumentException("zone id " + zoneId + " is not unique.");
+			}
+		}
+		if ((long) this.zoneCount * this.zoneCount > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Too many zones for a dense matrix: " + this.zoneCount);
+		}
+		this.values = new float[this.zoneCount * this.zoneCount];
+	}
+
+	/**
+	 * Converts a sparse matrix. The zones are all from and to locations of the
+	 * matrix, ordered by their id.
+	 *
+	 * @param missingValue the value of all pairs of zones without an entry
+	 */
+	public static DenseMatrix createFromMatrix(final Matrix matrix, final float missingValue) {
+		TreeSet<String> zoneIds = new TreeSet<>(matrix.getFromLocations().keySet());
+		zoneIds.addAll(matrix.getToLocations().keySet());
+		DenseMatrix dense = new DenseMatrix(matrix.getId(), new ArrayList<>(zoneIds));
+		dense.setDesc(matrix.getDesc());
+		if (missingValue != 0) {
+			Arrays.fill(dense.values, missingValue);
+		}
+		for (List<Entry> entries : matrix.getFromLocations().values()) {
+			for (Entry e : entries) {
+				dense.set(e.getFromLocation(), e.getToLocation(), (float) e.getValue());
+			}
+		}
+		return dense;
+	}
+
+	/**
+	 * Creates a sparse copy of this matrix in <code>matrices</code>, e.g. to write it
+	 * with the {@link MatricesWriter}.
+	 *
+	 * @param missingValue pairs of zones with this value get no entry. Use
+	 * 		{@link Float#NaN} to convert all values apart from NaN.
+	 */
+	public Matrix toMatrix(final Matrices matrices, final float missingValue) {
+		Matrix matrix = matrices.createMatrix(this.id, this.desc);
+		int missingBits = Float.floatToIntBits(missingValue);
+		for (int from = 0; from < this.zoneCount; from++) {
+			int offset = from * this.zoneCount;
+			for (int to = 0; to < this.zoneCount; to++) {
+				float value = this.values[offset + to];
+				if (Float.floatToIntBits(value) != missingBits) {
+					matrix.createEntry(this.zoneIds.get(from), this.zoneIds.get(to), value);
+				}
+			}
+		}
+		return matrix;
+	}
+
+	public String getId() {
+		return this.id;
+	}
+
+	public String getDesc() {
+		return this.desc;
+	}
+
+	public void setDesc(final String desc) {
+		this.desc = desc;
+	}
+
+	/**
+	 * Sets the number of threads used by the element-wise operations, by default the
+	 * number of available processors.
+	 */
+	public void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
+
+	public int getZoneCount() {
+		return this.zoneCount;
+	}
+
+	/**
+	 * @return the ids of the zones in the order of their indices, not modifiable
+	 */
+	public List<String> getZoneIds() {
+		return this.zoneIds;
+	}
+
+	public String getZoneId(final int index) {
+		return this.zoneIds.get(index);
+	}
+
+	/**
+	 * @return the index of the zone, <code>-1</code> if the matrix contains no such zone
+	 */
+	public int getZoneIndex(final String zoneId) {
+		Integer index = this.zoneIndices.get(zoneId);
+		return index == null ? -1 : index;
+	}
+
+	public float get(final int fromIndex, final int toIndex) {
+		return this.values[getPosition(fromIndex, toIndex)];
+	}
+
+	public void set(final int fromIndex, final int toIndex, final float value) {
+		this.values[getPosition(fromIndex, toIndex)] = value;
+	}
+
+	public void add(final int fromIndex, final int toIndex, final float value) {
+		this.values[getPosition(fromIndex, toIndex)] += value;
+	}
+
+	public float get(final String fromZoneId, final String toZoneId) {
+		return this.values[getPosition(fromZoneId, toZoneId)];
+	}
+
+	public void set(final String fromZoneId, final String toZoneId, final float value) {
+		this.values[getPosition(fromZoneId, toZoneId)] = value;
+	}
+
+	public void add(final String fromZoneId, final String toZoneId, final float value) {
+		this.values[getPosition(fromZoneId, toZoneId)] += value;
+	}
+
+	/**
+	 * Copies the values from the given zone to all zones into <code>row</code>.
+	 *
+	 * @return <code>row</code>, or a new array if it is <code>null</code> or too small
+	 */
+	public float[] getRow(final int fromIndex, final float[] row) {
+		float[] result = row == null || row.length < this.zoneCount ? new float[this.zoneCount] : row;
+		System.arraycopy(this.values, getPosition(fromIndex, 0), result, 0, this.zoneCount);
+		return result;
+	}
+
+	public void fill(final float value) {
+		Arrays.fill(this.values, value);
+	}
+
+	/**
+	 * Replaces every value by the result of <code>operation</code>. Large matrices are
+	 * processed in parallel, so the operation must not depend on the order of the
+	 * elements.
+	 */
+	public void transform(final ElementOperation operation) {
+		forEachRowBlock(new RowBlockTask() {
+			@Override
+			public void run(int block, int fromRow, int toRow) {
+				for (int from = fromRow; from < toRow; from++) {
+					int offset = from * DenseMatrix.this.zoneCount;
+					for (int to = 0; to < DenseMatrix.this.zoneCount; to++) {
+						DenseMatrix.this.values[offset + to] = operation.apply(from, to, DenseMatrix.this.values[offset + to]);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Replaces every value by its combination with the value of the same pair of zones
+	 * in <code>other</code>, which must have the same zones in the same order.
+	 */
+	public void combine(final DenseMatrix other, final ElementCombination combination) {
+		if (other.zoneCount != this.zoneCount || !other.zoneIds.equals(this.zoneIds)) {
+			throw new IllegalArgumentException("Matrix " + other.id + " has other zones than matrix " + this.id + ".");
+		}
+		final float[] otherValues = other.values;
+		forEachRowBlock(new RowBlockTask() {
+			@Override
+			public void run(int block, int fromRow, int toRow) {
+				int end = toRow * DenseMatrix.this.zoneCount;
+				for (int i = fromRow * DenseMatrix.this.zoneCount; i < end; i++) {
+					DenseMatrix.this.values[i] = combination.combine(DenseMatrix.this.values[i], otherValues[i]);
+				}
+			}
+		});
+	}
+
+	public void scale(final float factor) {
+		forEachRowBlock(new RowBlockTask() {
+			@Override
+			public void run(int block, int fromRow, int toRow) {
+				int end = toRow * DenseMatrix.this.zoneCount;
+				for (int i = fromRow * DenseMatrix.this.zoneCount; i < end; i++) {
+					DenseMatrix.this.values[i] *= factor;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Adds the values of <code>other</code>, see {@link #combine(DenseMatrix, ElementCombination)}.
+	 */
+	public void add(final DenseMatrix other) {
+		combine(other, new ElementCombination() {
+			@Override
+			public float combine(float value, float otherValue) {
+				return value + otherValue;
+			}
+		});
+	}
+
+	/**
+	 * Multiplies every value with the value of the same pair of zones in <code>other</code>,
+	 * see {@link #combine(DenseMatrix, ElementCombination)}.
+	 */
+	public void multiplyElements(final DenseMatrix other) {
+		combine(other, new ElementCombination() {
+			@Override
+			public float combine(float value, float otherValue) {
+				return value * otherValue;
+			}
+		});
+	}
+
+	/**
+	 * @return the sum of all values, accumulated in double precision
+	 */
+	public double getSum() {
+		final double[] sums = new double[getNumberOfBlocks()];
+		forEachRowBlock(new RowBlockTask() {
+			@Override
+			public void run(int block, int fromRow, int toRow) {
+				double sum = 0;
+				int end = toRow * DenseMatrix.this.zoneCount;
+				for (int i = fromRow * DenseMatrix.this.zoneCount; i < end; i++) {
+					sum += DenseMatrix.this.values[i];
+				}
+				sums[block] = sum;
+			}
+		});
+		double sum = 0;
+		for (double s : sums) {
+			sum += s;
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the sums of the values from every zone, i.e. the productions in a demand matrix
+	 */
+	public double[] getRowSums() {
+		final double[] sums = new double[this.zoneCount];
+		forEachRowBlock(new RowBlockTask() {
+			@Override
+			public void run(int block, int fromRow, int toRow) {
+				for (int from = fromRow; from < toRow; from++) {
+					double sum = 0;
+					int offset = from * DenseMatrix.this.zoneCount;
+					for (int to = 0; to < DenseMatrix.this.zoneCount; to++) {
+						sum += DenseMatrix.this.values[offset + to];
+					}
+					sums[from] = sum;
+				}
+			}
+		});
+		return sums;
+	}
+
+	/**
+	 * @return the sums of the values to every zone, i.e. the attractions in a demand matrix
+	 */
+	public double[] getColumnSums() {
+		final double[][] blockSums = new double[getNumberOfBlocks()][];
+		forEachRowBlock(new RowBlockTask() {
+			@Override
+			public void run(int block, int fromRow, int toRow) {
+				double[] sums = new double[DenseMatrix.this.zoneCount];
+				for (int from = fromRow; from < toRow; from++) {
+					int offset = from * DenseMatrix.this.zoneCount;
+					for (int to = 0; to < DenseMatrix.this.zoneCount; to++) {
+						sums[to] += DenseMatrix.this.values[offset + to];
+					}
+				}
+				blockSums[block] = sums;
+			}
+		});
+		double[] sums = blockSums[0];
+		for (int block = 1; block < blockSums.length; block++) {
+			for (int to = 0; to < this.zoneCount; to++) {
+				sums[to] += blockSums[block][to];
+			}
+		}
+		return sums;
+	}
+
+	/**
+	 * @return the values row by row, shared with {@link DenseMatrixWriter} and {@link DenseMatrixReader}
+	 */
+	float[] getValues() {
+		return this.values;
+	}
+
+	private int getPosition(final int fromIndex, final int toIndex) {
+		if (fromIndex < 0 || fromIndex >= this.zoneCount || toIndex < 0 || toIndex >= this.zoneCount) {
+			throw new IndexOutOfBoundsException("[from=" + fromIndex + ",to=" + toIndex + "] not in matrix " + this.id + " with " + this.zoneCount + " zones.");
+		}
+		return fromIndex * this.zoneCount + toIndex;
+	}
+
+	private int getPosition(final String fromZoneId, final String toZoneId) {
+		Integer from = this.zoneIndices.get(fromZoneId);
+		if (from == null) {
+			throw new IllegalArgumentException("zone " + fromZoneId + " is not in matrix " + this.id + ".");
+		}
+		Integer to = this.zoneIndices.get(toZoneId);
+		if (to == null) {
+			throw new IllegalArgumentException("zone " + toZoneId + " is not in matrix " + this.id + ".");
+		}
+		return from * this.zoneCount + to;
+	}
+
+	private interface RowBlockTask {
+		void run(int block, int fromRow, int toRow);
+	}
+
+	private int getNumberOfBlocks() {
+		if ((long) this.zoneCount * this.zoneCount < MIN_PARALLEL_SIZE) {
+			return 1;
+		}
+		return Math.max(1, Math.min(this.numberOfThreads, this.zoneCount));
+	}
+
+	/**
+	 * Splits the rows into one block per thread and waits until all blocks are processed.
+	 */
+	private void forEachRowBlock(final RowBlockTask task) {
+		final int blocks = getNumberOfBlocks();
+		if (blocks == 1) {
+			task.run(0, 0, this.zoneCount);
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(blocks);
+		try {
+			List<Future<?>> futures = new ArrayList<>(blocks);
+			for (int b = 0; b < blocks; b++) {
+				final int block = b;
+				final int fromRow = (int) ((long) this.zoneCount * b / blocks);
+				final int toRow = (int) ((long) this.zoneCount * (b + 1) / blocks);
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						task.run(block, fromRow, toRow);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "[id=" + this.id + "]" +
+				"[desc=" + this.desc + "]" +
+				"[nof_zones=" + this.zoneCount + "]";
+	}
+
+}
@@ -0,0 +1,60 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.matrices;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.matsim.core.utils.io.BinarySnapshot;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Reads a {@link DenseMatrix} written by the {@link DenseMatrixWriter}.
+ */
+public class DenseMatrixReader {
+
+	/**
+	 * @return the matrix stored in the file
+	 * @throws UncheckedIOException if the file is no dense matrix
+	 */
+	public DenseMatrix readFile(final String filename) throws UncheckedIOException {
+		try (BinarySnapshot.Input in = new BinarySnapshot.Input(filename, BinarySnapshot.DENSE_MATRIX)) {
+			String id = in.readString();
+			String desc = in.readString();
+			int zoneCount = in.readInt();
+			if (zoneCount < 0) {
+				throw new UncheckedIOException("Invalid number of zones " + zoneCount + " in " + filename);
+			}
+			List<String> zoneIds = new ArrayList<>(zoneCount);
+			for (int i = 0; i < zoneCount; i++) {
+				zoneIds.add(in.readString());
+			}
+			DenseMatrix matrix = new DenseMatrix(id, zoneIds);
+			matrix.setDesc(desc);
+			in.readFloats(matrix.getValues(), 0, zoneCount * zoneCount);
+			return matrix;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
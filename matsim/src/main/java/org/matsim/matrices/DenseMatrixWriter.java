@@ -0,0 +1,59 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.matrices;
+
+import java.io.IOException;
+
+import org.matsim.core.api.internal.MatsimWriter;
+import org.matsim.core.utils.io.BinarySnapshot;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes a {@link DenseMatrix} as {@link BinarySnapshot}: the id, the description and
+ * the zone ids, followed by all values row by row as 4-byte floats. A matrix with
+ * 5000 zones takes about 100MB and is read back with {@link DenseMatrixReader} from the
+ * memory-mapped file.
+ */
+public class DenseMatrixWriter implements MatsimWriter {
+
+	private final DenseMatrix matrix;
+
+	public DenseMatrixWriter(final DenseMatrix matrix) {
+		this.matrix = matrix;
+	}
+
+	@Override
+	public void write(final String filename) throws UncheckedIOException {
+		try (BinarySnapshot.Output out = new BinarySnapshot.Output(filename, BinarySnapshot.DENSE_MATRIX)) {
+			out.writeString(this.matrix.getId());
+			out.writeString(this.matrix.getDesc());
+			int zoneCount = this.matrix.getZoneCount();
+			out.writeInt(zoneCount);
+			for (String zoneId : this.matrix.getZoneIds()) {
+				out.writeString(zoneId);
+			}
+			out.writeFloats(this.matrix.getValues(), 0, zoneCount * zoneCount);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
@@ -57,6 +57,10 @@ public class TransitConfigGroup extends ReflectiveConfigGroup {
 	private static final String USE_TRANSIT = "useTransit";
 	private boolean useTransit = false;
 
+	// ---
+	private static final String PARALLEL_STOP_HANDLING = "parallelStopHandling";
+	private boolean parallelStopHandling = false;
+
 	// ---
 
 	public TransitConfigGroup() {
@@ -94,6 +98,9 @@ public class TransitConfigGroup extends ReflectiveConfigGroup {
 		comments.put(TRANSIT_LINES_ATTRIBUTES, "Optional input file containing additional attributes for transit lines, stored as ObjectAttributes.");
 		comments.put(TRANSIT_STOPS_ATTRIBUTES, "Optional input file containing additional attributes for transit stop facilities, stored as ObjectAttributes.");
 		comments.put(USE_TRANSIT, "Set this parameter to true if transit should be simulated, false if not.");
+		comments.put(PARALLEL_STOP_HANDLING, "If true, transit stops served concurrently by the threads of the qsim (qsim.numberOfThreads) "
+				+ "produce a deterministic output: the events and agent state changes of boarding and alighting are buffered per link of the stop "
+				+ "and passed on, sorted by link, as soon as the links of the network simulation are moved. Defaults to false.");
 
 		comments.put( SCHEDULE_CRS , "The Coordinates Reference System in which the coordinates are expressed in the input file." +
 				" At import, the coordinates will be converted to the coordinate system defined in \"global\", and will" +
@@ -160,6 +167,17 @@ public class TransitConfigGroup extends ReflectiveConfigGroup {
 		this.useTransit = val ;
 	}
 
+	@StringGetter( PARALLEL_STOP_HANDLING )
+	public boolean isParallelStopHandling() {
+		return this.parallelStopHandling;
+	}
+
+	@StringSetter( PARALLEL_STOP_HANDLING )
+	public void setParallelStopHandling(final boolean parallelStopHandling) {
+		this.testForLocked();
+		this.parallelStopHandling = parallelStopHandling;
+	}
+
 
 	@StringGetter( SCHEDULE_CRS )
 	public String getInputScheduleCRS() {
@@ -0,0 +1,171 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.pt.transitSchedule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.internal.MatsimSomeReader;
+import org.matsim.core.population.PopulationFactoryImpl;
+import org.matsim.core.population.routes.ModeRouteFactory;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.core.utils.io.BinarySnapshot;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Reads a transit schedule from a {@link BinarySnapshot} written by the
+ * {@link TransitScheduleSnapshotWriter}. The file is memory-mapped, so no text has to be parsed.
+ * <p></p>
+ * Usually, this class need not be used directly, as the
+ * {@link org.matsim.pt.transitSchedule.api.TransitScheduleReader} recognizes snapshots
+ * and passes them on to this reader.
+ */
+public class TransitScheduleSnapshotReader implements MatsimSomeReader {
+
+	private final static Logger log = Logger.getLogger(TransitScheduleSnapshotReader.class);
+
+	private final TransitSchedule schedule;
+	private final ModeRouteFactory routeFactory;
+	private final CoordinateTransformation coordinateTransformation;
+
+	public TransitScheduleSnapshotReader(final Scenario scenario) {
+		this(new IdentityTransformation(), scenario);
+	}
+
+	public TransitScheduleSnapshotReader(final CoordinateTransformation coordinateTransformation, final Scenario scenario) {
+		this(coordinateTransformation, scenario.getTransitSchedule(),
+				((PopulationFactoryImpl) (scenario.getPopulation().getFactory())).getModeRouteFactory());
+	}
+
+	public TransitScheduleSnapshotReader(final CoordinateTransformation coordinateTransformation, final TransitSchedule schedule,
+			final ModeRouteFactory routeFactory) {
+		this.coordinateTransformation = coordinateTransformation;
+		this.schedule = schedule;
+		this.routeFactory = routeFactory;
+	}
+
+	public void readFile(final String filename) throws UncheckedIOException {
+		log.info("reading binary transit schedule snapshot from " + filename);
+		TransitScheduleFactory factory = this.schedule.getFactory();
+		try (BinarySnapshot.Input in = new BinarySnapshot.Input(filename, BinarySnapshot.TRANSIT_SCHEDULE)) {
+			int numberOfStops = in.readInt();
+			TransitStopFacility[] stops = new TransitStopFacility[numberOfStops];
+			for (int i = 0; i < numberOfStops; i++) {
+				Id<TransitStopFacility> id = Id.create(in.readString(), TransitStopFacility.class);
+				double x = in.readDouble();
+				double y = in.readDouble();
+				boolean isBlocking = in.readBoolean();
+				TransitStopFacility stop = factory.createTransitStopFacility(id, this.coordinateTransformation.transform(new Coord(x, y)), isBlocking);
+				String linkId = in.readString();
+				if (linkId != null) {
+					stop.setLinkId(Id.create(linkId, Link.class));
+				}
+				String name = in.readString();
+				if (name != null) {
+					stop.setName(name);
+				}
+				String stopPostAreaId = in.readString();
+				if (stopPostAreaId != null) {
+					stop.setStopPostAreaId(stopPostAreaId);
+				}
+				this.schedule.addStopFacility(stop);
+				stops[i] = stop;
+			}
+
+			int numberOfLines = in.readInt();
+			for (int i = 0; i < numberOfLines; i++) {
+				TransitLine line = factory.createTransitLine(Id.create(in.readString(), TransitLine.class));
+				String name = in.readString();
+				if (name != null) {
+					line.setName(name);
+				}
+				this.schedule.addTransitLine(line);
+				int numberOfRoutes = in.readInt();
+				for (int r = 0; r < numberOfRoutes; r++) {
+					line.addRoute(readRoute(in, factory, stops));
+				}
+			}
+			log.info("read " + numberOfStops + " stops and " + numberOfLines + " lines");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private TransitRoute readRoute(final BinarySnapshot.Input in, final TransitScheduleFactory factory, final TransitStopFacility[] stops) {
+		Id<TransitRoute> id = Id.create(in.readString(), TransitRoute.class);
+		String description = in.readString();
+		String mode = in.readString();
+
+		int numberOfStops = in.readInt();
+		List<TransitRouteStop> routeStops = new ArrayList<>(numberOfStops);
+		for (int i = 0; i < numberOfStops; i++) {
+			TransitStopFacility facility = stops[in.readInt()];
+			double arrivalOffset = in.readDouble();
+			double departureOffset = in.readDouble();
+			TransitRouteStop stop = factory.createTransitRouteStop(facility, arrivalOffset, departureOffset);
+			stop.setAwaitDepartureTime(in.readBoolean());
+			routeStops.add(stop);
+		}
+
+		NetworkRoute route = null;
+		if (in.readBoolean()) {
+			Id<Link> startLinkId = Id.create(in.readString(), Link.class);
+			int numberOfLinks = in.readInt();
+			List<Id<Link>> linkIds = new ArrayList<>(numberOfLinks);
+			for (int i = 0; i < numberOfLinks; i++) {
+				linkIds.add(Id.create(in.readString(), Link.class));
+			}
+			Id<Link> endLinkId = Id.create(in.readString(), Link.class);
+			route = this.routeFactory.createRoute(NetworkRoute.class, startLinkId, endLinkId);
+			route.setLinkIds(startLinkId, linkIds, endLinkId);
+		}
+
+		TransitRoute transitRoute = factory.createTransitRoute(id, route, routeStops, mode);
+		transitRoute.setDescription(description);
+		int numberOfDepartures = in.readInt();
+		for (int i = 0; i < numberOfDepartures; i++) {
+			Departure departure = factory.createDeparture(Id.create(in.readString(), Departure.class), in.readDouble());
+			String vehicleId = in.readString();
+			if (vehicleId != null) {
+				departure.setVehicleId(Id.create(vehicleId, Vehicle.class));
+			}
+			transitRoute.addDeparture(departure);
+		}
+		return transitRoute;
+	}
+
+}
@@ -0,0 +1,123 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.pt.transitSchedule;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.internal.MatsimSomeWriter;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.io.BinarySnapshot;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Writes a transit schedule as {@link BinarySnapshot}, which can be read again by the
+ * {@link TransitScheduleSnapshotReader} or the {@link org.matsim.pt.transitSchedule.api.TransitScheduleReader}.
+ * The snapshot contains the same information as a transitSchedule_v1 file and
+ * additionally the stop post area ids of the stops.
+ *
+ * @see TransitScheduleSnapshotReader
+ */
+public class TransitScheduleSnapshotWriter implements MatsimSomeWriter {
+
+	private final static Logger log = Logger.getLogger(TransitScheduleSnapshotWriter.class);
+
+	private final TransitSchedule schedule;
+
+	public TransitScheduleSnapshotWriter(final TransitSchedule schedule) {
+		this.schedule = schedule;
+	}
+
+	public void write(final String filename) throws UncheckedIOException {
+		log.info("writing binary transit schedule snapshot to " + filename);
+		try (BinarySnapshot.Output out = new BinarySnapshot.Output(filename, BinarySnapshot.TRANSIT_SCHEDULE)) {
+			// the route profiles refer to the stops by their position in the snapshot
+			Map<Id<TransitStopFacility>, Integer> stopIndices = new HashMap<>();
+			out.writeInt(this.schedule.getFacilities().size());
+			for (TransitStopFacility stop : this.schedule.getFacilities().values()) {
+				stopIndices.put(stop.getId(), stopIndices.size());
+				out.writeString(stop.getId().toString());
+				out.writeDouble(stop.getCoord().getX());
+				out.writeDouble(stop.getCoord().getY());
+				out.writeBoolean(stop.getIsBlockingLane());
+				out.writeString(stop.getLinkId() == null ? null : stop.getLinkId().toString());
+				out.writeString(stop.getName());
+				out.writeString(stop.getStopPostAreaId());
+			}
+
+			out.writeInt(this.schedule.getTransitLines().size());
+			for (TransitLine line : this.schedule.getTransitLines().values()) {
+				out.writeString(line.getId().toString());
+				out.writeString(line.getName());
+				out.writeInt(line.getRoutes().size());
+				for (TransitRoute route : line.getRoutes().values()) {
+					writeRoute(out, route, stopIndices);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void writeRoute(final BinarySnapshot.Output out, final TransitRoute route, final Map<Id<TransitStopFacility>, Integer> stopIndices)
+			throws IOException {
+		out.writeString(route.getId().toString());
+		out.writeString(route.getDescription());
+		out.writeString(route.getTransportMode());
+
+		out.writeInt(route.getStops().size());
+		for (TransitRouteStop stop : route.getStops()) {
+			out.writeInt(stopIndices.get(stop.getStopFacility().getId()));
+			out.writeDouble(stop.getArrivalOffset());
+			out.writeDouble(stop.getDepartureOffset());
+			out.writeBoolean(stop.isAwaitDepartureTime());
+		}
+
+		NetworkRoute networkRoute = route.getRoute();
+		out.writeBoolean(networkRoute != null);
+		if (networkRoute != null) {
+			out.writeString(networkRoute.getStartLinkId().toString());
+			out.writeInt(networkRoute.getLinkIds().size());
+			for (Id<Link> linkId : networkRoute.getLinkIds()) {
+				out.writeString(linkId.toString());
+			}
+			out.writeString(networkRoute.getEndLinkId().toString());
+		}
+
+		out.writeInt(route.getDepartures().size());
+		for (Departure departure : route.getDepartures().values()) {
+			out.writeString(departure.getId().toString());
+			out.writeDouble(departure.getDepartureTime());
+			out.writeString(departure.getVehicleId() == null ? null : departure.getVehicleId().toString());
+		}
+	}
+
+}
@@ -24,9 +24,11 @@ import org.matsim.api.core.v01.Scenario;
 import org.matsim.core.api.internal.MatsimSomeReader;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.core.utils.io.BinarySnapshot;
 import org.matsim.core.utils.io.MatsimFileTypeGuesser;
 import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.pt.transitSchedule.TransitScheduleReaderV1;
+import org.matsim.pt.transitSchedule.TransitScheduleSnapshotReader;
 
 /**
  * Reads {@link TransitSchedule}s from file as long as the files are in one of the
@@ -51,6 +53,10 @@ public class TransitScheduleReader implements MatsimSomeReader {
 	}
 
 	public void readFile(final String filename) throws UncheckedIOException {
+		if (BinarySnapshot.getContentType(filename) == BinarySnapshot.TRANSIT_SCHEDULE) {
+			new TransitScheduleSnapshotReader(this.transformation, this.scenario).readFile(filename);
+			return;
+		}
 		MatsimFileTypeGuesser guesser = new MatsimFileTypeGuesser(filename);
 		String systemId = guesser.getSystemId();
 		if (systemId.endsWith("transitSchedule_v1.dtd")) {
@@ -0,0 +1,385 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.utils.eventsfilecomparison;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.handler.BasicEventHandler;
+
+/**
+ * Checks if two events files are semantic equivalent, like {@link EventsFileComparator}, but
+ * compares the events in parallel. Both files are read into time steps, which are paired
+ * in the order of the files. Consecutive pairs of time steps are grouped into chunks of at
+ * least {@link #setMinimalChunkSize(int) some} events, and the chunks are compared by
+ * several threads.
+ * <p></p>
+ * The result is the same as with {@link EventsFileComparator#compare(String, String)}: the
+ * first time step that differs determines the return code. The differing event is logged
+ * together with the events of this time step in both files.
+ */
+public final class ChunkedEventsFileComparator {
+
+	private static final Logger log = Logger.getLogger(ChunkedEventsFileComparator.class);
+
+	private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+	private int minimalChunkSize = 10000;
+	private int numberOfContextEvents = 20;
+
+	public void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
+
+	/**
+	 * @param minimalChunkSize the minimal number of events of one file compared at once
+	 */
+	public void setMinimalChunkSize(final int minimalChunkSize) {
+		this.minimalChunkSize = Math.max(1, minimalChunkSize);
+	}
+
+	/**
+	 * @param numberOfContextEvents the maximal number of events of each file logged for the time step with a difference
+	 */
+	public void setNumberOfContextEvents(final int numberOfContextEvents) {
+		this.numberOfContextEvents = numberOfContextEvents;
+	}
+
+	/**
+	 * @return {@link EventsFileComparator#CODE_FILES_ARE_EQUAL} if the events files are equal,
+	 * 		or one of the other codes of {@link EventsFileComparator} if not.
+	 */
+	public int compare(final String filename1, final String filename2) {
+		TimeStepReader reader1 = new TimeStepReader(filename1);
+		TimeStepReader reader2 = new TimeStepReader(filename2);
+		reader1.start();
+		reader2.start();
+
+		ExecutorService executor = Executors.newFixedThreadPool(this.numberOfThreads);
+		// limits the number of chunks in memory
+		Semaphore chunksInProgress = new Semaphore(2 * this.numberOfThreads);
+		List<Future<Difference>> results = new ArrayList<>();
+		Difference difference = null;
+		try {
+			List<TimeStep> chunk1 = new ArrayList<>();
+			List<TimeStep> chunk2 = new ArrayList<>();
+			int chunkSize = 0;
+			while (difference == null) {
+				TimeStep step1 = reader1.takeTimeStep();
+				TimeStep step2 = reader2.takeTimeStep();
+				if (step1 == TimeStep.END && step2 == TimeStep.END) {
+					break;
+				}
+				if (step1 == TimeStep.END || step2 == TimeStep.END) {
+					difference = new Difference(EventsFileComparator.CODE_DIFFERENT_NUMBER_OF_TIMESTEPS,
+							"Events files have different number of time steps, " + (step1 == TimeStep.END ? filename1 : filename2)
+							+ " ends before time step " + (step1 == TimeStep.END ? step2 : step1).time);
+				} else if (step1.time != step2.time) {
+					difference = new Difference(EventsFileComparator.CODE_DIFFERENT_TIMESTEPS,
+							"Different time steps in events files: " + step1.time + " in " + filename1 + ", " + step2.time + " in " + filename2);
+				} else {
+					chunk1.add(step1);
+					chunk2.add(step2);
+					chunkSize += Math.max(step1.events.size(), step2.events.size());
+				}
+				if (chunkSize >= this.minimalChunkSize || (difference != null && !chunk1.isEmpty())) {
+					chunksInProgress.acquire();
+					results.add(executor.submit(new ChunkComparison(chunk1, chunk2, filename1, filename2, chunksInProgress)));
+					chunk1 = new ArrayList<>();
+					chunk2 = new ArrayList<>();
+					chunkSize = 0;
+				}
+				if (difference == null && hasDifference(results)) {
+					break;
+				}
+			}
+			if (difference == null && !chunk1.isEmpty()) {
+				results.add(executor.submit(new ChunkComparison(chunk1, chunk2, filename1, filename2, chunksInProgress)));
+			}
+
+			// a difference in an earlier chunk precedes the one found while pairing the time steps
+			for (Future<Difference> result : results) {
+				Difference chunkDifference = result.get();
+				if (chunkDifference != null) {
+					difference = chunkDifference;
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+			reader1.cancel();
+			reader2.cancel();
+		}
+		reader1.rethrowException();
+		reader2.rethrowException();
+
+		if (difference == null) {
+			log.info("Event files are semantic equivalent.");
+			return EventsFileComparator.CODE_FILES_ARE_EQUAL;
+		}
+		log.warn(difference.message);
+		log.warn("Event files differ.");
+		return difference.code;
+	}
+
+	/**
+	 * @return <code>true</code> if the first finished chunks already contain a difference
+	 */
+	private static boolean hasDifference(final List<Future<Difference>> results) throws InterruptedException, ExecutionException {
+		for (Future<Difference> result : results) {
+			if (!result.isDone()) {
+				return false;
+			}
+			if (result.get() != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static final class Difference {
+		final int code;
+		final String message;
+
+		Difference(final int code, final String message) {
+			this.code = code;
+			this.message = message;
+		}
+	}
+
+	private static final class TimeStep {
+		static final TimeStep END = new TimeStep(Double.NaN);
+
+		final double time;
+		final List<Event> events = new ArrayList<>();
+
+		TimeStep(final double time) {
+			this.time = time;
+		}
+	}
+
+	/**
+	 * Compares pairs of time steps in the same way as the {@link EventsFileComparator}.
+	 */
+	private final class ChunkComparison implements Callable<Difference> {
+
+		private final List<TimeStep> steps1;
+		private final List<TimeStep> steps2;
+		private final String filename1;
+		private final String filename2;
+		private final Semaphore chunksInProgress;
+
+		ChunkComparison(final List<TimeStep> steps1, final List<TimeStep> steps2, final String filename1, final String filename2,
+				final Semaphore chunksInProgress) {
+			this.steps1 = steps1;
+			this.steps2 = steps2;
+			this.filename1 = filename1;
+			this.filename2 = filename2;
+			this.chunksInProgress = chunksInProgress;
+		}
+
+		@Override
+		public Difference call() {
+			try {
+				for (int i = 0; i < this.steps1.size(); i++) {
+					Difference difference = compare(this.steps1.get(i), this.steps2.get(i));
+					if (difference != null) {
+						return difference;
+					}
+				}
+				return null;
+			} finally {
+				this.chunksInProgress.release();
+			}
+		}
+
+		private Difference compare(final TimeStep step1, final TimeStep step2) {
+			Map<String, Counter> map1 = count(step1);
+			Map<String, Counter> map2 = count(step2);
+			for (Entry<String, Counter> e : map1.entrySet()) {
+				Counter c = map2.get(e.getKey());
+				if (c == null) {
+					return new Difference(EventsFileComparator.CODE_MISSING_EVENT, "Missing event at time " + step1.time + ":\n" + e.getKey()
+							+ "\nin events file: " + this.filename2 + getContext(map1, map2));
+				}
+				if (c.getCount() != e.getValue().getCount()) {
+					return new Difference(EventsFileComparator.CODE_WRONG_EVENT_COUNT, "Wrong event count at time " + step1.time + " for: "
+							+ e.getKey() + "\n" + e.getValue().getCount() + " times in file: " + this.filename1
+							+ "\n" + c.getCount() + " times in file: " + this.filename2 + getContext(map1, map2));
+				}
+			}
+			for (Entry<String, Counter> e : map2.entrySet()) {
+				if (!map1.containsKey(e.getKey())) {
+					return new Difference(EventsFileComparator.CODE_MISSING_EVENT, "Missing event at time " + step1.time + ":\n" + e.getKey()
+							+ "\nin events file: " + this.filename1 + getContext(map1, map2));
+				}
+			}
+			return null;
+		}
+
+		private Map<String, Counter> count(final TimeStep step) {
+			Map<String, Counter> counters = new HashMap<>();
+			for (Event event : step.events) {
+				String key = Worker.toLexicographicSortedString(event);
+				Counter counter = counters.get(key);
+				if (counter == null) {
+					counter = new Counter();
+					counters.put(key, counter);
+				}
+				counter.increment();
+			}
+			return counters;
+		}
+
+		private String getContext(final Map<String, Counter> map1, final Map<String, Counter> map2) {
+			return "\nevents of this time step in " + this.filename1 + ":" + toString(map1)
+					+ "\nevents of this time step in " + this.filename2 + ":" + toString(map2);
+		}
+
+		private String toString(final Map<String, Counter> counters) {
+			List<String> keys = new ArrayList<>(counters.keySet());
+			Collections.sort(keys);
+			StringBuilder str = new StringBuilder();
+			for (int i = 0; i < keys.size() && i < ChunkedEventsFileComparator.this.numberOfContextEvents; i++) {
+				str.append("\n  ").append(counters.get(keys.get(i)).getCount()).append("x ").append(keys.get(i));
+			}
+			if (keys.size() > ChunkedEventsFileComparator.this.numberOfContextEvents) {
+				str.append("\n  ... ").append(keys.size() - ChunkedEventsFileComparator.this.numberOfContextEvents).append(" more");
+			}
+			return str.toString();
+		}
+	}
+
+	/**
+	 * Reads an events file and groups the events by time step.
+	 */
+	private static final class TimeStepReader extends Thread implements BasicEventHandler {
+
+		private final String filename;
+		private final BlockingQueue<TimeStep> timeSteps = new ArrayBlockingQueue<>(1024);
+		private TimeStep current = null;
+		private volatile boolean cancelled = false;
+		private volatile Throwable exception = null;
+
+		TimeStepReader(final String filename) {
+			super("TimeStepReader");
+			this.filename = filename;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				EventsManager events = EventsUtils.createEventsManager();
+				events.addHandler(this);
+				new MatsimEventsReader(events).readFile(this.filename);
+				if (this.current != null) {
+					put(this.current);
+				}
+			} catch (CancelledException e) {
+				// nobody waits for the time steps anymore
+			} catch (Throwable e) {
+				// also errors, so that the comparison neither waits forever nor takes the file for complete
+				this.exception = e;
+			} finally {
+				try {
+					put(TimeStep.END);
+				} catch (CancelledException e) {
+					// nobody waits for the time steps anymore
+				}
+			}
+		}
+
+		@Override
+		public void handleEvent(final Event event) {
+			if (this.current == null || this.current.time != event.getTime()) {
+				if (this.current != null) {
+					put(this.current);
+				}
+				this.current = new TimeStep(event.getTime());
+			}
+			this.current.events.add(event);
+		}
+
+		@Override
+		public void reset(final int iteration) {
+		}
+
+		private void put(final TimeStep step) {
+			try {
+				while (!this.timeSteps.offer(step, 100, TimeUnit.MILLISECONDS)) {
+					if (this.cancelled) {
+						throw new CancelledException();
+					}
+				}
+			} catch (InterruptedException e) {
+				throw new CancelledException();
+			}
+		}
+
+		TimeStep takeTimeStep() throws InterruptedException {
+			return this.timeSteps.take();
+		}
+
+		void cancel() {
+			this.cancelled = true;
+			this.timeSteps.clear();
+		}
+
+		void rethrowException() {
+			if (this.exception instanceof RuntimeException) {
+				throw (RuntimeException) this.exception;
+			}
+			if (this.exception instanceof Error) {
+				throw (Error) this.exception;
+			}
+			if (this.exception != null) {
+				throw new RuntimeException(this.exception);
+			}
+		}
+	}
+
+	private static final class CancelledException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+}
@@ -43,14 +43,18 @@ public abstract class EventsFileComparator {
 	public static final int CODE_WRONG_EVENT_COUNT = -4;
 
 	public static void main(String[] args) {
-		if (args.length != 2) {
+		if (args.length != 2 && args.length != 3) {
 			System.out.println("Error: expected 2 events files as input arguments but found " + args.length);
-			System.out.println("Syntax: EventsFileComparator eventsFile1 eventsFile2");
+			System.out.println("Syntax: EventsFileComparator eventsFile1 eventsFile2 [numberOfThreads]");
 		} else {
 			String filename1 = args[0];
 			String filename2 = args[1];
 			
-			EventsFileComparator.compare(filename1, filename2);			
+			if (args.length == 3) {
+				EventsFileComparator.compare(filename1, filename2, Integer.parseInt(args[2]));
+			} else {
+				EventsFileComparator.compare(filename1, filename2);
+			}
 		}
 	}
 	
@@ -90,6 +94,21 @@ public abstract class EventsFileComparator {
 		return retCode;
 	}
 
+	/**
+	 * Compares two Events files in chunks of time steps with several threads, see
+	 * {@link ChunkedEventsFileComparator}. This method is thread-safe.
+	 *
+	 * @param filename1
+	 * @param filename2
+	 * @param numberOfThreads the number of threads comparing the chunks
+	 * @return <code>0</code> if the events files are equal, or some error code (see constants) if not.
+	 */
+	public static int compare(final String filename1, final String filename2, final int numberOfThreads) {
+		ChunkedEventsFileComparator comparator = new ChunkedEventsFileComparator();
+		comparator.setNumberOfThreads(numberOfThreads);
+		return comparator.compare(filename1, filename2);
+	}
+
 	/*package*/ static class EventsComparator implements Runnable {
 
 		private Worker worker1 = null;
@@ -128,7 +128,7 @@ public class Worker extends Thread implements BasicEventHandler{
 		counter.increment();
 	}
 
-	private String toLexicographicSortedString(Event event) {
+	/*package*/ static String toLexicographicSortedString(Event event) {
 		List<String> strings = new ArrayList<String>();
 		for (Entry<String, String> e : event.getAttributes().entrySet()) {
 			StringBuilder tmp = new StringBuilder();
@@ -0,0 +1,506 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.utils.objectattributes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of one attribute for all objects in {@link ObjectAttributes}, indexed by the
+ * position of the object. Numbers and booleans are stored in primitive arrays, strings
+ * as codes into a dictionary of the distinct values. A column only holds values of the
+ * type of its first value; {@link ObjectAttributes} replaces it by an {@link ObjectColumn}
+ * as soon as values of other types are set.
+ *
+ * @see ObjectAttributes
+ */
+/*package*/ abstract class AttributeColumn {
+
+	/*package*/ static final int TYPE_OBJECT = 0;
+	/*package*/ static final int TYPE_DOUBLE = 1;
+	/*package*/ static final int TYPE_INTEGER = 2;
+	/*package*/ static final int TYPE_LONG = 3;
+	/*package*/ static final int TYPE_BOOLEAN = 4;
+	/*package*/ static final int TYPE_STRING = 5;
+
+	/*package*/ final String name;
+	private final BitSet present = new BitSet();
+
+	AttributeColumn(final String name) {
+		this.name = name;
+	}
+
+	/*package*/ static AttributeColumn create(final String name, final Object firstValue) {
+		return create(name, getType(firstValue));
+	}
+
+	/*package*/ static AttributeColumn create(final String name, final int type) {
+		switch (type) {
+		case TYPE_DOUBLE: return new DoubleColumn(name);
+		case TYPE_INTEGER: return new IntegerColumn(name);
+		case TYPE_LONG: return new LongColumn(name);
+		case TYPE_BOOLEAN: return new BooleanColumn(name);
+		case TYPE_STRING: return new StringColumn(name);
+		default: return new ObjectColumn(name);
+		}
+	}
+
+	/*package*/ static int getType(final Object value) {
+		Class<?> clazz = value.getClass();
+		if (clazz == Double.class) {
+			return TYPE_DOUBLE;
+		} else if (clazz == Integer.class) {
+			return TYPE_INTEGER;
+		} else if (clazz == Long.class) {
+			return TYPE_LONG;
+		} else if (clazz == Boolean.class) {
+			return TYPE_BOOLEAN;
+		} else if (clazz == String.class) {
+			return TYPE_STRING;
+		}
+		return TYPE_OBJECT;
+	}
+
+	/*package*/ abstract int getType();
+
+	/*package*/ final boolean isPresent(final int index) {
+		return this.present.get(index);
+	}
+
+	/*package*/ final boolean isEmpty() {
+		return this.present.isEmpty();
+	}
+
+	/**
+	 * @return the value of the object at <code>index</code>, <code>null</code> if it is not set.
+	 */
+	/*package*/ final Object get(final int index) {
+		return this.present.get(index) ? getValue(index) : null;
+	}
+
+	/**
+	 * @return <code>false</code> if the value is not of the type of this column
+	 */
+	/*package*/ final boolean set(final int index, final Object value) {
+		if (getType() != TYPE_OBJECT && getType(value) != getType()) {
+			return false;
+		}
+		ensureCapacity(index + 1);
+		setValue(index, value);
+		this.present.set(index);
+		return true;
+	}
+
+	/*package*/ final void remove(final int index) {
+		if (this.present.get(index)) {
+			this.present.clear(index);
+			removeValue(index);
+		}
+	}
+
+	/**
+	 * Moves the values of the objects in front, after objects were removed.
+	 *
+	 * @param newIndices the new index of each object, <code>-1</code> for removed objects
+	 * @param size the number of objects after the move
+	 */
+	/*package*/ final void compact(final int[] newIndices, final int size) {
+		for (int i = 0; i < newIndices.length; i++) {
+			int newIndex = newIndices[i];
+			if (newIndex >= 0 && newIndex != i) {
+				this.present.set(newIndex, this.present.get(i));
+				if (this.present.get(i)) {
+					moveValue(i, newIndex);
+				}
+			}
+		}
+		for (int i = this.present.nextSetBit(size); i >= 0; i = this.present.nextSetBit(i + 1)) {
+			clearMovedValue(i);
+		}
+		this.present.clear(size, Math.max(size, newIndices.length));
+	}
+
+	/*package*/ final void markPresent(final int index) {
+		this.present.set(index);
+	}
+
+	/*package*/ static int grow(final int length, final int minCapacity) {
+		return Math.max(minCapacity, Math.max(16, length + (length >> 1)));
+	}
+
+	/*package*/ abstract void ensureCapacity(int capacity);
+
+	/*package*/ abstract Object getValue(int index);
+
+	/*package*/ abstract void setValue(int index, Object value);
+
+	/*package*/ abstract void moveValue(int from, int to);
+
+	/**
+	 * releases the value of a removed object, if necessary
+	 */
+	/*package*/ void removeValue(final int index) {
+	}
+
+	/**
+	 * clears the old position of a value that {@link #compact(int[], int)} moved to a new index
+	 */
+	/*package*/ void clearMovedValue(final int index) {
+		removeValue(index);
+	}
+
+	/*package*/ static final class DoubleColumn extends AttributeColumn {
+		/*package*/ double[] values = new double[0];
+
+		DoubleColumn(final String name) {
+			super(name);
+		}
+
+		/*package*/ void setDouble(final int index, final double value) {
+			ensureCapacity(index + 1);
+			this.values[index] = value;
+			markPresent(index);
+		}
+
+		@Override
+		int getType() {
+			return TYPE_DOUBLE;
+		}
+
+		@Override
+		void ensureCapacity(final int capacity) {
+			if (this.values.length < capacity) {
+				this.values = Arrays.copyOf(this.values, grow(this.values.length, capacity));
+			}
+		}
+
+		@Override
+		Object getValue(final int index) {
+			return this.values[index];
+		}
+
+		@Override
+		void setValue(final int index, final Object value) {
+			this.values[index] = (Double) value;
+		}
+
+		@Override
+		void moveValue(final int from, final int to) {
+			this.values[to] = this.values[from];
+		}
+	}
+
+	/*package*/ static final class IntegerColumn extends AttributeColumn {
+		/*package*/ int[] values = new int[0];
+
+		IntegerColumn(final String name) {
+			super(name);
+		}
+
+		/*package*/ void setInt(final int index, final int value) {
+			ensureCapacity(index + 1);
+			this.values[index] = value;
+			markPresent(index);
+		}
+
+		@Override
+		int getType() {
+			return TYPE_INTEGER;
+		}
+
+		@Override
+		void ensureCapacity(final int capacity) {
+			if (this.values.length < capacity) {
+				this.values = Arrays.copyOf(this.values, grow(this.values.length, capacity));
+			}
+		}
+
+		@Override
+		Object getValue(final int index) {
+			return this.values[index];
+		}
+
+		@Override
+		void setValue(final int index, final Object value) {
+			this.values[index] = (Integer) value;
+		}
+
+		@Override
+		void moveValue(final int from, final int to) {
+			this.values[to] = this.values[from];
+		}
+	}
+
+	/*package*/ static final class LongColumn extends AttributeColumn {
+		/*package*/ long[] values = new long[0];
+
+		LongColumn(final String name) {
+			super(name);
+		}
+
+		/*package*/ void setLong(final int index, final long value) {
+			ensureCapacity(index + 1);
+			this.values[index] = value;
+			markPresent(index);
+		}
+
+		@Override
+		int getType() {
+			return TYPE_LONG;
+		}
+
+		@Override
+		void ensureCapacity(final int capacity) {
+			if (this.values.length < capacity) {
+				this.values = Arrays.copyOf(this.values, grow(this.values.length, capacity));
+			}
+		}
+
+		@Override
+		Object getValue(final int index) {
+			return this.values[index];
+		}
+
+		@Override
+		void setValue(final int index, final Object value) {
+			this.values[index] = (Long) value;
+		}
+
+		@Override
+		void moveValue(final int from, final int to) {
+			this.values[to] = this.values[from];
+		}
+	}
+
+	/*package*/ static final class BooleanColumn extends AttributeColumn {
+		/*package*/ final BitSet values = new BitSet();
+
+		BooleanColumn(final String name) {
+			super(name);
+		}
+
+		/*package*/ void setBoolean(final int index, final boolean value) {
+			this.values.set(index, value);
+			markPresent(index);
+		}
+
+		@Override
+		int getType() {
+			return TYPE_BOOLEAN;
+		}
+
+		@Override
+		void ensureCapacity(final int capacity) {
+			// the bit set grows by itself
+		}
+
+		@Override
+		Object getValue(final int index) {
+			return this.values.get(index);
+		}
+
+		@Override
+		void setValue(final int index, final Object value) {
+			this.values.set(index, ((Boolean) value).booleanValue());
+		}
+
+		@Override
+		void moveValue(final int from, final int to) {
+			this.values.set(to, this.values.get(from));
+		}
+
+		@Override
+		void removeValue(final int index) {
+			this.values.clear(index);
+		}
+	}
+
+	/**
+	 * Stores the strings as codes into a dictionary, so every distinct value is only kept once.
+	 * The dictionary counts the objects referencing each code; codes no longer referenced are
+	 * released and reused for new values, so overwriting many distinct values does not let the
+	 * dictionary grow.
+	 */
+	/*package*/ static final class StringColumn extends AttributeColumn {
+		/*package*/ int[] codes = new int[0];
+		/*package*/ final List<String> dictionary = new ArrayList<>();
+		private final Map<String, Integer> dictionaryCodes = new HashMap<>();
+		/** the number of objects referencing each code */
+		private int[] references = new int[0];
+		/** the released codes, at positions <code>0</code> to <code>freeCodeCount - 1</code> */
+		private int[] freeCodes = new int[0];
+		private int freeCodeCount = 0;
+
+		StringColumn(final String name) {
+			super(name);
+		}
+
+		/*package*/ void setString(final int index, final String value) {
+			ensureCapacity(index + 1);
+			setValue(index, value);
+			markPresent(index);
+		}
+
+		@Override
+		int getType() {
+			return TYPE_STRING;
+		}
+
+		@Override
+		void ensureCapacity(final int capacity) {
+			if (this.codes.length < capacity) {
+				this.codes = Arrays.copyOf(this.codes, grow(this.codes.length, capacity));
+			}
+		}
+
+		/**
+		 * @return the number of codes currently in use
+		 */
+		/*package*/ int getDictionarySize() {
+			return this.dictionaryCodes.size();
+		}
+
+		/**
+		 * @return the code of the value, with one more reference
+		 */
+		private int acquireCode(final String value) {
+			Integer code = this.dictionaryCodes.get(value);
+			if (code == null) {
+				if (this.freeCodeCount > 0) {
+					this.freeCodeCount--;
+					code = this.freeCodes[this.freeCodeCount];
+					this.dictionary.set(code, value);
+				} else {
+					code = this.dictionary.size();
+					this.dictionary.add(value);
+					if (this.references.length <= code) {
+						this.references = Arrays.copyOf(this.references, grow(this.references.length, code + 1));
+					}
+				}
+				this.dictionaryCodes.put(value, code);
+			}
+			this.references[code]++;
+			return code;
+		}
+
+		private void releaseCode(final int code) {
+			this.references[code]--;
+			if (this.references[code] == 0) {
+				this.dictionaryCodes.remove(this.dictionary.get(code));
+				this.dictionary.set(code, null);
+				if (this.freeCodes.length == this.freeCodeCount) {
+					this.freeCodes = Arrays.copyOf(this.freeCodes, grow(this.freeCodes.length, this.freeCodeCount + 1));
+				}
+				this.freeCodes[this.freeCodeCount] = code;
+				this.freeCodeCount++;
+			}
+		}
+
+		@Override
+		Object getValue(final int index) {
+			return this.dictionary.get(this.codes[index]);
+		}
+
+		@Override
+		void setValue(final int index, final Object value) {
+			// acquire first, so that setting the same value again does not release its code
+			int code = acquireCode((String) value);
+			if (isPresent(index)) {
+				releaseCode(this.codes[index]);
+			}
+			this.codes[index] = code;
+		}
+
+		@Override
+		void moveValue(final int from, final int to) {
+			this.codes[to] = this.codes[from];
+		}
+
+		@Override
+		void removeValue(final int index) {
+			releaseCode(this.codes[index]);
+		}
+
+		@Override
+		void clearMovedValue(final int index) {
+			// the code is still referenced from the new index of the object
+		}
+	}
+
+	/**
+	 * Holds the values of arbitrary types, used for columns with mixed or non-primitive types.
+	 */
+	/*package*/ static final class ObjectColumn extends AttributeColumn {
+		private Object[] values = new Object[0];
+
+		ObjectColumn(final String name) {
+			super(name);
+		}
+
+		/*package*/ ObjectColumn(final AttributeColumn column, final int size) {
+			super(column.name);
+			ensureCapacity(size);
+			for (int i = 0; i < size; i++) {
+				if (column.isPresent(i)) {
+					this.values[i] = column.getValue(i);
+					markPresent(i);
+				}
+			}
+		}
+
+		@Override
+		int getType() {
+			return TYPE_OBJECT;
+		}
+
+		@Override
+		void ensureCapacity(final int capacity) {
+			if (this.values.length < capacity) {
+				this.values = Arrays.copyOf(this.values, grow(this.values.length, capacity));
+			}
+		}
+
+		@Override
+		Object getValue(final int index) {
+			return this.values[index];
+		}
+
+		@Override
+		void setValue(final int index, final Object value) {
+			this.values[index] = value;
+		}
+
+		@Override
+		void moveValue(final int from, final int to) {
+			this.values[to] = this.values[from];
+		}
+
+		@Override
+		void removeValue(final int index) {
+			this.values[index] = null;
+		}
+	}
+
+}
@@ -19,18 +19,27 @@
 
 package org.matsim.utils.objectattributes;
 
-import java.util.IdentityHashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.matsim.core.api.internal.MatsimExtensionPoint;
 
 /**
  * A simple helper class to store arbitrary attributes (identified by Strings) for
- * arbitrary objects (identified by String-Ids). Note that this implementation uses
- * large amounts of memory for storing many attributes for many objects, it is not
- * heavily optimized.
+ * arbitrary objects (identified by String-Ids).
+ * <p/>
+ * The attributes are stored by column: every object gets an index, and the values of
+ * one attribute for all objects are kept in one array. Attributes of type {@link Double},
+ * {@link Integer}, {@link Long} and {@link Boolean} are stored as primitives, {@link String}s
+ * as codes into a dictionary of their distinct values. So many objects with the same
+ * attributes need much less memory than with one map per object. Attributes with values
+ * of different or other types are stored as objects. Note that the values of primitive
+ * attributes are boxed again when they are returned, so the returned objects are equal,
+ * but not identical to the ones set.
  * <p/>
  * <em>This class is not thread-safe.</em>
  * <p/>
@@ -43,19 +52,29 @@ import org.matsim.core.api.internal.MatsimExtensionPoint;
  */
 public class ObjectAttributes implements MatsimExtensionPoint {
 
-	/*package*/ Map<String, Map<String, Object>> attributes = new LinkedHashMap<String, Map<String, Object>>(1000);
-	
+	/** the objects are compacted when more than this number of them and more than the half were removed */
+	private static final int MIN_REMOVED_OBJECTS_TO_COMPACT = 1024;
+
+	private final Map<String, Integer> objectIndices = new HashMap<String, Integer>(1000);
+	/** the ids of the objects by their index, <code>null</code> for removed objects */
+	private final ArrayList<String> objectIds = new ArrayList<String>(1000);
+	private int removedObjects = 0;
+	private final Map<String, AttributeColumn> columns = new LinkedHashMap<String, AttributeColumn>();
+
 	@Override
 	public String toString() {
 		StringBuilder stb = new StringBuilder() ;
-		for ( Entry<String, Map<String,Object>> entry : attributes.entrySet() ) {
-			String key = entry.getKey() ;
+		for (int index = 0; index < this.objectIds.size(); index++) {
+			String key = this.objectIds.get(index);
+			if (key == null) {
+				continue;
+			}
 			stb.append("key=").append(key);
-			Map<String,Object> map = entry.getValue() ;
-			for ( Entry<String,Object> ee : map.entrySet() ) {
-				String subkey = ee.getKey();
-				stb.append("; subkey=").append(subkey);
-				stb.append("; object=").append(ee.getValue().toString());
+			for (AttributeColumn column : this.columns.values()) {
+				if (column.isPresent(index)) {
+					stb.append("; subkey=").append(column.name);
+					stb.append("; object=").append(column.getValue(index).toString());
+				}
 			}
 			stb.append("\n") ;
 		}
@@ -63,39 +82,160 @@ public class ObjectAttributes implements MatsimExtensionPoint {
 	}
 
 	public Object putAttribute(final String objectId, final String attribute, final Object value) {
-		Map<String, Object> attMap = this.attributes.get(objectId);
-		if (attMap == null) {
-			attMap = new IdentityHashMap<String, Object>(5);
-			this.attributes.put(objectId, attMap);
+		if (value == null) {
+			return removeAttribute(objectId, attribute);
+		}
+		int index = getOrCreateObjectIndex(objectId);
+		AttributeColumn column = this.columns.get(attribute);
+		if (column == null) {
+			column = AttributeColumn.create(attribute, value);
+			this.columns.put(attribute, column);
+		}
+		Object oldValue = column.get(index);
+		if (!column.set(index, value)) {
+			// values of different types, keep them as objects
+			column = new AttributeColumn.ObjectColumn(column, this.objectIds.size());
+			this.columns.put(attribute, column);
+			column.set(index, value);
 		}
-		return attMap.put(attribute.intern(), value);
+		return oldValue;
 	}
 
 	public Object getAttribute(final String objectId, final String attribute) {
-		Map<String, Object> attMap = this.attributes.get(objectId);
-		if (attMap == null) {
+		Integer index = this.objectIndices.get(objectId);
+		if (index == null) {
 			return null;
 		}
-		return attMap.get(attribute.intern());
+		AttributeColumn column = this.columns.get(attribute);
+		if (column == null) {
+			return null;
+		}
+		return column.get(index);
 	}
 
 	public Object removeAttribute(final String objectId, final String attribute) {
-		Map<String, Object> attMap = this.attributes.get(objectId);
-		if (attMap == null) {
+		Integer index = this.objectIndices.get(objectId);
+		if (index == null) {
+			return null;
+		}
+		AttributeColumn column = this.columns.get(attribute);
+		if (column == null) {
 			return null;
 		}
-		return attMap.remove(attribute.intern());
+		Object oldValue = column.get(index);
+		column.remove(index);
+		return oldValue;
 	}
 
 	public void removeAllAttributes(final String objectId) {
-		this.attributes.remove(objectId);
+		Integer index = this.objectIndices.remove(objectId);
+		if (index == null) {
+			return;
+		}
+		for (AttributeColumn column : this.columns.values()) {
+			column.remove(index);
+		}
+		this.objectIds.set(index, null);
+		this.removedObjects++;
+		if (this.removedObjects > MIN_REMOVED_OBJECTS_TO_COMPACT && this.removedObjects * 2 > this.objectIds.size()) {
+			compact();
+		}
 	}
 
 	/**
 	 * Deletes all attributes of all objects, and all objects-ids.
 	 */
 	public void clear() {
-		this.attributes.clear();
+		this.objectIndices.clear();
+		this.objectIds.clear();
+		this.removedObjects = 0;
+		this.columns.clear();
+	}
+
+	/**
+	 * moves the remaining objects to the front after many objects were removed
+	 */
+	private void compact() {
+		int[] newIndices = new int[this.objectIds.size()];
+		int size = 0;
+		for (int i = 0; i < newIndices.length; i++) {
+			String objectId = this.objectIds.get(i);
+			if (objectId == null) {
+				newIndices[i] = -1;
+			} else {
+				newIndices[i] = size;
+				this.objectIds.set(size, objectId);
+				this.objectIndices.put(objectId, size);
+				size++;
+			}
+		}
+		for (AttributeColumn column : this.columns.values()) {
+			column.compact(newIndices, size);
+		}
+		this.objectIds.subList(size, this.objectIds.size()).clear();
+		this.objectIds.trimToSize();
+		this.removedObjects = 0;
+	}
+
+	/*package*/ int getOrCreateObjectIndex(final String objectId) {
+		Integer index = this.objectIndices.get(objectId);
+		if (index == null) {
+			index = this.objectIds.size();
+			this.objectIds.add(objectId);
+			this.objectIndices.put(objectId, index);
+		}
+		return index;
+	}
+
+	/**
+	 * @return the index of the object, <code>-1</code> if there is no such object.
+	 */
+	/*package*/ int getObjectIndex(final String objectId) {
+		Integer index = this.objectIndices.get(objectId);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the number of object indices, including the ones of removed objects
+	 */
+	/*package*/ int getObjectIndexCount() {
+		return this.objectIds.size();
+	}
+
+	/**
+	 * @return the id of the object with this index, <code>null</code> if the object was removed
+	 */
+	/*package*/ String getObjectId(final int index) {
+		return this.objectIds.get(index);
+	}
+
+	/*package*/ Collection<AttributeColumn> getColumns() {
+		return this.columns.values();
+	}
+
+	/**
+	 * Returns the column for the attribute, creates it if necessary. Used to set the values
+	 * of many objects at once without boxing them.
+	 *
+	 * @return <code>null</code> if there is already a column of another type for this attribute
+	 */
+	/*package*/ AttributeColumn getOrCreateColumn(final String attribute, final int type) {
+		AttributeColumn column = this.columns.get(attribute);
+		if (column == null) {
+			column = AttributeColumn.create(attribute, type);
+			this.columns.put(attribute, column);
+		}
+		return column.getType() == type ? column : null;
+	}
+
+	/*package*/ List<String> getAttributeNames(final int index) {
+		List<String> names = new ArrayList<String>();
+		for (AttributeColumn column : this.columns.values()) {
+			if (column.isPresent(index)) {
+				names.add(column.name);
+			}
+		}
+		return names;
 	}
 
 }
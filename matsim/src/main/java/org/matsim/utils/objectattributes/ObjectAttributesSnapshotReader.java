@@ -0,0 +1,177 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.utils.objectattributes;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.api.internal.MatsimSomeReader;
+import org.matsim.core.utils.io.BinarySnapshot;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.utils.objectattributes.AttributeColumn.BooleanColumn;
+import org.matsim.utils.objectattributes.AttributeColumn.DoubleColumn;
+import org.matsim.utils.objectattributes.AttributeColumn.IntegerColumn;
+import org.matsim.utils.objectattributes.AttributeColumn.LongColumn;
+import org.matsim.utils.objectattributes.AttributeColumn.StringColumn;
+
+/**
+ * Reads object attributes from a {@link BinarySnapshot} written by the
+ * {@link ObjectAttributesSnapshotWriter}. The values of the columns are set directly,
+ * without boxing them. Values of types other than {@link Double}, {@link Integer},
+ * {@link Long}, {@link Boolean} and {@link String} need an {@link AttributeConverter},
+ * as in the {@link ObjectAttributesXmlReader}.
+ */
+public class ObjectAttributesSnapshotReader implements MatsimSomeReader {
+
+	private final static Logger log = Logger.getLogger(ObjectAttributesSnapshotReader.class);
+
+	private final ObjectAttributes attributes;
+	private final Map<String, AttributeConverter<?>> converters = new HashMap<String, AttributeConverter<?>>();
+	private final Set<String> missingConverters = new HashSet<String>();
+
+	public ObjectAttributesSnapshotReader(final ObjectAttributes attributes) {
+		this.attributes = attributes;
+	}
+
+	public void readFile(final String filename) throws UncheckedIOException {
+		log.info("reading binary object attributes snapshot from " + filename);
+		try (BinarySnapshot.Input in = new BinarySnapshot.Input(filename, BinarySnapshot.OBJECT_ATTRIBUTES)) {
+			int numberOfObjects = in.readInt();
+			String[] objectIds = new String[numberOfObjects];
+			int[] indices = new int[numberOfObjects];
+			for (int i = 0; i < numberOfObjects; i++) {
+				objectIds[i] = in.readString();
+				indices[i] = this.attributes.getOrCreateObjectIndex(objectIds[i]);
+			}
+			int numberOfColumns = in.readInt();
+			for (int c = 0; c < numberOfColumns; c++) {
+				readColumn(in, objectIds, indices);
+			}
+			log.info("read " + numberOfObjects + " objects with " + numberOfColumns + " attributes");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void readColumn(final BinarySnapshot.Input in, final String[] objectIds, final int[] indices) {
+		String name = in.readString();
+		int type = in.readInt();
+		int numberOfValues = in.readInt();
+		// the typed column, null if the attributes already contain values of another type for this attribute
+		AttributeColumn column = type == AttributeColumn.TYPE_OBJECT ? null : this.attributes.getOrCreateColumn(name, type);
+		for (int i = 0; i < numberOfValues; i++) {
+			int position = in.readInt();
+			int index = indices[position];
+			switch (type) {
+			case AttributeColumn.TYPE_DOUBLE:
+				double d = in.readDouble();
+				if (column != null) {
+					((DoubleColumn) column).setDouble(index, d);
+				} else {
+					this.attributes.putAttribute(objectIds[position], name, d);
+				}
+				break;
+			case AttributeColumn.TYPE_INTEGER:
+				int n = in.readInt();
+				if (column != null) {
+					((IntegerColumn) column).setInt(index, n);
+				} else {
+					this.attributes.putAttribute(objectIds[position], name, n);
+				}
+				break;
+			case AttributeColumn.TYPE_LONG:
+				long l = in.readLong();
+				if (column != null) {
+					((LongColumn) column).setLong(index, l);
+				} else {
+					this.attributes.putAttribute(objectIds[position], name, l);
+				}
+				break;
+			case AttributeColumn.TYPE_BOOLEAN:
+				boolean b = in.readBoolean();
+				if (column != null) {
+					((BooleanColumn) column).setBoolean(index, b);
+				} else {
+					this.attributes.putAttribute(objectIds[position], name, b);
+				}
+				break;
+			case AttributeColumn.TYPE_STRING:
+				String s = in.readString();
+				if (column != null) {
+					((StringColumn) column).setString(index, s);
+				} else {
+					this.attributes.putAttribute(objectIds[position], name, s);
+				}
+				break;
+			default:
+				Object value = readObject(in);
+				if (value != null) {
+					this.attributes.putAttribute(objectIds[position], name, value);
+				}
+			}
+		}
+	}
+
+	private Object readObject(final BinarySnapshot.Input in) {
+		int type = in.readInt();
+		switch (type) {
+		case AttributeColumn.TYPE_DOUBLE:
+			return in.readDouble();
+		case AttributeColumn.TYPE_INTEGER:
+			return in.readInt();
+		case AttributeColumn.TYPE_LONG:
+			return in.readLong();
+		case AttributeColumn.TYPE_BOOLEAN:
+			return in.readBoolean();
+		case AttributeColumn.TYPE_STRING:
+			return in.readString();
+		default:
+			String className = in.readString();
+			String value = in.readString();
+			AttributeConverter<?> converter = this.converters.get(className);
+			if (converter == null) {
+				if (this.missingConverters.add(className)) {
+					log.warn("No AttributeConverter found for class " + className + ". Not all attribute values can be read.");
+				}
+				return null;
+			}
+			return converter.convert(value);
+		}
+	}
+
+	/**
+	 * Sets the converter for reading attributes of the specified class.
+	 *
+	 * @return the previously registered converter for this class, or <code>null</code> if none was set before.
+	 */
+	public AttributeConverter<?> putAttributeConverter(final Class<?> clazz, final AttributeConverter<?> converter) {
+		return this.converters.put(clazz.getCanonicalName(), converter);
+	}
+
+	/*package*/ void putAttributeConverters(final Map<String, AttributeConverter<?>> converters) {
+		this.converters.putAll(converters);
+	}
+
+}
@@ -0,0 +1,178 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.utils.objectattributes;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.api.internal.MatsimSomeWriter;
+import org.matsim.core.utils.io.BinarySnapshot;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.utils.objectattributes.AttributeColumn.BooleanColumn;
+import org.matsim.utils.objectattributes.AttributeColumn.DoubleColumn;
+import org.matsim.utils.objectattributes.AttributeColumn.IntegerColumn;
+import org.matsim.utils.objectattributes.AttributeColumn.LongColumn;
+import org.matsim.utils.objectattributes.AttributeColumn.StringColumn;
+
+/**
+ * Writes object attributes as {@link BinarySnapshot}, column by column. Attributes of type
+ * {@link Double}, {@link Integer}, {@link Long}, {@link Boolean} and {@link String} are written
+ * directly, values of other types with the {@link AttributeConverter}s registered with
+ * {@link #putAttributeConverter(Class, AttributeConverter)}, as in the
+ * {@link ObjectAttributesXmlWriter}.
+ * <p></p>
+ * The snapshot can be read by the {@link ObjectAttributesSnapshotReader} or the
+ * {@link ObjectAttributesXmlReader}, which recognizes snapshots by their content.
+ */
+public class ObjectAttributesSnapshotWriter implements MatsimSomeWriter {
+
+	private final static Logger log = Logger.getLogger(ObjectAttributesSnapshotWriter.class);
+
+	private final ObjectAttributes attributes;
+	private final Map<String, AttributeConverter<?>> converters = new HashMap<String, AttributeConverter<?>>();
+	private final Set<Class<?>> missingConverters = new HashSet<Class<?>>();
+
+	public ObjectAttributesSnapshotWriter(final ObjectAttributes attributes) {
+		this.attributes = attributes;
+	}
+
+	public void writeFile(final String filename) throws UncheckedIOException {
+		log.info("writing binary object attributes snapshot to " + filename);
+		try (BinarySnapshot.Output out = new BinarySnapshot.Output(filename, BinarySnapshot.OBJECT_ATTRIBUTES)) {
+			// the columns refer to the objects by their position in the snapshot, without the removed ones
+			int[] positions = new int[this.attributes.getObjectIndexCount()];
+			int numberOfObjects = 0;
+			for (int index = 0; index < positions.length; index++) {
+				positions[index] = this.attributes.getObjectId(index) == null ? -1 : numberOfObjects++;
+			}
+			out.writeInt(numberOfObjects);
+			for (int index = 0; index < positions.length; index++) {
+				if (positions[index] >= 0) {
+					out.writeString(this.attributes.getObjectId(index));
+				}
+			}
+
+			out.writeInt(this.attributes.getColumns().size());
+			for (AttributeColumn column : this.attributes.getColumns()) {
+				writeColumn(out, column, positions);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeColumn(final BinarySnapshot.Output out, final AttributeColumn column, final int[] positions) throws IOException {
+		out.writeString(column.name);
+		out.writeInt(column.getType());
+		int numberOfValues = 0;
+		for (int index = 0; index < positions.length; index++) {
+			if (column.isPresent(index) && isWritable(column, index)) {
+				numberOfValues++;
+			}
+		}
+		out.writeInt(numberOfValues);
+		for (int index = 0; index < positions.length; index++) {
+			if (!column.isPresent(index) || !isWritable(column, index)) {
+				continue;
+			}
+			out.writeInt(positions[index]);
+			switch (column.getType()) {
+			case AttributeColumn.TYPE_DOUBLE:
+				out.writeDouble(((DoubleColumn) column).values[index]);
+				break;
+			case AttributeColumn.TYPE_INTEGER:
+				out.writeInt(((IntegerColumn) column).values[index]);
+				break;
+			case AttributeColumn.TYPE_LONG:
+				out.writeLong(((LongColumn) column).values[index]);
+				break;
+			case AttributeColumn.TYPE_BOOLEAN:
+				out.writeBoolean(((BooleanColumn) column).values.get(index));
+				break;
+			case AttributeColumn.TYPE_STRING:
+				StringColumn stringColumn = (StringColumn) column;
+				out.writeString(stringColumn.dictionary.get(stringColumn.codes[index]));
+				break;
+			default:
+				writeObject(out, column.getValue(index));
+			}
+		}
+	}
+
+	private boolean isWritable(final AttributeColumn column, final int index) {
+		if (column.getType() != AttributeColumn.TYPE_OBJECT) {
+			return true;
+		}
+		Class<?> clazz = column.getValue(index).getClass();
+		if (AttributeColumn.getType(column.getValue(index)) != AttributeColumn.TYPE_OBJECT
+				|| this.converters.containsKey(clazz.getCanonicalName())) {
+			return true;
+		}
+		if (this.missingConverters.add(clazz)) {
+			log.warn("No AttributeConverter found for class " + clazz.getCanonicalName() + ". Not all attribute values will be written.");
+		}
+		return false;
+	}
+
+	/**
+	 * values in columns of mixed types are written with their type
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void writeObject(final BinarySnapshot.Output out, final Object value) throws IOException {
+		int type = AttributeColumn.getType(value);
+		out.writeInt(type);
+		switch (type) {
+		case AttributeColumn.TYPE_DOUBLE:
+			out.writeDouble((Double) value);
+			break;
+		case AttributeColumn.TYPE_INTEGER:
+			out.writeInt((Integer) value);
+			break;
+		case AttributeColumn.TYPE_LONG:
+			out.writeLong((Long) value);
+			break;
+		case AttributeColumn.TYPE_BOOLEAN:
+			out.writeBoolean((Boolean) value);
+			break;
+		case AttributeColumn.TYPE_STRING:
+			out.writeString((String) value);
+			break;
+		default:
+			String className = value.getClass().getCanonicalName();
+			out.writeString(className);
+			out.writeString(((AttributeConverter) this.converters.get(className)).convertToString(value));
+		}
+	}
+
+	/**
+	 * Sets the converter for writing attributes of the specified class.
+	 *
+	 * @return the previously registered converter for this class, or <code>null</code> if none was set before.
+	 */
+	public AttributeConverter<?> putAttributeConverter(final Class<?> clazz, final AttributeConverter<?> converter) {
+		return this.converters.put(clazz.getCanonicalName(), converter);
+	}
+
+}
@@ -33,7 +33,9 @@ import java.util.Stack;
 
 import com.google.inject.Inject;
 import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.BinarySnapshot;
 import org.matsim.core.utils.io.MatsimXmlParser;
+import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.utils.objectattributes.attributeconverters.BooleanConverter;
 import org.matsim.utils.objectattributes.attributeconverters.DoubleConverter;
 import org.matsim.utils.objectattributes.attributeconverters.FloatConverter;
@@ -81,6 +83,21 @@ public class ObjectAttributesXmlReader extends MatsimXmlParser {
 		this.converters.put(Long.class.getCanonicalName(), LONG_Converter);
 	}
 
+	/**
+	 * Binary snapshots written by the {@link ObjectAttributesSnapshotWriter} are passed on to the
+	 * {@link ObjectAttributesSnapshotReader}, using the same converters, all other files are parsed as xml.
+	 */
+	@Override
+	public void parse(final String filename) throws UncheckedIOException {
+		if (BinarySnapshot.getContentType(filename) == BinarySnapshot.OBJECT_ATTRIBUTES) {
+			ObjectAttributesSnapshotReader reader = new ObjectAttributesSnapshotReader(this.attributes);
+			reader.putAttributeConverters(this.converters);
+			reader.readFile(filename);
+		} else {
+			super.parse(filename);
+		}
+	}
+
 	@Override
 	public void startTag(String name, Attributes atts, Stack<String> context) {
 		if (TAG_ATTRIBUTE.equals(name)) {
@@ -19,13 +19,15 @@
 
 package org.matsim.utils.objectattributes;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 
 import com.google.inject.Inject;
 import org.apache.log4j.Logger;
@@ -79,25 +81,36 @@ public class ObjectAttributesXmlWriter extends MatsimXmlWriter {
 		writeDoctype(TAG_OBJECT_ATTRIBUTES, "http://matsim.org/files/dtd/objectattributes_v1.dtd");
 		writeStartTag(TAG_OBJECT_ATTRIBUTES, null);
 		List<Tuple<String, String>> xmlAttributes = new LinkedList<Tuple<String, String>>();
-		for (Map.Entry<String, Map<String, Object>> entry : this.attributes.attributes.entrySet()) {
-			xmlAttributes.add(super.createTuple(ATTR_OBJECTID, entry.getKey()));
+		// sort attributes by name
+		List<AttributeColumn> columns = new ArrayList<AttributeColumn>(this.attributes.getColumns());
+		Collections.sort(columns, new Comparator<AttributeColumn>() {
+			@Override
+			public int compare(AttributeColumn c1, AttributeColumn c2) {
+				return c1.name.compareTo(c2.name);
+			}
+		});
+		for (int index = 0; index < this.attributes.getObjectIndexCount(); index++) {
+			String objectId = this.attributes.getObjectId(index);
+			if (objectId == null) {
+				continue;
+			}
+			xmlAttributes.add(super.createTuple(ATTR_OBJECTID, objectId));
 			writeStartTag(TAG_OBJECT, xmlAttributes);
 			xmlAttributes.clear();
-			// sort attributes by name
-			Map<String, Object> objAttributes = new TreeMap<String, Object>();
-			for (Map.Entry<String, Object> objAttribute : entry.getValue().entrySet()) {
-				objAttributes.put(objAttribute.getKey(), objAttribute.getValue());
-			}
 			// write attributes
-			for (Map.Entry<String, Object> objAttribute : objAttributes.entrySet()) {
-				Class<?> clazz = objAttribute.getValue().getClass();
+			for (AttributeColumn column : columns) {
+				if (!column.isPresent(index)) {
+					continue;
+				}
+				Object value = column.getValue(index);
+				Class<?> clazz = value.getClass();
 				AttributeConverter<?> conv = this.converters.get(clazz.getCanonicalName());
 				if (conv != null) {
-					xmlAttributes.add(super.createTuple(ATTR_ATTRIBUTENAME, objAttribute.getKey()));
+					xmlAttributes.add(super.createTuple(ATTR_ATTRIBUTENAME, column.name));
 					xmlAttributes.add(super.createTuple(ATTR_ATTRIBUTECLASS, clazz.getCanonicalName()));
 					writeStartTag(TAG_ATTRIBUTE, xmlAttributes);
 					xmlAttributes.clear();
-					writeContent(conv.convertToString(objAttribute.getValue()), false);
+					writeContent(conv.convertToString(value), false);
 					writeEndTag(TAG_ATTRIBUTE);
 				} else {
 					if (missingConverters.add(clazz)) {
@@ -0,0 +1,212 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.analysis;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class IterationAnalysisEngineTest {
+
+	@Test
+	public void testSameResultsAsSeparateHandlers() {
+		Network network = createNetwork();
+
+		EventsManager separateEvents = EventsUtils.createEventsManager();
+		VolumesAnalyzer separateVolumes = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+		LegHistogram separateHistogram = new LegHistogram(300);
+		CalcLegTimes separateLegTimes = new CalcLegTimes();
+		separateEvents.addHandler(separateVolumes);
+		separateEvents.addHandler(separateHistogram);
+		separateEvents.addHandler(separateLegTimes);
+
+		EventsManager fusedEvents = EventsUtils.createEventsManager();
+		IterationAnalysisEngine engine = new IterationAnalysisEngine(fusedEvents, createConfig(true));
+		VolumesAnalyzer fusedVolumes = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+		LegHistogram fusedHistogram = new LegHistogram(300);
+		CalcLegTimes fusedLegTimes = new CalcLegTimes();
+		engine.addAnalyzer(fusedVolumes);
+		engine.addAnalyzer(fusedHistogram);
+		engine.addAnalyzer(fusedLegTimes);
+
+		for (int iteration = 0; iteration < 2; iteration++) {
+			separateEvents.resetHandlers(iteration);
+			fusedEvents.resetHandlers(iteration);
+			engine.notifyBeforeMobsim(new BeforeMobsimEvent(null, iteration));
+			separateEvents.initProcessing();
+			fusedEvents.initProcessing();
+			createEvents(separateEvents, fusedEvents, iteration);
+			separateEvents.finishProcessing();
+			fusedEvents.finishProcessing();
+			engine.notifyAfterMobsim(new AfterMobsimEvent(null, iteration));
+
+			Assert.assertEquals(separateVolumes.getLinkIds(), fusedVolumes.getLinkIds());
+			Assert.assertEquals(separateVolumes.getModes(), fusedVolumes.getModes());
+			for (Id<Link> linkId : network.getLinks().keySet()) {
+				Assert.assertArrayEquals(separateVolumes.getVolumesForLink(linkId), fusedVolumes.getVolumesForLink(linkId));
+				for (String mode : separateVolumes.getModes()) {
+					Assert.assertArrayEquals(separateVolumes.getVolumesForLink(linkId, mode), fusedVolumes.getVolumesForLink(linkId, mode));
+				}
+			}
+			Assert.assertEquals(separateHistogram.getLegModes(), fusedHistogram.getLegModes());
+			Assert.assertArrayEquals(separateHistogram.getDepartures(), fusedHistogram.getDepartures());
+			Assert.assertArrayEquals(separateHistogram.getArrivals(), fusedHistogram.getArrivals());
+			Assert.assertArrayEquals(separateHistogram.getStuck(), fusedHistogram.getStuck());
+			StringWriter separateStats = new StringWriter();
+			separateLegTimes.writeStats(separateStats);
+			StringWriter fusedStats = new StringWriter();
+			fusedLegTimes.writeStats(fusedStats);
+			Assert.assertEquals(separateStats.toString(), fusedStats.toString());
+			Assert.assertEquals(separateLegTimes.getAverageTripDuration(), fusedLegTimes.getAverageTripDuration(), 1e-9);
+		}
+	}
+
+	@Test
+	public void testEventsOutsideOfMobsimAreHandledDirectly() {
+		Network network = createNetwork();
+		EventsManager events = EventsUtils.createEventsManager();
+		IterationAnalysisEngine engine = new IterationAnalysisEngine(events, createConfig(true));
+		VolumesAnalyzer volumes = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+		engine.addAnalyzer(volumes);
+
+		Id<Link> linkId = Id.create("1", Link.class);
+		events.processEvent(new LinkLeaveEvent(7.5 * 3600, Id.create("v", Vehicle.class), linkId));
+		Assert.assertEquals(1, volumes.getVolumesForLink(linkId)[7]);
+	}
+
+	@Test
+	public void testDisabledByDefault() {
+		Network network = createNetwork();
+		EventsManager events = EventsUtils.createEventsManager();
+		IterationAnalysisEngine engine = new IterationAnalysisEngine(events, new ParallelEventHandlingConfigGroup());
+		VolumesAnalyzer volumes = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+		engine.addAnalyzer(volumes);
+
+		engine.notifyBeforeMobsim(new BeforeMobsimEvent(null, 0));
+		Id<Link> linkId = Id.create("1", Link.class);
+		events.processEvent(new LinkLeaveEvent(7.5 * 3600, Id.create("v", Vehicle.class), linkId));
+		// the analyzer is registered with the events manager itself
+		Assert.assertEquals(1, volumes.getVolumesForLink(linkId)[7]);
+		engine.notifyAfterMobsim(new AfterMobsimEvent(null, 0));
+		Assert.assertEquals(1, volumes.getVolumesForLink(linkId)[7]);
+	}
+
+	@Test
+	public void testVolumesOfLinksNotInNetwork() {
+		VolumesAnalyzer volumes = new VolumesAnalyzer(3600, 24 * 3600 - 1, createNetwork());
+		Id<Link> unknown = Id.create("unknown", Link.class);
+		Id<Vehicle> vehicleId = Id.create("v", Vehicle.class);
+		volumes.handleEvent(new VehicleEntersTrafficEvent(0, Id.create("p", Person.class), unknown, vehicleId, TransportMode.car, 1.0));
+		for (int i = 0; i < 40; i++) {
+			volumes.handleEvent(new LinkLeaveEvent(3600 + i, vehicleId, Id.create("unknown" + i, Link.class)));
+		}
+		Assert.assertEquals(1, volumes.getVolumesForLink(Id.create("unknown39", Link.class))[1]);
+		Assert.assertEquals(1, volumes.getVolumesForLink(Id.create("unknown39", Link.class), TransportMode.car)[1]);
+		Assert.assertNull(volumes.getVolumesForLink(Id.create("1", Link.class)));
+		Assert.assertEquals(40, volumes.getLinkIds().size());
+		volumes.reset(1);
+		Assert.assertTrue(volumes.getLinkIds().isEmpty());
+	}
+
+	private static ParallelEventHandlingConfigGroup createConfig(boolean analysisInSeparateThread) {
+		ParallelEventHandlingConfigGroup config = new ParallelEventHandlingConfigGroup();
+		config.setAnalysisInSeparateThread(analysisInSeparateThread);
+		return config;
+	}
+
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		Node[] nodes = new Node[11];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = network.getFactory().createNode(Id.create(i, Node.class), new Coord(i * 1000, 0));
+			network.addNode(nodes[i]);
+		}
+		for (int i = 1; i < nodes.length; i++) {
+			network.addLink(network.getFactory().createLink(Id.create(i, Link.class), nodes[i - 1], nodes[i]));
+		}
+		return network;
+	}
+
+	/**
+	 * some thousand persons driving or walking along the links of the network, some of them get stuck
+	 */
+	private static void createEvents(EventsManager events1, EventsManager events2, int iteration) {
+		Random random = new Random(iteration);
+		String[] modes = { TransportMode.car, TransportMode.bike, TransportMode.walk };
+		for (int p = 0; p < 3000; p++) {
+			Id<Person> personId = Id.create(p, Person.class);
+			Id<Vehicle> vehicleId = Id.create(p, Vehicle.class);
+			String mode = modes[random.nextInt(modes.length)];
+			double time = random.nextInt(20 * 3600);
+			Id<Link> startLinkId = Id.create(1 + random.nextInt(5), Link.class);
+			process(events1, events2, new ActivityEndEvent(time, personId, startLinkId, null, "home"));
+			process(events1, events2, new PersonDepartureEvent(time, personId, startLinkId, mode));
+			if (!mode.equals(TransportMode.walk)) {
+				process(events1, events2, new VehicleEntersTrafficEvent(time, personId, startLinkId, vehicleId, mode, 1.0));
+			}
+			int numberOfLinks = 1 + random.nextInt(5);
+			for (int i = 0; i < numberOfLinks; i++) {
+				time += 60 + random.nextInt(600);
+				Id<Link> linkId = Id.create(Integer.parseInt(startLinkId.toString()) + i, Link.class);
+				if (!mode.equals(TransportMode.walk)) {
+					process(events1, events2, new LinkLeaveEvent(time, vehicleId, linkId));
+				}
+			}
+			Id<Link> endLinkId = Id.create(Integer.parseInt(startLinkId.toString()) + numberOfLinks, Link.class);
+			if (random.nextInt(20) == 0) {
+				process(events1, events2, new PersonStuckEvent(time, personId, endLinkId, mode));
+			} else {
+				process(events1, events2, new PersonArrivalEvent(time, personId, endLinkId, mode));
+				process(events1, events2, new ActivityStartEvent(time, personId, endLinkId, null, "work"));
+			}
+		}
+	}
+
+	private static void process(EventsManager events1, EventsManager events2, Event event) {
+		events1.processEvent(event);
+		events2.processEvent(event);
+	}
+
+}
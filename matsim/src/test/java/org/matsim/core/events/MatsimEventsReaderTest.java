@@ -0,0 +1,125 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class MatsimEventsReaderTest {
+
+	private static final String EVENTS_FILE = "test/scenarios/equil/output_events.xml.gz";
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testPipelined_sameEvents() {
+		List<String> expected = readEvents(EVENTS_FILE, false);
+		List<String> actual = readEvents(EVENTS_FILE, true);
+		Assert.assertTrue(expected.size() > 10000);
+		Assert.assertEquals(expected, actual);
+	}
+
+	@Test(timeout = 60000)
+	public void testPipelined_handlerException() {
+		EventsManager events = EventsUtils.createEventsManager();
+		final RuntimeException exception = new RuntimeException("stop");
+		events.addHandler(new BasicEventHandler() {
+			private int count = 0;
+			@Override
+			public void reset(int iteration) {
+			}
+			@Override
+			public void handleEvent(Event event) {
+				if (++this.count == 5000) {
+					throw exception;
+				}
+			}
+		});
+		try {
+			MatsimEventsReader reader = new MatsimEventsReader(events);
+			reader.setPipelined(true);
+			reader.readFile(EVENTS_FILE);
+			Assert.fail("expected exception from handler");
+		} catch (RuntimeException e) {
+			Assert.assertSame(exception, e);
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testPipelined_brokenFile() throws IOException {
+		// the events before the end of the truncated file are passed on before the error
+		String filename = this.utils.getOutputDirectory() + "broken_events.xml";
+		int numberOfLines = 0;
+		try (BufferedReader reader = IOUtils.getBufferedReader(EVENTS_FILE);
+				BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+			String line;
+			while ((line = reader.readLine()) != null && numberOfLines < 20000) {
+				writer.write(line);
+				writer.newLine();
+				numberOfLines++;
+			}
+			writer.write("<event time=");
+		}
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		try {
+			MatsimEventsReader reader = new MatsimEventsReader(events);
+			reader.setPipelined(true);
+			reader.readFile(filename);
+			Assert.fail("expected exception for broken file");
+		} catch (UncheckedIOException e) {
+			// expected
+		}
+		// all lines apart from the header contain an event
+		Assert.assertEquals(numberOfLines - 2, collector.getEvents().size());
+	}
+
+	private static List<String> readEvents(String filename, boolean pipelined) {
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		MatsimEventsReader reader = new MatsimEventsReader(events);
+		reader.setPipelined(pipelined);
+		reader.readFile(filename);
+		List<String> result = new ArrayList<>();
+		for (Event event : collector.getEvents()) {
+			result.add(event.toString());
+		}
+		return result;
+	}
+
+}
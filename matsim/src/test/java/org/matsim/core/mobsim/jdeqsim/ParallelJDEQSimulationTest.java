@@ -0,0 +1,344 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.Dijkstra;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class ParallelJDEQSimulationTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * With several partitions, the events are the same as with a single partition of the
+	 * {@link ParallelJDEQSimulation}, which orders the messages with the same time stamp
+	 * by the owner of their vehicle, see {@link ParallelScheduler#MESSAGE_ORDER}.
+	 */
+	@Test
+	public void testSameEventsAsOnePartition_twoThreads() {
+		Scenario scenario = createScenario(300);
+		List<String> expected = sortedEvents(run(scenario, 1, true));
+		List<String> actual = sortedEvents(run(scenario, 2, true));
+		Assert.assertEquals(expected.size(), actual.size());
+		Assert.assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testSameEventsAsOnePartition_fourThreads() {
+		Scenario scenario = createScenario(300);
+		List<String> expected = sortedEvents(run(scenario, 1, true));
+		List<String> actual = sortedEvents(run(scenario, 4, true));
+		Assert.assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testSameEventsAsOnePartition_deadlockPrevention() {
+		Scenario scenario = createScenario(500);
+		// let waiting vehicles squeeze into full roads very early, also across partition boundaries
+		ConfigUtils.addOrGetModule(scenario.getConfig(), JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class).setSqueezeTime(20);
+		ConfigUtils.addOrGetModule(scenario.getConfig(), JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class).setStorageCapacityFactor(0.1);
+		List<String> expected = sortedEvents(run(scenario, 1, true));
+		List<String> actual = sortedEvents(run(scenario, 3, true));
+		Assert.assertEquals(expected, actual);
+	}
+
+	/**
+	 * Not only the same events, but also in the same order; also checks the order of the messages
+	 * with the same time stamp, which are ordered by the owner of the vehicle.
+	 */
+	@Test
+	public void testSameEventOrderAsOnePartition() {
+		Scenario scenario = createScenario(500);
+		List<Event> expected = run(scenario, 1, true);
+		for (int numberOfThreads : new int[] { 2, 3 }) {
+			List<Event> actual = run(scenario, numberOfThreads, true);
+			assertSameEventOrder(expected, actual, numberOfThreads);
+		}
+	}
+
+	/**
+	 * The owner tie-break is only used by the {@link ParallelJDEQSimulation}, so the simultaneous
+	 * messages may be handled in another order than in the {@link JDEQSimulation}; the agents
+	 * still execute the same plans.
+	 */
+	@Test
+	public void testSameEventTypesAsSequential() {
+		Scenario scenario = createScenario(300);
+		Assert.assertEquals(countEventTypes(run(scenario, 1, false)), countEventTypes(run(scenario, 2, true)));
+	}
+
+	/**
+	 * Car legs with an empty route and teleported legs without travel time take the vehicles
+	 * into another partition without any delay. They must not reduce the lookahead to 0.
+	 */
+	@Test
+	public void testLegsWithoutTravelTimeBetweenPartitions() {
+		Scenario scenario = createScenario(300);
+		addPersonsChangingPartitionsWithoutTravelTime(scenario, 100);
+		List<Event> expected = run(scenario, 1, true);
+		List<Event> actual = run(scenario, 3, true);
+		assertSameEventOrder(expected, actual, 3);
+
+		ParallelJDEQSimulation sim = new ParallelJDEQSimulation(
+				ConfigUtils.addOrGetModule(scenario.getConfig(), JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class), scenario,
+				EventsUtils.createEventsManager());
+		sim.run();
+		Assert.assertTrue(sim.getLookahead() > 0);
+	}
+
+	@Test
+	public void testEventsOrderedByTime() {
+		Scenario scenario = createScenario(300);
+		List<Event> events = run(scenario, 4, true);
+		Assert.assertFalse(events.isEmpty());
+		for (int i = 1; i < events.size(); i++) {
+			Assert.assertTrue("events not ordered by time at index " + i, events.get(i - 1).getTime() <= events.get(i).getTime());
+		}
+	}
+
+	@Test
+	public void testTimeWindows() {
+		Scenario scenario = createScenario(10);
+		ConfigUtils.addOrGetModule(scenario.getConfig(), JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class).setNumberOfThreads(2);
+		EventsManager events = EventsUtils.createEventsManager();
+		ParallelJDEQSimulation sim = new ParallelJDEQSimulation(
+				ConfigUtils.addOrGetModule(scenario.getConfig(), JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class), scenario, events);
+		sim.run();
+		// the vehicles cross the partition boundary, so the simulation needs more than one window
+		Assert.assertTrue(sim.getNumberOfTimeWindows() > 1);
+	}
+
+	private static List<Event> run(Scenario scenario, int numberOfThreads, boolean parallel) {
+		JDEQSimConfigGroup config = ConfigUtils.addOrGetModule(scenario.getConfig(), JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class);
+		config.setNumberOfThreads(numberOfThreads);
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		if (parallel) {
+			new ParallelJDEQSimulation(config, scenario, events).run();
+		} else {
+			new JDEQSimulation(config, scenario, events).run();
+		}
+		events.finishProcessing();
+		return new ArrayList<>(collector.getEvents());
+	}
+
+	private static void assertSameEventOrder(List<Event> expected, List<Event> actual, int numberOfThreads) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals("event " + i + " with " + numberOfThreads + " threads", expected.get(i).toString(), actual.get(i).toString());
+		}
+	}
+
+	private static Map<String, Integer> countEventTypes(List<Event> events) {
+		Map<String, Integer> counts = new TreeMap<>();
+		for (Event event : events) {
+			Integer count = counts.get(event.getEventType());
+			counts.put(event.getEventType(), count == null ? 1 : count + 1);
+		}
+		return counts;
+	}
+
+	private static List<String> sortedEvents(List<Event> events) {
+		List<Event> sorted = new ArrayList<>(events);
+		Collections.sort(sorted, new Comparator<Event>() {
+			@Override
+			public int compare(Event e1, Event e2) {
+				int result = Double.compare(e1.getTime(), e2.getTime());
+				return result == 0 ? e1.toString().compareTo(e2.toString()) : result;
+			}
+		});
+		List<String> result = new ArrayList<>();
+		for (Event event : sorted) {
+			result.add(event.toString());
+		}
+		return result;
+	}
+
+	/**
+	 * A grid of 6x6 nodes with links of low capacity in both directions. The agents
+	 * drive between random links of the grid, walk to a third one and drive back.
+	 */
+	private static Scenario createScenario(int numberOfPersons) {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		int size = 6;
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = network.getFactory().createNode(Id.create(x + "_" + y, Node.class), new Coord(x * 500, y * 500));
+				network.addNode(nodes[x][y]);
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					createLink(network, nodes[x][y], nodes[x + 1][y]);
+					createLink(network, nodes[x + 1][y], nodes[x][y]);
+				}
+				if (y + 1 < size) {
+					createLink(network, nodes[x][y], nodes[x][y + 1]);
+					createLink(network, nodes[x][y + 1], nodes[x][y]);
+				}
+			}
+		}
+
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		FreespeedTravelTimeAndDisutility travelTime = new FreespeedTravelTimeAndDisutility(scenario.getConfig().planCalcScore());
+		Dijkstra router = new Dijkstra(network, travelTime, travelTime);
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		Random random = new Random(4711);
+		for (int i = 0; i < numberOfPersons; i++) {
+			Link home = links.get(random.nextInt(links.size()));
+			Link work = drawDestination(links, home, random);
+			Link shop = links.get(random.nextInt(links.size()));
+			Person person = pf.createPerson(Id.create(i, Person.class));
+			Plan plan = pf.createPlan();
+			Activity h1 = pf.createActivityFromLinkId("h", home.getId());
+			h1.setEndTime(7 * 3600 + random.nextInt(600));
+			plan.addActivity(h1);
+			plan.addLeg(createCarLeg(pf, router, home, work));
+			Activity w = pf.createActivityFromLinkId("w", work.getId());
+			w.setEndTime(8 * 3600 + random.nextInt(600));
+			plan.addActivity(w);
+			Leg walk = pf.createLeg(TransportMode.walk);
+			walk.setTravelTime(600 + random.nextInt(600));
+			plan.addLeg(walk);
+			Activity s = pf.createActivityFromLinkId("s", shop.getId());
+			s.setMaximumDuration(random.nextInt(600));
+			plan.addActivity(s);
+			plan.addLeg(createCarLeg(pf, router, shop, drawDestination(links, shop, random)));
+			plan.addActivity(pf.createActivityFromLinkId("h", ((Leg) plan.getPlanElements().get(5)).getRoute().getEndLinkId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		return scenario;
+	}
+
+	/**
+	 * With 3 partitions, the nodes with x = 1 and x = 2 are in different partitions.
+	 * The agents drive with an empty route from the link (1,y)-(2,y) to the next link
+	 * (2,y)-(3,y), walk back without travel time and drive back along the grid.
+	 */
+	private static void addPersonsChangingPartitionsWithoutTravelTime(Scenario scenario, int numberOfPersons) {
+		Network network = scenario.getNetwork();
+		FreespeedTravelTimeAndDisutility travelTime = new FreespeedTravelTimeAndDisutility(scenario.getConfig().planCalcScore());
+		Dijkstra router = new Dijkstra(network, travelTime, travelTime);
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		Random random = new Random(4712);
+		for (int i = 0; i < numberOfPersons; i++) {
+			int y = random.nextInt(6);
+			Link home = network.getLinks().get(Id.create("1_" + y + "-2_" + y, Link.class));
+			Link work = network.getLinks().get(Id.create("2_" + y + "-3_" + y, Link.class));
+			Person person = pf.createPerson(Id.create("noTravelTime" + i, Person.class));
+			Plan plan = pf.createPlan();
+			Activity h1 = pf.createActivityFromLinkId("h", home.getId());
+			h1.setEndTime(7 * 3600 + random.nextInt(600));
+			plan.addActivity(h1);
+			Leg emptyCarLeg = pf.createLeg(TransportMode.car);
+			NetworkRoute emptyRoute = pf.createRoute(NetworkRoute.class, home.getId(), work.getId());
+			emptyRoute.setLinkIds(home.getId(), new ArrayList<Id<Link>>(), work.getId());
+			emptyCarLeg.setRoute(emptyRoute);
+			plan.addLeg(emptyCarLeg);
+			Activity w = pf.createActivityFromLinkId("w", work.getId());
+			w.setMaximumDuration(random.nextInt(2) * random.nextInt(600));
+			plan.addActivity(w);
+			Leg walk = pf.createLeg(TransportMode.walk);
+			walk.setTravelTime(0);
+			plan.addLeg(walk);
+			Activity s = pf.createActivityFromLinkId("s", home.getId());
+			s.setMaximumDuration(random.nextInt(600));
+			plan.addActivity(s);
+			plan.addLeg(createCarLeg(pf, router, home, work));
+			plan.addActivity(pf.createActivityFromLinkId("h", work.getId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+	}
+
+	/**
+	 * car legs have at least one link in their route, so no vehicle changes the
+	 * partition without traveling
+	 */
+	private static Link drawDestination(List<Link> links, Link origin, Random random) {
+		Link destination;
+		do {
+			destination = links.get(random.nextInt(links.size()));
+		} while (destination == origin || destination.getFromNode() == origin.getToNode());
+		return destination;
+	}
+
+	private static void createLink(Network network, Node from, Node to) {
+		Link link = network.getFactory().createLink(Id.create(from.getId() + "-" + to.getId(), Link.class), from, to);
+		link.setLength(500);
+		link.setFreespeed(13.9);
+		link.setCapacity(600);
+		link.setNumberOfLanes(1);
+		network.addLink(link);
+	}
+
+	private static Leg createCarLeg(PopulationFactory pf, Dijkstra router, Link from, Link to) {
+		Leg leg = pf.createLeg(TransportMode.car);
+		NetworkRoute route = pf.createRoute(NetworkRoute.class, from.getId(), to.getId());
+		List<Id<Link>> linkIds = new ArrayList<>();
+		Path path = router.calcLeastCostPath(from.getToNode(), to.getFromNode(), 0, null, null);
+		for (Link link : path.links) {
+			linkIds.add(link.getId());
+		}
+		route.setLinkIds(from.getId(), linkIds, to.getId());
+		leg.setRoute(route);
+		return leg;
+	}
+
+}
@@ -0,0 +1,224 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.mesosim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class MesoSimulationTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSingleAgent_eventSequence() {
+		Fixture f = new Fixture();
+		f.addCarAgent("1", 100, f.link1, f.link3, f.link2);
+
+		List<Event> events = f.run();
+
+		Class<?>[] expectedTypes = new Class<?>[] {
+				ActivityEndEvent.class, PersonDepartureEvent.class, PersonEntersVehicleEvent.class, VehicleEntersTrafficEvent.class,
+				LinkLeaveEvent.class, LinkEnterEvent.class, LinkLeaveEvent.class, LinkEnterEvent.class,
+				VehicleLeavesTrafficEvent.class, PersonLeavesVehicleEvent.class, PersonArrivalEvent.class, ActivityStartEvent.class };
+		double[] expectedTimes = new double[] { 100, 100, 100, 100, 100, 100, 200, 200, 300, 300, 300, 300 };
+		Assert.assertEquals(expectedTypes.length, events.size());
+		for (int i = 0; i < expectedTypes.length; i++) {
+			Assert.assertEquals("wrong type of event " + i, expectedTypes[i], events.get(i).getClass());
+			Assert.assertEquals("wrong time of event " + i, expectedTimes[i], events.get(i).getTime(), MatsimTestUtils.EPSILON);
+		}
+		Assert.assertEquals(f.link1.getId(), ((LinkLeaveEvent) events.get(4)).getLinkId());
+		Assert.assertEquals(f.link2.getId(), ((LinkEnterEvent) events.get(5)).getLinkId());
+		Assert.assertEquals(f.link2.getId(), ((LinkLeaveEvent) events.get(6)).getLinkId());
+		Assert.assertEquals(f.link3.getId(), ((LinkEnterEvent) events.get(7)).getLinkId());
+		Assert.assertEquals(f.link3.getId(), ((PersonArrivalEvent) events.get(10)).getLinkId());
+	}
+
+	@Test
+	public void testFlowCapacity() {
+		Fixture f = new Fixture();
+		f.addCarAgent("1", 100, f.link1, f.link3, f.link2);
+		f.addCarAgent("2", 100, f.link1, f.link3, f.link2);
+		f.addCarAgent("3", 100, f.link1, f.link3, f.link2);
+
+		List<Double> leaveTimes = getLinkLeaveTimes(f.run(), f.link2.getId());
+
+		// link2 lets one vehicle pass every 10 seconds
+		Assert.assertEquals(Arrays.asList(200.0, 210.0, 220.0), leaveTimes);
+	}
+
+	@Test
+	public void testStorageCapacity_spillback() {
+		Fixture f = new Fixture();
+		// link3 can only hold one vehicle and lets one vehicle pass every 100 seconds
+		f.link3.setLength(7.5);
+		f.link3.setFreespeed(7.5);
+		f.link3.setCapacity(36);
+		ConfigUtils.addOrGetModule(f.scenario.getConfig(), MesoSimConfigGroup.NAME, MesoSimConfigGroup.class).setStuckTime(3600);
+		f.addCarAgent("1", 100, f.link1, f.link4, f.link2, f.link3);
+		f.addCarAgent("2", 100, f.link1, f.link4, f.link2, f.link3);
+		f.addCarAgent("3", 100, f.link1, f.link4, f.link2, f.link3);
+
+		List<Event> events = f.run();
+		List<Double> link2LeaveTimes = getLinkLeaveTimes(events, f.link2.getId());
+		List<Double> link3LeaveTimes = getLinkLeaveTimes(events, f.link3.getId());
+
+		Assert.assertEquals(Arrays.asList(201.0, 301.0, 401.0), link3LeaveTimes);
+		// the third vehicle has to wait on link2 until the second one has left link3
+		Assert.assertEquals(Arrays.asList(200.0, 210.0, 301.0), link2LeaveTimes);
+	}
+
+	@Test
+	public void testTeleportation() {
+		Fixture f = new Fixture();
+		Person person = f.addCarAgent("1", 100, f.link1, f.link3, f.link2);
+		Leg leg = (Leg) person.getSelectedPlan().getPlanElements().get(1);
+		leg.setMode(TransportMode.walk);
+		leg.getRoute().setTravelTime(1000);
+
+		List<Event> events = f.run();
+
+		Assert.assertEquals(5, events.size());
+		Assert.assertTrue(events.get(2) instanceof TeleportationArrivalEvent);
+		Assert.assertEquals(1100, events.get(3).getTime(), MatsimTestUtils.EPSILON);
+		Assert.assertEquals(f.link3.getId(), ((PersonArrivalEvent) events.get(3)).getLinkId());
+		Assert.assertTrue(events.get(4) instanceof ActivityStartEvent);
+	}
+
+	private static List<Double> getLinkLeaveTimes(final List<Event> events, final Id<Link> linkId) {
+		List<Double> times = new ArrayList<>();
+		for (Event event : events) {
+			if (event instanceof LinkLeaveEvent && ((LinkLeaveEvent) event).getLinkId().equals(linkId)) {
+				times.add(event.getTime());
+			}
+		}
+		return times;
+	}
+
+	/**
+	 * (0)---link1---(1)---link2---(2)---link3---(3)---link4---(4)
+	 */
+	private static class Fixture {
+		final Scenario scenario;
+		final Link link1;
+		final Link link2;
+		final Link link3;
+		final Link link4;
+
+		Fixture() {
+			this.scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+			Network network = this.scenario.getNetwork();
+			Node node0 = network.getFactory().createNode(Id.create("0", Node.class), new Coord(0, 0));
+			Node node1 = network.getFactory().createNode(Id.create("1", Node.class), new Coord(100, 0));
+			Node node2 = network.getFactory().createNode(Id.create("2", Node.class), new Coord(1100, 0));
+			Node node3 = network.getFactory().createNode(Id.create("3", Node.class), new Coord(2100, 0));
+			Node node4 = network.getFactory().createNode(Id.create("4", Node.class), new Coord(3100, 0));
+			network.addNode(node0);
+			network.addNode(node1);
+			network.addNode(node2);
+			network.addNode(node3);
+			network.addNode(node4);
+			this.link1 = createLink(network, "1", node0, node1, 100, 100, 36000);
+			this.link2 = createLink(network, "2", node1, node2, 1000, 10, 360);
+			this.link3 = createLink(network, "3", node2, node3, 1000, 10, 3600);
+			this.link4 = createLink(network, "4", node3, node4, 1000, 10, 3600);
+		}
+
+		private static Link createLink(final Network network, final String id, final Node from, final Node to,
+				final double length, final double freespeed, final double capacity) {
+			Link link = network.getFactory().createLink(Id.create(id, Link.class), from, to);
+			link.setLength(length);
+			link.setFreespeed(freespeed);
+			link.setCapacity(capacity);
+			link.setNumberOfLanes(1);
+			network.addLink(link);
+			return link;
+		}
+
+		Person addCarAgent(final String id, final double departureTime, final Link fromLink, final Link toLink, final Link... routeLinks) {
+			PopulationFactory pf = this.scenario.getPopulation().getFactory();
+			Person person = pf.createPerson(Id.create(id, Person.class));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", fromLink.getId());
+			home.setEndTime(departureTime);
+			plan.addActivity(home);
+			Leg leg = pf.createLeg(TransportMode.car);
+			NetworkRoute route = pf.createRoute(NetworkRoute.class, fromLink.getId(), toLink.getId());
+			List<Id<Link>> linkIds = new ArrayList<>();
+			for (Link link : routeLinks) {
+				linkIds.add(link.getId());
+			}
+			route.setLinkIds(fromLink.getId(), linkIds, toLink.getId());
+			leg.setRoute(route);
+			plan.addLeg(leg);
+			plan.addActivity(pf.createActivityFromLinkId("w", toLink.getId()));
+			person.addPlan(plan);
+			this.scenario.getPopulation().addPerson(person);
+			return person;
+		}
+
+		List<Event> run() {
+			EventsManager events = EventsUtils.createEventsManager();
+			EventsCollector collector = new EventsCollector();
+			events.addHandler(collector);
+			events.initProcessing();
+			new MesoSimulation(this.scenario, events).run();
+			events.finishProcessing();
+			return collector.getEvents();
+		}
+	}
+
+}
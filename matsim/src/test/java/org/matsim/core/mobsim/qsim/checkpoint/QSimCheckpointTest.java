@@ -0,0 +1,462 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
+import org.matsim.core.api.experimental.events.BoardingDeniedEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.QSimUtils;
+import org.matsim.core.population.routes.LinkNetworkRouteImpl;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.Dijkstra;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.pt.utils.CreateVehiclesForSchedule;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+
+public class QSimCheckpointTest {
+
+	private static final String BLOCKING_STOP_SUFFIX = "_blocking";
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testResumedSimulationCreatesSameEvents() {
+		double checkpointTime = 7 * 3600 + 300;
+		Scenario scenario = createScenario(300);
+		QSimCheckpointConfigGroup checkpointConfig = ConfigUtils.addOrGetModule(scenario.getConfig(), QSimCheckpointConfigGroup.GROUP_NAME, QSimCheckpointConfigGroup.class);
+		checkpointConfig.setCheckpointDirectory(utils.getOutputDirectory());
+		checkpointConfig.addCheckpointTime(checkpointTime);
+
+		List<Event> expected = run(scenario);
+		String checkpoint = QSimCheckpointListener.getCheckpointFilename(utils.getOutputDirectory(), checkpointTime);
+		Assert.assertTrue(new File(checkpoint).exists());
+
+		checkpointConfig.setResumeFromCheckpoint(checkpoint);
+		List<Event> actual = run(scenario);
+
+		Assert.assertFalse(actual.isEmpty());
+		Assert.assertEquals(eventsAfter(expected, checkpointTime), eventsAfter(actual, Double.NEGATIVE_INFINITY));
+	}
+
+	@Test
+	public void testResumeFromCheckpointOfResumedSimulation() {
+		double firstCheckpointTime = 7 * 3600 + 200;
+		double secondCheckpointTime = 7 * 3600 + 900;
+		Scenario scenario = createScenario(300);
+		QSimCheckpointConfigGroup checkpointConfig = ConfigUtils.addOrGetModule(scenario.getConfig(), QSimCheckpointConfigGroup.GROUP_NAME, QSimCheckpointConfigGroup.class);
+		checkpointConfig.setCheckpointDirectory(utils.getOutputDirectory());
+		checkpointConfig.addCheckpointTime(firstCheckpointTime);
+
+		List<Event> expected = run(scenario);
+
+		checkpointConfig.setResumeFromCheckpoint(QSimCheckpointListener.getCheckpointFilename(utils.getOutputDirectory(), firstCheckpointTime));
+		checkpointConfig.addCheckpointTime(secondCheckpointTime);
+		run(scenario);
+
+		checkpointConfig.setResumeFromCheckpoint(QSimCheckpointListener.getCheckpointFilename(utils.getOutputDirectory(), secondCheckpointTime));
+		List<Event> actual = run(scenario);
+
+		Assert.assertEquals(eventsAfter(expected, secondCheckpointTime), eventsAfter(actual, Double.NEGATIVE_INFINITY));
+	}
+
+	@Test
+	public void testResumedSimulationWithSeveralThreadsCreatesSameEvents() {
+		double checkpointTime = 7 * 3600 + 300;
+		Scenario scenario = createScenario(300);
+		scenario.getConfig().qsim().setNumberOfThreads(3);
+		QSimCheckpointConfigGroup checkpointConfig = ConfigUtils.addOrGetModule(scenario.getConfig(), QSimCheckpointConfigGroup.GROUP_NAME, QSimCheckpointConfigGroup.class);
+		checkpointConfig.setCheckpointDirectory(utils.getOutputDirectory());
+		checkpointConfig.addCheckpointTime(checkpointTime);
+
+		List<Event> expected = run(scenario);
+
+		checkpointConfig.setResumeFromCheckpoint(QSimCheckpointListener.getCheckpointFilename(utils.getOutputDirectory(), checkpointTime));
+		List<Event> actual = run(scenario);
+
+		// the threads pass on the events of a time step in varying order
+		Assert.assertFalse(actual.isEmpty());
+		Assert.assertEquals(sorted(eventsAfter(expected, checkpointTime)), sorted(eventsAfter(actual, Double.NEGATIVE_INFINITY)));
+	}
+
+	@Test
+	public void testResumedTransitSimulationCreatesSameEvents() {
+		double checkpointTime = 7 * 3600 + 1200;
+		Scenario scenario = createTransitScenario(1);
+		QSimCheckpointConfigGroup checkpointConfig = ConfigUtils.addOrGetModule(scenario.getConfig(), QSimCheckpointConfigGroup.GROUP_NAME, QSimCheckpointConfigGroup.class);
+		checkpointConfig.setCheckpointDirectory(utils.getOutputDirectory());
+		checkpointConfig.addCheckpointTime(checkpointTime);
+
+		List<Event> expected = run(scenario);
+		assertTransitStateAtCheckpoint(expected, checkpointTime);
+
+		checkpointConfig.setResumeFromCheckpoint(QSimCheckpointListener.getCheckpointFilename(utils.getOutputDirectory(), checkpointTime));
+		List<Event> actual = run(scenario);
+
+		Assert.assertEquals(eventsAfter(expected, checkpointTime), eventsAfter(actual, Double.NEGATIVE_INFINITY));
+	}
+
+	@Test
+	public void testResumedTransitSimulationWithSeveralThreadsCreatesSameEvents() {
+		double checkpointTime = 7 * 3600 + 1200;
+		Scenario scenario = createTransitScenario(3);
+		QSimCheckpointConfigGroup checkpointConfig = ConfigUtils.addOrGetModule(scenario.getConfig(), QSimCheckpointConfigGroup.GROUP_NAME, QSimCheckpointConfigGroup.class);
+		checkpointConfig.setCheckpointDirectory(utils.getOutputDirectory());
+		checkpointConfig.addCheckpointTime(checkpointTime);
+
+		List<Event> expected = run(scenario);
+		assertTransitStateAtCheckpoint(expected, checkpointTime);
+
+		checkpointConfig.setResumeFromCheckpoint(QSimCheckpointListener.getCheckpointFilename(utils.getOutputDirectory(), checkpointTime));
+		List<Event> actual = run(scenario);
+
+		Assert.assertEquals(sorted(eventsAfter(expected, checkpointTime)), sorted(eventsAfter(actual, Double.NEGATIVE_INFINITY)));
+	}
+
+	/**
+	 * Makes sure the checkpoint is written while buses stop at blocking and at non-blocking stops, passengers ride
+	 * and other passengers wait, so that all of this is restored from the checkpoint.
+	 */
+	private static void assertTransitStateAtCheckpoint(List<Event> events, double checkpointTime) {
+		Map<Id<Vehicle>, Id<TransitStopFacility>> vehiclesAtStops = new HashMap<>();
+		Map<Id<Person>, Event> waitingOrRiding = new HashMap<>();
+		for (Event event : events) {
+			if (event.getTime() > checkpointTime) {
+				break;
+			}
+			if (event instanceof VehicleArrivesAtFacilityEvent) {
+				VehicleArrivesAtFacilityEvent arrival = (VehicleArrivesAtFacilityEvent) event;
+				vehiclesAtStops.put(arrival.getVehicleId(), arrival.getFacilityId());
+			} else if (event instanceof VehicleDepartsAtFacilityEvent) {
+				vehiclesAtStops.remove(((VehicleDepartsAtFacilityEvent) event).getVehicleId());
+			} else if (event instanceof AgentWaitingForPtEvent) {
+				waitingOrRiding.put(((AgentWaitingForPtEvent) event).getPersonId(), event);
+			} else if (event instanceof PersonEntersVehicleEvent) {
+				waitingOrRiding.put(((PersonEntersVehicleEvent) event).getPersonId(), event);
+			} else if (event instanceof PersonLeavesVehicleEvent) {
+				waitingOrRiding.remove(((PersonLeavesVehicleEvent) event).getPersonId());
+			}
+		}
+		boolean isAtBlockingStop = false;
+		boolean isAtNonBlockingStop = false;
+		for (Id<TransitStopFacility> stopId : vehiclesAtStops.values()) {
+			isAtBlockingStop |= isBlockingStop(stopId);
+			isAtNonBlockingStop |= !isBlockingStop(stopId);
+		}
+		Assert.assertTrue("no bus at a blocking stop", isAtBlockingStop);
+		Assert.assertTrue("no bus at a non-blocking stop", isAtNonBlockingStop);
+		int numberOfWaitingAgents = 0;
+		int numberOfRidingAgents = 0;
+		for (Event event : waitingOrRiding.values()) {
+			if (event instanceof AgentWaitingForPtEvent) {
+				numberOfWaitingAgents++;
+			} else if (!((PersonEntersVehicleEvent) event).getPersonId().toString().startsWith("pt_")) {
+				numberOfRidingAgents++;
+			}
+		}
+		Assert.assertTrue("no agent waits at a stop", numberOfWaitingAgents > 0);
+		Assert.assertTrue("no agent rides a bus", numberOfRidingAgents > 0);
+		boolean isBoardingDenied = false;
+		for (Event event : events) {
+			isBoardingDenied |= event instanceof BoardingDeniedEvent;
+		}
+		Assert.assertTrue("no boarding is denied", isBoardingDenied);
+	}
+
+	private static List<Event> run(Scenario scenario) {
+		MatsimRandom.reset();
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		QSimUtils.createDefaultQSim(scenario, events).run();
+		return new ArrayList<>(collector.getEvents());
+	}
+
+	private static List<String> eventsAfter(List<Event> events, double time) {
+		List<String> result = new ArrayList<>();
+		for (Event event : events) {
+			if (event.getTime() > time) {
+				result.add(event.toString());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * the events in an order which does not depend on the order within a time step
+	 */
+	private static List<String> sorted(List<String> events) {
+		List<String> result = new ArrayList<>(events);
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * A grid of 5x5 nodes with links of low capacity in both directions, so that
+	 * vehicles queue up. The agents drive between random links of the grid, walk
+	 * to a third one and drive back.
+	 */
+	private static Scenario createScenario(int numberOfPersons) {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		int size = 5;
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = network.getFactory().createNode(Id.create(x + "_" + y, Node.class), new Coord(x * 500, y * 500));
+				network.addNode(nodes[x][y]);
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					createLink(network, nodes[x][y], nodes[x + 1][y]);
+					createLink(network, nodes[x + 1][y], nodes[x][y]);
+				}
+				if (y + 1 < size) {
+					createLink(network, nodes[x][y], nodes[x][y + 1]);
+					createLink(network, nodes[x][y + 1], nodes[x][y]);
+				}
+			}
+		}
+
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		FreespeedTravelTimeAndDisutility travelTime = new FreespeedTravelTimeAndDisutility(scenario.getConfig().planCalcScore());
+		Dijkstra router = new Dijkstra(network, travelTime, travelTime);
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		Random random = new Random(4711);
+		for (int i = 0; i < numberOfPersons; i++) {
+			Link home = links.get(random.nextInt(links.size()));
+			Link work = links.get(random.nextInt(links.size()));
+			Link shop = links.get(random.nextInt(links.size()));
+			Person person = pf.createPerson(Id.create(i, Person.class));
+			Plan plan = pf.createPlan();
+			Activity h1 = pf.createActivityFromLinkId("h", home.getId());
+			h1.setEndTime(7 * 3600 + random.nextInt(600));
+			plan.addActivity(h1);
+			plan.addLeg(createCarLeg(pf, router, home, work));
+			Activity w = pf.createActivityFromLinkId("w", work.getId());
+			w.setMaximumDuration(random.nextInt(600));
+			plan.addActivity(w);
+			Leg walk = pf.createLeg(TransportMode.walk);
+			walk.setTravelTime(300 + random.nextInt(600));
+			plan.addLeg(walk);
+			Activity s = pf.createActivityFromLinkId("s", shop.getId());
+			s.setMaximumDuration(random.nextInt(600));
+			plan.addActivity(s);
+			plan.addLeg(createCarLeg(pf, router, shop, home));
+			plan.addActivity(pf.createActivityFromLinkId("h", home.getId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		return scenario;
+	}
+
+	/**
+	 * A corridor with a bus line in each direction and a stop on every link; every second stop blocks the lane. The
+	 * buses have few seats, so that passengers are denied boarding. The passengers ride between random stops, a few
+	 * other agents drive along the corridor by car.
+	 */
+	private static Scenario createTransitScenario(int numberOfThreads) {
+		Config config = ConfigUtils.createConfig();
+		config.transit().setUseTransit(true);
+		config.transit().setParallelStopHandling(numberOfThreads > 1);
+		config.qsim().setNumberOfThreads(numberOfThreads);
+		config.qsim().setEndTime(12 * 3600);
+		config.vspExperimental().setGeneratingBoardingDeniedEvent(true);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		int numberOfStops = 10;
+		List<Node> nodes = new ArrayList<>();
+		for (int i = 0; i <= numberOfStops; i++) {
+			Node node = network.getFactory().createNode(Id.create(i, Node.class), new Coord(i * 500, 0));
+			network.addNode(node);
+			nodes.add(node);
+		}
+		List<Link> eastLinks = new ArrayList<>();
+		List<Link> westLinks = new ArrayList<>();
+		for (int i = 0; i < numberOfStops; i++) {
+			eastLinks.add(createLink(network, nodes.get(i), nodes.get(i + 1)));
+			westLinks.add(0, createLink(network, nodes.get(i + 1), nodes.get(i)));
+		}
+
+		TransitSchedule schedule = scenario.getTransitSchedule();
+		TransitLine eastLine = createTransitLine(schedule, "east", eastLinks);
+		TransitLine westLine = createTransitLine(schedule, "west", westLinks);
+		new CreateVehiclesForSchedule(schedule, scenario.getTransitVehicles()).run();
+		for (VehicleType vehicleType : scenario.getTransitVehicles().getVehicleTypes().values()) {
+			vehicleType.getCapacity().setSeats(8);
+		}
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		Random random = new Random(4711);
+		for (int i = 0; i < 500; i++) {
+			TransitLine line = random.nextBoolean() ? eastLine : westLine;
+			TransitRoute route = line.getRoutes().values().iterator().next();
+			int from = random.nextInt(numberOfStops - 1);
+			int to = from + 1 + random.nextInt(numberOfStops - 1 - from);
+			TransitStopFacility fromStop = route.getStops().get(from).getStopFacility();
+			TransitStopFacility toStop = route.getStops().get(to).getStopFacility();
+
+			Person person = pf.createPerson(Id.create(i, Person.class));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", fromStop.getLinkId());
+			home.setEndTime(7 * 3600 + random.nextInt(3600));
+			plan.addActivity(home);
+			Leg leg = pf.createLeg(TransportMode.pt);
+			leg.setRoute(new ExperimentalTransitRoute(fromStop, line, route, toStop));
+			plan.addLeg(leg);
+			plan.addActivity(pf.createActivityFromLinkId("w", toStop.getLinkId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		for (int i = 0; i < 100; i++) {
+			List<Link> links = random.nextBoolean() ? eastLinks : westLinks;
+			int from = random.nextInt(numberOfStops - 1);
+			int to = from + 1 + random.nextInt(numberOfStops - 1 - from);
+			Person person = pf.createPerson(Id.create("car" + i, Person.class));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", links.get(from).getId());
+			home.setEndTime(7 * 3600 + random.nextInt(3600));
+			plan.addActivity(home);
+			Leg leg = pf.createLeg(TransportMode.car);
+			NetworkRoute route = pf.createRoute(NetworkRoute.class, links.get(from).getId(), links.get(to).getId());
+			List<Id<Link>> linkIds = new ArrayList<>();
+			for (Link link : links.subList(from + 1, to)) {
+				linkIds.add(link.getId());
+			}
+			route.setLinkIds(links.get(from).getId(), linkIds, links.get(to).getId());
+			leg.setRoute(route);
+			plan.addLeg(leg);
+			plan.addActivity(pf.createActivityFromLinkId("w", links.get(to).getId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		return scenario;
+	}
+
+	/**
+	 * a line with a stop at the end of each link and a departure every 2 minutes
+	 */
+	private static TransitLine createTransitLine(TransitSchedule schedule, String id, List<Link> links) {
+		TransitScheduleFactory sf = schedule.getFactory();
+		List<TransitRouteStop> stops = new ArrayList<>();
+		List<Id<Link>> routeLinkIds = new ArrayList<>();
+		for (int i = 0; i < links.size(); i++) {
+			Link link = links.get(i);
+			boolean isBlocking = i % 2 == 0;
+			Id<TransitStopFacility> stopId = Id.create(id + i + (isBlocking ? BLOCKING_STOP_SUFFIX : ""), TransitStopFacility.class);
+			TransitStopFacility stop = sf.createTransitStopFacility(stopId, link.getToNode().getCoord(), isBlocking);
+			stop.setLinkId(link.getId());
+			schedule.addStopFacility(stop);
+			stops.add(sf.createTransitRouteStop(stop, i * 60, i * 60 + 10));
+			if (i > 0 && i < links.size() - 1) {
+				routeLinkIds.add(link.getId());
+			}
+		}
+		NetworkRoute networkRoute = new LinkNetworkRouteImpl(links.get(0).getId(), links.get(links.size() - 1).getId());
+		networkRoute.setLinkIds(links.get(0).getId(), routeLinkIds, links.get(links.size() - 1).getId());
+		TransitRoute route = sf.createTransitRoute(Id.create(id, TransitRoute.class), networkRoute, stops, "bus");
+		for (int i = 0; i < 45; i++) {
+			route.addDeparture(sf.createDeparture(Id.create(id + i, Departure.class), 7 * 3600 + i * 120));
+		}
+		TransitLine line = sf.createTransitLine(Id.create(id, TransitLine.class));
+		line.addRoute(route);
+		schedule.addTransitLine(line);
+		return line;
+	}
+
+	private static boolean isBlockingStop(Id<TransitStopFacility> stopId) {
+		return stopId.toString().endsWith(BLOCKING_STOP_SUFFIX);
+	}
+
+	private static Link createLink(Network network, Node from, Node to) {
+		Link link = network.getFactory().createLink(Id.create(from.getId() + "-" + to.getId(), Link.class), from, to);
+		link.setLength(500);
+		link.setFreespeed(13.9);
+		link.setCapacity(300);
+		link.setNumberOfLanes(1);
+		network.addLink(link);
+		return link;
+	}
+
+	private static Leg createCarLeg(PopulationFactory pf, Dijkstra router, Link from, Link to) {
+		Leg leg = pf.createLeg(TransportMode.car);
+		NetworkRoute route = pf.createRoute(NetworkRoute.class, from.getId(), to.getId());
+		List<Id<Link>> linkIds = new ArrayList<>();
+		if (from != to) {
+			Path path = router.calcLeastCostPath(from.getToNode(), to.getFromNode(), 0, null, null);
+			for (Link link : path.links) {
+				linkIds.add(link.getId());
+			}
+		}
+		route.setLinkIds(from.getId(), linkIds, to.getId());
+		leg.setRoute(route);
+		return leg;
+	}
+
+}
@@ -0,0 +1,311 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.mobsim.qsim.pt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSimUtils;
+import org.matsim.core.population.routes.LinkNetworkRouteImpl;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.pt.utils.CreateVehiclesForSchedule;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class TransitStopHandlingBufferTest {
+
+	private static final int NUMBER_OF_STOPS = 12;
+
+	@Test
+	public void testSameStopEventsWithDifferentNumberOfThreads() {
+		List<Event> expected = run(createScenario(1, true, false));
+		List<Event> actual = run(createScenario(4, true, false));
+		List<String> expectedStopEvents = stopEvents(expected);
+		Assert.assertFalse(expectedStopEvents.isEmpty());
+		Assert.assertEquals(expectedStopEvents, stopEvents(actual));
+		Assert.assertEquals(expectedStopEvents, stopEvents(run(createScenario(4, true, false))));
+		Assert.assertEquals(eventsByAgent(expected), eventsByAgent(actual));
+	}
+
+	@Test
+	public void testSameEventsAsWithoutBuffer() {
+		List<Event> expected = run(createScenario(1, false, false));
+		List<Event> actual = run(createScenario(3, true, false));
+		Assert.assertEquals(expected.size(), actual.size());
+		// the events of every person and vehicle in the order of the simulation without buffer
+		Assert.assertEquals(eventsByAgent(expected), eventsByAgent(actual));
+	}
+
+	@Test
+	public void testSharedStops() {
+		List<Event> expected = run(createScenario(1, false, true));
+		List<Event> actual = run(createScenario(4, true, true));
+		Assert.assertTrue(getNumberOfSharedStopHandlings(actual) > 0);
+		Assert.assertEquals(expected.size(), actual.size());
+		Assert.assertEquals(eventsByAgent(expected), eventsByAgent(actual));
+		List<String> expectedStopEvents = stopEvents(run(createScenario(1, true, true)));
+		Assert.assertEquals(expectedStopEvents, stopEvents(actual));
+		Assert.assertEquals(expectedStopEvents, stopEvents(run(createScenario(4, true, true))));
+	}
+
+	private static List<Event> run(Scenario scenario) {
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		QSimUtils.createDefaultQSim(scenario, events).run();
+		events.finishProcessing();
+		return new ArrayList<>(collector.getEvents());
+	}
+
+	/**
+	 * the events of every person and every vehicle, each in the order in which they were created
+	 */
+	private static Map<String, List<String>> eventsByAgent(List<Event> events) {
+		Map<String, List<String>> result = new TreeMap<>();
+		for (Event event : events) {
+			for (String attribute : new String[] { "person", "vehicle" }) {
+				String id = event.getAttributes().get(attribute);
+				if (id != null) {
+					String key = attribute + " " + id;
+					List<String> agentEvents = result.get(key);
+					if (agentEvents == null) {
+						agentEvents = new ArrayList<>();
+						result.put(key, agentEvents);
+					}
+					agentEvents.add(event.toString());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * the number of time steps in which a stop is served by more than one vehicle
+	 */
+	private static int getNumberOfSharedStopHandlings(List<Event> events) {
+		Map<String, Set<Id<Vehicle>>> vehiclesByStopAndTime = new HashMap<>();
+		for (Event event : events) {
+			String key;
+			Id<Vehicle> vehicleId;
+			if (event instanceof VehicleArrivesAtFacilityEvent) {
+				key = ((VehicleArrivesAtFacilityEvent) event).getFacilityId() + " " + event.getTime();
+				vehicleId = ((VehicleArrivesAtFacilityEvent) event).getVehicleId();
+			} else if (event instanceof VehicleDepartsAtFacilityEvent) {
+				key = ((VehicleDepartsAtFacilityEvent) event).getFacilityId() + " " + event.getTime();
+				vehicleId = ((VehicleDepartsAtFacilityEvent) event).getVehicleId();
+			} else {
+				continue;
+			}
+			Set<Id<Vehicle>> vehicleIds = vehiclesByStopAndTime.get(key);
+			if (vehicleIds == null) {
+				vehicleIds = new HashSet<>();
+				vehiclesByStopAndTime.put(key, vehicleIds);
+			}
+			vehicleIds.add(vehicleId);
+		}
+		int result = 0;
+		for (Set<Id<Vehicle>> vehicleIds : vehiclesByStopAndTime.values()) {
+			if (vehicleIds.size() > 1) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * the events of boarding and alighting passengers, in the order in which they were created
+	 */
+	private static List<String> stopEvents(List<Event> events) {
+		List<String> result = new ArrayList<>();
+		for (Event event : events) {
+			boolean isStopEvent = event instanceof VehicleArrivesAtFacilityEvent || event instanceof VehicleDepartsAtFacilityEvent;
+			if (event instanceof PersonEntersVehicleEvent) {
+				isStopEvent = !((PersonEntersVehicleEvent) event).getPersonId().toString().startsWith("pt_");
+			} else if (event instanceof PersonLeavesVehicleEvent) {
+				isStopEvent = !((PersonLeavesVehicleEvent) event).getPersonId().toString().startsWith("pt_");
+			} else if (event instanceof PersonArrivalEvent) {
+				isStopEvent = !((PersonArrivalEvent) event).getPersonId().toString().startsWith("pt_");
+			} else if (event instanceof ActivityStartEvent) {
+				isStopEvent = true;
+			}
+			if (isStopEvent) {
+				result.add(event.toString());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * A corridor with a stop on every link and a bus line in each direction. The
+	 * passengers ride between random stops, so many buses serve their stops in
+	 * the same time steps. With <code>sharedStops</code>, a second line in eastern
+	 * direction departs at the same times and serves the same stops.
+	 */
+	private static Scenario createScenario(int numberOfThreads, boolean parallelStopHandling, boolean sharedStops) {
+		Config config = ConfigUtils.createConfig();
+		config.transit().setUseTransit(true);
+		config.transit().setParallelStopHandling(parallelStopHandling);
+		config.qsim().setNumberOfThreads(numberOfThreads);
+		config.qsim().setEndTime(12 * 3600);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		List<Node> nodes = new ArrayList<>();
+		for (int i = 0; i <= NUMBER_OF_STOPS; i++) {
+			Node node = network.getFactory().createNode(Id.create(i, Node.class), new Coord(i * 500, 0));
+			network.addNode(node);
+			nodes.add(node);
+		}
+		List<Link> eastLinks = new ArrayList<>();
+		List<Link> westLinks = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_STOPS; i++) {
+			eastLinks.add(createLink(network, nodes.get(i), nodes.get(i + 1)));
+			westLinks.add(0, createLink(network, nodes.get(i + 1), nodes.get(i)));
+		}
+
+		TransitSchedule schedule = scenario.getTransitSchedule();
+		List<TransitStopFacility> eastStops = createStops(schedule, "east", eastLinks);
+		TransitLine eastLine = createLine(schedule, "east", eastLinks, eastStops);
+		TransitLine westLine = createLine(schedule, "west", westLinks, createStops(schedule, "west", westLinks));
+		TransitLine secondEastLine = sharedStops ? createLine(schedule, "east2", eastLinks, eastStops) : null;
+		new CreateVehiclesForSchedule(schedule, scenario.getTransitVehicles()).run();
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		Random random = new Random(4711);
+		for (int i = 0; i < 600; i++) {
+			TransitLine line = random.nextBoolean() ? eastLine : westLine;
+			if (secondEastLine != null && line == eastLine && random.nextBoolean()) {
+				line = secondEastLine;
+			}
+			TransitRoute route = line.getRoutes().values().iterator().next();
+			int from = random.nextInt(NUMBER_OF_STOPS - 1);
+			int to = from + 1 + random.nextInt(NUMBER_OF_STOPS - 1 - from);
+			TransitStopFacility fromStop = route.getStops().get(from).getStopFacility();
+			TransitStopFacility toStop = route.getStops().get(to).getStopFacility();
+
+			Person person = pf.createPerson(Id.create(i, Person.class));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", fromStop.getLinkId());
+			home.setEndTime(7 * 3600 + random.nextInt(3600));
+			plan.addActivity(home);
+			Leg leg = pf.createLeg(TransportMode.pt);
+			leg.setRoute(new ExperimentalTransitRoute(fromStop, line, route, toStop));
+			plan.addLeg(leg);
+			plan.addActivity(pf.createActivityFromLinkId("w", toStop.getLinkId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		return scenario;
+	}
+
+	private static Link createLink(Network network, Node from, Node to) {
+		Link link = network.getFactory().createLink(Id.create(from.getId() + "-" + to.getId(), Link.class), from, to);
+		link.setLength(500);
+		link.setFreespeed(10);
+		link.setCapacity(2000);
+		link.setNumberOfLanes(1);
+		network.addLink(link);
+		return link;
+	}
+
+	/**
+	 * a stop at the end of each link
+	 */
+	private static List<TransitStopFacility> createStops(TransitSchedule schedule, String id, List<Link> links) {
+		TransitScheduleFactory sf = schedule.getFactory();
+		List<TransitStopFacility> stops = new ArrayList<>();
+		for (int i = 0; i < links.size(); i++) {
+			Link link = links.get(i);
+			TransitStopFacility stop = sf.createTransitStopFacility(Id.create(id + i, TransitStopFacility.class), link.getToNode().getCoord(), false);
+			stop.setLinkId(link.getId());
+			schedule.addStopFacility(stop);
+			stops.add(stop);
+		}
+		return stops;
+	}
+
+	/**
+	 * a line serving the given stops, one per link, with a departure every 2 minutes
+	 */
+	private static TransitLine createLine(TransitSchedule schedule, String id, List<Link> links, List<TransitStopFacility> stopFacilities) {
+		TransitScheduleFactory sf = schedule.getFactory();
+		List<TransitRouteStop> stops = new ArrayList<>();
+		List<Id<Link>> routeLinkIds = new ArrayList<>();
+		for (int i = 0; i < links.size(); i++) {
+			stops.add(sf.createTransitRouteStop(stopFacilities.get(i), i * 60, i * 60 + 10));
+			if (i > 0 && i < links.size() - 1) {
+				routeLinkIds.add(links.get(i).getId());
+			}
+		}
+		NetworkRoute networkRoute = new LinkNetworkRouteImpl(links.get(0).getId(), links.get(links.size() - 1).getId());
+		networkRoute.setLinkIds(links.get(0).getId(), routeLinkIds, links.get(links.size() - 1).getId());
+		TransitRoute route = sf.createTransitRoute(Id.create(id, TransitRoute.class), networkRoute, stops, "bus");
+		for (int i = 0; i < 45; i++) {
+			route.addDeparture(sf.createDeparture(Id.create(id + i, Departure.class), 7 * 3600 + i * 120));
+		}
+		TransitLine line = sf.createTransitLine(Id.create(id, TransitLine.class));
+		line.addRoute(route);
+		schedule.addTransitLine(line);
+		return line;
+	}
+
+}
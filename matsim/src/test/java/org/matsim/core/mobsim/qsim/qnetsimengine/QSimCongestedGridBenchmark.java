@@ -0,0 +1,255 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.ActivityEngine;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.TeleportationEngine;
+import org.matsim.core.mobsim.qsim.agents.AgentFactory;
+import org.matsim.core.mobsim.qsim.agents.DefaultAgentFactory;
+import org.matsim.core.mobsim.qsim.agents.PopulationAgentSource;
+import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.DefaultLinkSpeedCalculator;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.FIFOVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.RingBufferVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.VehicleQ;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.Dijkstra;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the time of a whole QSim run on a congested grid, where most of the time is spent in moving the vehicles over
+ * the links and nodes. The vehicle queue of the links is a parameter, so the {@link RingBufferVehicleQ} can be compared
+ * to the {@link FIFOVehicleQ}. Run it with the main method, which adds the GC profiler, or with
+ * <code>java -cp ... org.openjdk.jmh.Main QSimCongestedGridBenchmark -prof gc</code> to see the allocation rate per
+ * operation next to the run time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QSimCongestedGridBenchmark {
+
+	@Param({"ringBuffer", "fifo"})
+	public String vehicleQueue;
+
+	@Param({"5000"})
+	public int numberOfPersons;
+
+	private Scenario scenario;
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(QSimCongestedGridBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.scenario = createScenario(this.numberOfPersons);
+	}
+
+	@Benchmark
+	public long runQSim() {
+		MatsimRandom.reset();
+		EventsManager events = EventsUtils.createEventsManager();
+		EventCounter counter = new EventCounter();
+		events.addHandler(counter);
+
+		QSim qSim = new QSim(this.scenario, events);
+		ActivityEngine activityEngine = new ActivityEngine(events, qSim.getAgentCounter());
+		qSim.addMobsimEngine(activityEngine);
+		qSim.addActivityHandler(activityEngine);
+		ConfigurableQNetworkFactory networkFactory = new ConfigurableQNetworkFactory(events, this.scenario);
+		networkFactory.setLinkSpeedCalculator(new DefaultLinkSpeedCalculator());
+		networkFactory.setVehicleQueueProvider(createVehicleQueueProvider(this.vehicleQueue));
+		QNetsimEngine netsimEngine = new QNetsimEngine(qSim, networkFactory);
+		qSim.addMobsimEngine(netsimEngine);
+		qSim.addDepartureHandler(netsimEngine.getDepartureHandler());
+		TeleportationEngine teleportationEngine = new TeleportationEngine(this.scenario, events);
+		qSim.addMobsimEngine(teleportationEngine);
+		qSim.addDepartureHandler(teleportationEngine);
+		AgentFactory agentFactory = new DefaultAgentFactory(qSim);
+		qSim.addAgentSource(new PopulationAgentSource(this.scenario.getPopulation(), agentFactory, qSim));
+		qSim.run();
+		return counter.numberOfEvents;
+	}
+
+	private static Provider<VehicleQ<QVehicle>> createVehicleQueueProvider(String type) {
+		switch (type) {
+		case "ringBuffer":
+			return new Provider<VehicleQ<QVehicle>>() {
+				@Override
+				public VehicleQ<QVehicle> get() {
+					return new RingBufferVehicleQ();
+				}
+			};
+		case "fifo":
+			return new Provider<VehicleQ<QVehicle>>() {
+				@Override
+				public VehicleQ<QVehicle> get() {
+					return new FIFOVehicleQ();
+				}
+			};
+		default:
+			throw new IllegalArgumentException("unknown vehicle queue: " + type);
+		}
+	}
+
+	/**
+	 * A grid of 10x10 nodes with links of low capacity in both directions. All agents leave home within half an hour, so
+	 * that long queues build up, drive to a random link, and drive back after a short stay.
+	 */
+	private static Scenario createScenario(int numberOfPersons) {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		int size = 10;
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = network.getFactory().createNode(Id.create(x + "_" + y, Node.class), new Coord(x * 500, y * 500));
+				network.addNode(nodes[x][y]);
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					createLink(network, nodes[x][y], nodes[x + 1][y]);
+					createLink(network, nodes[x + 1][y], nodes[x][y]);
+				}
+				if (y + 1 < size) {
+					createLink(network, nodes[x][y], nodes[x][y + 1]);
+					createLink(network, nodes[x][y + 1], nodes[x][y]);
+				}
+			}
+		}
+
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		FreespeedTravelTimeAndDisutility travelTime = new FreespeedTravelTimeAndDisutility(scenario.getConfig().planCalcScore());
+		Dijkstra router = new Dijkstra(network, travelTime, travelTime);
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		Random random = new Random(4711);
+		for (int i = 0; i < numberOfPersons; i++) {
+			Link home = links.get(random.nextInt(links.size()));
+			Link work = links.get(random.nextInt(links.size()));
+			Person person = pf.createPerson(Id.create(i, Person.class));
+			Plan plan = pf.createPlan();
+			Activity h1 = pf.createActivityFromLinkId("h", home.getId());
+			h1.setEndTime(7 * 3600 + random.nextInt(1800));
+			plan.addActivity(h1);
+			plan.addLeg(createCarLeg(pf, router, home, work));
+			Activity w = pf.createActivityFromLinkId("w", work.getId());
+			w.setMaximumDuration(random.nextInt(1800));
+			plan.addActivity(w);
+			plan.addLeg(createCarLeg(pf, router, work, home));
+			plan.addActivity(pf.createActivityFromLinkId("h", home.getId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		return scenario;
+	}
+
+	private static void createLink(Network network, Node from, Node to) {
+		Link link = network.getFactory().createLink(Id.create(from.getId() + "-" + to.getId(), Link.class), from, to);
+		link.setLength(500);
+		link.setFreespeed(13.9);
+		link.setCapacity(600);
+		link.setNumberOfLanes(1);
+		network.addLink(link);
+	}
+
+	private static Leg createCarLeg(PopulationFactory pf, Dijkstra router, Link from, Link to) {
+		Leg leg = pf.createLeg(TransportMode.car);
+		NetworkRoute route = pf.createRoute(NetworkRoute.class, from.getId(), to.getId());
+		List<Id<Link>> linkIds = new ArrayList<>();
+		if (from != to) {
+			Path path = router.calcLeastCostPath(from.getToNode(), to.getFromNode(), 0, null, null);
+			for (Link link : path.links) {
+				linkIds.add(link.getId());
+			}
+		}
+		route.setLinkIds(from.getId(), linkIds, to.getId());
+		leg.setRoute(route);
+		return leg;
+	}
+
+	private static final class EventCounter implements BasicEventHandler {
+		long numberOfEvents = 0;
+
+		@Override
+		public void handleEvent(Event event) {
+			this.numberOfEvents++;
+		}
+
+		@Override
+		public void reset(int iteration) {
+			this.numberOfEvents = 0;
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleImpl;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleTypeImpl;
+
+public class RingBufferVehicleQTest {
+
+	private final VehicleType vehicleType = new VehicleTypeImpl(Id.create("car", VehicleType.class));
+
+	@Test
+	public void testFifoOrder_withGrowing() {
+		RingBufferVehicleQ queue = new RingBufferVehicleQ(2);
+		List<QVehicle> vehicles = createVehicles(20);
+		// move the head away from the start of the array before growing
+		queue.add(vehicles.get(0));
+		queue.add(vehicles.get(1));
+		Assert.assertSame(vehicles.get(0), queue.poll());
+		for (int i = 2; i < vehicles.size(); i++) {
+			queue.add(vehicles.get(i));
+		}
+		Assert.assertEquals(19, queue.size());
+		for (int i = 1; i < vehicles.size(); i++) {
+			Assert.assertSame(vehicles.get(i), queue.peek());
+			Assert.assertSame(vehicles.get(i), queue.poll());
+		}
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertNull(queue.peek());
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testAddFirst() {
+		RingBufferVehicleQ queue = new RingBufferVehicleQ(2);
+		List<QVehicle> vehicles = createVehicles(3);
+		queue.add(vehicles.get(1));
+		queue.addFirst(vehicles.get(0));
+		queue.add(vehicles.get(2));
+		Assert.assertSame(vehicles.get(0), queue.poll());
+		Assert.assertSame(vehicles.get(1), queue.poll());
+		Assert.assertSame(vehicles.get(2), queue.poll());
+	}
+
+	@Test
+	public void testRemove() {
+		RingBufferVehicleQ queue = new RingBufferVehicleQ();
+		List<QVehicle> vehicles = createVehicles(5);
+		queue.addAll(vehicles);
+		Assert.assertTrue(queue.remove(vehicles.get(0)));
+		Assert.assertTrue(queue.remove(vehicles.get(2)));
+		Assert.assertFalse(queue.remove(vehicles.get(2)));
+		Iterator<QVehicle> iterator = queue.iterator();
+		Assert.assertSame(vehicles.get(1), iterator.next());
+		Assert.assertSame(vehicles.get(3), iterator.next());
+		iterator.remove();
+		Assert.assertSame(vehicles.get(4), iterator.next());
+		Assert.assertFalse(iterator.hasNext());
+
+		List<QVehicle> remaining = new ArrayList<>(queue);
+		Assert.assertEquals(2, remaining.size());
+		Assert.assertSame(vehicles.get(1), remaining.get(0));
+		Assert.assertSame(vehicles.get(4), remaining.get(1));
+
+		queue.clear();
+		Assert.assertEquals(0, queue.size());
+		Assert.assertNull(queue.peek());
+	}
+
+	private List<QVehicle> createVehicles(int numberOfVehicles) {
+		List<QVehicle> vehicles = new ArrayList<>();
+		for (int i = 0; i < numberOfVehicles; i++) {
+			vehicles.add(new QVehicle(new VehicleImpl(Id.create(i, Vehicle.class), this.vehicleType)));
+		}
+		return vehicles;
+	}
+
+}
@@ -0,0 +1,183 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class LinkSegmentIndexTest {
+
+	@Test
+	public void testGetNearestLink() {
+		Network network = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		Link foo = createLink(network, 100, 200, 800, 500);
+		Link bar = createLink(network, 400, 300, 500, 400);
+		Link fbr = createLink(network, 800, 1400, 1400, 800);
+		Link a = createLink(network, 1100, 1100, 1200, 1200);
+		Link b = createLink(network, 1100, 1100, 1200, 1100);
+		Link c = createLink(network, 1200, 1200, 1200, 1100);
+		LinkSegmentIndex index = new LinkSegmentIndex(network);
+
+		Assert.assertEquals(6, index.size());
+		Assert.assertEquals(foo, index.getNearestLink(new Coord(200, 200)));
+		Assert.assertEquals(foo, index.getNearestLink(new Coord(300, 300)));
+		Assert.assertEquals(bar, index.getNearestLink(new Coord(390, 300)));
+		Assert.assertEquals(fbr, index.getNearestLink(new Coord(1000, 1100)));
+		Assert.assertEquals(foo, index.getNearestLink(new Coord(-50, -50)));
+		Assert.assertEquals(a, index.getNearestLink(new Coord(1105, 1104)));
+		Assert.assertEquals(a, index.getNearestLink(new Coord(1105, 1103)));
+		Assert.assertEquals(b, index.getNearestLink(new Coord(1105, 1102)));
+		Assert.assertEquals(b, index.getNearestLink(new Coord(1105, 1101)));
+		Assert.assertEquals(c, index.getNearestLink(new Coord(1205, 1101)));
+	}
+
+	@Test
+	public void testGetNearestLink_longNear_smallFarAway() {
+		Network network = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		Link a = createLink(network, 500, 200, 700, 200);
+		Link b = createLink(network, 100, 100, 900, 100);
+		LinkSegmentIndex index = new LinkSegmentIndex(network);
+
+		Assert.assertEquals(b, index.getNearestLink(600, 0));
+		Assert.assertEquals(a, index.getNearestLink(600, 210));
+		Assert.assertEquals(b, index.getNearestLink(300, 210)); // outside of segment (1)-(2), thus (3)-(4) is closer
+		Assert.assertEquals(a, index.getNearestLink(400, 210)); // distance to (1) is smaller than to (3)-(4)
+	}
+
+	@Test
+	public void testGetNearestLink_sameDistanceAsBruteForce() {
+		Network network = createRandomNetwork(3000);
+		LinkSegmentIndex index = new LinkSegmentIndex(network);
+		Random random = new Random(42);
+		for (int i = 0; i < 500; i++) {
+			double x = random.nextDouble() * 12000 - 1000;
+			double y = random.nextDouble() * 12000 - 1000;
+			Link expected = getNearestLinkBruteForce(network, x, y, null);
+			Link actual = index.getNearestLink(x, y);
+			Assert.assertEquals(LinkSegmentIndex.calcSegmentDistanceSq(x, y, expected), LinkSegmentIndex.calcSegmentDistanceSq(x, y, actual), 1e-6);
+		}
+	}
+
+	@Test
+	public void testGetNearestLink_mode() {
+		Network network = createRandomNetwork(3000);
+		LinkSegmentIndex index = new LinkSegmentIndex(network);
+		Random random = new Random(42);
+		for (int i = 0; i < 300; i++) {
+			double x = random.nextDouble() * 10000;
+			double y = random.nextDouble() * 10000;
+			Link expected = getNearestLinkBruteForce(network, x, y, TransportMode.pt);
+			Link actual = index.getNearestLink(new Coord(x, y), TransportMode.pt);
+			Assert.assertTrue(actual.getAllowedModes().contains(TransportMode.pt));
+			Assert.assertEquals(LinkSegmentIndex.calcSegmentDistanceSq(x, y, expected), LinkSegmentIndex.calcSegmentDistanceSq(x, y, actual), 1e-6);
+		}
+		Assert.assertNull(index.getNearestLink(new Coord(0, 0), TransportMode.bike));
+	}
+
+	@Test
+	public void testGetNearestLinks_parallel() {
+		Network network = createRandomNetwork(3000);
+		LinkSegmentIndex index = new LinkSegmentIndex(network);
+		Random random = new Random(42);
+		List<Coord> coords = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			coords.add(new Coord(random.nextDouble() * 10000, random.nextDouble() * 10000));
+		}
+		List<Link> expected = new ArrayList<>();
+		List<Link> expectedPt = new ArrayList<>();
+		for (Coord coord : coords) {
+			expected.add(index.getNearestLink(coord));
+			expectedPt.add(index.getNearestLink(coord, TransportMode.pt));
+		}
+		Assert.assertEquals(expected, index.getNearestLinks(coords, null, 1));
+		Assert.assertEquals(expected, index.getNearestLinks(coords, null, 4));
+		Assert.assertEquals(expectedPt, index.getNearestLinks(coords, TransportMode.pt, 3));
+		Assert.assertTrue(index.getNearestLinks(Collections.<Coord>emptyList(), null, 4).isEmpty());
+	}
+
+	@Test
+	public void testNetworkImpl_rebuildsAfterChanges() {
+		NetworkImpl network = (NetworkImpl) ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		Assert.assertNull(network.getNearestLinkExactly(new Coord(0, 0)));
+		Link a = createLink(network, 0, 0, 1000, 0);
+		Assert.assertEquals(a, network.getNearestLinkExactly(new Coord(500, 400)));
+		Link b = createLink(network, 0, 500, 1000, 500);
+		Assert.assertEquals(b, network.getNearestLinkExactly(new Coord(500, 400)));
+		network.removeLink(b.getId());
+		Assert.assertEquals(a, network.getNearestLinkExactly(new Coord(500, 400)));
+	}
+
+	private static Link getNearestLinkBruteForce(Network network, double x, double y, String mode) {
+		Link nearest = null;
+		double nearestDistance = Double.POSITIVE_INFINITY;
+		for (Link link : network.getLinks().values()) {
+			double distance = LinkSegmentIndex.calcSegmentDistanceSq(x, y, link);
+			if ((mode == null || link.getAllowedModes().contains(mode)) && distance < nearestDistance) {
+				nearestDistance = distance;
+				nearest = link;
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * random links of up to 1000m in a 10000x10000 square, every tenth allowing pt only
+	 */
+	private static Network createRandomNetwork(int numberOfLinks) {
+		Network network = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		Random random = new Random(4711);
+		for (int i = 0; i < numberOfLinks; i++) {
+			double x = random.nextDouble() * 10000;
+			double y = random.nextDouble() * 10000;
+			Link link = createLink(network, x, y, x + random.nextDouble() * 2000 - 1000, y + random.nextDouble() * 2000 - 1000);
+			if (i % 10 == 0) {
+				link.setAllowedModes(new HashSet<>(Collections.singleton(TransportMode.pt)));
+			}
+		}
+		return network;
+	}
+
+	private static Link createLink(Network network, double fromX, double fromY, double toX, double toY) {
+		int count = network.getNodes().size();
+		Node fromNode = network.getFactory().createNode(Id.create(count, Node.class), new Coord(fromX, fromY));
+		Node toNode = network.getFactory().createNode(Id.create(count + 1, Node.class), new Coord(toX, toY));
+		network.addNode(fromNode);
+		network.addNode(toNode);
+		Link link = network.getFactory().createLink(Id.create(network.getLinks().size(), Link.class), fromNode, toNode);
+		network.addLink(link);
+		return link;
+	}
+
+}
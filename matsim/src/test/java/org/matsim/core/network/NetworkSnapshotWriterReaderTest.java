@@ -0,0 +1,77 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.network;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.MatsimFileTypeGuesser;
+import org.matsim.core.utils.misc.CRCChecksum;
+
+public class NetworkSnapshotWriterReaderTest extends AbstractNetworkWriterReaderTest {
+
+	@Override
+	protected void writeNetwork(final NetworkImpl network, final String filename) {
+		new NetworkSnapshotWriter(network).write(filename);
+	}
+
+	@Override
+	protected void readNetwork(final Scenario scenario, final String filename) {
+		new NetworkSnapshotReader(scenario.getNetwork()).readFile(filename);
+	}
+
+	public void testRoundTrip_sameXml() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("examples/pt-tutorial/multimodalnetwork.xml");
+		String xmlFile = getOutputDirectory() + "network.xml";
+		new NetworkWriter(scenario.getNetwork()).write(xmlFile);
+
+		String snapshotFile = getOutputDirectory() + "network.bin";
+		new NetworkSnapshotWriter(scenario.getNetwork()).write(snapshotFile);
+
+		Scenario scenario2 = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new NetworkSnapshotReader(scenario2.getNetwork()).readFile(snapshotFile);
+		String xmlFile2 = getOutputDirectory() + "network2.xml";
+		new NetworkWriter(scenario2.getNetwork()).write(xmlFile2);
+
+		assertEquals(scenario.getNetwork().getLinks().size(), scenario2.getNetwork().getLinks().size());
+		assertEquals(CRCChecksum.getCRCFromFile(xmlFile), CRCChecksum.getCRCFromFile(xmlFile2));
+	}
+
+	public void testAutoDetection() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("test/scenarios/equil/network.xml");
+		String snapshotFile = getOutputDirectory() + "network.bin";
+		new NetworkSnapshotWriter(scenario.getNetwork()).write(snapshotFile);
+
+		MatsimFileTypeGuesser guesser = new MatsimFileTypeGuesser(snapshotFile);
+		assertTrue(guesser.isBinarySnapshot());
+		assertEquals(MatsimFileTypeGuesser.FileType.Network, guesser.getGuessedFileType());
+		assertFalse(new MatsimFileTypeGuesser("test/scenarios/equil/network.xml").isBinarySnapshot());
+
+		Scenario scenario2 = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario2.getNetwork()).readFile(snapshotFile);
+		assertEquals(scenario.getNetwork().getNodes().size(), scenario2.getNetwork().getNodes().size());
+		assertEquals(scenario.getNetwork().getLinks().size(), scenario2.getNetwork().getLinks().size());
+		assertEquals(scenario.getNetwork().getCapacityPeriod(), scenario2.getNetwork().getCapacityPeriod(), 0.0);
+	}
+
+}
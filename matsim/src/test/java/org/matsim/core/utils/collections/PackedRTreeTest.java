@@ -0,0 +1,260 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.utils.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.core.utils.collections.QuadTree.Executor;
+
+/**
+ * Test for {@link PackedRTree}, mostly by comparing it to a brute force search.
+ */
+public class PackedRTreeTest {
+
+	private static final int NUMBER_OF_POINTS = 5000;
+
+	@Test
+	public void testGetClosest() {
+		Fixture f = new Fixture(4711, 16);
+		Random random = new Random(42);
+		for (int i = 0; i < 500; i++) {
+			double x = random.nextDouble() * 1200 - 100;
+			double y = random.nextDouble() * 1200 - 100;
+			Integer closest = f.tree.getClosest(x, y);
+			Assert.assertEquals(f.distance(f.closest(x, y), x, y), f.distance(closest, x, y), 1e-9);
+		}
+	}
+
+	@Test
+	public void testGetKNearest() {
+		Fixture f = new Fixture(4711, 4);
+		Random random = new Random(42);
+		for (int i = 0; i < 200; i++) {
+			double x = random.nextDouble() * 1000;
+			double y = random.nextDouble() * 1000;
+			int k = 1 + random.nextInt(30);
+			List<Integer> nearest = f.tree.getKNearest(x, y, k);
+			Assert.assertEquals(k, nearest.size());
+			List<Double> expected = f.sortedDistances(x, y);
+			for (int j = 0; j < k; j++) {
+				Assert.assertEquals(expected.get(j), f.distance(nearest.get(j), x, y), 1e-9);
+			}
+		}
+		Assert.assertEquals(NUMBER_OF_POINTS, f.tree.getKNearest(500, 500, NUMBER_OF_POINTS + 10).size());
+		Assert.assertEquals(0, f.tree.getKNearest(500, 500, 0).size());
+	}
+
+	@Test
+	public void testGetKNearest_maxDistance() {
+		Fixture f = new Fixture(4711, 16);
+		List<Integer> nearest = f.tree.getKNearest(500, 500, NUMBER_OF_POINTS, 100);
+		Assert.assertEquals(f.tree.getDisk(500, 500, 100).size(), nearest.size());
+		for (Integer i : nearest) {
+			Assert.assertTrue(f.distance(i, 500, 500) <= 100);
+		}
+	}
+
+	@Test
+	public void testDiskAndRing() {
+		Fixture f = new Fixture(4711, 16);
+		Random random = new Random(42);
+		for (int i = 0; i < 100; i++) {
+			double x = random.nextDouble() * 1000;
+			double y = random.nextDouble() * 1000;
+			double rMin = random.nextDouble() * 100;
+			double rMax = rMin + random.nextDouble() * 100;
+			HashSet<Integer> expectedDisk = new HashSet<>();
+			HashSet<Integer> expectedRing = new HashSet<>();
+			for (int j = 0; j < NUMBER_OF_POINTS; j++) {
+				double distance = f.distance(j, x, y);
+				if (distance <= rMax) {
+					expectedDisk.add(j);
+					if (distance >= rMin) {
+						expectedRing.add(j);
+					}
+				}
+			}
+			Assert.assertEquals(expectedDisk, new HashSet<>(f.tree.getDisk(x, y, rMax)));
+			Assert.assertEquals(expectedRing, new HashSet<>(f.tree.getRing(x, y, rMin, rMax)));
+		}
+	}
+
+	@Test
+	public void testRectangle() {
+		Fixture f = new Fixture(4711, 16);
+		HashSet<Integer> expected = new HashSet<>();
+		for (int j = 0; j < NUMBER_OF_POINTS; j++) {
+			if (f.xs[j] >= 200 && f.xs[j] <= 450 && f.ys[j] >= 100 && f.ys[j] <= 900) {
+				expected.add(j);
+			}
+		}
+		Assert.assertEquals(expected, new HashSet<>(f.tree.getRectangle(200, 100, 450, 900, new ArrayList<Integer>())));
+
+		final List<Integer> visited = new ArrayList<>();
+		int count = f.tree.executeRectangle(200, 100, 450, 900, new Executor<Integer>() {
+			@Override
+			public void execute(double x, double y, Integer object) {
+				visited.add(object);
+			}
+		});
+		Assert.assertEquals(expected.size(), count);
+		Assert.assertEquals(expected, new HashSet<>(visited));
+	}
+
+	@Test
+	public void testCopyOfQuadTree() {
+		QuadTree<String> qt = new QuadTree<>(-50.0, -50.0, +150.0, +150.0);
+		qt.put(10.0, 10.0, "10.0, 10.0");
+		qt.put(15.0, 15.0, "15.0, 15.0");
+		qt.put(-15.0, 0.0, "-15.0, 0.0");
+		qt.put(20.0, 10.0, "20.0, 10.0");
+		qt.put(100.0, 0.0, "100.0, 0.0");
+		qt.put(15.0, 15.0, "15.0, 15.0 B");
+
+		PackedRTree<String> tree = PackedRTree.copyOf(qt);
+		Assert.assertEquals(6, tree.size());
+		Assert.assertEquals(new HashSet<>(qt.values()), new HashSet<>(tree.values()));
+		Assert.assertEquals(-15.0, tree.getMinEasting(), 0.0);
+		Assert.assertEquals(100.0, tree.getMaxEasting(), 0.0);
+		Assert.assertEquals(0.0, tree.getMinNorthing(), 0.0);
+		Assert.assertEquals(15.0, tree.getMaxNorthing(), 0.0);
+		Assert.assertEquals("100.0, 0.0", tree.getClosest(90.0, 0.0));
+		Assert.assertEquals(new HashSet<>(qt.getDisk(10.0, 10.0, 10.0)), new HashSet<>(tree.getDisk(10.0, 10.0, 10.0)));
+		Assert.assertEquals(2, tree.getKNearest(15.0, 15.0, 2).size());
+		Assert.assertTrue(tree.getKNearest(15.0, 15.0, 2).containsAll(qt.getDisk(15.0, 15.0, 0.0)));
+	}
+
+	@Test
+	public void testGetClosest_boxesWithDistance() {
+		// circles, put into the tree with their bounding boxes; only the even ones are searched for
+		Random random = new Random(4711);
+		final double[][] circles = new double[2000][];
+		PackedRTree.Builder<Integer> builder = new PackedRTree.Builder<>();
+		for (int i = 0; i < circles.length; i++) {
+			double x = random.nextDouble() * 1000;
+			double y = random.nextDouble() * 1000;
+			double r = random.nextDouble() * 50;
+			circles[i] = new double[] { x, y, r };
+			builder.put(x - r, y - r, x + r, y + r, i);
+		}
+		PackedRTree<Integer> tree = builder.build();
+		PackedRTree.Distance<Integer> distance = new PackedRTree.Distance<Integer>() {
+			@Override
+			public double calcDistanceSq(double x, double y, Integer i) {
+				if (i % 2 != 0) {
+					return Double.POSITIVE_INFINITY;
+				}
+				double d = Math.max(0, Math.hypot(circles[i][0] - x, circles[i][1] - y) - circles[i][2]);
+				return d * d;
+			}
+		};
+		for (int q = 0; q < 300; q++) {
+			double x = random.nextDouble() * 1200 - 100;
+			double y = random.nextDouble() * 1200 - 100;
+			double best = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < circles.length; i++) {
+				best = Math.min(best, distance.calcDistanceSq(x, y, i));
+			}
+			Integer closest = tree.getClosest(x, y, distance);
+			Assert.assertEquals(0, closest % 2);
+			Assert.assertEquals(best, distance.calcDistanceSq(x, y, closest), 1e-9);
+		}
+
+		PackedRTree.Distance<Object> nothing = new PackedRTree.Distance<Object>() {
+			@Override
+			public double calcDistanceSq(double x, double y, Object object) {
+				return Double.POSITIVE_INFINITY;
+			}
+		};
+		Assert.assertNull(tree.getClosest(0, 0, nothing));
+	}
+
+	@Test
+	public void testEmptyAndSingleElement() {
+		PackedRTree<String> empty = new PackedRTree.Builder<String>().build();
+		Assert.assertEquals(0, empty.size());
+		Assert.assertNull(empty.getClosest(0, 0));
+		Assert.assertTrue(empty.getKNearest(0, 0, 5).isEmpty());
+		Assert.assertTrue(empty.getDisk(0, 0, 100).isEmpty());
+		Assert.assertTrue(empty.values().isEmpty());
+
+		PackedRTree<String> single = new PackedRTree.Builder<String>().put(3, 4, "a").build();
+		Assert.assertEquals("a", single.getClosest(0, 0));
+		Assert.assertEquals(Collections.singletonList("a"), single.getKNearest(0, 0, 5));
+		Assert.assertTrue(single.getDisk(0, 0, 4.9).isEmpty());
+		Assert.assertEquals(1, single.getDisk(0, 0, 5).size());
+	}
+
+	/**
+	 * random points in a 1000x1000 square, some of them at the same location
+	 */
+	private static class Fixture {
+		final double[] xs = new double[NUMBER_OF_POINTS];
+		final double[] ys = new double[NUMBER_OF_POINTS];
+		final PackedRTree<Integer> tree;
+
+		Fixture(long seed, int nodeSize) {
+			Random random = new Random(seed);
+			PackedRTree.Builder<Integer> builder = new PackedRTree.Builder<Integer>().setNodeSize(nodeSize);
+			for (int i = 0; i < NUMBER_OF_POINTS; i++) {
+				if (i > 0 && i % 10 == 0) {
+					this.xs[i] = this.xs[i - 1];
+					this.ys[i] = this.ys[i - 1];
+				} else {
+					this.xs[i] = random.nextDouble() * 1000;
+					this.ys[i] = random.nextDouble() * 1000;
+				}
+				builder.put(this.xs[i], this.ys[i], i);
+			}
+			this.tree = builder.build();
+		}
+
+		double distance(int i, double x, double y) {
+			return Math.sqrt((this.xs[i] - x) * (this.xs[i] - x) + (this.ys[i] - y) * (this.ys[i] - y));
+		}
+
+		int closest(double x, double y) {
+			int closest = 0;
+			for (int i = 1; i < NUMBER_OF_POINTS; i++) {
+				if (distance(i, x, y) < distance(closest, x, y)) {
+					closest = i;
+				}
+			}
+			return closest;
+		}
+
+		List<Double> sortedDistances(double x, double y) {
+			List<Double> distances = new ArrayList<>();
+			for (int i = 0; i < NUMBER_OF_POINTS; i++) {
+				distances.add(distance(i, x, y));
+			}
+			Collections.sort(distances);
+			return distances;
+		}
+	}
+
+}
@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -206,6 +207,51 @@ public class QuadTreeTest {
 		assertEquals(3, values.size());
 	}
 
+	/**
+	 * Test {@link QuadTree#getKNearest(double, double, int)}.
+	 */
+	@Test
+	public void testGetKNearest() {
+		QuadTree<String> qt = getTestTree();
+
+		List<String> values = qt.getKNearest(0.0, 0.0, 1);
+		assertEquals(1, values.size());
+		assertEquals("10.0, 10.0", values.get(0));
+
+		values = qt.getKNearest(0.0, 0.0, 4);
+		assertEquals(4, values.size());
+		assertEquals("10.0, 10.0", values.get(0));
+		assertEquals("-15.0, 0.0", values.get(1));
+		assertTrue(values.contains("15.0, 15.0"));
+		assertTrue(values.contains("15.0, 15.0 B"));
+
+		values = qt.getKNearest(100.0, 100.0, 10);
+		assertEquals(qt.size(), values.size());
+		assertEquals("100.0, 0.0", values.get(0));
+		assertEquals("-15.0, 0.0", values.get(values.size() - 1));
+
+		assertEquals(0, qt.getKNearest(0.0, 0.0, 0).size());
+		assertEquals(0, new QuadTree<String>(0, 0, 10, 10).getKNearest(5.0, 5.0, 3).size());
+
+		// compare with a brute force search on a larger tree
+		QuadTree<Coord> qt2 = new QuadTree<Coord>(0, 0, 1000, 1000);
+		java.util.Random random = new java.util.Random(4711);
+		for (int i = 0; i < 1000; i++) {
+			Coord coord = new Coord(random.nextDouble() * 1000, random.nextDouble() * 1000);
+			qt2.put(coord.getX(), coord.getY(), coord);
+		}
+		for (int i = 0; i < 20; i++) {
+			Coord center = new Coord(random.nextDouble() * 1000, random.nextDouble() * 1000);
+			List<Coord> nearest = qt2.getKNearest(center.getX(), center.getY(), 15);
+			assertEquals(15, nearest.size());
+			double maxDistance = CoordUtils.calcEuclideanDistance(center, nearest.get(14));
+			assertEquals(15, qt2.getDisk(center.getX(), center.getY(), maxDistance).size());
+			for (int j = 1; j < nearest.size(); j++) {
+				assertTrue(CoordUtils.calcEuclideanDistance(center, nearest.get(j - 1)) <= CoordUtils.calcEuclideanDistance(center, nearest.get(j)));
+			}
+		}
+	}
+
 	@Test
 	public void testGetXY_EntryOnDividingBorder() {
 		QuadTree<String> qt = new QuadTree<String>(0, 0, 40, 60);
@@ -0,0 +1,175 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.utils.collections;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.core.utils.collections.QuadTree.Executor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link PackedRTree} to the {@link QuadTree}: building the index from
+ * random points, and 1000 closest object and disk queries per operation. Run it
+ * with the main method, which adds the GC profiler, to also see the allocations of
+ * the queries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SpatialIndexBenchmark {
+
+	private static final int NUMBER_OF_QUERIES = 1000;
+	private static final double SIZE = 100000;
+
+	@Param({"100000", "1000000"})
+	public int numberOfPoints;
+
+	private double[] xs;
+	private double[] ys;
+	private double[] queryXs;
+	private double[] queryYs;
+	private QuadTree<Integer> quadTree;
+	private PackedRTree<Integer> packedRTree;
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(SpatialIndexBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(4711);
+		this.xs = new double[this.numberOfPoints];
+		this.ys = new double[this.numberOfPoints];
+		for (int i = 0; i < this.numberOfPoints; i++) {
+			this.xs[i] = random.nextDouble() * SIZE;
+			this.ys[i] = random.nextDouble() * SIZE;
+		}
+		this.queryXs = new double[NUMBER_OF_QUERIES];
+		this.queryYs = new double[NUMBER_OF_QUERIES];
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			this.queryXs[i] = random.nextDouble() * SIZE;
+			this.queryYs[i] = random.nextDouble() * SIZE;
+		}
+		this.quadTree = buildQuadTree();
+		this.packedRTree = buildPackedRTree();
+	}
+
+	@Benchmark
+	public QuadTree<Integer> buildQuadTree() {
+		QuadTree<Integer> result = new QuadTree<>(0, 0, SIZE, SIZE);
+		for (int i = 0; i < this.numberOfPoints; i++) {
+			result.put(this.xs[i], this.ys[i], i);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public PackedRTree<Integer> buildPackedRTree() {
+		PackedRTree.Builder<Integer> builder = new PackedRTree.Builder<>();
+		for (int i = 0; i < this.numberOfPoints; i++) {
+			builder.put(this.xs[i], this.ys[i], i);
+		}
+		return builder.build();
+	}
+
+	@Benchmark
+	public long closestQuadTree() {
+		long result = 0;
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			result += this.quadTree.getClosest(this.queryXs[i], this.queryYs[i]);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public long closestPackedRTree() {
+		long result = 0;
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			result += this.packedRTree.getClosest(this.queryXs[i], this.queryYs[i]);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public long diskQuadTree() {
+		long result = 0;
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			for (Integer value : this.quadTree.getDisk(this.queryXs[i], this.queryYs[i], 500)) {
+				result += value;
+			}
+		}
+		return result;
+	}
+
+	@Benchmark
+	public long diskPackedRTree() {
+		Sum sum = new Sum();
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			this.packedRTree.executeDisk(this.queryXs[i], this.queryYs[i], 500, sum);
+		}
+		return sum.value;
+	}
+
+	@Benchmark
+	public long kNearestPackedRTree() {
+		long result = 0;
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			for (Integer value : this.packedRTree.getKNearest(this.queryXs[i], this.queryYs[i], 10)) {
+				result += value;
+			}
+		}
+		return result;
+	}
+
+	private static final class Sum implements Executor<Integer> {
+		long value = 0;
+
+		@Override
+		public void execute(double x, double y, Integer object) {
+			this.value += object;
+		}
+	}
+
+}
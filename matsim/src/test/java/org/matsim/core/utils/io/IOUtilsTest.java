@@ -460,4 +460,21 @@ public class IOUtilsTest {
 		Assert.assertEquals("test+test.txt", file.getCanonicalFile().getName());
 	}
 
+	/**
+	 * If only the compressed file exists, it is opened when the filename is given without ".gz".
+	 */
+	@Test
+	public void testGetInputStream_compressedWithoutExtension() throws IOException {
+		String filename = this.utils.getOutputDirectory() + "test.txt";
+		BufferedWriter writer = IOUtils.getBufferedWriter(filename + ".gz");
+		writer.write("ABCdef");
+		writer.close();
+		Assert.assertFalse(new File(filename).exists());
+
+		InputStream in = IOUtils.getInputStream(filename);
+		Assert.assertEquals("ABCdef", new String(new byte[] { (byte) in.read(), (byte) in.read(), (byte) in.read(), (byte) in.read(), (byte) in.read(), (byte) in.read() }));
+		Assert.assertEquals(-1, in.read());
+		in.close();
+	}
+
 }
@@ -0,0 +1,140 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.utils.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.network.MatsimNetworkReader;
+import org.matsim.core.network.NetworkWriter;
+import org.matsim.core.population.MatsimPopulationReader;
+import org.matsim.core.population.PopulationWriter;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.misc.CRCChecksum;
+import org.matsim.facilities.FacilitiesWriter;
+import org.matsim.facilities.MatsimFacilitiesReader;
+import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
+import org.matsim.pt.transitSchedule.api.TransitScheduleWriter;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+/**
+ * Reads the files of the main readers with both {@link MatsimXmlParser.ParserBackend}s
+ * and compares the written results.
+ */
+public class MatsimXmlParserBackendsTest {
+
+	private static final String BACKEND_PROPERTY = "matsim.xmlParserBackend";
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@After
+	public void resetBackend() {
+		System.clearProperty(BACKEND_PROPERTY);
+	}
+
+	@Test
+	public void testNetwork() {
+		for (String backend : new String[] {"sax", "stax"}) {
+			System.setProperty(BACKEND_PROPERTY, backend);
+			Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+			new MatsimNetworkReader(scenario.getNetwork()).readFile("test/scenarios/equil/network.xml");
+			new NetworkWriter(scenario.getNetwork()).write(this.utils.getOutputDirectory() + backend + ".xml");
+		}
+		assertSameFiles("xml");
+	}
+
+	@Test
+	public void testPopulation() {
+		for (String backend : new String[] {"sax", "stax"}) {
+			System.setProperty(BACKEND_PROPERTY, backend);
+			Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+			new MatsimNetworkReader(scenario.getNetwork()).readFile("test/scenarios/equil/network.xml");
+			new MatsimPopulationReader(scenario).readFile("test/scenarios/equil/plans100.xml");
+			Assert.assertEquals(100, scenario.getPopulation().getPersons().size());
+			new PopulationWriter(scenario.getPopulation(), scenario.getNetwork()).write(this.utils.getOutputDirectory() + backend + ".xml");
+		}
+		assertSameFiles("xml");
+	}
+
+	@Test
+	public void testFacilities() {
+		for (String backend : new String[] {"sax", "stax"}) {
+			System.setProperty(BACKEND_PROPERTY, backend);
+			Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+			new MatsimFacilitiesReader(scenario).readFile("test/scenarios/equil/facilities.xml");
+			new FacilitiesWriter(scenario.getActivityFacilities()).write(this.utils.getOutputDirectory() + backend + ".xml");
+		}
+		assertSameFiles("xml");
+	}
+
+	@Test
+	public void testTransitSchedule() {
+		for (String backend : new String[] {"sax", "stax"}) {
+			System.setProperty(BACKEND_PROPERTY, backend);
+			Config config = ConfigUtils.createConfig();
+			config.transit().setUseTransit(true);
+			Scenario scenario = ScenarioUtils.createScenario(config);
+			new MatsimNetworkReader(scenario.getNetwork()).readFile("examples/pt-tutorial/multimodalnetwork.xml");
+			new TransitScheduleReader(scenario).readFile("examples/pt-tutorial/transitschedule.xml");
+			Assert.assertFalse(scenario.getTransitSchedule().getTransitLines().isEmpty());
+			new TransitScheduleWriter(scenario.getTransitSchedule()).writeFile(this.utils.getOutputDirectory() + backend + ".xml");
+		}
+		assertSameFiles("xml");
+	}
+
+	@Test
+	public void testEvents() {
+		List<List<String>> results = new ArrayList<>();
+		for (String backend : new String[] {"sax", "stax"}) {
+			System.setProperty(BACKEND_PROPERTY, backend);
+			EventsManager events = EventsUtils.createEventsManager();
+			EventsCollector collector = new EventsCollector();
+			events.addHandler(collector);
+			new MatsimEventsReader(events).readFile("test/scenarios/equil/output_events.xml.gz");
+			List<String> result = new ArrayList<>();
+			for (Event event : collector.getEvents()) {
+				result.add(event.toString());
+			}
+			results.add(result);
+		}
+		Assert.assertFalse(results.get(0).isEmpty());
+		Assert.assertEquals(results.get(0), results.get(1));
+	}
+
+	private void assertSameFiles(String extension) {
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(this.utils.getOutputDirectory() + "sax." + extension),
+				CRCChecksum.getCRCFromFile(this.utils.getOutputDirectory() + "stax." + extension));
+	}
+
+}
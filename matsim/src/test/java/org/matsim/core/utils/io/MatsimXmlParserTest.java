@@ -26,6 +26,8 @@ import junit.framework.Assert;
 
 import org.junit.Test;
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.AttributesImpl;
 
 /**
  * @author mrieser / senozon
@@ -92,6 +94,80 @@ public class MatsimXmlParserTest {
 		Assert.assertEquals("value2", parser.lastAttributes.getValue("someAttribute2"));
 	}
 	
+	@Test
+	public void testStax_ReservedEntities() {
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<dummy someAttribute=\"value&quot;&amp;&lt;&gt;value\">content&quot;&amp;<![CDATA[<cdata>]]>&lt;&gt;content</dummy>";
+
+		TestParser parser = new TestParser();
+		parser.setParserBackend(MatsimXmlParser.ParserBackend.STAX);
+
+		parser.parse(new ByteArrayInputStream(str.getBytes()));
+		Assert.assertEquals("dummy", parser.lastStartTag);
+		Assert.assertEquals("dummy", parser.lastEndTag);
+		Assert.assertEquals("content\"&<cdata><>content", parser.lastContent);
+		Assert.assertEquals(1, parser.lastAttributes.getLength());
+		Assert.assertEquals("someAttribute", parser.lastAttributes.getLocalName(0));
+		Assert.assertEquals("value\"&<>value", parser.lastAttributes.getValue("someAttribute"));
+		Assert.assertNull(parser.lastAttributes.getValue("otherAttribute"));
+	}
+
+	@Test
+	public void testStax_NestedContent() {
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\r\n" +
+				"<root>\r\n" +
+				"<dummy someAttribute=\"value1\">content</dummy>\r\n" +
+				"<dummy2 someAttribute2=\"value2\"/>\r\n" +
+				"</root>";
+
+		TestParser parser = new TestParser();
+		parser.setParserBackend(MatsimXmlParser.ParserBackend.STAX);
+
+		parser.parse(new ByteArrayInputStream(str.getBytes()));
+		Assert.assertEquals("dummy2", parser.lastStartTag);
+		Assert.assertEquals("root", parser.lastEndTag);
+		Assert.assertEquals("\n\n\n", parser.lastContent);
+		Assert.assertEquals("value2", parser.lastAttributes.getValue("someAttribute2"));
+	}
+
+	@Test
+	public void testStax_DoctypeAndDefaultAttributes() {
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<!DOCTYPE dummy SYSTEM \"http://www.matsim.org/files/dtd/dummy_v1.dtd\">\n" +
+				"<dummy someAttribute=\"value\">content</dummy>";
+		final String dtd = "<!ELEMENT dummy (#PCDATA)>\n" +
+				"<!ATTLIST dummy someAttribute CDATA #REQUIRED defaultAttribute CDATA \"default\">";
+
+		TestParser parser = new TestParser() {
+			@Override
+			public InputSource resolveEntity(String publicId, String systemId) {
+				setDoctype(systemId.substring(systemId.lastIndexOf('/') + 1));
+				return new InputSource(new ByteArrayInputStream(dtd.getBytes()));
+			}
+		};
+		parser.setParserBackend(MatsimXmlParser.ParserBackend.STAX);
+
+		parser.parse(new ByteArrayInputStream(str.getBytes()));
+		Assert.assertEquals("dummy_v1.dtd", parser.getDoctype());
+		Assert.assertEquals("value", parser.lastAttributes.getValue("someAttribute"));
+		Assert.assertEquals("default", parser.lastAttributes.getValue("defaultAttribute"));
+	}
+
+	@Test
+	public void testStax_DoctypeFromSchemaLocation() {
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<dummy xmlns=\"http://www.matsim.org/files/dtd\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +
+				"	xsi:schemaLocation=\"http://www.matsim.org/files/dtd http://www.matsim.org/files/dtd/dummy_v2.xsd\" someAttribute=\"value\"/>";
+
+		TestParser parser = new TestParser();
+		parser.setParserBackend(MatsimXmlParser.ParserBackend.STAX);
+
+		parser.parse(new ByteArrayInputStream(str.getBytes()));
+		Assert.assertEquals("dummy_v2.xsd", parser.getDoctype());
+		Assert.assertEquals("dummy", parser.lastStartTag);
+		Assert.assertEquals("value", parser.lastAttributes.getValue("someAttribute"));
+	}
+
 	private static class TestParser extends MatsimXmlParser {
 
 		public String lastStartTag = null;
@@ -102,7 +178,8 @@ public class MatsimXmlParserTest {
 		@Override
 		public void startTag(String name, Attributes atts, Stack<String> context) {
 			this.lastStartTag = name;
-			this.lastAttributes = atts;
+			// the attributes are only valid during this call, the StAX backend reuses them
+			this.lastAttributes = new AttributesImpl(atts);
 		}
 
 		@Override
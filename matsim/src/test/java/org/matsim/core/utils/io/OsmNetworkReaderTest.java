@@ -29,6 +29,7 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.network.algorithms.NetworkCleaner;
 import org.matsim.core.scenario.ScenarioUtils;
@@ -306,4 +307,43 @@ public class OsmNetworkReaderTest {
 		Assert.assertNotNull("Could not find converted link 3", link3);
 		Assert.assertNull(net.getLinks().get(Id.create("5", Link.class)));
 	}
+
+	@Test
+	public void testConversion_pbfSameAsXml() {
+		String directory = "examples/tutorial/programming/demandGenerationWithFacilities/";
+		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(TransformationFactory.WGS84, TransformationFactory.CH1903_LV03);
+
+		Network xmlNet = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		OsmNetworkReader xmlReader = new OsmNetworkReader(xmlNet, ct);
+		xmlReader.setHierarchyLayer(47.4, 8.5, 47.36, 8.56, 4);
+		xmlReader.parse(directory + "zrh-center-bigroads.osm.gz");
+
+		for (int numberOfThreads : new int[] { 1, 3 }) {
+			Network pbfNet = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+			OsmNetworkReader pbfReader = new OsmNetworkReader(pbfNet, ct);
+			pbfReader.setHierarchyLayer(47.4, 8.5, 47.36, 8.56, 4);
+			pbfReader.setNumberOfThreads(numberOfThreads);
+			pbfReader.parse(directory + "zrh-center-bigroads.osm.pbf");
+
+			Assert.assertTrue(xmlNet.getLinks().size() > 0);
+			Assert.assertEquals("number of nodes is wrong.", xmlNet.getNodes().size(), pbfNet.getNodes().size());
+			Assert.assertEquals("number of links is wrong.", xmlNet.getLinks().size(), pbfNet.getLinks().size());
+			for (Node node : xmlNet.getNodes().values()) {
+				Node pbfNode = pbfNet.getNodes().get(node.getId());
+				Assert.assertNotNull("missing node " + node.getId(), pbfNode);
+				// the coordinates in the xml file are rounded to 7 digits, the ones in the pbf file to 100 nanodegrees
+				Assert.assertEquals(node.getCoord().getX(), pbfNode.getCoord().getX(), 0.05);
+				Assert.assertEquals(node.getCoord().getY(), pbfNode.getCoord().getY(), 0.05);
+			}
+			for (Link link : xmlNet.getLinks().values()) {
+				Link pbfLink = pbfNet.getLinks().get(link.getId());
+				Assert.assertNotNull("missing link " + link.getId(), pbfLink);
+				Assert.assertEquals(link.getFromNode().getId(), pbfLink.getFromNode().getId());
+				Assert.assertEquals(link.getToNode().getId(), pbfLink.getToNode().getId());
+				Assert.assertEquals(link.getFreespeed(), pbfLink.getFreespeed(), 1e-9);
+				Assert.assertEquals(link.getNumberOfLanes(), pbfLink.getNumberOfLanes(), 1e-9);
+				Assert.assertEquals(link.getLength(), pbfLink.getLength(), 0.1);
+			}
+		}
+	}
 }
@@ -0,0 +1,111 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.utils.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReadAheadInputStreamTest {
+
+	@Test
+	public void testRead() throws IOException {
+		byte[] data = new byte[100000];
+		new Random(42).nextBytes(data);
+		try (InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), 1000, 2)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Assert.assertEquals(data[0] & 0xff, in.read());
+			out.write(data[0]);
+			byte[] buffer = new byte[777];
+			int n;
+			while ((n = in.read(buffer, 0, buffer.length)) >= 0) {
+				out.write(buffer, 0, n);
+			}
+			Assert.assertArrayEquals(data, out.toByteArray());
+			Assert.assertEquals(-1, in.read());
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testClose_beforeEnd() throws IOException {
+		InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(new byte[1000000]), 100, 2);
+		Assert.assertEquals(0, in.read());
+		in.close();
+	}
+
+	@Test
+	public void testException() throws IOException {
+		InputStream failing = new InputStream() {
+			private int count = 0;
+			@Override
+			public int read() throws IOException {
+				if (++this.count > 500) {
+					throw new IOException("broken");
+				}
+				return 1;
+			}
+		};
+		try (InputStream in = new ReadAheadInputStream(failing, 100, 2)) {
+			int count = 0;
+			try {
+				while (in.read() >= 0) {
+					count++;
+				}
+				Assert.fail("expected exception");
+			} catch (IOException e) {
+				Assert.assertEquals("broken", e.getMessage());
+			}
+			Assert.assertEquals(500, count);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testUncheckedException() throws IOException {
+		InputStream failing = new InputStream() {
+			private int count = 0;
+			@Override
+			public int read() {
+				if (++this.count > 500) {
+					throw new IllegalStateException("broken");
+				}
+				return 1;
+			}
+		};
+		try (InputStream in = new ReadAheadInputStream(failing, 100, 2)) {
+			int count = 0;
+			try {
+				while (in.read() >= 0) {
+					count++;
+				}
+				Assert.fail("expected exception");
+			} catch (IOException e) {
+				Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+			Assert.assertEquals(500, count);
+		}
+	}
+
+}
@@ -0,0 +1,301 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.utils.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.network.MatsimNetworkReader;
+import org.matsim.core.network.NetworkWriter;
+import org.matsim.core.population.MatsimPopulationReader;
+import org.matsim.core.population.PopulationWriter;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.MutableScenario;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.facilities.ActivityFacilitiesFactory;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.FacilitiesWriter;
+import org.matsim.facilities.MatsimFacilitiesReader;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
+import org.matsim.pt.transitSchedule.api.TransitScheduleWriter;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link MatsimXmlParser.ParserBackend}s for the readers of the main file
+ * types. The files are generated once per trial; the <code>megabytes</code> counter gives
+ * the parsing speed in MB/s, the operations per second the number of files read. The
+ * readers are used with their defaults, so the SAX backend validates the files which
+ * reference a DTD or schema, as in a simulation run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XmlParserBenchmark {
+
+	private static final int GRID_SIZE = 100;
+
+	@Param({"network", "population", "events", "facilities", "transitSchedule"})
+	public String fileType;
+
+	@Param({"SAX", "STAX"})
+	public String backend;
+
+	private File directory;
+	private String filename;
+	private double megabytes;
+	private Scenario scenario;
+
+	/**
+	 * Counts the megabytes read, reported per second.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class ReadMegabytes {
+		public double megabytes;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(XmlParserBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		System.setProperty("matsim.xmlParserBackend", this.backend);
+		System.setProperty("matsim.preferLocalDtds", "true");
+		this.directory = Files.createTempDirectory("xmlParserBenchmark").toFile();
+		this.filename = new File(this.directory, this.fileType + ".xml").getPath();
+		this.scenario = createScenario();
+		Network network = this.scenario.getNetwork();
+		createGrid(network);
+		if (this.fileType.equals("network")) {
+			new NetworkWriter(network).write(this.filename);
+		} else if (this.fileType.equals("population")) {
+			writePopulation(this.scenario, this.filename);
+		} else if (this.fileType.equals("events")) {
+			writeEvents(network, this.filename);
+		} else if (this.fileType.equals("facilities")) {
+			writeFacilities(this.scenario, this.filename);
+		} else if (this.fileType.equals("transitSchedule")) {
+			writeTransitSchedule(this.scenario, this.filename);
+		} else {
+			throw new IllegalArgumentException("unknown file type " + this.fileType);
+		}
+		this.megabytes = new File(this.filename).length() / 1e6;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		new File(this.filename).delete();
+		this.directory.delete();
+		System.clearProperty("matsim.xmlParserBackend");
+	}
+
+	@Benchmark
+	public Object read(ReadMegabytes counter) {
+		counter.megabytes += this.megabytes;
+		Scenario scenario = createScenario();
+		if (this.fileType.equals("network")) {
+			new MatsimNetworkReader(scenario.getNetwork()).readFile(this.filename);
+			return scenario.getNetwork();
+		} else if (this.fileType.equals("population")) {
+			new MatsimPopulationReader(scenario).readFile(this.filename);
+			return scenario.getPopulation();
+		} else if (this.fileType.equals("events")) {
+			new MatsimEventsReader(EventsUtils.createEventsManager()).readFile(this.filename);
+			return null;
+		} else if (this.fileType.equals("facilities")) {
+			new MatsimFacilitiesReader(scenario).readFile(this.filename);
+			return scenario.getActivityFacilities();
+		} else {
+			// the routes refer to the links of the network
+			((MutableScenario) scenario).setNetwork(this.scenario.getNetwork());
+			new TransitScheduleReader(scenario).readFile(this.filename);
+			return scenario.getTransitSchedule();
+		}
+	}
+
+	private static Scenario createScenario() {
+		Config config = ConfigUtils.createConfig();
+		config.transit().setUseTransit(true);
+		return ScenarioUtils.createScenario(config);
+	}
+
+	private static void createGrid(Network network) {
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				network.addNode(network.getFactory().createNode(Id.create(x + "_" + y, Node.class), new Coord(x * 100, y * 100)));
+			}
+		}
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				if (x + 1 < GRID_SIZE) {
+					createLink(network, x + "_" + y, (x + 1) + "_" + y);
+					createLink(network, (x + 1) + "_" + y, x + "_" + y);
+				}
+				if (y + 1 < GRID_SIZE) {
+					createLink(network, x + "_" + y, x + "_" + (y + 1));
+					createLink(network, x + "_" + (y + 1), x + "_" + y);
+				}
+			}
+		}
+	}
+
+	private static void createLink(Network network, String from, String to) {
+		Link link = network.getFactory().createLink(Id.create(from + "-" + to, Link.class),
+				network.getNodes().get(Id.create(from, Node.class)), network.getNodes().get(Id.create(to, Node.class)));
+		link.setLength(100);
+		link.setFreespeed(13.9);
+		link.setCapacity(1800);
+		link.setNumberOfLanes(1);
+		network.addLink(link);
+	}
+
+	private static Id<Link> getLinkId(int x, int y) {
+		return Id.create(x + "_" + y + "-" + (x + 1) + "_" + y, Link.class);
+	}
+
+	private static void writePopulation(Scenario scenario, String filename) {
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < 20000; i++) {
+			Person person = pf.createPerson(Id.create(i, Person.class));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("home", getLinkId(i % (GRID_SIZE - 1), (i / 7) % GRID_SIZE));
+			home.setEndTime(7 * 3600 + i % 3600);
+			plan.addActivity(home);
+			plan.addLeg(pf.createLeg("car"));
+			Activity work = pf.createActivityFromLinkId("work", getLinkId((i / 3) % (GRID_SIZE - 1), i % GRID_SIZE));
+			work.setEndTime(17 * 3600 + i % 3600);
+			plan.addActivity(work);
+			plan.addLeg(pf.createLeg("car"));
+			plan.addActivity(pf.createActivityFromLinkId("home", home.getLinkId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		new PopulationWriter(scenario.getPopulation(), scenario.getNetwork()).write(filename);
+	}
+
+	private static void writeEvents(Network network, String filename) {
+		EventWriterXML writer = new EventWriterXML(filename);
+		List<Id<Link>> linkIds = new ArrayList<>(network.getLinks().keySet());
+		for (int i = 0; i < 500000; i++) {
+			Id<Vehicle> vehicleId = Id.create(i % 10000, Vehicle.class);
+			Id<Link> linkId = linkIds.get(i % linkIds.size());
+			writer.handleEvent(new LinkEnterEvent(i * 0.1, vehicleId, linkId));
+			writer.handleEvent(new LinkLeaveEvent(i * 0.1 + 10, vehicleId, linkId));
+		}
+		writer.closeFile();
+	}
+
+	private static void writeFacilities(Scenario scenario, String filename) {
+		ActivityFacilitiesFactory factory = scenario.getActivityFacilities().getFactory();
+		for (int i = 0; i < 50000; i++) {
+			ActivityFacility facility = factory.createActivityFacility(Id.create(i, ActivityFacility.class), new Coord(i % 1000 * 10, i / 1000 * 10));
+			facility.addActivityOption(factory.createActivityOption("home"));
+			if (i % 3 == 0) {
+				facility.addActivityOption(factory.createActivityOption("work"));
+			}
+			scenario.getActivityFacilities().addActivityFacility(facility);
+		}
+		new FacilitiesWriter(scenario.getActivityFacilities()).write(filename);
+	}
+
+	/**
+	 * one line per row of the grid with routes in both directions and departures every 5 minutes
+	 */
+	private static void writeTransitSchedule(Scenario scenario, String filename) {
+		TransitScheduleFactory factory = scenario.getTransitSchedule().getFactory();
+		for (int y = 0; y < GRID_SIZE; y++) {
+			TransitLine line = factory.createTransitLine(Id.create(y, TransitLine.class));
+			List<Id<Link>> linkIds = new ArrayList<>();
+			List<TransitRouteStop> stops = new ArrayList<>();
+			for (int x = 0; x < GRID_SIZE - 1; x++) {
+				Id<Link> linkId = getLinkId(x, y);
+				linkIds.add(linkId);
+				TransitStopFacility stop = factory.createTransitStopFacility(Id.create(linkId, TransitStopFacility.class), new Coord(x * 100 + 100, y * 100), false);
+				stop.setLinkId(linkId);
+				scenario.getTransitSchedule().addStopFacility(stop);
+				stops.add(factory.createTransitRouteStop(stop, x * 60, x * 60 + 20));
+			}
+			TransitRoute route = factory.createTransitRoute(Id.create(y, TransitRoute.class),
+					RouteUtils.createNetworkRoute(linkIds, scenario.getNetwork()), stops, "bus");
+			for (int d = 0; d < 200; d++) {
+				route.addDeparture(factory.createDeparture(Id.create(d, Departure.class), 5 * 3600 + d * 300));
+			}
+			line.addRoute(route);
+			scenario.getTransitSchedule().addTransitLine(line);
+		}
+		new TransitScheduleWriter(scenario.getTransitSchedule()).writeFile(filename);
+	}
+
+}
@@ -0,0 +1,193 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.matrices;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class DenseMatrixTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testGetSet() {
+		DenseMatrix m = new DenseMatrix("m", Arrays.asList("a", "b", "c"));
+		Assert.assertEquals(3, m.getZoneCount());
+		Assert.assertEquals(1, m.getZoneIndex("b"));
+		Assert.assertEquals(-1, m.getZoneIndex("x"));
+		m.set("a", "c", 2.5f);
+		m.add(0, 2, 1.0f);
+		m.set(1, 0, 4.0f);
+		Assert.assertEquals(3.5f, m.get(0, 2), 0);
+		Assert.assertEquals(4.0f, m.get("b", "a"), 0);
+		Assert.assertEquals(0.0f, m.get("c", "c"), 0);
+		Assert.assertArrayEquals(new float[] {4.0f, 0, 0}, m.getRow(1, null), 0);
+		try {
+			m.get("a", "x");
+			Assert.fail("expected exception for unknown zone");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			m.get(3, 0);
+			Assert.fail("expected exception for invalid index");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateZones() {
+		new DenseMatrix("m", Arrays.asList("a", "b", "a"));
+	}
+
+	@Test
+	public void testParallelOperations() {
+		DenseMatrix m1 = createMatrix(400);
+		DenseMatrix m2 = createMatrix(400);
+		m1.setNumberOfThreads(4);
+		m2.setNumberOfThreads(1);
+		Assert.assertEquals(m2.getSum(), m1.getSum(), 1e-6 * m2.getSum());
+
+		m1.scale(2);
+		m2.scale(2);
+		DenseMatrix other = createMatrix(400);
+		m1.add(other);
+		m2.add(other);
+		m1.multiplyElements(other);
+		m2.multiplyElements(other);
+		m1.transform(new DenseMatrix.ElementOperation() {
+			@Override
+			public float apply(int fromIndex, int toIndex, float value) {
+				return fromIndex == toIndex ? 0 : value;
+			}
+		});
+		m2.transform(new DenseMatrix.ElementOperation() {
+			@Override
+			public float apply(int fromIndex, int toIndex, float value) {
+				return fromIndex == toIndex ? 0 : value;
+			}
+		});
+		for (int i = 0; i < 400; i++) {
+			for (int j = 0; j < 400; j++) {
+				Assert.assertEquals(m2.get(i, j), m1.get(i, j), 0);
+			}
+		}
+		Assert.assertEquals(0, m1.get(7, 7), 0);
+		float expected = (float) (initialValue(3, 5) * 2 + initialValue(3, 5)) * (float) initialValue(3, 5);
+		Assert.assertEquals(expected, m1.get(3, 5), 0);
+
+		double[] rowSums = m1.getRowSums();
+		double[] columnSums = m1.getColumnSums();
+		double[] expectedRowSums = m2.getRowSums();
+		double[] expectedColumnSums = m2.getColumnSums();
+		double total = 0;
+		for (int i = 0; i < 400; i++) {
+			Assert.assertEquals(expectedRowSums[i], rowSums[i], 1e-9 * expectedRowSums[i]);
+			Assert.assertEquals(expectedColumnSums[i], columnSums[i], 1e-9 * expectedColumnSums[i]);
+			total += rowSums[i];
+		}
+		Assert.assertEquals(total, m1.getSum(), 1e-9 * total);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCombine_otherZones() {
+		new DenseMatrix("a", Arrays.asList("1", "2")).add(new DenseMatrix("b", Arrays.asList("2", "1")));
+	}
+
+	@Test
+	public void testWriteRead() {
+		DenseMatrix m = createMatrix(300);
+		m.setDesc("travel times");
+		String filename = this.utils.getOutputDirectory() + "matrix.bin";
+		new DenseMatrixWriter(m).write(filename);
+
+		DenseMatrix m2 = new DenseMatrixReader().readFile(filename);
+		Assert.assertEquals("m", m2.getId());
+		Assert.assertEquals("travel times", m2.getDesc());
+		Assert.assertEquals(m.getZoneIds(), m2.getZoneIds());
+		for (int i = 0; i < 300; i++) {
+			for (int j = 0; j < 300; j++) {
+				Assert.assertEquals(m.get(i, j), m2.get(i, j), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testConvertMatrix() {
+		Matrices matrices = new Matrices();
+		Matrix sparse = matrices.createMatrix("od", "demand");
+		sparse.createEntry("1", "2", 5.0);
+		sparse.createEntry("2", "3", 1.5);
+		sparse.createEntry("3", "1", 0.0);
+
+		DenseMatrix dense = DenseMatrix.createFromMatrix(sparse, Float.NaN);
+		Assert.assertEquals(Arrays.asList("1", "2", "3"), dense.getZoneIds());
+		Assert.assertEquals("demand", dense.getDesc());
+		Assert.assertEquals(5.0f, dense.get("1", "2"), 0);
+		Assert.assertEquals(0.0f, dense.get("3", "1"), 0);
+		Assert.assertTrue(Float.isNaN(dense.get("1", "1")));
+
+		Matrices matrices2 = new Matrices();
+		Matrix sparse2 = dense.toMatrix(matrices2, Float.NaN);
+		Assert.assertEquals("od", sparse2.getId());
+		Assert.assertEquals(5.0, sparse2.getEntry("1", "2").getValue(), 0);
+		Assert.assertEquals(1.5, sparse2.getEntry("2", "3").getValue(), 0);
+		Assert.assertEquals(0.0, sparse2.getEntry("3", "1").getValue(), 0);
+		Assert.assertNull(sparse2.getEntry("1", "1"));
+
+		// round trip through the xml format
+		String filename = this.utils.getOutputDirectory() + "matrices.xml";
+		new MatricesWriter(matrices2).write(filename);
+		Matrices matrices3 = new Matrices();
+		new MatsimMatricesReader(matrices3, null).readFile(filename);
+		DenseMatrix dense3 = DenseMatrix.createFromMatrix(matrices3.getMatrix("od"), 0);
+		Assert.assertEquals(1.5f, dense3.get("2", "3"), 0);
+		Assert.assertEquals(0.0f, dense3.get("1", "1"), 0);
+		Assert.assertEquals(6.5, dense3.getSum(), 1e-9);
+	}
+
+	private static double initialValue(int from, int to) {
+		return (from * 31 + to * 17) % 100;
+	}
+
+	private static DenseMatrix createMatrix(int size) {
+		List<String> zoneIds = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			zoneIds.add(Integer.toString(i));
+		}
+		DenseMatrix m = new DenseMatrix("m", zoneIds);
+		for (int from = 0; from < size; from++) {
+			for (int to = 0; to < size; to++) {
+				m.set(from, to, (float) initialValue(from, to));
+			}
+		}
+		return m;
+	}
+
+}
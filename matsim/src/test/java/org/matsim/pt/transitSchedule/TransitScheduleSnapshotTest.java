@@ -0,0 +1,72 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.pt.transitSchedule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.MatsimFileTypeGuesser;
+import org.matsim.core.utils.misc.CRCChecksum;
+import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
+import org.matsim.pt.transitSchedule.api.TransitScheduleWriter;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class TransitScheduleSnapshotTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testRoundTrip_sameXml() {
+		Scenario scenario = createScenario();
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("examples/pt-tutorial/multimodalnetwork.xml");
+		new TransitScheduleReader(scenario).readFile("examples/pt-tutorial/transitschedule.xml");
+		String xmlFile = this.utils.getOutputDirectory() + "schedule.xml";
+		new TransitScheduleWriter(scenario.getTransitSchedule()).writeFile(xmlFile);
+
+		String snapshotFile = this.utils.getOutputDirectory() + "schedule.bin";
+		new TransitScheduleSnapshotWriter(scenario.getTransitSchedule()).write(snapshotFile);
+
+		MatsimFileTypeGuesser guesser = new MatsimFileTypeGuesser(snapshotFile);
+		Assert.assertTrue(guesser.isBinarySnapshot());
+		Assert.assertEquals(MatsimFileTypeGuesser.FileType.TransitSchedule, guesser.getGuessedFileType());
+
+		Scenario scenario2 = createScenario();
+		new TransitScheduleReader(scenario2).readFile(snapshotFile);
+		String xmlFile2 = this.utils.getOutputDirectory() + "schedule2.xml";
+		new TransitScheduleWriter(scenario2.getTransitSchedule()).writeFile(xmlFile2);
+
+		Assert.assertEquals(scenario.getTransitSchedule().getFacilities().size(), scenario2.getTransitSchedule().getFacilities().size());
+		Assert.assertEquals(scenario.getTransitSchedule().getTransitLines().size(), scenario2.getTransitSchedule().getTransitLines().size());
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(xmlFile), CRCChecksum.getCRCFromFile(xmlFile2));
+	}
+
+	private static Scenario createScenario() {
+		Config config = ConfigUtils.createConfig();
+		config.transit().setUseTransit(true);
+		return ScenarioUtils.createScenario(config);
+	}
+
+}
@@ -76,4 +76,40 @@ public class EventsFileComparatorTest extends MatsimTestCase {
 		i = EventsFileComparator.compare(f2, f1);
 		assertEquals("return val = -4", EventsFileComparator.CODE_WRONG_EVENT_COUNT, i);
 	}
+
+	public void testChunked() {
+		String dir = getClassInputDirectory();
+		ChunkedEventsFileComparator comparator = new ChunkedEventsFileComparator();
+		comparator.setNumberOfThreads(2);
+		// one time step per chunk, so the differences are spread over several chunks
+		comparator.setMinimalChunkSize(1);
+		assertEquals(EventsFileComparator.CODE_FILES_ARE_EQUAL, comparator.compare(dir + "/events0.xml.gz", dir + "/events5.xml.gz"));
+		assertEquals(EventsFileComparator.CODE_FILES_ARE_EQUAL, comparator.compare(dir + "/events5.xml.gz", dir + "/events0.xml.gz"));
+		String[] files = {"/events1.xml.gz", "/events2.xml.gz", "/events3.xml.gz", "/events4.xml.gz"};
+		int[] codes = {EventsFileComparator.CODE_DIFFERENT_NUMBER_OF_TIMESTEPS, EventsFileComparator.CODE_DIFFERENT_TIMESTEPS,
+				EventsFileComparator.CODE_MISSING_EVENT, EventsFileComparator.CODE_WRONG_EVENT_COUNT};
+		for (int i = 0; i < files.length; i++) {
+			assertEquals(files[i], codes[i], comparator.compare(dir + "/events0.xml.gz", dir + files[i]));
+			assertEquals(files[i], codes[i], comparator.compare(dir + files[i], dir + "/events0.xml.gz"));
+		}
+	}
+
+	public void testChunked_largeChunks() {
+		String dir = getClassInputDirectory();
+		String[] files = {"/events5.xml.gz", "/events1.xml.gz", "/events2.xml.gz", "/events3.xml.gz", "/events4.xml.gz"};
+		for (String file : files) {
+			assertEquals(file, EventsFileComparator.compare(dir + "/events0.xml.gz", dir + file),
+					EventsFileComparator.compare(dir + "/events0.xml.gz", dir + file, 3));
+		}
+	}
+
+	public void testChunked_missingFile() {
+		String dir = getClassInputDirectory();
+		try {
+			new ChunkedEventsFileComparator().compare(dir + "/events0.xml.gz", dir + "/doesNotExist.xml.gz");
+			fail("expected exception");
+		} catch (RuntimeException e) {
+			// the failure of the reader is passed on instead of blocking the comparison
+		}
+	}
 }
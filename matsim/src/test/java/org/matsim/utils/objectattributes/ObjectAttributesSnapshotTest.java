@@ -0,0 +1,146 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.utils.objectattributes;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.core.utils.io.MatsimFileTypeGuesser;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.utils.objectattributes.ObjectAttributesXmlIOTest.MyTuple;
+import org.matsim.utils.objectattributes.ObjectAttributesXmlIOTest.MyTupleConverter;
+
+public class ObjectAttributesSnapshotTest {
+
+	@Rule	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteRead() {
+		ObjectAttributes oa1 = createAttributes();
+		String filename = this.utils.getOutputDirectory() + "oa.bin";
+		new ObjectAttributesSnapshotWriter(oa1).writeFile(filename);
+
+		ObjectAttributes oa2 = new ObjectAttributes();
+		new ObjectAttributesSnapshotReader(oa2).readFile(filename);
+		assertAttributes(oa2);
+		Assert.assertEquals(oa1.toString(), oa2.toString());
+	}
+
+	@Test
+	public void testXmlReader_detectsSnapshot() {
+		String filename = this.utils.getOutputDirectory() + "oa.bin";
+		new ObjectAttributesSnapshotWriter(createAttributes()).writeFile(filename);
+
+		ObjectAttributes oa = new ObjectAttributes();
+		new ObjectAttributesXmlReader(oa).parse(filename);
+		assertAttributes(oa);
+	}
+
+	@Test
+	public void testFileTypeGuesser() throws Exception {
+		String filename = this.utils.getOutputDirectory() + "oa.bin";
+		new ObjectAttributesSnapshotWriter(createAttributes()).writeFile(filename);
+		MatsimFileTypeGuesser guesser = new MatsimFileTypeGuesser(filename);
+		Assert.assertEquals(MatsimFileTypeGuesser.FileType.ObjectAttributes, guesser.getGuessedFileType());
+		Assert.assertTrue(guesser.isBinarySnapshot());
+	}
+
+	@Test
+	public void testWriteRead_CustomAttribute() {
+		ObjectAttributes oa1 = new ObjectAttributes();
+		oa1.putAttribute("1", "A", new MyTuple(3, 4));
+		oa1.putAttribute("2", "A", "mixed");
+		String filename = this.utils.getOutputDirectory() + "oa.bin";
+		ObjectAttributesSnapshotWriter writer = new ObjectAttributesSnapshotWriter(oa1);
+		writer.putAttributeConverter(MyTuple.class, new MyTupleConverter());
+		writer.writeFile(filename);
+
+		ObjectAttributes oa2 = new ObjectAttributes();
+		ObjectAttributesXmlReader reader = new ObjectAttributesXmlReader(oa2);
+		reader.putAttributeConverter(MyTuple.class, new MyTupleConverter());
+		reader.parse(filename);
+		MyTuple t = (MyTuple) oa2.getAttribute("1", "A");
+		Assert.assertEquals(3, t.a);
+		Assert.assertEquals(4, t.b);
+		Assert.assertEquals("mixed", oa2.getAttribute("2", "A"));
+	}
+
+	@Test
+	public void testManyRemovedObjects() {
+		ObjectAttributes oa1 = new ObjectAttributes();
+		for (int i = 0; i < 5000; i++) {
+			oa1.putAttribute(Integer.toString(i), "x", Double.valueOf(i));
+			oa1.putAttribute(Integer.toString(i), "name", "n" + (i % 7));
+		}
+		for (int i = 0; i < 5000; i++) {
+			if (i % 5 != 0) {
+				oa1.removeAllAttributes(Integer.toString(i));
+			}
+		}
+		String filename = this.utils.getOutputDirectory() + "oa.bin";
+		new ObjectAttributesSnapshotWriter(oa1).writeFile(filename);
+		ObjectAttributes oa2 = new ObjectAttributes();
+		new ObjectAttributesSnapshotReader(oa2).readFile(filename);
+		for (int i = 0; i < 5000; i++) {
+			String id = Integer.toString(i);
+			if (i % 5 == 0) {
+				Assert.assertEquals(Double.valueOf(i), oa2.getAttribute(id, "x"));
+				Assert.assertEquals("n" + (i % 7), oa2.getAttribute(id, "name"));
+			} else {
+				Assert.assertNull(oa2.getAttribute(id, "x"));
+				Assert.assertNull(oa2.getAttribute(id, "name"));
+			}
+		}
+	}
+
+	private static ObjectAttributes createAttributes() {
+		ObjectAttributes oa = new ObjectAttributes();
+		oa.putAttribute("one", "d", Double.valueOf(1.5));
+		oa.putAttribute("one", "i", Integer.valueOf(3));
+		oa.putAttribute("one", "l", Long.valueOf(1L << 40));
+		oa.putAttribute("one", "b", Boolean.TRUE);
+		oa.putAttribute("one", "s", "A");
+		oa.putAttribute("two", "b", Boolean.FALSE);
+		oa.putAttribute("two", "s", "B");
+		oa.putAttribute("two", "m", Integer.valueOf(7));
+		oa.putAttribute("three", "s", "A");
+		oa.putAttribute("three", "m", "seven");
+		oa.putAttribute("gone", "s", "C");
+		oa.removeAllAttributes("gone");
+		return oa;
+	}
+
+	private static void assertAttributes(ObjectAttributes oa) {
+		Assert.assertEquals(Double.valueOf(1.5), oa.getAttribute("one", "d"));
+		Assert.assertEquals(Integer.valueOf(3), oa.getAttribute("one", "i"));
+		Assert.assertEquals(Long.valueOf(1L << 40), oa.getAttribute("one", "l"));
+		Assert.assertEquals(Boolean.TRUE, oa.getAttribute("one", "b"));
+		Assert.assertEquals("A", oa.getAttribute("one", "s"));
+		Assert.assertEquals(Boolean.FALSE, oa.getAttribute("two", "b"));
+		Assert.assertEquals("B", oa.getAttribute("two", "s"));
+		Assert.assertEquals(Integer.valueOf(7), oa.getAttribute("two", "m"));
+		Assert.assertEquals("A", oa.getAttribute("three", "s"));
+		Assert.assertEquals("seven", oa.getAttribute("three", "m"));
+		Assert.assertNull(oa.getAttribute("two", "d"));
+		Assert.assertNull(oa.getAttribute("gone", "s"));
+	}
+
+}
@@ -36,4 +36,61 @@ public class ObjectAttributesTest {
 		Assert.assertEquals("trunk", linkAttributes.putAttribute("1", "osm:roadtype", "motorway"));
 		Assert.assertEquals("motorway", linkAttributes.getAttribute("1", "osm:roadtype"));
 	}
+
+	@Test
+	public void testStringDictionary_releasesOverwrittenValues() {
+		ObjectAttributes attributes = new ObjectAttributes();
+		for (int iteration = 0; iteration < 50; iteration++) {
+			for (int i = 0; i < 100; i++) {
+				attributes.putAttribute(Integer.toString(i), "label", "it" + iteration + "_" + i);
+			}
+		}
+		AttributeColumn.StringColumn column = getStringColumn(attributes, "label");
+		Assert.assertEquals(100, column.getDictionarySize());
+		Assert.assertTrue(column.dictionary.size() <= 101);
+		Assert.assertEquals("it49_7", attributes.getAttribute("7", "label"));
+
+		// the same value again keeps its code
+		attributes.putAttribute("7", "label", "it49_7");
+		Assert.assertEquals("it49_7", attributes.getAttribute("7", "label"));
+		Assert.assertEquals(100, column.getDictionarySize());
+
+		for (int i = 0; i < 100; i++) {
+			attributes.removeAttribute(Integer.toString(i), "label");
+		}
+		Assert.assertEquals(0, column.getDictionarySize());
+	}
+
+	@Test
+	public void testStringDictionary_removedObjects() {
+		ObjectAttributes attributes = new ObjectAttributes();
+		for (int i = 0; i < 3000; i++) {
+			attributes.putAttribute(Integer.toString(i), "type", "t" + (i % 10));
+		}
+		// compacts the objects
+		for (int i = 0; i < 3000; i++) {
+			if (i % 10 != 3 && i % 10 != 4) {
+				attributes.removeAllAttributes(Integer.toString(i));
+			}
+		}
+		AttributeColumn.StringColumn column = getStringColumn(attributes, "type");
+		Assert.assertEquals(2, column.getDictionarySize());
+		Assert.assertEquals("t3", attributes.getAttribute("2993", "type"));
+		Assert.assertEquals("t4", attributes.getAttribute("4", "type"));
+		Assert.assertNull(attributes.getAttribute("5", "type"));
+
+		for (int i = 0; i < 3000; i++) {
+			attributes.removeAllAttributes(Integer.toString(i));
+		}
+		Assert.assertEquals(0, column.getDictionarySize());
+	}
+
+	private static AttributeColumn.StringColumn getStringColumn(final ObjectAttributes attributes, final String name) {
+		for (AttributeColumn column : attributes.getColumns()) {
+			if (column.name.equals(name)) {
+				return (AttributeColumn.StringColumn) column;
+			}
+		}
+		throw new IllegalArgumentException(name);
+	}
 }
@@ -31,8 +31,8 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.dvrp.data.Vehicle;
 import org.matsim.contrib.dvrp.path.VrpPathWithTravelData;
 import org.matsim.contrib.dvrp.path.VrpPaths;
-import org.matsim.contrib.dvrp.router.DefaultLeastCostPathCalculatorWithCache;
 import org.matsim.contrib.dvrp.router.LeastCostPathCalculatorWithCache;
+import org.matsim.contrib.dvrp.router.LeastCostPathCalculatorWithCaches;
 import org.matsim.contrib.dvrp.util.LinkTimePair;
 import org.matsim.contrib.dvrp.util.TimeDiscretizer;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
@@ -83,8 +83,9 @@ public class MultipleFifoOptimizer extends AbstractTaxibusOptimizer {
 
 		LeastCostPathCalculator router = new Dijkstra(optimContext.scenario.getNetwork(),
 				optimContext.travelDisutility, optimContext.travelTime);
-		routerWithCache = new DefaultLeastCostPathCalculatorWithCache(router,
-		        TimeDiscretizer.OPEN_ENDED_15_MIN);
+		routerWithCache = LeastCostPathCalculatorWithCaches.create(optimContext.scenario.getNetwork(), router,
+				TimeDiscretizer.OPEN_ENDED_15_MIN, optimContext.travelTime,
+				optimContext.tbcg.getPathCacheMaxMegabytes() * 1024 * 1024);
 		for (Id<TaxibusLine> line : this.dispatcher.getLines().keySet()) {
 			this.currentRequestPathsForLine.put(line, new LinkedHashSet<TaxibusVehicleRequestPath>());
 
@@ -27,6 +27,7 @@ public class TaxibusConfigGroup extends ConfigGroup {
 	private static final String BALANCING = "balanceLines";
 	private static final String VEHICLESONDISPATCH = "vehiclesDispatchedAtSameTime";
 	private static final String DISTANCEMEASURE = "distanceCalculationCostCriteria";
+	private static final String PATH_CACHE_MAX_MEGABYTES = "pathCacheMaxMegabytes";
 	
 
 	private String taxiIdentifier = "taxibus";
@@ -38,6 +39,7 @@ public class TaxibusConfigGroup extends ConfigGroup {
 	private double pickupDuration = 60.0;
 	private double dropoffDuration = 120.0;
 	private int numberOfVehiclesDispatchedAtSameTime = 8;
+	private long pathCacheMaxMegabytes = 0;
 
 	private String algorithm;
 
@@ -86,6 +88,8 @@ public class TaxibusConfigGroup extends ConfigGroup {
 			this.distanceCalculationCostCriteria = value;
 		} else if (VEHICLESONDISPATCH.equals(key)) {
 			this.numberOfVehiclesDispatchedAtSameTime = Integer.parseInt(value);
+		} else if (PATH_CACHE_MAX_MEGABYTES.equals(key)) {
+			this.pathCacheMaxMegabytes = Long.parseLong(value);
 		}
 		
 
@@ -111,6 +115,7 @@ public class TaxibusConfigGroup extends ConfigGroup {
 		map.put(BALANCING, balancingMethod);
 		map.put(DISTANCEMEASURE, distanceCalculationCostCriteria);
 		map.put(VEHICLESONDISPATCH, Integer.toString(numberOfVehiclesDispatchedAtSameTime));
+		map.put(PATH_CACHE_MAX_MEGABYTES, Long.toString(pathCacheMaxMegabytes));
 		return map;
 
 	}
@@ -132,6 +137,8 @@ public class TaxibusConfigGroup extends ConfigGroup {
 				"Balancing vehicles between line. Possible parameters: same (returns to same line), return (return line), balanced (balances between lines)");
 		map.put(DISTANCEMEASURE, "Mode in which distance is measured. One of: beeline, earliestArrival");
 		map.put(VEHICLESONDISPATCH, "Number of vehicles dispatched at the same time - per line");
+		map.put(PATH_CACHE_MAX_MEGABYTES,
+				"Memory budget (in MB) of the path cache used by the optimizer. Least recently used paths are evicted once it is exceeded; 0 means unbounded (default)");
 		return map;
 	}
 
@@ -188,4 +195,7 @@ public class TaxibusConfigGroup extends ConfigGroup {
 	public String getDistanceCalculationMode() {
 		return distanceCalculationCostCriteria;
 	}
+	public long getPathCacheMaxMegabytes() {
+		return pathCacheMaxMegabytes;
+	}
 }
@@ -5,7 +5,6 @@ import gunnar.ihop2.utils.FractionalIterable;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -20,7 +19,14 @@ public class ObjectAttributeUtils2 {
 
 	public static List<String> allObjectKeys(
 			final ObjectAttributes objectAttributes) {
-		return new ArrayList<String>(objectAttributes.attributes.keySet());
+		final List<String> result = new ArrayList<String>();
+		for (int index = 0; index < objectAttributes.getObjectIndexCount(); index++) {
+			final String objectKey = objectAttributes.getObjectId(index);
+			if (objectKey != null) {
+				result.add(objectKey);
+			}
+		}
+		return result;
 	}
 
 	public static List<String> allAttributeKeys(
@@ -36,10 +42,9 @@ public class ObjectAttributeUtils2 {
 	public static ObjectAttributes newFractionalSubset(
 			final ObjectAttributes parent, final double fraction) {
 		final ObjectAttributes subset = new ObjectAttributes();
-		for (Map.Entry<String, Map<String, Object>> objKey2attrs : new FractionalIterable<>(
-				parent.attributes.entrySet(), fraction)) {
-			subset.attributes.put(objKey2attrs.getKey(),
-					objKey2attrs.getValue());
+		for (String objectKey : new FractionalIterable<>(allObjectKeys(parent),
+				fraction)) {
+			ObjectAttributesUtils.copyAllAttributes(parent, subset, objectKey);
 		}
 		return subset;
 	}